@@ -1,12 +1,13 @@
 package org.ttl.ratingservice.controller;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.ttl.ratingservice.service.CourseRatingService;
@@ -15,14 +16,26 @@ import org.ttl.ratingservice.service.CourseRatingService;
 @RequestMapping("/rating")
 public class CourseRatingServiceController {
 
+   public static final int MAX_BULK_IDS = 1000;
+
    @Autowired
    private CourseRatingService service;
 
    @GetMapping("/{id}")
    public BigDecimal getRatingForCourse(@PathVariable("id") int id) {
-      var rd = ThreadLocalRandom.current().nextDouble(service.getLowerLimit(), service.getUpperLimit());
-      var rating = new BigDecimal(String.valueOf(rd)).setScale(1, RoundingMode.CEILING);
+      return service.getRating(id);
+   }
 
-      return rating;
+   /**
+    * Ratings for many courses in one call.  The body is a JSON array
+    * of ids, e.g. [1, 2, 3], the answer is an object from id to rating,
+    * e.g. {"1": 3.2, "2": -1.5, "3": 4.0}.
+    */
+   @PostMapping("/bulk")
+   public ResponseEntity<?> getRatingsForCourses(@RequestBody List<Integer> ids) {
+      if (ids.size() > MAX_BULK_IDS) {
+         return ResponseEntity.badRequest().body("Too many ids, the limit is " + MAX_BULK_IDS + ": " + ids.size());
+      }
+      return ResponseEntity.ok(service.getRatings(ids));
    }
 }
@@ -37,6 +37,7 @@ public class SecurityConfig {
 
       var chain = http.authorizeHttpRequests(auth ->
                   auth.requestMatchers(HttpMethod.GET, "/rating/**", "/admin/**").authenticated()
+                        .requestMatchers(HttpMethod.POST, "/rating/bulk").authenticated()
                         .requestMatchers(HttpMethod.PUT, "/admin/**").hasRole("ADMIN")
                         .anyRequest().denyAll()
             )
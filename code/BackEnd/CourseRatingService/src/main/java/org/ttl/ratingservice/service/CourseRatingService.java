@@ -1,5 +1,11 @@
 package org.ttl.ratingservice.service;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -20,6 +26,23 @@ public class CourseRatingService {
       upperLimit = 24.0;
    }
 
+   public BigDecimal getRating(int id) {
+      var rd = ThreadLocalRandom.current().nextDouble(lowerLimit, upperLimit);
+      var rating = new BigDecimal(String.valueOf(rd)).setScale(1, RoundingMode.CEILING);
+
+      return rating;
+   }
+
+   /**
+    * Ratings for a batch of ids, so that clients can get a whole
+    * page of courses rated in one round trip.
+    */
+   public Map<Integer, BigDecimal> getRatings(Collection<Integer> ids) {
+      Map<Integer, BigDecimal> ratings = new LinkedHashMap<>();
+      ids.forEach(id -> ratings.put(id, getRating(id)));
+      return ratings;
+   }
+
    public double getLowerLimit() {
       return lowerLimit;
    }
@@ -16,7 +16,9 @@ import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilde
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
@@ -45,6 +47,27 @@ public class CourseRatingControllerMvcTest {
 //      assertTrue(rating > 0);
    }
 
+   @Test
+   @WithMockUser(roles = {"USER"})
+   public void testGetBulkRatingsGivesOneRatingPerId() throws Exception {
+      mockMvc.perform(post("/rating/bulk")
+                  .accept(MediaType.APPLICATION_JSON)
+                  .contentType(MediaType.APPLICATION_JSON)
+                  .content("[1, 2, 3]"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(3))
+            .andExpect(jsonPath("$['1']").isNumber())
+            .andExpect(jsonPath("$['3']").isNumber());
+   }
+
+   @Test
+   public void testGetBulkRatingsWithoutCredentialsGive401() throws Exception {
+      mockMvc.perform(post("/rating/bulk")
+                  .contentType(MediaType.APPLICATION_JSON)
+                  .content("[1, 2, 3]"))
+            .andExpect(status().isUnauthorized());
+   }
+
    @Test
    @WithMockUser(roles = {"USER"})
    public void testGetLimitsWithValidUserGives200() throws Exception {
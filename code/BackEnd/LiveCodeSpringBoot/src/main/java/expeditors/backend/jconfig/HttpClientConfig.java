@@ -0,0 +1,45 @@
+package expeditors.backend.jconfig;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+
+/**
+ * One JDK HttpClient for the clients that call out to other services,
+ * e.g. NetworkRatingProvider.  It keeps its connections alive and reuses
+ * them, so we don't open a new one for every call, and it has connect
+ * and read timeouts, which the default request factory doesn't.
+ * <p>
+ * Properties, with their defaults:
+ * <pre>
+ *    http.client.connect-timeout=PT2S
+ *    http.client.read-timeout=PT5S
+ * </pre>
+ */
+@Configuration
+@Profile("networkrating")
+public class HttpClientConfig {
+
+   //Spring calls close() on it when the context goes away
+   @Bean
+   public HttpClient pooledHttpClient(@Value("${http.client.connect-timeout:PT2S}") Duration connectTimeout) {
+      return HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(connectTimeout)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+   }
+
+   @Bean
+   public ClientHttpRequestFactory pooledRequestFactory(HttpClient pooledHttpClient,
+                                                        @Value("${http.client.read-timeout:PT5S}") Duration readTimeout) {
+      var factory = new JdkClientHttpRequestFactory(pooledHttpClient);
+      factory.setReadTimeout(readTimeout);
+      return factory;
+   }
+}
@@ -3,10 +3,10 @@ package expeditors.backend.rating;
 import expeditors.backend.domain.Course;
 import jakarta.annotation.PostConstruct;
 import java.util.concurrent.ThreadLocalRandom;
-import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClient;
 
@@ -21,12 +21,17 @@ public class NetworkRatingProvider implements RatingProvider {
 
    private String ratingUrl;
 
-   public NetworkRatingProvider(RestTemplateBuilder restTemplateBuilder) {
+   /**
+    * pooledRequestFactory is the shared one from HttpClientConfig, so the
+    * calls reuse kept alive connections and have timeouts.
+    */
+   public NetworkRatingProvider(ClientHttpRequestFactory pooledRequestFactory) {
       var baseUrl = "http://localhost:10001";
       var rootUrl = baseUrl + "/courseRating";
       ratingUrl = rootUrl + "/{id}";
 
-      this.restClient = RestClient.builder(restTemplateBuilder.build())
+      this.restClient = RestClient.builder()
+            .requestFactory(pooledRequestFactory)
             .baseUrl(baseUrl)
             .defaultHeader("Accept", "application/json")
             .defaultHeader("Content-Type", "application/json")
@@ -3,7 +3,11 @@ package expeditors.backend.adoptapp.dao;
 
 import expeditors.backend.adoptapp.domain.Adopter;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.NavigableMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface AdopterDAO {
     Adopter insert(Adopter newAdopter);
@@ -15,4 +19,47 @@ public interface AdopterDAO {
     Adopter findById(int id);
 
     List<Adopter> findAll();
+
+    /**
+     * Walk over all the Adopters without copying the store first.
+     * The default streams over findAll(), so it still copies.
+     * Override where the store can be streamed directly.
+     */
+    default Stream<Adopter> stream() {
+        return findAll().stream();
+    }
+
+    default void forEach(Consumer<? super Adopter> action) {
+        stream().forEach(action);
+    }
+
+    /**
+     * At most limit Adopters with ids >= fromId, in id order.  A limit
+     * that isn't positive is an IllegalArgumentException.  There is no
+     * default, only the store knows how to get at its ids in order.
+     */
+    List<Adopter> scan(int fromId, int limit);
+
+    /**
+     * scan for a store kept in a map sorted by id.  The page starts at
+     * fromId in the map, so it costs limit entries however many ids
+     * are below fromId or have been deleted.
+     */
+    static List<Adopter> scan(NavigableMap<Integer, Adopter> adopters, int fromId, int limit) {
+        checkScanLimit(limit);
+        List<Adopter> result = new ArrayList<>(Math.min(limit, 64));
+        for (Adopter adopter : adopters.tailMap(fromId, true).values()) {
+            if (result.size() == limit) {
+                break;
+            }
+            result.add(adopter);
+        }
+        return result;
+    }
+
+    static void checkScanLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive, was " + limit);
+        }
+    }
 }
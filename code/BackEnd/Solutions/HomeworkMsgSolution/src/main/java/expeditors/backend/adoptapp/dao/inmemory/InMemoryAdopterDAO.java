@@ -7,15 +7,18 @@ import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Repository
 @Profile("dev")
 public class InMemoryAdopterDAO implements AdopterDAO {
 
-    private Map<Integer, Adopter> adopters = new ConcurrentHashMap<>();
+    //Sorted by id, for scan
+    private NavigableMap<Integer, Adopter> adopters = new ConcurrentSkipListMap<>();
     private AtomicInteger nextId = new AtomicInteger(1);
 
     public Adopter insert(Adopter newAdopter) {
@@ -41,4 +44,19 @@ public class InMemoryAdopterDAO implements AdopterDAO {
     public List<Adopter> findAll() {
         return new ArrayList(adopters.values());
     }
+
+    @Override
+    public Stream<Adopter> stream() {
+        return adopters.values().stream();
+    }
+
+    @Override
+    public void forEach(Consumer<? super Adopter> action) {
+        adopters.values().forEach(action);
+    }
+
+    @Override
+    public List<Adopter> scan(int fromId, int limit) {
+        return AdopterDAO.scan(adopters, fromId, limit);
+    }
 }
@@ -0,0 +1,107 @@
+package expeditors.backend.adoptapp.dao.jdbc;
+
+import expeditors.backend.adoptapp.domain.Adopter;
+import expeditors.backend.adoptapp.domain.Pet;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Inserts many Adopters, with their Pets, in two JDBC batches: one for
+ * the adopters and one for all of their pets.  Saving them one at a
+ * time through the AdopterRepo is a round trip per adopter and per
+ * pet, because Hibernate can't batch inserts with IDENTITY ids.
+ * <p>
+ * The JdbcTemplate joins the caller's transaction.  The generated ids
+ * are set on the Adopters and Pets, the way a save would.
+ * @author whynot
+ */
+@Repository
+public class AdopterBatchWriter {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AdopterBatchWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public List<Adopter> insertAll(List<Adopter> adopters) {
+        if (adopters.isEmpty()) {
+            return adopters;
+        }
+        List<Map<String, Object>> adopterKeys = insert(
+                "INSERT INTO ADOPTER (NAME, PHONE_NUMBER) VALUES (?, ?)", "ID", adopters.size(),
+                (ps, i) -> {
+                    var adopter = adopters.get(i);
+                    ps.setString(1, adopter.getName());
+                    ps.setString(2, adopter.getPhoneNumber());
+                });
+
+        List<Pet> pets = new ArrayList<>();
+        List<Integer> petAdopterIds = new ArrayList<>();
+        for (int i = 0; i < adopters.size(); i++) {
+            var adopter = adopters.get(i);
+            adopter.setId(idOf(adopterKeys.get(i)));
+            for (Pet pet : adopter.getPets()) {
+                pets.add(pet);
+                petAdopterIds.add(adopter.getId());
+            }
+        }
+        if (pets.isEmpty()) {
+            return adopters;
+        }
+
+        List<Map<String, Object>> petKeys = insert(
+                "INSERT INTO PET (PET_TYPE, PET_NAME, PET_BREED, ADOPT_DATE, ADOPTER_ID) VALUES (?, ?, ?, ?, ?)",
+                "PET_ID", pets.size(),
+                (ps, i) -> {
+                    var pet = pets.get(i);
+                    ps.setString(1, pet.getType() != null ? pet.getType().name() : null);
+                    ps.setString(2, pet.getName());
+                    ps.setString(3, pet.getBreed());
+                    ps.setObject(4, pet.getAdoptionDate(), Types.DATE);
+                    ps.setInt(5, petAdopterIds.get(i));
+                });
+        for (int i = 0; i < pets.size(); i++) {
+            pets.get(i).setPetId(idOf(petKeys.get(i)));
+        }
+
+        return adopters;
+    }
+
+    private interface RowSetter {
+        void setValues(PreparedStatement ps, int i) throws SQLException;
+    }
+
+    private List<Map<String, Object>> insert(String sql, String idColumn, int rows, RowSetter setter) {
+        var keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(sql, new String[]{idColumn}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setter.setValues(ps, i);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return rows;
+                    }
+                }, keys);
+        return keys.getKeyList();
+    }
+
+    /**
+     * The only column in the map is the id, but its name is in upper or
+     * lower case depending on the database.
+     */
+    private static int idOf(Map<String, Object> key) {
+        return ((Number) key.values().iterator().next()).intValue();
+    }
+}
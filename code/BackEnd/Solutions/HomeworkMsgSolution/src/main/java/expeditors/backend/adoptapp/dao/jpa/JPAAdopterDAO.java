@@ -7,15 +7,16 @@ import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 @Repository
 @Profile("prod")
 public class JPAAdopterDAO implements AdopterDAO {
 
-    private Map<Integer, Adopter> adopters = new ConcurrentHashMap<>();
+    //Sorted by id, for scan
+    private NavigableMap<Integer, Adopter> adopters = new ConcurrentSkipListMap<>();
     private AtomicInteger nextId = new AtomicInteger(1);
 
     @Override
@@ -46,4 +47,9 @@ public class JPAAdopterDAO implements AdopterDAO {
     public List<Adopter> findAll() {
         return new ArrayList(adopters.values());
     }
+
+    @Override
+    public List<Adopter> scan(int fromId, int limit) {
+        return AdopterDAO.scan(adopters, fromId, limit);
+    }
 }
@@ -0,0 +1,181 @@
+package expeditors.backend.adoptapp.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A boolean expression over the op.property keys of a search, e.g.
+ * <pre>
+ *    where=C.name and (G.dob or not e.status)
+ * </pre>
+ * The keys are the same ones you would put in the query string
+ * anyway, and the values still come from there:
+ * <pre>
+ *    ?C.name=man&amp;G.dob=1990-01-01&amp;e.status=PART_TIME&amp;where=C.name and (G.dob or not e.status)
+ * </pre>
+ * and, or and not can be in any case.  not binds tightest, then and,
+ * then or.  Use parentheses for anything else.
+ */
+public sealed interface SearchExpr {
+
+   record Term(String key) implements SearchExpr {
+   }
+
+   record And(List<SearchExpr> operands) implements SearchExpr {
+   }
+
+   record Or(List<SearchExpr> operands) implements SearchExpr {
+   }
+
+   record Not(SearchExpr operand) implements SearchExpr {
+   }
+
+   /**
+    * What you get without a where parameter: all the keys joined
+    * with the one operation.
+    */
+   static SearchExpr of(JpaSearchSpecSupport.Operation operation, List<String> searchKeys) {
+      List<SearchExpr> terms = new ArrayList<>();
+      searchKeys.forEach(key -> terms.add(new Term(key)));
+      if (terms.size() == 1) {
+         return terms.get(0);
+      }
+      return operation == JpaSearchSpecSupport.Operation.And ? new And(terms) : new Or(terms);
+   }
+
+   static SearchExpr parse(String expression) {
+      return new Parser(expression).parse();
+   }
+
+   /**
+    * All the search keys used in the expression.
+    */
+   default Set<String> keys() {
+      Set<String> keys = new LinkedHashSet<>();
+      collectKeys(this, keys);
+      return keys;
+   }
+
+   private static void collectKeys(SearchExpr expr, Set<String> keys) {
+      switch (expr) {
+         case Term t -> keys.add(t.key());
+         case And a -> a.operands().forEach(o -> collectKeys(o, keys));
+         case Or o -> o.operands().forEach(op -> collectKeys(op, keys));
+         case Not n -> collectKeys(n.operand(), keys);
+      }
+   }
+
+   /**
+    * Recursive descent, one method per precedence level:
+    * <pre>
+    *    or   := and ( OR and )*
+    *    and  := not ( AND not )*
+    *    not  := NOT not | '(' or ')' | term
+    * </pre>
+    */
+   final class Parser {
+      private final String expression;
+      private final List<String> tokens = new ArrayList<>();
+      private int pos;
+
+      Parser(String expression) {
+         this.expression = expression;
+         StringBuilder word = new StringBuilder();
+         for (char c : expression.toCharArray()) {
+            if (Character.isWhitespace(c) || c == '(' || c == ')') {
+               if (!word.isEmpty()) {
+                  tokens.add(word.toString());
+                  word.setLength(0);
+               }
+               if (c == '(' || c == ')') {
+                  tokens.add(String.valueOf(c));
+               }
+            } else {
+               word.append(c);
+            }
+         }
+         if (!word.isEmpty()) {
+            tokens.add(word.toString());
+         }
+      }
+
+      SearchExpr parse() {
+         if (tokens.isEmpty()) {
+            throw error("empty expression");
+         }
+         SearchExpr expr = parseOr();
+         if (pos < tokens.size()) {
+            throw error("unexpected '" + tokens.get(pos) + "'");
+         }
+         return expr;
+      }
+
+      private SearchExpr parseOr() {
+         List<SearchExpr> operands = new ArrayList<>();
+         operands.add(parseAnd());
+         while (accept("or")) {
+            operands.add(parseAnd());
+         }
+         return operands.size() == 1 ? operands.get(0) : new Or(flatten(operands, Or.class));
+      }
+
+      private SearchExpr parseAnd() {
+         List<SearchExpr> operands = new ArrayList<>();
+         operands.add(parseNot());
+         while (accept("and")) {
+            operands.add(parseNot());
+         }
+         return operands.size() == 1 ? operands.get(0) : new And(flatten(operands, And.class));
+      }
+
+      private SearchExpr parseNot() {
+         if (accept("not")) {
+            return new Not(parseNot());
+         }
+         if (accept("(")) {
+            SearchExpr expr = parseOr();
+            if (!accept(")")) {
+               throw error("missing ')'");
+            }
+            return expr;
+         }
+         if (pos >= tokens.size()) {
+            throw error("expression ends too soon");
+         }
+         String key = tokens.get(pos++);
+         if (!SearchPlan.isSearchKey(key)) {
+            throw error("'" + key + "' is not an op.property search key");
+         }
+         return new Term(key);
+      }
+
+      /**
+       * (a or b) or c is just a or b or c.
+       */
+      private List<SearchExpr> flatten(List<SearchExpr> operands, Class<? extends SearchExpr> type) {
+         List<SearchExpr> result = new ArrayList<>();
+         for (SearchExpr operand : operands) {
+            switch (operand) {
+               case And a when type == And.class -> result.addAll(a.operands());
+               case Or o when type == Or.class -> result.addAll(o.operands());
+               default -> result.add(operand);
+            }
+         }
+         return List.copyOf(result);
+      }
+
+      private boolean accept(String token) {
+         if (pos < tokens.size() && tokens.get(pos).equalsIgnoreCase(token)) {
+            pos++;
+            return true;
+         }
+         return false;
+      }
+
+      private IllegalArgumentException error(String message) {
+         return new IllegalArgumentException("Bad search expression '" + expression + "': " + message);
+      }
+   }
+}
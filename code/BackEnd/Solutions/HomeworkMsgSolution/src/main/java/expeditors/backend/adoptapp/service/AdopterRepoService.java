@@ -1,5 +1,6 @@
 package expeditors.backend.adoptapp.service;
 
+import expeditors.backend.adoptapp.dao.jdbc.AdopterBatchWriter;
 import expeditors.backend.adoptapp.dao.repository.AdopterRepo;
 import expeditors.backend.adoptapp.domain.Adopter;
 import expeditors.backend.adoptapp.domain.Pet;
@@ -16,9 +17,12 @@ public class AdopterRepoService {
 
     private final MessageSender messageSender;
     private final AdopterRepo adopterDAO;
+    private final AdopterBatchWriter batchWriter;
 
-    public AdopterRepoService(AdopterRepo adopterDAO, @Autowired(required = false)MessageSender messageSender) {
+    public AdopterRepoService(AdopterRepo adopterDAO, AdopterBatchWriter batchWriter,
+                              @Autowired(required = false)MessageSender messageSender) {
         this.adopterDAO = adopterDAO;
+        this.batchWriter = batchWriter;
         this.messageSender = messageSender;
     }
 
@@ -29,6 +33,17 @@ public class AdopterRepoService {
         return newAdopter;
     }
 
+    /**
+     * Many adopters in one transaction, with JDBC batch inserts instead
+     * of a save per adopter.  A message goes out for each one, as with
+     * addAdopter.
+     */
+    public List<Adopter> addAdopters(List<Adopter> adopters) {
+        var newAdopters = batchWriter.insertAll(adopters);
+        newAdopters.forEach(this::sendMessage);
+        return newAdopters;
+    }
+
     private void sendMessage(Adopter newAdopter) {
         if(messageSender != null) {
             messageSender.sendMessage(newAdopter);
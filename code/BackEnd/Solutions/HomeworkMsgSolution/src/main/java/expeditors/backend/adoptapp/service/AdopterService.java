@@ -40,7 +40,7 @@ public class AdopterService {
 
     public List<Adopter> getAdoptersByPetType(PetType type) {
         List<Adopter> result = adopterDAO
-                .findAll().stream()
+                .stream()
                 .filter(a -> a.getPets().stream().anyMatch(p -> p.getType() == type))
                 .toList();
         return result;
@@ -1,22 +1,20 @@
 package expeditors.backend.commonconfig.msg;
 
 import expeditors.backend.adoptapp.domain.Adopter;
-import expeditors.backend.avro.AvroPet;
-import expeditors.backend.avro.FullAdopterMessage;
-import expeditors.backend.avro.SimpleCustomerMessage;
 import expeditors.backend.custapp.domain.Customer;
-import java.time.format.DateTimeFormatter;
-import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
-
 /**
+ * Turns Customers and Adopters into Avro messages and hands them to
+ * the KafkaBatchPublisher.  The AvroMessageCodec encodes them here, on
+ * the caller's thread, because they are entities that may change, or
+ * be lazily loaded, once the caller's transaction is over.  Encoding
+ * is cheap.  The send happens on the publisher's thread, and the
+ * PreEncodedAvroSerializer passes the bytes through as they are.
  * @author whynot
  */
 
@@ -30,12 +28,12 @@ public class KafkaAvroMsgSender implements MessageSender {
 
     private Logger logger = LoggerFactory.getLogger(this.getClass());
 
-    private final KafkaTemplate<String, Object> template;
-
-    private DateTimeFormatter dtFormatter = DateTimeFormatter.ISO_LOCAL_DATE;
+    private final KafkaBatchPublisher publisher;
+    private final AvroMessageCodec codec;
 
-    public KafkaAvroMsgSender(KafkaTemplate<String, Object> template) {
-        this.template = template;
+    public KafkaAvroMsgSender(KafkaBatchPublisher publisher, AvroMessageCodec codec) {
+        this.publisher = publisher;
+        this.codec = codec;
     }
 
 
@@ -46,38 +44,12 @@ public class KafkaAvroMsgSender implements MessageSender {
     @Override
     public void sendMessage(Object message, String resolvedTopic) {
         if (message instanceof Customer customer) {
-            var dob = customer.getDob() != null ? customer.getDob().toString() : "";
-            SimpleCustomerMessage ssm = SimpleCustomerMessage.newBuilder()
-                    .setName(customer.getName())
-//                    .setPhoneNumber(customer.getPhoneNumber())
-                    .setDob(dob)
-                    .setStatus(customer.getStatus().toString())
-                    .setTimeStamp(LocalDateTime.now().format(dtFormatter))
-                    .build();
-
-
-            System.err.println("KafkaAvroSender Sending Customer to topic: " + resolvedTopic + ", Our topic: " + topic);
-            var result = template.send(resolvedTopic, ssm);
+            logger.debug("KafkaAvroSender Sending Customer to topic: {}, Our topic: {}", resolvedTopic, topic);
+            publisher.publish(resolvedTopic, codec.encode(resolvedTopic, customer));
         }
         else if(message instanceof Adopter adopter) {
-            FullAdopterMessage fam = FullAdopterMessage.newBuilder()
-                  .setName(adopter.getName())
-                  .setPhoneNumber(adopter.getPhoneNumber())
-                  .setPets(adopter.getPets()
-                        .stream()
-                        .map(pet -> AvroPet.newBuilder()
-                              .setPetType(pet.getType().name())
-                              .setPetName(pet.getName())
-                              .setPetBreed(pet.getBreed())
-                              .setAdoptionDate(pet.getAdoptionDate().format(dtFormatter))
-                              .build()
-                        ).toList()
-                    )
-                  .setTimeStamp(LocalDateTime.now().toString())
-                  .build();
-
-            System.err.println("KafkaAvroSender Sending Adopter to topic: " + resolvedTopic + ", Our topic: " + topic);
-            var result = template.send(resolvedTopic, fam);
+            logger.debug("KafkaAvroSender Sending Adopter to topic: {}, Our topic: {}", resolvedTopic, topic);
+            publisher.publish(resolvedTopic, codec.encode(resolvedTopic, adopter));
         }
     }
-}
\ No newline at end of file
+}
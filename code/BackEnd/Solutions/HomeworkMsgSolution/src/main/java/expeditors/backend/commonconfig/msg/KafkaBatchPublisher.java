@@ -0,0 +1,177 @@
+package expeditors.backend.commonconfig.msg;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gets Kafka sends off the request thread.  publish() just puts the
+ * record on a bounded queue.  One dedicated thread takes them off in
+ * batches of up to maxBatch and hands them to the KafkaTemplate, which
+ * is where the serializing, the schema registry lookups and any
+ * blocking on producer metadata or a full producer buffer happen.
+ * <p>
+ * When the queue is full, publish() waits up to offerTimeout for
+ * room, which slows the callers down to what Kafka can take.  If there
+ * is still no room the record is dropped, counted and logged, rather
+ * than failing the caller's transaction.
+ * <p>
+ * Metrics, at /actuator/metrics/kafka.publisher.*:
+ * <ul>
+ *    <li>send.latency: from publish() to the broker's ack.</li>
+ *    <li>batch.size: records taken off the queue at a time.</li>
+ *    <li>queue.size: records waiting.</li>
+ *    <li>failures: sends that failed, dropped: records that never got queued.</li>
+ * </ul>
+ * The producer's own batching (linger.ms, batch.size, compression) is
+ * set in the spring.kafka.producer properties, and its metrics are at
+ * kafka.producer.*.
+ */
+@Component
+@Profile("kkavroevents")
+public class KafkaBatchPublisher {
+
+    private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private record Pending(String topic, Object value, long publishedAt) {
+    }
+
+    private final KafkaTemplate<String, Object> template;
+    private final BlockingQueue<Pending> queue;
+    private final int maxBatch;
+    private final long offerTimeoutNanos;
+    private final Thread sender;
+    private volatile boolean running = true;
+
+    private final Timer sendLatency;
+    private final DistributionSummary batchSize;
+    private final Counter failures;
+    private final Counter dropped;
+
+    public KafkaBatchPublisher(KafkaTemplate<String, Object> template,
+                               MeterRegistry registry,
+                               @Value("${ttl.kafka.publisher.queue-capacity:10000}") int queueCapacity,
+                               @Value("${ttl.kafka.publisher.max-batch:500}") int maxBatch,
+                               @Value("${ttl.kafka.publisher.offer-timeout:PT1S}") Duration offerTimeout) {
+        this.template = template;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatch = maxBatch;
+        this.offerTimeoutNanos = offerTimeout.toNanos();
+
+        this.sendLatency = Timer.builder("kafka.publisher.send.latency")
+                .description("From publish to the broker's ack")
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+        this.batchSize = DistributionSummary.builder("kafka.publisher.batch.size")
+                .description("Records taken off the queue at a time")
+                .register(registry);
+        this.failures = Counter.builder("kafka.publisher.failures")
+                .description("Sends that failed")
+                .register(registry);
+        this.dropped = Counter.builder("kafka.publisher.dropped")
+                .description("Records dropped because the queue stayed full")
+                .register(registry);
+        Gauge.builder("kafka.publisher.queue.size", queue, BlockingQueue::size)
+                .register(registry);
+
+        this.sender = Thread.ofPlatform().name("kafka-publisher").daemon().start(this::drain);
+    }
+
+    /**
+     * @return false if the record was dropped, because the queue stayed
+     * full for offerTimeout, or we are shutting down.
+     */
+    public boolean publish(String topic, Object value) {
+        if (!running) {
+            return drop(topic, "shutting down");
+        }
+        try {
+            if (queue.offer(new Pending(topic, value, System.nanoTime()), offerTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                return true;
+            }
+            return drop(topic, "queue full");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return drop(topic, "interrupted");
+        }
+    }
+
+    private boolean drop(String topic, String why) {
+        dropped.increment();
+        logger.warn("Dropped message for topic {}: {}", topic, why);
+        return false;
+    }
+
+    private void drain() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                batchSize.record(batch.size());
+                for (Pending pending : batch) {
+                    send(pending);
+                }
+            } catch (InterruptedException e) {
+                //Only close() interrupts us, once it has given up waiting
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(Pending pending) {
+        try {
+            template.send(pending.topic(), pending.value()).whenComplete((result, ex) -> {
+                sendLatency.record(System.nanoTime() - pending.publishedAt(), TimeUnit.NANOSECONDS);
+                if (ex != null) {
+                    failures.increment();
+                    logger.warn("Send to topic {} failed with ex: {}", pending.topic(), ex.getMessage());
+                }
+            });
+        } catch (RuntimeException e) {
+            //Serializing, or a full producer buffer for too long
+            failures.increment();
+            logger.warn("Send to topic {} failed with ex: {}", pending.topic(), e.getMessage());
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Stop taking new records, send what's queued, and flush the
+     * producer.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        running = false;
+        sender.join(Duration.ofSeconds(10));
+        if (sender.isAlive()) {
+            sender.interrupt();
+            logger.warn("Gave up waiting for {} queued messages", queue.size());
+        }
+        template.flush();
+    }
+}
@@ -0,0 +1,73 @@
+package expeditors.backend.commonconfig.msg;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.sql.Timestamp;
+import java.time.Instant;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Writes the message to the OUTBOX table, as json, instead of sending
+ * it.  The JdbcTemplate joins the caller's transaction, so the message
+ * goes in if and only if the change it is about does.  A rollback
+ * sends nothing, and a slow broker doesn't hold the transaction open.
+ * <p>
+ * The OutboxRelay does the sending.  It is woken up when the
+ * transaction commits.
+ * <p>
+ * Primary, so it wins over the KafkaJsonMsgSender that kkjsonevents
+ * also brings in.
+ * @author whynot
+ */
+@Component
+@Primary
+@Profile("outbox")
+public class OutboxMsgSender implements MessageSender {
+
+    @Value("${ttl.kafka.adopter.topic}")
+    private String topic;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper mapper;
+    private final OutboxRelay relay;
+
+    public OutboxMsgSender(JdbcTemplate jdbcTemplate, ObjectMapper mapper, OutboxRelay relay) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.mapper = mapper;
+        this.relay = relay;
+    }
+
+    @Override
+    public void sendMessage(Object message) {
+        sendMessage(message, topic);
+    }
+
+    @Override
+    public void sendMessage(Object message, String resolvedTopic) {
+        String payload;
+        try {
+            payload = mapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Can't write " + message.getClass().getName() + " as json", e);
+        }
+        jdbcTemplate.update("INSERT INTO OUTBOX (TOPIC, PAYLOAD_TYPE, PAYLOAD, CREATED_AT) VALUES (?, ?, ?, ?)",
+                resolvedTopic, message.getClass().getName(), payload, Timestamp.from(Instant.now()));
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    relay.wakeUp();
+                }
+            });
+        } else {
+            relay.wakeUp();
+        }
+    }
+}
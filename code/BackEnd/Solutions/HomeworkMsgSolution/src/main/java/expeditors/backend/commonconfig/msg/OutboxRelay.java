@@ -0,0 +1,255 @@
+package expeditors.backend.commonconfig.msg;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sends what the OutboxMsgSender put in the OUTBOX table to Kafka, in
+ * batches of up to batchSize rows, oldest first, and sets SENT_AT on
+ * the ones the broker took.
+ * <p>
+ * It runs on its own thread.  It keeps going while there are full
+ * batches, and then waits for pollInterval, or until a commit wakes
+ * it up.
+ * <p>
+ * With Kafka transactions on (spring.kafka.producer.transaction-id-prefix)
+ * a batch is one Kafka transaction, so consumers reading committed
+ * see all of it or none.  Without, each send is waited for, and only
+ * the ones that got acked are marked.
+ * <p>
+ * If we go down after a send and before marking the row, the row is
+ * sent again, so delivery is at least once.  Every record carries the
+ * row's id in an outbox-id header, which a consumer can use to drop
+ * repeats.  A row that keeps failing is left alone after maxAttempts.
+ * <p>
+ * There should be one relay per database.  Two would send the same
+ * rows.
+ * @author whynot
+ */
+@Component
+@Profile("outbox")
+public class OutboxRelay implements SmartLifecycle {
+
+    public static final String OUTBOX_ID_HEADER = "outbox-id";
+
+    private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private record Row(long id, String topic, String payloadType, String payload) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final KafkaTemplate<String, Object> template;
+    private final ObjectMapper mapper;
+    private final int batchSize;
+    private final long pollIntervalNanos;
+    private final long sendTimeoutNanos;
+    private final int maxAttempts;
+    private final Duration retention;
+
+    private final Semaphore wakeUps = new Semaphore(0);
+    private volatile boolean running;
+    private Thread relay;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public OutboxRelay(JdbcTemplate jdbcTemplate, KafkaTemplate<String, Object> template, ObjectMapper mapper,
+                       @Value("${ttl.outbox.batch-size:200}") int batchSize,
+                       @Value("${ttl.outbox.poll-interval:PT1S}") Duration pollInterval,
+                       @Value("${ttl.outbox.send-timeout:PT10S}") Duration sendTimeout,
+                       @Value("${ttl.outbox.max-attempts:10}") int maxAttempts,
+                       @Value("${ttl.outbox.retention:P1D}") Duration retention) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.template = template;
+        this.mapper = mapper;
+        this.batchSize = batchSize;
+        this.pollIntervalNanos = pollInterval.toNanos();
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+        this.maxAttempts = maxAttempts;
+        this.retention = retention;
+    }
+
+    /**
+     * Look at the table now rather than at the next poll.
+     */
+    public void wakeUp() {
+        if (wakeUps.availablePermits() == 0) {
+            wakeUps.release();
+        }
+    }
+
+    private void run() {
+        long lastPurge = System.nanoTime();
+        while (running) {
+            try {
+                if (!relayBatch()) {
+                    wakeUps.tryAcquire(pollIntervalNanos, TimeUnit.NANOSECONDS);
+                    wakeUps.drainPermits();
+                }
+                if (System.nanoTime() - lastPurge > TimeUnit.MINUTES.toNanos(1)) {
+                    lastPurge = System.nanoTime();
+                    purge();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                //The database, most likely.  Try again later.
+                logger.warn("Outbox relay failed with ex: {}", e.getMessage());
+                try {
+                    Thread.sleep(Duration.ofNanos(pollIntervalNanos));
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Send one batch.
+     * @return true if it was a full batch with no failures, so there
+     * may be more to send straight away.
+     */
+    boolean relayBatch() throws InterruptedException {
+        List<Row> rows = jdbcTemplate.query(
+                "SELECT ID, TOPIC, PAYLOAD_TYPE, PAYLOAD FROM OUTBOX"
+                        + " WHERE SENT_AT IS NULL AND ATTEMPTS < ? ORDER BY ID LIMIT ?",
+                (rs, rowNum) -> new Row(rs.getLong("ID"), rs.getString("TOPIC"),
+                        rs.getString("PAYLOAD_TYPE"), rs.getString("PAYLOAD")),
+                maxAttempts, batchSize);
+        if (rows.isEmpty()) {
+            return false;
+        }
+
+        List<Long> sentIds = new ArrayList<>();
+        List<Long> failedIds = new ArrayList<>();
+        List<Row> sendable = new ArrayList<>();
+        List<ProducerRecord<String, Object>> records = new ArrayList<>();
+        for (Row row : rows) {
+            try {
+                records.add(toRecord(row));
+                sendable.add(row);
+            } catch (Exception e) {
+                logger.warn("Can't read outbox row {} as {}: {}", row.id(), row.payloadType(), e.getMessage());
+                failedIds.add(row.id());
+            }
+        }
+
+        if (template.isTransactional()) {
+            try {
+                template.executeInTransaction(t -> {
+                    records.forEach(t::send);
+                    return null;
+                });
+                sendable.forEach(row -> sentIds.add(row.id()));
+            } catch (RuntimeException e) {
+                logger.warn("Outbox batch of {} failed with ex: {}", records.size(), e.getMessage());
+                sendable.forEach(row -> failedIds.add(row.id()));
+            }
+        } else {
+            List<CompletableFuture<SendResult<String, Object>>> futures = new ArrayList<>();
+            for (var record : records) {
+                futures.add(template.send(record));
+            }
+            long deadline = System.nanoTime() + sendTimeoutNanos;
+            for (int i = 0; i < futures.size(); i++) {
+                long id = sendable.get(i).id();
+                try {
+                    futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    sentIds.add(id);
+                } catch (ExecutionException | TimeoutException e) {
+                    logger.warn("Outbox row {} failed with ex: {}", id, e.getMessage());
+                    failedIds.add(id);
+                }
+            }
+        }
+
+        if (!sentIds.isEmpty()) {
+            var now = Timestamp.from(Instant.now());
+            jdbcTemplate.batchUpdate("UPDATE OUTBOX SET SENT_AT = ? WHERE ID = ?", sentIds, sentIds.size(),
+                    (ps, id) -> {
+                        ps.setTimestamp(1, now);
+                        ps.setLong(2, id);
+                    });
+        }
+        if (!failedIds.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE OUTBOX SET ATTEMPTS = ATTEMPTS + 1 WHERE ID = ?", failedIds,
+                    failedIds.size(), (ps, id) -> ps.setLong(1, id));
+        }
+        sent.add(sentIds.size());
+        failed.add(failedIds.size());
+
+        return rows.size() == batchSize && failedIds.isEmpty();
+    }
+
+    /**
+     * Back to the object that was written, so it goes out through the
+     * KafkaTemplate exactly as the KafkaJsonMsgSender would send it.
+     */
+    private ProducerRecord<String, Object> toRecord(Row row) throws Exception {
+        Object value = mapper.readValue(row.payload(), Class.forName(row.payloadType()));
+        var record = new ProducerRecord<String, Object>(row.topic(), value);
+        record.headers().add(OUTBOX_ID_HEADER, Long.toString(row.id()).getBytes());
+        return record;
+    }
+
+    private void purge() {
+        int purged = jdbcTemplate.update("DELETE FROM OUTBOX WHERE SENT_AT < ?",
+                Timestamp.from(Instant.now().minus(retention)));
+        if (purged > 0) {
+            logger.debug("Purged {} sent outbox rows", purged);
+        }
+    }
+
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        relay = Thread.ofPlatform().name("outbox-relay").daemon().start(this::run);
+    }
+
+    @Override
+    public void stop() {
+        //Let a batch that's being sent finish, rather than send it twice
+        running = false;
+        wakeUp();
+        try {
+            if (!relay.join(Duration.ofSeconds(5))) {
+                relay.interrupt();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,23 @@
+package expeditors.backend.commonconfig.msg;
+
+import io.confluent.kafka.serializers.KafkaAvroSerializer;
+import org.apache.kafka.common.header.Headers;
+
+/**
+ * A KafkaAvroSerializer that passes byte[] values, from the
+ * AvroMessageCodec, straight through, since they are already in the
+ * serializer's format.  Everything else it serializes as usual.
+ * @author whynot
+ */
+public class PreEncodedAvroSerializer extends KafkaAvroSerializer {
+
+    @Override
+    public byte[] serialize(String topic, Object record) {
+        return record instanceof byte[] encoded ? encoded : super.serialize(topic, record);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object record) {
+        return record instanceof byte[] encoded ? encoded : super.serialize(topic, headers, record);
+    }
+}
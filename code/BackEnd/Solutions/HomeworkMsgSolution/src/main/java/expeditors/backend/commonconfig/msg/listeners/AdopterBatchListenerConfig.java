@@ -0,0 +1,34 @@
+package expeditors.backend.commonconfig.msg.listeners;
+
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+
+/**
+ * The container factory for the KafkaAdopterBatchListenerHolder.  Same
+ * as Boot's default one, from the spring.kafka properties, except that
+ * it hands the listener a whole poll's worth of records at a time.
+ * @author whynot
+ */
+@Configuration
+@Profile("(kkjsonevents | kkavroevents) & adopterbatch")
+public class AdopterBatchListenerConfig {
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> adopterBatchFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory) {
+        var factory = new ConcurrentKafkaListenerContainerFactory<Object, Object>();
+        configurer.configure(factory, consumerFactory);
+        factory.setBatchListener(true);
+        //Commit the offsets once the listener has returned, which is
+        //after the database transaction has committed.  If it throws,
+        //nothing is committed and the batch comes round again.
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        return factory;
+    }
+}
@@ -0,0 +1,93 @@
+package expeditors.backend.commonconfig.msg.listeners;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import expeditors.backend.adoptapp.domain.Adopter;
+import expeditors.backend.adoptapp.service.AdopterRepoService;
+import java.util.List;
+import java.util.Objects;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * The batch version of the KafkaAdopterAdderListenerHolder, for bulk
+ * imports through adopter-adder-topic.  Turn it on with the
+ * adopterbatch profile, which turns the one at a time listener off.
+ * <p>
+ * Each call gets up to max-poll-records records.  The values come in
+ * as plain Strings, and are turned into Adopters in parallel.  Then
+ * they all go into the database with AdopterRepoService.addAdopters,
+ * one transaction and two JDBC batches for the lot.  The offsets are
+ * committed after that (see AdopterBatchListenerConfig).
+ * <p>
+ * A record that isn't an Adopter is logged and skipped, so that one
+ * bad record can't hold up the topic.
+ * <p>
+ * ttl.kafka.adopter-adder.concurrency is the number of consumers.
+ * Each one gets its own share of the topic's partitions, so more of
+ * them than there are partitions just sit idle.
+ * @author whynot
+ */
+@Component
+@Profile("(kkjsonevents | kkavroevents) & adopterbatch")
+public class KafkaAdopterBatchListenerHolder {
+
+    private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final AdopterRepoService adopterService;
+    private final ObjectMapper mapper;
+
+    public KafkaAdopterBatchListenerHolder(AdopterRepoService adopterService, ObjectMapper mapper) {
+        this.adopterService = adopterService;
+        this.mapper = mapper;
+    }
+
+    @KafkaListener(clientIdPrefix = "adoptapp-adopter-batch-adder", topics = "adopter-adder-topic",
+            containerFactory = "adopterBatchFactory",
+            concurrency = "${ttl.kafka.adopter-adder.concurrency:3}",
+            properties = {
+                    "value.deserializer=org.apache.kafka.common.serialization.StringDeserializer",
+                    "max.poll.records=${ttl.kafka.adopter-adder.max-poll-records:500}"
+            })
+    public void listen(List<ConsumerRecord<String, Object>> records) {
+        List<Adopter> adopters = records.parallelStream()
+                .map(this::toAdopter)
+                .filter(Objects::nonNull)
+                .toList();
+
+        List<Adopter> newAdopters = adopterService.addAdopters(adopters);
+        logger.info("Kafka Adopters Added: {} from a batch of {}", newAdopters.size(), records.size());
+    }
+
+    private Adopter toAdopter(ConsumerRecord<String, Object> record) {
+        try {
+            return switch (record.value()) {
+                case Adopter adopter -> adopter;
+                case String json -> fromJson(json);
+                case null, default -> {
+                    logger.warn("Kafka Adopter Batch Listener skipped offset {}: {}", record.offset(), record.value());
+                    yield null;
+                }
+            };
+        } catch (JsonProcessingException e) {
+            logger.warn("Kafka Adopter Batch Listener skipped offset {}: {}", record.offset(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Either an Adopter, or, from a client that sent a String, a json
+     * string with an Adopter in it.
+     */
+    private Adopter fromJson(String json) throws JsonProcessingException {
+        JsonNode node = mapper.readTree(json);
+        return node.isTextual()
+                ? mapper.readValue(node.asText(), Adopter.class)
+                : mapper.treeToValue(node, Adopter.class);
+    }
+}
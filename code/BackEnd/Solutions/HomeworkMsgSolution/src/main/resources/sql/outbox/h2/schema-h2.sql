@@ -0,0 +1,17 @@
+-- Outbox for the OutboxMsgSender.  Messages are written here in the
+-- same transaction as the change they are about, and sent to Kafka
+-- by the OutboxRelay, which sets SENT_AT.
+DROP TABLE OUTBOX IF EXISTS;
+
+CREATE
+MEMORY TABLE OUTBOX(
+    ID bigint primary key auto_increment not null,
+    TOPIC VARCHAR(255) not null,
+    PAYLOAD_TYPE VARCHAR(255) not null,
+    PAYLOAD CLOB not null,
+    CREATED_AT TIMESTAMP not null,
+    SENT_AT TIMESTAMP,
+    ATTEMPTS integer default 0 not null
+);
+
+CREATE INDEX OUTBOX_UNSENT ON OUTBOX(SENT_AT, ID);
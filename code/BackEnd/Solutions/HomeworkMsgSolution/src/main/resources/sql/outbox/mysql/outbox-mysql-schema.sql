@@ -0,0 +1,20 @@
+-- Mysql outbox schema file.  See sql/outbox/h2/schema-h2.sql
+-- This runs on every start (spring.sql.init.mode=always), so it only
+-- creates what isn't there.  Dropping the table would throw away any
+-- messages that haven't been sent yet.
+-- Mysql has no CREATE INDEX IF NOT EXISTS, so the index goes in the
+-- CREATE TABLE.  DATETIME rather than TIMESTAMP, which stops at 2038.
+
+USE adoptapp;
+
+CREATE TABLE IF NOT EXISTS OUTBOX
+(
+    ID bigint primary key auto_increment not null,
+    TOPIC VARCHAR(255) not null,
+    PAYLOAD_TYPE VARCHAR(255) not null,
+    PAYLOAD MEDIUMTEXT not null,
+    CREATED_AT DATETIME(6) not null,
+    SENT_AT DATETIME(6),
+    ATTEMPTS integer default 0 not null,
+    INDEX OUTBOX_UNSENT (SENT_AT, ID)
+);
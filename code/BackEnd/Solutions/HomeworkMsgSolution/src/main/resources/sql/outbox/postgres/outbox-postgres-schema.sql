@@ -0,0 +1,19 @@
+-- Postgres outbox schema file.  See sql/outbox/h2/schema-h2.sql
+-- This runs on every start (spring.sql.init.mode=always), so it only
+-- creates what isn't there.  Dropping the table would throw away any
+-- messages that haven't been sent yet.
+
+SET ROLE larku;
+
+CREATE TABLE IF NOT EXISTS OUTBOX
+(
+    ID bigserial primary key not null,
+    TOPIC VARCHAR(255) not null,
+    PAYLOAD_TYPE VARCHAR(255) not null,
+    PAYLOAD TEXT not null,
+    CREATED_AT TIMESTAMP not null,
+    SENT_AT TIMESTAMP,
+    ATTEMPTS integer default 0 not null
+);
+
+CREATE INDEX IF NOT EXISTS OUTBOX_UNSENT ON OUTBOX(SENT_AT, ID);
@@ -0,0 +1,46 @@
+package expeditors.backend.adoptapp.dao;
+
+import expeditors.backend.adoptapp.dao.inmemory.InMemoryAdopterDAO;
+import expeditors.backend.adoptapp.dao.jpa.JPAAdopterDAO;
+import expeditors.backend.adoptapp.domain.Adopter;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * scan, for both the DAOs the profiles can wire in.
+ */
+public class TestAdopterDAOScan {
+
+    @Test
+    public void testInMemoryScan() {
+        checkScan(new InMemoryAdopterDAO());
+    }
+
+    @Test
+    public void testJPAScan() {
+        checkScan(new JPAAdopterDAO());
+    }
+
+    private void checkScan(AdopterDAO adopterDAO) {
+        for (int i = 0; i < 10; i++) {
+            adopterDAO.insert(new Adopter("Adopter " + i, "383 9999 9393"));
+        }
+        for (int id = 2; id <= 6; id++) {
+            adopterDAO.delete(id);
+        }
+
+        assertEquals(List.of(1, 7, 8), ids(adopterDAO.scan(Integer.MIN_VALUE, 3)));
+        assertEquals(List.of(9, 10), ids(adopterDAO.scan(9, 5)));
+        assertEquals(List.of(), ids(adopterDAO.scan(11, 5)));
+
+        assertThrows(IllegalArgumentException.class, () -> adopterDAO.scan(1, 0));
+    }
+
+    private List<Integer> ids(List<Adopter> adopters) {
+        return adopters.stream().map(Adopter::getId).toList();
+    }
+}
@@ -0,0 +1,76 @@
+package expeditors.backend.adoptapp.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import expeditors.backend.adoptapp.domain.Adopter;
+import expeditors.backend.adoptapp.domain.Pet;
+import expeditors.backend.adoptapp.domain.PetType;
+import expeditors.backend.commonconfig.msg.listeners.KafkaAdopterBatchListenerHolder;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Adopters per second into H2, one at a time the way the
+ * KafkaAdopterAdderListenerHolder does it, and a poll's worth at a
+ * time through the KafkaAdopterBatchListenerHolder.  The records are
+ * made up here, so there is no broker, and what is measured is the
+ * json parsing and the database.
+ * @author whynot
+ */
+@SpringBootTest(properties = {"spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.orm.jdbc.bind=warn"
+})
+@ActiveProfiles({"h2", "prod"})
+public class AdopterBatchThroughputTest {
+
+    private static final int RECORDS = 2000;
+    private static final int POLL = 500;
+
+    @Autowired
+    private AdopterRepoService adopterService;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    private List<ConsumerRecord<String, Object>> records(String prefix) throws Exception {
+        List<ConsumerRecord<String, Object>> records = new ArrayList<>(RECORDS);
+        for (int i = 0; i < RECORDS; i++) {
+            var adopter = new Adopter(prefix + i, "383 9999 9393",
+                    Pet.builder(PetType.DOG).name("woofie" + i).build());
+            records.add(new ConsumerRecord<>("adopter-adder-topic", 0, i, null,
+                    mapper.writeValueAsString(adopter)));
+        }
+        return records;
+    }
+
+    @Test
+    public void compareOneAtATimeWithBatches() throws Exception {
+        int oldCount = adopterService.getAllAdopters().size();
+
+        var single = records("Single");
+        long start = System.nanoTime();
+        for (var record : single) {
+            adopterService.addAdopter(mapper.readValue((String) record.value(), Adopter.class));
+        }
+        long singleNanos = System.nanoTime() - start;
+
+        var listener = new KafkaAdopterBatchListenerHolder(adopterService, mapper);
+        var batched = records("Batched");
+        start = System.nanoTime();
+        for (int i = 0; i < batched.size(); i += POLL) {
+            listener.listen(batched.subList(i, Math.min(i + POLL, batched.size())));
+        }
+        long batchNanos = System.nanoTime() - start;
+
+        System.out.printf("One at a time: %,.0f adopters/sec%n", RECORDS / (singleNanos / 1e9));
+        System.out.printf("Batches of %d: %,.0f adopters/sec%n", POLL, RECORDS / (batchNanos / 1e9));
+
+        assertEquals(oldCount + 2 * RECORDS, adopterService.getAllAdopters().size());
+    }
+}
@@ -109,6 +109,25 @@ public class TestAdopterRepoService {
 
     }
 
+    @Test
+    public void testAddAdopters() {
+        int oldCount = adopterService.getAllAdopters().size();
+
+        List<Adopter> newAdopters = adopterService.addAdopters(List.of(
+                new Adopter("Joey", "383 9999 9393", LocalDate.of(1960, 6, 9),
+                        Pet.builder(PetType.DOG).name("woofie").build()),
+                new Adopter("Francine", "383 9339 9999 9393",
+                        Pet.builder(PetType.CAT).name("slinky").adoptionDate(LocalDate.of(2020, 5, 9)).build(),
+                        Pet.builder(PetType.TURTLE).name("swifty").build())));
+
+        assertEquals(oldCount + 2, adopterService.getAllAdopters().size());
+
+        Adopter francine = adopterService.getAdopter(newAdopters.get(1).getId());
+        assertEquals("Francine", francine.getName());
+        assertEquals(2, francine.getPets().size());
+        assertTrue(newAdopters.get(1).getPets().get(0).getPetId() > 0);
+    }
+
     @Test
     public void testGetByPetType() {
         List<Adopter> result = adopterService.getAdoptersByPetType(PetType.TURTLE);
@@ -0,0 +1,114 @@
+package expeditors.backend.benchmark;
+
+import expeditors.backend.adoptapp.domain.Adopter;
+import expeditors.backend.adoptapp.domain.Pet;
+import expeditors.backend.adoptapp.domain.PetType;
+import expeditors.backend.avro.AvroPet;
+import expeditors.backend.avro.FullAdopterMessage;
+import expeditors.backend.commonconfig.msg.AvroMessageCodec;
+import io.confluent.kafka.serializers.KafkaAvroSerializer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * An Adopter with three pets to the bytes that go to Kafka.  The old
+ * way is what the KafkaAvroMsgSender used to do, the builders and then
+ * the KafkaAvroSerializer.  The new way is the AvroMessageCodec.  Both
+ * use the same mock registry, so there's no network in either.
+ * <p>
+ * main turns on the gc profiler, for the bytes per op
+ * (gc.alloc.rate.norm) next to the ops/ms.
+ * <p>
+ * Run main from the IDE, or after a test-compile with:
+ * mvn exec:java -Dexec.classpathScope=test -Dexec.mainClass=expeditors.backend.benchmark.AvroEncodingBenchmark
+ * @author whynot
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "--enable-preview")
+@Threads(4)
+public class AvroEncodingBenchmark {
+
+    private static final String TOPIC = "adoptapp-avrotopic";
+    private static final String REGISTRY_URL = "mock://avro-benchmark";
+
+    @State(Scope.Benchmark)
+    public static class Encoders {
+        Adopter adopter;
+        KafkaAvroSerializer serializer;
+        AvroMessageCodec codec;
+        DateTimeFormatter dtFormatter = DateTimeFormatter.ISO_LOCAL_DATE;
+
+        @Setup
+        public void setup() {
+            adopter = new Adopter("Joey", "383 9999 9393",
+                    Pet.builder(PetType.DOG).name("woofie").breed("mixed").build(),
+                    Pet.builder(PetType.CAT).name("slinky").breed("siamese").build(),
+                    Pet.builder(PetType.TURTLE).name("swifty").breed("box").build());
+            adopter.getPets().forEach(pet -> pet.setAdoptionDate(LocalDate.of(2020, 5, 9)));
+
+            serializer = new KafkaAvroSerializer();
+            serializer.configure(Map.of("schema.registry.url", REGISTRY_URL), false);
+            codec = new AvroMessageCodec(REGISTRY_URL);
+        }
+
+        @TearDown
+        public void tearDown() {
+            serializer.close();
+        }
+    }
+
+    @Benchmark
+    public byte[] buildersAndSerializer(Encoders encoders) {
+        var adopter = encoders.adopter;
+        FullAdopterMessage fam = FullAdopterMessage.newBuilder()
+                .setName(adopter.getName())
+                .setPhoneNumber(adopter.getPhoneNumber())
+                .setPets(adopter.getPets()
+                        .stream()
+                        .map(pet -> AvroPet.newBuilder()
+                                .setPetType(pet.getType().name())
+                                .setPetName(pet.getName())
+                                .setPetBreed(pet.getBreed())
+                                .setAdoptionDate(pet.getAdoptionDate().format(encoders.dtFormatter))
+                                .build()
+                        ).toList()
+                )
+                .setTimeStamp(LocalDateTime.now().toString())
+                .build();
+        return encoders.serializer.serialize(TOPIC, fam);
+    }
+
+    @Benchmark
+    public byte[] codec(Encoders encoders) {
+        return encoders.codec.encode(TOPIC, encoders.adopter);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AvroEncodingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
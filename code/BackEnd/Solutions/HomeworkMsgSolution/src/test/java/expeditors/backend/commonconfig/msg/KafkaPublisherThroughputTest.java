@@ -0,0 +1,99 @@
+package expeditors.backend.commonconfig.msg;
+
+import expeditors.backend.avro.AvroPet;
+import expeditors.backend.avro.FullAdopterMessage;
+import io.confluent.kafka.serializers.KafkaAvroSerializer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Msgs/sec through the KafkaBatchPublisher to an embedded broker, with
+ * the producer's defaults and with the batching settings from
+ * application-kkavroevents.properties.  The Avro serializer uses a
+ * mock schema registry, so no registry is needed.
+ * <p>
+ * It's a measurement rather than a test, so it only runs with
+ * EMBEDDED_KAFKA set, like TestAvroEvents.  The numbers are printed.
+ * @author whynot
+ */
+@EmbeddedKafka(partitions = 3, topics = KafkaPublisherThroughputTest.TOPIC)
+@EnabledIfEnvironmentVariable(named = "EMBEDDED_KAFKA", matches = ".*")
+public class KafkaPublisherThroughputTest {
+
+    static final String TOPIC = "adoptapp-throughput-topic";
+
+    private static final int MESSAGES = 50_000;
+
+    private final FullAdopterMessage message = FullAdopterMessage.newBuilder()
+            .setName("Throughput Adopter")
+            .setPhoneNumber("383 9999 9393")
+            .setPets(List.of(AvroPet.newBuilder()
+                    .setPetType("DOG")
+                    .setPetName("woofie")
+                    .setPetBreed("mixed")
+                    .setAdoptionDate("2020-05-09")
+                    .build()))
+            .setTimeStamp(LocalDateTime.now().toString())
+            .build();
+
+    @Test
+    public void testThroughput(EmbeddedKafkaBroker broker) throws InterruptedException {
+        //Once to warm up
+        run(broker, "warmup", Map.of());
+        run(broker, "producer defaults", Map.of());
+        run(broker, "linger 20ms, 64KB batches, lz4", Map.of(
+                ProducerConfig.LINGER_MS_CONFIG, 20,
+                ProducerConfig.BATCH_SIZE_CONFIG, 64 * 1024,
+                ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4"));
+    }
+
+    private void run(EmbeddedKafkaBroker broker, String label, Map<String, Object> tuning)
+            throws InterruptedException {
+        Map<String, Object> props = new HashMap<>(tuning);
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, KafkaAvroSerializer.class);
+        props.put("schema.registry.url", "mock://throughput");
+
+        var factory = new DefaultKafkaProducerFactory<String, Object>(props);
+        var registry = new SimpleMeterRegistry();
+        var publisher = new KafkaBatchPublisher(new KafkaTemplate<>(factory), registry,
+                10_000, 500, Duration.ofSeconds(5));
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < MESSAGES; i++) {
+                publisher.publish(TOPIC, message);
+            }
+            //Sends what's left on the queue, and flushes the producer
+            publisher.close();
+            var latency = registry.get("kafka.publisher.send.latency").timer();
+            while (latency.count() < MESSAGES) {
+                Thread.sleep(10);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.err.printf("%s: %,d msgs in %.2fs, %,.0f msgs/sec, mean latency %.1fms, mean batch %.0f%n",
+                    label, MESSAGES, seconds, MESSAGES / seconds,
+                    latency.mean(TimeUnit.MILLISECONDS),
+                    registry.get("kafka.publisher.batch.size").summary().mean());
+            assertEquals(0.0, registry.get("kafka.publisher.failures").counter().count());
+        } finally {
+            factory.destroy();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package expeditors.backend.commonconfig.msg;
+
+import expeditors.backend.adoptapp.domain.Adopter;
+import expeditors.backend.adoptapp.domain.Pet;
+import expeditors.backend.adoptapp.domain.PetType;
+import expeditors.backend.avro.AvroPet;
+import expeditors.backend.avro.FullAdopterMessage;
+import expeditors.backend.avro.SimpleCustomerMessage;
+import expeditors.backend.custapp.domain.Customer;
+import io.confluent.kafka.schemaregistry.testutil.MockSchemaRegistry;
+import io.confluent.kafka.serializers.KafkaAvroDeserializer;
+import io.confluent.kafka.serializers.KafkaAvroSerializer;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * What the codec makes has to read back, with the KafkaAvroDeserializer,
+ * as what the builders used to make.  The registry is a mock.
+ * @author whynot
+ */
+public class TestAvroMessageCodec {
+
+    private static final String SCOPE = "codec-test";
+    private static final String REGISTRY_URL = "mock://" + SCOPE;
+    private static final String TOPIC = "adoptapp-avrotopic";
+
+    private final AvroMessageCodec codec = new AvroMessageCodec(REGISTRY_URL);
+
+    private final KafkaAvroDeserializer deserializer = new KafkaAvroDeserializer();
+
+    {
+        deserializer.configure(Map.of("schema.registry.url", REGISTRY_URL,
+                "specific.avro.reader", true), false);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        MockSchemaRegistry.dropScope(SCOPE);
+    }
+
+    @Test
+    public void testAdopterReadsBack() {
+        var pet = Pet.builder(PetType.DOG).name("woofie").breed("mixed").build();
+        pet.setAdoptionDate(LocalDate.of(2020, 5, 9));
+        var adopter = new Adopter("Joey", "383 9999 9393", pet,
+                Pet.builder(PetType.TURTLE).name("swifty").build());
+
+        var message = (FullAdopterMessage) deserializer.deserialize(TOPIC, codec.encode(TOPIC, adopter));
+
+        assertEquals("Joey", message.getName());
+        assertEquals("383 9999 9393", message.getPhoneNumber());
+        assertEquals(2, message.getPets().size());
+        AvroPet dog = message.getPets().get(0);
+        assertEquals("DOG", dog.getPetType());
+        assertEquals("woofie", dog.getPetName());
+        assertEquals("mixed", dog.getPetBreed());
+        assertEquals("2020-05-09", dog.getAdoptionDate());
+        //No breed or date, so the schema's defaults
+        AvroPet turtle = message.getPets().get(1);
+        assertEquals("", turtle.getPetBreed());
+        assertEquals("", turtle.getAdoptionDate());
+    }
+
+    @Test
+    public void testCustomerReadsBack() {
+        var customer = new Customer("Manoj", LocalDate.of(1960, 10, 5), Customer.Status.PRIVILEGED);
+
+        var message = (SimpleCustomerMessage) deserializer.deserialize(TOPIC, codec.encode(TOPIC, customer));
+
+        assertEquals("Manoj", message.getName());
+        assertEquals("1960-10-05", message.getDob());
+        assertEquals("PRIVILEGED", message.getStatus());
+        assertEquals(LocalDate.now().toString(), message.getTimeStamp());
+    }
+
+    @Test
+    public void testSameBytesAsTheSerializer() {
+        var record = FullAdopterMessage.newBuilder()
+                .setName("Joey")
+                .setPhoneNumber("383 9999 9393")
+                .setPets(List.of(AvroPet.newBuilder()
+                        .setPetType("DOG")
+                        .setPetName("woofie")
+                        .setPetBreed("mixed")
+                        .setAdoptionDate("2020-05-09")
+                        .build()))
+                .setTimeStamp("2024-01-01T10:00")
+                .build();
+
+        try (var serializer = new KafkaAvroSerializer()) {
+            serializer.configure(Map.of("schema.registry.url", REGISTRY_URL), false);
+            byte[] expected = serializer.serialize(TOPIC, record);
+
+            assertArrayEquals(expected, codec.encode(TOPIC, record));
+            //And the same schema id for the one we encode from the entity
+            assertEquals(ByteBuffer.wrap(expected).getInt(1),
+                    ByteBuffer.wrap(codec.encode(TOPIC, new Adopter("Joey", "383 9999 9393"))).getInt(1));
+        }
+    }
+
+    @Test
+    public void testPreEncodedBytesPassThrough() {
+        try (var serializer = new PreEncodedAvroSerializer()) {
+            serializer.configure(Map.of("schema.registry.url", REGISTRY_URL), false);
+            byte[] encoded = codec.encode(TOPIC, new Adopter("Joey", "383 9999 9393"));
+            assertSame(encoded, serializer.serialize(TOPIC, encoded));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package expeditors.backend.commonconfig.msg;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author whynot
+ */
+public class TestKafkaBatchPublisher {
+
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, Object> template = Mockito.mock(KafkaTemplate.class);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private KafkaBatchPublisher publisher;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        if (publisher != null) {
+            publisher.close();
+        }
+    }
+
+    private static CompletableFuture<SendResult<String, Object>> acked() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private double count(String name) {
+        return registry.get(name).counter().count();
+    }
+
+    @Test
+    public void testEverythingQueuedGetsSentBeforeClose() throws InterruptedException {
+        Mockito.when(template.send(Mockito.anyString(), Mockito.any())).thenReturn(acked());
+        publisher = new KafkaBatchPublisher(template, registry, 100, 10, Duration.ofSeconds(1));
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(publisher.publish("topic", "msg" + i));
+        }
+        publisher.close();
+
+        Mockito.verify(template, Mockito.times(50)).send(Mockito.eq("topic"), Mockito.any());
+        Mockito.verify(template).flush();
+        assertEquals(50, registry.get("kafka.publisher.send.latency").timer().count());
+        assertEquals(0.0, count("kafka.publisher.failures"));
+    }
+
+    @Test
+    public void testFailedSendsAreCounted() throws InterruptedException {
+        Mockito.when(template.send(Mockito.anyString(), Mockito.any()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Broker down")))
+                .thenThrow(new RuntimeException("Can't serialize"));
+        publisher = new KafkaBatchPublisher(template, registry, 100, 10, Duration.ofSeconds(1));
+
+        publisher.publish("topic", "one");
+        publisher.publish("topic", "two");
+        publisher.close();
+
+        assertEquals(2.0, count("kafka.publisher.failures"));
+    }
+
+    @Test
+    public void testFullQueueHoldsUpTheCallerThenDrops() throws InterruptedException {
+        var sending = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        Mockito.when(template.send(Mockito.anyString(), Mockito.any())).thenAnswer(invocation -> {
+            sending.countDown();
+            release.await();
+            return acked();
+        });
+        publisher = new KafkaBatchPublisher(template, registry, 2, 1, Duration.ofMillis(100));
+
+        //The sender is stuck on the first one, and the next two fill the queue
+        publisher.publish("topic", "first");
+        assertTrue(sending.await(1, TimeUnit.SECONDS));
+        assertTrue(publisher.publish("topic", "second"));
+        assertTrue(publisher.publish("topic", "third"));
+
+        long start = System.nanoTime();
+        assertFalse(publisher.publish("topic", "fourth"));
+        long waited = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        assertTrue(waited >= 90, "waited " + waited + "ms");
+        assertEquals(1.0, count("kafka.publisher.dropped"));
+
+        release.countDown();
+        publisher.close();
+        Mockito.verify(template, Mockito.times(3)).send(Mockito.eq("topic"), Mockito.any());
+    }
+}
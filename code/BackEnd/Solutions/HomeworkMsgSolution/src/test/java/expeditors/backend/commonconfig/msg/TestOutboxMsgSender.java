@@ -0,0 +1,118 @@
+package expeditors.backend.commonconfig.msg;
+
+import expeditors.backend.adoptapp.domain.Adopter;
+import expeditors.backend.adoptapp.domain.Pet;
+import expeditors.backend.adoptapp.domain.PetType;
+import expeditors.backend.adoptapp.service.AdopterRepoService;
+import expeditors.backend.custapp.domain.Customer;
+import expeditors.backend.custapp.service.CustomerRepoService;
+import java.time.LocalDate;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The outbox against H2 and an embedded broker.  The broker gets a
+ * random port, so unlike TestJsonEvents this needs no Kafka running
+ * and no EMBEDDED_KAFKA.
+ * @author whynot
+ */
+@SpringBootTest(properties = {"spring.kafka.consumer.auto-offset-reset=earliest",
+        "ttl.outbox.poll-interval=PT0.1S"
+})
+@ActiveProfiles({"h2", "prod", "kkjsonevents", "outbox"})
+@EmbeddedKafka(partitions = 1, topics = {"custapp-jsontopic", "adoptapp-jsontopic"},
+        bootstrapServersProperty = "spring.kafka.bootstrap-servers",
+        brokerProperties = {"transaction.state.log.replication.factor=1", "transaction.state.log.min.isr=1"})
+public class TestOutboxMsgSender {
+
+    @TestConfiguration
+    public static class TestOutboxListener {
+        private final BlockingQueue<ConsumerRecord<String, Object>> received = new LinkedBlockingQueue<>();
+
+        @KafkaListener(groupId = "outbox-test-group", topics = {"custapp-jsontopic", "adoptapp-jsontopic"})
+        public void listen(ConsumerRecord<String, Object> consumerRecord) {
+            received.add(consumerRecord);
+        }
+    }
+
+    @Autowired
+    private MessageSender messageSender;
+
+    @Autowired
+    private CustomerRepoService customerService;
+
+    @Autowired
+    private AdopterRepoService adopterService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    @Qualifier("transactionManager")
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private TestOutboxListener listener;
+
+    private int unsent(String name) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM OUTBOX WHERE SENT_AT IS NULL AND PAYLOAD LIKE ?",
+                Integer.class, "%" + name + "%");
+    }
+
+    @Test
+    public void testMessageSentAfterCommit() throws InterruptedException {
+        assertTrue(messageSender instanceof OutboxMsgSender);
+
+        var customer = customerService.addCustomer(
+                new Customer("Outbox Customer", LocalDate.of(1960, 10, 5), Customer.Status.NORMAL));
+
+        ConsumerRecord<String, Object> received = null;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (received == null && System.nanoTime() < deadline) {
+            var next = listener.received.poll(100, TimeUnit.MILLISECONDS);
+            if (next != null && next.value() instanceof Customer c && c.getName().equals(customer.getName())) {
+                received = next;
+            }
+        }
+        assertNotNull(received);
+        assertNotNull(received.headers().lastHeader(OutboxRelay.OUTBOX_ID_HEADER));
+
+        //The relay marks the row after the send, so it may take a moment
+        for (int i = 0; i < 50 && unsent("Outbox Customer") > 0; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(0, unsent("Outbox Customer"));
+    }
+
+    @Test
+    public void testRollbackLeavesNothingToSend() {
+        var txTemplate = new TransactionTemplate(transactionManager);
+        txTemplate.executeWithoutResult(status -> {
+            adopterService.addAdopter(new Adopter("Rolled Back Adopter", "383 9999 9393",
+                    LocalDate.of(2020, 5, 9), Pet.builder(PetType.DOG).name("woofie").build()));
+            assertEquals(1, unsent("Rolled Back Adopter"));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, unsent("Rolled Back Adopter"));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM OUTBOX WHERE PAYLOAD LIKE ?",
+                Integer.class, "%Rolled Back Adopter%"));
+    }
+}
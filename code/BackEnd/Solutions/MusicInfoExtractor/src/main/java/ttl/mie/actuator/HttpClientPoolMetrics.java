@@ -0,0 +1,45 @@
+package ttl.mie.actuator;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import ttl.mie.jconfig.client.ConnectionLimiter;
+import ttl.mie.jconfig.client.PooledRestClientFactory;
+
+/**
+ * How full the shared http client pool is, at
+ * /actuator/metrics/http.client.pool.in-use etc.
+ * <p>
+ * in-use close to max, or waiting above 0, means the pool is the
+ * bottleneck.  rejected counts the calls that gave up waiting.
+ */
+@Component
+public class HttpClientPoolMetrics implements MeterBinder {
+
+   private final ConnectionLimiter limiter;
+
+   public HttpClientPoolMetrics(PooledRestClientFactory factory) {
+      this.limiter = factory.getConnectionLimiter();
+   }
+
+   @Override
+   public void bindTo(MeterRegistry registry) {
+      Gauge.builder("http.client.pool.max", limiter, ConnectionLimiter::getMaxTotal)
+            .register(registry);
+      Gauge.builder("http.client.pool.in-use", limiter, ConnectionLimiter::getInUse)
+            .description("Requests in flight on the shared pool")
+            .register(registry);
+      Gauge.builder("http.client.pool.waiting", limiter, ConnectionLimiter::getWaiting)
+            .description("Requests waiting for a free connection")
+            .register(registry);
+
+      FunctionCounter.builder("http.client.pool.waits", limiter, ConnectionLimiter::getWaitCount)
+            .description("Requests that had to wait for a connection")
+            .register(registry);
+      FunctionCounter.builder("http.client.pool.rejected", limiter, ConnectionLimiter::getRejectionCount)
+            .description("Requests that gave up waiting for a connection")
+            .register(registry);
+   }
+}
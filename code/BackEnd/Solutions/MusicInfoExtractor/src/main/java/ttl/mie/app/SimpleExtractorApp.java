@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Set;
 import org.apache.logging.log4j.util.Strings;
@@ -12,6 +13,8 @@ import org.jaudiotagger.tag.Tag;
 import ttl.mie.domain.track.dto.TrackDTO;
 import ttl.mie.extractor.AudioInfoExtractor;
 import ttl.mie.extractor.DiscogRestHandler;
+import ttl.mie.extractor.TrackChange;
+import ttl.mie.extractor.TrackIndex;
 
 /**
  * Application to extract metadata from audio files.
@@ -34,6 +37,11 @@ public class SimpleExtractorApp {
    //File output = new File("/tmp/testTracks.json");
    File output = new File("/tmp/lotsOfTracks.json");
    AudioInfoExtractor atst = new AudioInfoExtractor();
+   //What was read from each file last time, so only changes are read.
+   //The first run with the index reads the whole library, whatever
+   //numTracksToExtract says, so it is off unless asked for.
+   Path indexFile = Path.of("/tmp/trackIndex.json");
+   boolean useIndex = false;
    int numTracksToExtract = 20;
 
    public SimpleExtractorApp() throws FileNotFoundException {
@@ -47,8 +55,9 @@ public class SimpleExtractorApp {
 
       String authStr = System.getenv("DT");
 
-      DiscogRestHandler drh = new DiscogRestHandler(authStr);
-      drh.getArtistInfoFromDiscogs(result);
+      try (DiscogRestHandler drh = new DiscogRestHandler(authStr)) {
+         drh.getArtistInfoFromDiscogs(result);
+      }
 
       long artistCount = result.stream()
             .flatMap(t -> t.artists().stream())
@@ -90,9 +99,39 @@ public class SimpleExtractorApp {
       return r1;
    }
 
+   /**
+    * Like getAudioTracks, but from the index, which only has to read
+    * the files that changed since the last run.  The filter is the
+    * same, done on the TrackDTOs instead of the AudioFiles.
+    */
+   public List<TrackDTO> getAudioTracksIncremental(File root, int limit, AudioInfoExtractor atst) throws IOException {
+
+      long start = System.currentTimeMillis();
+
+      TrackIndex index = atst.openIndex(indexFile);
+      List<TrackChange> changes = index.rescan(root.toPath());
+
+      var vetoSet = Set.of("Ike Turner");
+      List<TrackDTO> r1 = index.tracks().stream()
+            .filter(t -> Strings.isNotBlank(t.title())
+                  && t.artists().stream().noneMatch(a -> vetoSet.contains(a.name()))
+                  && t.length().toSeconds() > 6)
+            .limit(limit)
+            .toList();
+
+      long end = System.currentTimeMillis();
+
+      System.out.println(STR."Incremental Search took \{end - start} ms, \{changes.size()} changes");
+      System.out.println(STR."Total Matches: \{r1.size()}, Matching tracks: ");
+
+      return r1;
+   }
+
    private List<TrackDTO> getTrackList() throws IOException {
 
-      List<TrackDTO> extractedTracks = getAudioTracks(input, numTracksToExtract, atst);
+      List<TrackDTO> extractedTracks = useIndex ?
+            getAudioTracksIncremental(input, numTracksToExtract, atst) :
+            getAudioTracks(input, numTracksToExtract, atst);
 
 //      var extractedTracks = new ArrayList<>( List.of(
 //            TrackDTO.builder().title("The Shadow Of Your Smile").album("Let them Roll")
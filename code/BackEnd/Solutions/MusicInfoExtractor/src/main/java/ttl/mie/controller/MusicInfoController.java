@@ -28,7 +28,7 @@ public class MusicInfoController {
       var key = params.get("artist") + "#" + params.get("album");
       var decoded = KeyCodec.decode(key);
 
-      SearchResults searchResults = discogRestHandler.findArtistsForKey(decoded);
+      SearchResults searchResults = discogRestHandler.lookup(decoded);
       List<ArtistDTO> artists = searchResults.artists();
 
       return ResponseEntity.ok(artists);
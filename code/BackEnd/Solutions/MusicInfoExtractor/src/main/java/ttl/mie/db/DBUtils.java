@@ -32,6 +32,9 @@ public class DBUtils {
    @Autowired
    private TrackRepo trackRepo;
 
+   @Autowired
+   private TrackBatchWriter trackBatchWriter;
+
    @Autowired
    private AudioInfoExtractor atst;
 
@@ -41,8 +44,20 @@ public class DBUtils {
       int numTracks = convertToEntityAndAdd(tracks);
       return numTracks;
    }
-   
+
+   /**
+    * Adds the tracks, and any artists we don't have yet, with JDBC
+    * batches.  See TrackBatchWriter.
+    */
    public int convertToEntityAndAdd(List<TrackDTO> tracks) {
+      return trackBatchWriter.insertAll(tracks).tracks();
+   }
+
+   /**
+    * The old way, a select per artist and a save per artist and track,
+    * through the repos.  Fine for a few tracks.
+    */
+   public int convertToEntityAndAddOneByOne(List<TrackDTO> tracks) {
       int numTracks = 0;
       for(TrackDTO ati: tracks) {
          List<ArtistDTO> artists = ati.artists();
@@ -2,6 +2,7 @@ package ttl.mie.extractor;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -10,6 +11,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import org.jaudiotagger.audio.AudioFile;
 import org.jaudiotagger.audio.AudioFileIO;
 import org.jaudiotagger.audio.AudioHeader;
@@ -21,6 +23,10 @@ import ttl.mie.domain.track.dto.TrackDTO;
 @Component
 public class AudioInfoExtractor {
 
+   //Reading tags is mostly waiting on the disk, so more than one per core
+   private static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors() * 2;
+   private static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
    private final Set<String> validExtensions;
 
    public AudioInfoExtractor() {
@@ -44,15 +50,32 @@ public class AudioInfoExtractor {
       return result;
    }
 
+   /**
+    * Like searchTrackStream, but the files are read in parallel by a
+    * ParallelTrackScanner, on virtual threads.  The tracks are in the
+    * order they were read, rather than the order of the walk.
+    */
    public <U> List<TrackDTO> searchTrackStreamPar(File folder, int limit, Predicate<AudioFile> pred) throws IOException {
-      List<TrackDTO> result = Files.walk(folder.toPath())
-            .parallel()
-            .filter(this::isMusicFile)
-            .limit(limit)
-            .map(p -> checkForMatchingTrack(p, pred))
-            .collect(ArrayList::new, List::addAll, List::addAll);
+      return searchTrackStreamPar(folder, limit, pred, DEFAULT_PARALLELISM);
+   }
 
-      return result;
+   public <U> List<TrackDTO> searchTrackStreamPar(File folder, int limit, Predicate<AudioFile> pred,
+                                                  int parallelism) throws IOException {
+      try (var scanner = new ParallelTrackScanner(this, parallelism, DEFAULT_QUEUE_CAPACITY, true);
+           var tracks = scanner.scan(folder.toPath(), limit, pred)) {
+         return tracks.collect(Collectors.toCollection(ArrayList::new));
+      } catch (UncheckedIOException e) {
+         throw e.getCause();
+      }
+   }
+
+   /**
+    * Incremental mode.  The TrackIndex keeps what was read from each
+    * file in indexFile, so a rescan only reads what is new or changed.
+    * A TrackLibraryWatcher keeps it up to date as files change.
+    */
+   public TrackIndex openIndex(Path indexFile) {
+      return new TrackIndex(this, indexFile, DEFAULT_PARALLELISM);
    }
 
    public <U> List<TrackDTO> searchTrackST(File folder, Predicate<AudioFile> pred) {
@@ -4,10 +4,16 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import jakarta.annotation.PreDestroy;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
@@ -24,108 +30,141 @@ import ttl.mie.domain.track.dto.TrackDTO;
  * It needs a Discogs authorization token to be set in the
  * environment variable 'DT'.
  * <p>
+ * Calls are paced by a DiscogsRateLimiter, and what Discogs says for
+ * each artist#album is kept in a DiscogsCache, which lasts from one
+ * run to the next.  See getArtistInfoFromDiscogs.  These properties
+ * set it up, shown with their defaults:
+ * <pre>
+ *    discogs.base-url=https://api.discogs.com
+ *    discogs.cache-file=${java.io.tmpdir}/discogsCache.json
+ *    discogs.requests-per-minute=60
+ *    discogs.lookup-threads=4
+ * </pre>
+ * <p>
  * Discogs API documentation:
  * https://www.discogs.com/developers
  * https://www.discogs.com/developers#page:database,header:database-release
  */
 @Component
-public class DiscogRestHandler {
+public class DiscogRestHandler implements AutoCloseable {
+
+   private static final Logger logger = LoggerFactory.getLogger(DiscogRestHandler.class);
+
+   public static final String DEFAULT_BASE_URL = "https://api.discogs.com";
 
-   private final String discogsSearchUrl = "https://api.discogs.com/database/search";
-   private final String discogsArtistUrl = "https://api.discogs.com/artists/";
-   private final String discogsMastersUrl = "https://api.discogs.com/masters/";
-   private final String discogsReleasesUrl = "https://api.discogs.com/releases/";
+   private final String discogsSearchUrl;
+   private final String discogsArtistUrl;
+   private final String discogsMastersUrl;
+   private final String discogsReleasesUrl;
 
 
    private ObjectMapper mapper = new ObjectMapper();
    private RestClient restClient;
-   private ResponseEntity<?> lastResponse = null;
 
-   private long discogRateLimitDelay = 1000;   //One per second max
+   //Discogs allows 60 a minute with a token.  The limiter keeps us
+   //under whatever Discogs says our limit is.
+   private final DiscogsRateLimiter rateLimiter;
+   private final DiscogsCache cache;
+   private final DiscogsLookupScheduler scheduler;
 
    private final String authStr;
 
-   public DiscogRestHandler(@Value("${DT}") String authStr) {
+   @Autowired
+   public DiscogRestHandler(@Value("${DT}") String authStr,
+                            @Value("${discogs.base-url:" + DEFAULT_BASE_URL + "}") String baseUrl,
+                            @Value("${discogs.cache-file:${java.io.tmpdir}/discogsCache.json}") Path cacheFile,
+                            @Value("${discogs.requests-per-minute:60}") int requestsPerMinute,
+                            @Value("${discogs.lookup-threads:4}") int lookupThreads) {
       this.authStr = authStr;
+      this.discogsSearchUrl = baseUrl + "/database/search";
+      this.discogsArtistUrl = baseUrl + "/artists/";
+      this.discogsMastersUrl = baseUrl + "/masters/";
+      this.discogsReleasesUrl = baseUrl + "/releases/";
+
+      this.rateLimiter = new DiscogsRateLimiter(requestsPerMinute);
       restClient = RestClient.builder()
             .defaultHeader("Authorization", authStr)
             .defaultHeader("User-Agent", "TheThirdLane/1.0 +https://thethirdlane.com")
+            .requestInterceptor(rateLimiter)
             .build();
+
+      //Empty results are asked about again after a month
+      this.cache = new DiscogsCache(cacheFile, Duration.ofDays(30));
+      this.scheduler = new DiscogsLookupScheduler(cache, this::findArtistsForKey, lookupThreads);
    }
 
-   private int numCalls = 0;
+   public DiscogRestHandler(String authStr) {
+      this(authStr, DEFAULT_BASE_URL, Path.of(System.getProperty("java.io.tmpdir"), "discogsCache.json"), 60, 4);
+   }
+
+   //At most this many new lookups per call to getArtistInfoFromDiscogs.
+   //The keys with the fewest tracks are the ones left out.
    private int limit = 500;
-   //private Map<String, List<ArtistDTO>> alreadySeenArtists = new HashMap<>();
-   private Map<String, SearchResults> alreadySeenArtists = new HashMap<>();
 
+   /**
+    * Add what Discogs knows to the tracks, replacing each one in the
+    * list if it gets an image url.
+    * <p>
+    * Tracks are grouped by artist#album, and each key is looked up only
+    * once, from the cache if it is there, from Discogs otherwise.  See
+    * DiscogsLookupScheduler.
+    */
    public void getArtistInfoFromDiscogs(List<TrackDTO> tracks) {
 
-      alreadySeenArtists.clear();
-
-      TrackDTO[] currTrack = new TrackDTO[1];
-
-      limit = Math.min(limit, tracks.size());
-      for (int currTrackIndex = 0; currTrackIndex < limit; currTrackIndex++) {
-         currTrack[0] = tracks.get(currTrackIndex);
-
-         int artistsForCurrTrack = 0;
-
-         //First check if we have the artist cached
-         if (!currTrack[0].group().isBlank()) {
-
+      List<String> keys = new ArrayList<>();
+      for (TrackDTO track : tracks) {
+         if (!track.group().isBlank()) {
             //Key is artist_name '#' album_name
-            var key = currTrack[0].group() + '#' + currTrack[0].album();
-            System.out.println("New Key: " + key);
-            //See if we have this artist album combination in the cache.
-            if (alreadySeenArtists.containsKey(key)) {
-               var searchResults = alreadySeenArtists.get(key);
-               var adtos = searchResults.artists();
-               if(!searchResults.otherProps().isEmpty()) {
-                  currTrack[0] = maybeReplaceTrack(tracks, currTrackIndex, currTrack[0], searchResults.otherProps());
-               }
-               currTrack[0].artists().clear();
-               currTrack[0].artists().addAll(adtos);
+            keys.add(keyFor(track));
+         }
+      }
 
-               tracks.set(currTrackIndex, currTrack[0]);
+      Map<String, SearchResults> found = scheduler.lookup(keys, limit);
 
-               //System.out.println(STR."Already seen for: \{key}: \{adtos}");
-               System.out.println(STR."Already seen for: \{key}:");
-               continue;
-            }
+      for (int currTrackIndex = 0; currTrackIndex < tracks.size(); currTrackIndex++) {
+         TrackDTO currTrack = tracks.get(currTrackIndex);
+         if (currTrack.group().isBlank()) {
+            continue;
+         }
+         SearchResults searchResults = found.get(DiscogsCache.normalize(keyFor(currTrack)));
+         if (searchResults == null) {
+            continue;
+         }
+         if (!searchResults.artists().isEmpty()) {
+            currTrack.artists().clear();
+            currTrack.artists().addAll(searchResults.artists());
+         }
 
-            SearchResults searchResults = findArtistsForKey(key);
-            List<ArtistDTO> adtos = searchResults.artists();
-            if (!adtos.isEmpty()) {
-               addArtistsToTrack(adtos, currTrack[0]);
-               //Cache this result for future tracks with the same key
+         //Add other info to track
+         //Note that we would have to create a new Record for
+         //any non collection extra properties we are going to
+         //add to the track.  And then make that new Record the
+         //current element in the List.  Strange, but officially okay to
+         // change the current element while iterating, since we are
+         // NOT adding or deleting elements.
+         currTrack = maybeReplaceTrack(tracks, currTrackIndex, currTrack, searchResults.otherProps());
+         tracks.set(currTrackIndex, currTrack);
+      }
+      logger.debug("processed {} tracks, {} keys with results, waited {} ms for Discogs",
+            tracks.size(), found.size(), rateLimiter.getWaitedMillis());
+   }
 
-               alreadySeenArtists.computeIfAbsent(key, k -> searchResults);
-            } else {
-               alreadySeenArtists.computeIfAbsent(key, k -> new SearchResults(currTrack[0].artists()));
-            }
+   private static String keyFor(TrackDTO track) {
+      return track.group() + '#' + track.album();
+   }
 
-            //Add other info to track
-            //Note that we would have to create a new Record for
-            //any non collection extra properties we are going to
-            //add to the track.  And then make that new Record the
-            //current element in the List.  Strange, but officially okay to
-            // change the current element while iterating, since we are
-            // NOT adding or deleting elements.
-            currTrack[0] = maybeReplaceTrack(tracks, currTrackIndex, currTrack[0], searchResults.otherProps());
-            tracks.set(currTrackIndex, currTrack[0]);
-//            String url = (String)searchResults.otherProps().get("imageUrl");
-//            if(url != null) {
-//               var newTrack = currTrack.copyWithImageUrl(url);
-//               tracks.set(currTrackIndex, newTrack);
-//            }
-
-
-            if (lastResponse.getStatusCode() != HttpStatus.OK) {
-               System.err.println("Status NOT OK: " + lastResponse.getStatusCode());
-            }
-         }
-         System.out.println(STR."processed track \{currTrackIndex}, artistsForTrack: \{artistsForCurrTrack}");
-      }
+   /**
+    * Like findArtistsForKey, but from the cache if we have asked
+    * before, and only once for a key that is already being looked up.
+    */
+   public SearchResults lookup(String key) {
+      return scheduler.lookup(key);
+   }
+
+   @PreDestroy
+   @Override
+   public void close() {
+      scheduler.close();
    }
 
    private TrackDTO maybeReplaceTrack(List<TrackDTO> tracks,
@@ -279,7 +318,8 @@ public class DiscogRestHandler {
                System.err.println("Nothing found for searchUri: " + searchUri);
             }
          } catch (JsonProcessingException e) {
-            e.printStackTrace();
+            //Not something to cache either
+            throw new IllegalStateException("Could not read what Discogs said for " + key, e);
          }
       }
       return new SearchResults(adtos, extraProps);
@@ -335,16 +375,12 @@ public class DiscogRestHandler {
       return result;
    }
 
-   private void rateLimitSleep() {
-      try {
-         System.out.println(STR."numCalls: \{numCalls}, Sleeping for \{discogRateLimitDelay * numCalls} ms");
-         Thread.sleep(discogRateLimitDelay * numCalls);
-      } catch (InterruptedException e) {
-         throw new RuntimeException(e);
-      }
-      numCalls = 0;
-   }
-
+   /**
+    * A 404 comes back, for the caller to take as "Discogs doesn't know
+    * it".  Anything else that isn't OK, e.g. a 401, a 429 we have run
+    * out of retries for, or a 500, throws, so that an empty answer
+    * doesn't end up in the cache for a month.
+    */
    public <T> ResponseEntity<T> makeCall(String uri, Class<T> clazz) {
       var response = restClient
             .get()
@@ -354,11 +390,13 @@ public class DiscogRestHandler {
                //Do Nothing because we handle it in the code
             })
             .toEntity(clazz);
-      lastResponse = response;
-      numCalls++;
-
-      rateLimitSleep();
 
+      if (response.getStatusCode() != HttpStatus.OK) {
+         System.err.println("Status NOT OK: " + response.getStatusCode() + " for " + uri);
+         if (response.getStatusCode() != HttpStatus.NOT_FOUND) {
+            throw new IllegalStateException("Discogs said " + response.getStatusCode() + " for " + uri);
+         }
+      }
       return response;
    }
 
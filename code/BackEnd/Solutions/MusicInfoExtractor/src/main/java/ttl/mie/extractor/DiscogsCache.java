@@ -0,0 +1,142 @@
+package ttl.mie.extractor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ttl.mie.domain.track.dto.SearchResults;
+
+/**
+ * What Discogs said for each artist#album key, kept in a json file so
+ * that the next run doesn't ask again.
+ * <p>
+ * Keys are normalized, so "Miles Davis # Kind of Blue" and
+ * "miles davis#Kind Of Blue" are the same lookup.  Results with no
+ * artists are kept too, so that we don't keep asking about things
+ * Discogs doesn't know, but only for emptyResultTtl, in case it learns.
+ * <p>
+ * The file is written every SAVE_EVERY new entries, and by save(), to
+ * a temporary file that is then moved over the old one.  A file that
+ * can't be read is thrown away.
+ */
+public class DiscogsCache {
+
+   private static final Logger logger = LoggerFactory.getLogger(DiscogsCache.class);
+
+   private static final int VERSION = 1;
+   private static final int SAVE_EVERY = 50;
+
+   public record Entry(String key, SearchResults results, Instant fetched) {
+   }
+
+   private record Stored(int version, List<Entry> entries) {
+   }
+
+   private final Path cacheFile;
+   private final Duration emptyResultTtl;
+   private final ObjectMapper mapper;
+   private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+   private final AtomicInteger unsaved = new AtomicInteger();
+
+   public DiscogsCache(Path cacheFile, Duration emptyResultTtl) {
+      this.cacheFile = cacheFile.toAbsolutePath();
+      this.emptyResultTtl = emptyResultTtl;
+      this.mapper = new ObjectMapper();
+      this.mapper.findAndRegisterModules();
+      load();
+   }
+
+   /**
+    * Lower case, with runs of white space made one space, and trimmed
+    * on both sides of the '#'.
+    */
+   public static String normalize(String key) {
+      int hash = key.indexOf('#');
+      String artist = hash < 0 ? key : key.substring(0, hash);
+      String album = hash < 0 ? "" : key.substring(hash + 1);
+      return clean(artist) + '#' + clean(album);
+   }
+
+   private static String clean(String part) {
+      return part.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+   }
+
+   private void load() {
+      if (!Files.exists(cacheFile)) {
+         return;
+      }
+      try {
+         Stored stored = mapper.readValue(cacheFile.toFile(), Stored.class);
+         if (stored.version() == VERSION && stored.entries() != null) {
+            stored.entries().forEach(entry -> entries.put(entry.key(), entry));
+            logger.info("Loaded {} Discogs lookups from {}", entries.size(), cacheFile);
+         } else {
+            logger.info("Discogs cache {} is version {}, starting over", cacheFile, stored.version());
+         }
+      } catch (IOException e) {
+         logger.warn("Can't read Discogs cache {}, starting over: {}", cacheFile, e.getMessage());
+      }
+   }
+
+   /**
+    * @return the results for the key, or null if we haven't got them,
+    * or they were empty and are too old.
+    */
+   public SearchResults get(String key) {
+      Entry entry = entries.get(normalize(key));
+      if (entry == null) {
+         return null;
+      }
+      if (entry.results().artists().isEmpty()
+            && entry.fetched().plus(emptyResultTtl).isBefore(Instant.now())) {
+         return null;
+      }
+      return entry.results();
+   }
+
+   public void put(String key, SearchResults results) {
+      String normalized = normalize(key);
+      entries.put(normalized, new Entry(normalized, results, Instant.now()));
+      if (unsaved.incrementAndGet() >= SAVE_EVERY) {
+         saveQuietly();
+      }
+   }
+
+   public int size() {
+      return entries.size();
+   }
+
+   public synchronized void save() throws IOException {
+      unsaved.set(0);
+      Files.createDirectories(cacheFile.getParent());
+      Path tmp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+      mapper.writeValue(tmp.toFile(), new Stored(VERSION, new ArrayList<>(entries.values())));
+      Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+   }
+
+   /**
+    * Save if there is anything new.  A failure is logged, since losing
+    * the cache only costs us some lookups.
+    */
+   public void saveQuietly() {
+      if (unsaved.get() == 0) {
+         return;
+      }
+      try {
+         save();
+      } catch (IOException e) {
+         logger.warn("Can't save Discogs cache {}: {}", cacheFile, e.getMessage());
+      }
+   }
+}
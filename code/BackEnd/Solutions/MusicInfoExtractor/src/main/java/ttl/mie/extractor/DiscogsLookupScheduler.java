@@ -0,0 +1,194 @@
+package ttl.mie.extractor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ttl.mie.domain.track.dto.SearchResults;
+
+/**
+ * Looks up artist#album keys in Discogs, through a DiscogsCache, so
+ * that each key is only ever fetched once.
+ * <p>
+ * lookup is given the key of every track, duplicates and all.  Keys
+ * in the cache are answered from there.  The rest are fetched by a
+ * pool of threads, most popular first: a key shared by 12 tracks goes
+ * before one that only one track has, also across lookups that run at
+ * the same time.  A key that is already being fetched, for this
+ * lookup or another one, isn't fetched again; the second one waits for
+ * the first.  Pacing is up to the fetch, i.e. the DiscogsRateLimiter
+ * behind DiscogRestHandler.findArtistsForKey, so that with a few
+ * threads one call's latency overlaps the next one's wait.
+ * <p>
+ * A fetch that throws is logged and left out of the results, and out
+ * of the cache, so it is tried again next time.
+ * <p>
+ * Once closed, fetches that haven't started, and lookups made after
+ * that, fail rather than wait.
+ */
+public class DiscogsLookupScheduler implements AutoCloseable {
+
+   private static final Logger logger = LoggerFactory.getLogger(DiscogsLookupScheduler.class);
+
+   private final DiscogsCache cache;
+   private final Function<String, SearchResults> fetch;
+   private final ThreadPoolExecutor executor;
+   private final Map<String, CompletableFuture<SearchResults>> inFlight = new ConcurrentHashMap<>();
+   private final AtomicLong sequence = new AtomicLong();
+
+   /**
+    * A fetch, to be run in order of most tracks, and then first come.
+    */
+   private class Fetch implements Runnable {
+      private final String key;
+      private final String normalized;
+      private final int weight;
+      private final long seq = sequence.getAndIncrement();
+      private final CompletableFuture<SearchResults> result;
+
+      Fetch(String key, String normalized, int weight, CompletableFuture<SearchResults> result) {
+         this.key = key;
+         this.normalized = normalized;
+         this.weight = weight;
+         this.result = result;
+      }
+
+      @Override
+      public void run() {
+         try {
+            SearchResults searchResults = fetch.apply(key);
+            cache.put(key, searchResults);
+            result.complete(searchResults);
+         } catch (RuntimeException | Error e) {
+            result.completeExceptionally(e);
+         } finally {
+            inFlight.remove(normalized, result);
+         }
+      }
+   }
+
+   private static final Comparator<Runnable> ORDER = Comparator
+         .comparingInt((Runnable r) -> -((Fetch) r).weight)
+         .thenComparingLong(r -> ((Fetch) r).seq);
+
+   public DiscogsLookupScheduler(DiscogsCache cache, Function<String, SearchResults> fetch, int threads) {
+      this.cache = cache;
+      this.fetch = fetch;
+      this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new PriorityBlockingQueue<>(64, ORDER),
+            Thread.ofPlatform().name("discogs-lookup-", 0).daemon().factory());
+   }
+
+   /**
+    * @param keys   artist#album, one per track.
+    * @param maxFetches at most this many keys are fetched from Discogs.
+    *                   The least popular ones are left out.
+    * @return the results for each key that has them, by normalized key.
+    */
+   public Map<String, SearchResults> lookup(List<String> keys, int maxFetches) {
+      //Count tracks per key, keeping the first spelling of each to search with
+      Map<String, Integer> counts = new HashMap<>();
+      Map<String, String> spelling = new LinkedHashMap<>();
+      for (String key : keys) {
+         String normalized = DiscogsCache.normalize(key);
+         counts.merge(normalized, 1, Integer::sum);
+         spelling.putIfAbsent(normalized, key);
+      }
+
+      Map<String, SearchResults> results = new HashMap<>();
+      List<String> toFetch = new ArrayList<>();
+      spelling.forEach((normalized, key) -> {
+         SearchResults cached = cache.get(key);
+         if (cached != null) {
+            results.put(normalized, cached);
+         } else {
+            toFetch.add(normalized);
+         }
+      });
+      toFetch.sort(Comparator.comparingInt((String k) -> counts.get(k)).reversed());
+
+      Map<String, CompletableFuture<SearchResults>> pending = new LinkedHashMap<>();
+      for (String normalized : toFetch.subList(0, Math.min(maxFetches, toFetch.size()))) {
+         pending.put(normalized, submit(spelling.get(normalized), normalized, counts.get(normalized)));
+      }
+      logger.info("Discogs lookup of {} tracks: {} keys, {} cached, {} to fetch, {} skipped", keys.size(),
+            spelling.size(), results.size(), pending.size(), toFetch.size() - pending.size());
+
+      pending.forEach((normalized, future) -> {
+         try {
+            results.put(normalized, future.get());
+         } catch (ExecutionException e) {
+            logger.warn("Discogs lookup of {} failed: {}", normalized, e.getCause().toString());
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      });
+      cache.saveQuietly();
+      return results;
+   }
+
+   /**
+    * One key, e.g. for the controller.
+    */
+   public SearchResults lookup(String key) {
+      SearchResults cached = cache.get(key);
+      if (cached != null) {
+         return cached;
+      }
+      try {
+         return submit(key, DiscogsCache.normalize(key), Integer.MAX_VALUE).get();
+      } catch (ExecutionException e) {
+         throw e.getCause() instanceof RuntimeException re ? re : new IllegalStateException(e.getCause());
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IllegalStateException("Interrupted looking up " + key, e);
+      }
+   }
+
+   private CompletableFuture<SearchResults> submit(String key, String normalized, int weight) {
+      var mine = new CompletableFuture<SearchResults>();
+      var existing = inFlight.putIfAbsent(normalized, mine);
+      if (existing != null) {
+         return existing;
+      }
+      //It may have been fetched, and taken out of inFlight, since we looked
+      SearchResults cached = cache.get(key);
+      if (cached != null) {
+         inFlight.remove(normalized, mine);
+         mine.complete(cached);
+         return mine;
+      }
+      try {
+         executor.execute(new Fetch(key, normalized, weight, mine));
+      } catch (RejectedExecutionException e) {
+         inFlight.remove(normalized, mine);
+         mine.completeExceptionally(e);
+      }
+      return mine;
+   }
+
+   @Override
+   public void close() {
+      //Whoever is waiting for a fetch that will now never run would
+      //otherwise wait forever
+      for (Runnable r : executor.shutdownNow()) {
+         var notRun = (Fetch) r;
+         inFlight.remove(notRun.normalized, notRun.result);
+         notRun.result.completeExceptionally(new IllegalStateException("Discogs lookups closed"));
+      }
+      cache.saveQuietly();
+   }
+}
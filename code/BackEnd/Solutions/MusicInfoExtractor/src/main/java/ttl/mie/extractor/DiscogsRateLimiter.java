@@ -0,0 +1,148 @@
+package ttl.mie.extractor;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * A token bucket for the calls to Discogs, as a RestClient interceptor.
+ * <p>
+ * Discogs allows requestsPerMinute calls in any 60 seconds, so the
+ * bucket holds that many tokens and refills at that rate.  Each call
+ * waits for a token.  Discogs also tells us, on every response, what
+ * our limit is (X-Discogs-Ratelimit) and how many calls we have left
+ * (X-Discogs-Ratelimit-Remaining).  Those win: the bucket never holds
+ * more than Discogs says we have left, which takes care of calls made
+ * by an earlier run, or by anybody else with the same token.
+ * <p>
+ * If we get a 429 anyway, the bucket is emptied, and the call is tried
+ * again, after Retry-After if Discogs sent one, up to MAX_RETRIES
+ * times.
+ */
+public class DiscogsRateLimiter implements ClientHttpRequestInterceptor {
+
+   private static final Logger logger = LoggerFactory.getLogger(DiscogsRateLimiter.class);
+
+   public static final String LIMIT_HEADER = "X-Discogs-Ratelimit";
+   public static final String REMAINING_HEADER = "X-Discogs-Ratelimit-Remaining";
+
+   private static final int MAX_RETRIES = 3;
+   private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+   private int capacity;
+   private double tokens;
+   private long lastRefill;
+   private long waitedNanos;
+
+   public DiscogsRateLimiter(int requestsPerMinute) {
+      if (requestsPerMinute < 1) {
+         throw new IllegalArgumentException("requestsPerMinute must be at least 1");
+      }
+      this.capacity = requestsPerMinute;
+      this.tokens = requestsPerMinute;
+      this.lastRefill = System.nanoTime();
+   }
+
+   @Override
+   public ClientHttpResponse intercept(HttpRequest request, byte[] body,
+                                       ClientHttpRequestExecution execution) throws IOException {
+      for (int attempt = 0; ; attempt++) {
+         acquire();
+         ClientHttpResponse response = execution.execute(request, body);
+         update(response.getHeaders());
+         if (response.getStatusCode().value() != HttpStatus.TOO_MANY_REQUESTS.value() || attempt == MAX_RETRIES) {
+            return response;
+         }
+         long retryAfter = retryAfterNanos(response.getHeaders());
+         response.close();
+         logger.warn("Discogs says too many requests, trying {} again", request.getURI());
+         drain(retryAfter);
+      }
+   }
+
+   /**
+    * Wait for a token.
+    */
+   public void acquire() throws InterruptedIOException {
+      long waitNanos;
+      synchronized (this) {
+         refill();
+         tokens--;
+         //We may have gone below zero, in which case we wait until
+         //the bucket is back at zero.  Whoever calls next waits longer.
+         waitNanos = tokens >= 0 ? 0 : (long) (-tokens * MINUTE_NANOS / capacity);
+         waitedNanos += waitNanos;
+      }
+      if (waitNanos > 0) {
+         try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting to call Discogs");
+         }
+      }
+   }
+
+   /**
+    * Believe Discogs about our limit and what we have left.
+    */
+   public synchronized void update(HttpHeaders headers) {
+      Integer limit = intHeader(headers, LIMIT_HEADER);
+      if (limit != null && limit > 0 && limit != capacity) {
+         logger.info("Discogs rate limit is {} a minute", limit);
+         capacity = limit;
+      }
+      Integer remaining = intHeader(headers, REMAINING_HEADER);
+      if (remaining != null) {
+         refill();
+         tokens = Math.min(tokens, remaining);
+      }
+   }
+
+   private synchronized void drain(long forNanos) {
+      refill();
+      tokens = Math.min(tokens, -(double) forNanos * capacity / MINUTE_NANOS);
+   }
+
+   private void refill() {
+      long now = System.nanoTime();
+      tokens = Math.min(capacity, tokens + (double) (now - lastRefill) * capacity / MINUTE_NANOS);
+      lastRefill = now;
+   }
+
+   private long retryAfterNanos(HttpHeaders headers) {
+      Integer seconds = intHeader(headers, HttpHeaders.RETRY_AFTER);
+      return seconds != null ? TimeUnit.SECONDS.toNanos(seconds) : MINUTE_NANOS / capacity;
+   }
+
+   private static Integer intHeader(HttpHeaders headers, String name) {
+      String value = headers.getFirst(name);
+      if (value == null) {
+         return null;
+      }
+      try {
+         return Integer.valueOf(value.strip());
+      } catch (NumberFormatException e) {
+         return null;
+      }
+   }
+
+   public synchronized int getCapacity() {
+      return capacity;
+   }
+
+   /**
+    * How long calls have had to wait for a token, all told.
+    */
+   public synchronized long getWaitedMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(waitedNanos);
+   }
+}
@@ -0,0 +1,218 @@
+package ttl.mie.extractor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.jaudiotagger.audio.AudioFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ttl.mie.domain.track.dto.TrackDTO;
+
+/**
+ * Reads the tags of the music files under a folder in parallel.
+ * <p>
+ * One thread walks the folder and puts the music files on a bounded
+ * queue, so it can't get far ahead of the readers.  parallelism
+ * readers take them off and read them, either on virtual threads or
+ * on a fixed pool of platform threads.  Either way no more than
+ * parallelism files are being read at once, and none of it is on the
+ * common ForkJoinPool.
+ * <p>
+ * Matching tracks come out of the Stream as soon as they are read, so
+ * in no particular order.  Once limit of them have been found, or the
+ * Stream is closed, the walk and the readers stop.  Close the Stream,
+ * with try-with-resources, if you don't read it to the end.
+ * <p>
+ * A scanner can be used for any number of scans, also at the same
+ * time.  Close it when done, to shut down its threads.
+ */
+public class ParallelTrackScanner implements AutoCloseable {
+
+   private static final Logger logger = LoggerFactory.getLogger(ParallelTrackScanner.class);
+
+   private static final Path NO_MORE_FILES = Path.of("");
+   private static final Object END = new Object();
+
+   private final AudioInfoExtractor extractor;
+   private final int parallelism;
+   private final int queueCapacity;
+   private final ExecutorService executor;
+
+   /**
+    * @param virtualThreads read on virtual threads, or else on a
+    *                       fixed pool of parallelism platform threads.
+    */
+   public ParallelTrackScanner(AudioInfoExtractor extractor, int parallelism, int queueCapacity,
+                               boolean virtualThreads) {
+      if (parallelism < 1 || queueCapacity < 1) {
+         throw new IllegalArgumentException("parallelism and queueCapacity must be at least 1");
+      }
+      this.extractor = extractor;
+      this.parallelism = parallelism;
+      this.queueCapacity = queueCapacity;
+      this.executor = virtualThreads
+            ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("track-reader-", 0).factory())
+            : Executors.newFixedThreadPool(parallelism, Thread.ofPlatform().name("track-reader-", 0).daemon().factory());
+   }
+
+   public Stream<TrackDTO> scan(Path folder, int limit, Predicate<AudioFile> pred) {
+      if (limit <= 0) {
+         return Stream.empty();
+      }
+      var scan = new Scan(limit, pred);
+      scan.start(folder);
+      return StreamSupport.stream(Spliterators.spliteratorUnknownSize(scan,
+                  Spliterator.NONNULL), false)
+            .onClose(scan::cancel);
+   }
+
+   /**
+    * One call to scan.  It is also the Iterator for the Stream.
+    */
+   private class Scan implements Iterator<TrackDTO> {
+      private final int limit;
+      private final Predicate<AudioFile> pred;
+
+      private final BlockingQueue<Path> files = new ArrayBlockingQueue<>(queueCapacity);
+      //Unbounded, but at most limit tracks ever go on it
+      private final BlockingQueue<Object> tracks = new LinkedBlockingQueue<>();
+      private final AtomicBoolean done = new AtomicBoolean();
+      private final AtomicInteger found = new AtomicInteger();
+      private final AtomicInteger readersLeft = new AtomicInteger(parallelism);
+
+      private Object next;
+      private volatile RuntimeException walkFailure;
+
+      Scan(int limit, Predicate<AudioFile> pred) {
+         this.limit = limit;
+         this.pred = pred;
+      }
+
+      void start(Path folder) {
+         Thread.ofVirtual().name("track-walker").start(() -> walk(folder));
+         for (int i = 0; i < parallelism; i++) {
+            executor.execute(this::read);
+         }
+      }
+
+      private void walk(Path folder) {
+         try (Stream<Path> paths = Files.walk(folder)) {
+            Iterator<Path> it = paths.filter(extractor::isMusicFile).iterator();
+            while (!done.get() && it.hasNext()) {
+               put(it.next());
+            }
+         } catch (IOException e) {
+            walkFailed(folder, new UncheckedIOException(e));
+         } catch (UncheckedIOException e) {
+            walkFailed(folder, e);
+         } catch (InterruptedException e) {
+            //Someone gave up on us, so stop
+         } finally {
+            for (int i = 0; i < parallelism; i++) {
+               try {
+                  put(NO_MORE_FILES);
+               } catch (InterruptedException e) {
+                  done.set(true);
+               }
+            }
+         }
+      }
+
+      private void walkFailed(Path folder, UncheckedIOException e) {
+         walkFailure = e;
+         logger.warn("Walk of {} failed: {}", folder, e.getMessage());
+      }
+
+      /**
+       * Wait for room on the queue, unless the scan is over.
+       */
+      private void put(Path path) throws InterruptedException {
+         while (!files.offer(path, 100, TimeUnit.MILLISECONDS)) {
+            if (done.get()) {
+               return;
+            }
+         }
+      }
+
+      private void read() {
+         try {
+            while (!done.get()) {
+               Path path = files.poll(100, TimeUnit.MILLISECONDS);
+               if (path == NO_MORE_FILES) {
+                  break;
+               }
+               if (path != null) {
+                  for (TrackDTO track : extractor.checkForMatchingTrack(path, pred)) {
+                     int count = found.incrementAndGet();
+                     if (count <= limit) {
+                        tracks.add(track);
+                     }
+                     if (count >= limit) {
+                        done.set(true);
+                     }
+                  }
+               }
+            }
+         } catch (InterruptedException e) {
+            done.set(true);
+         } finally {
+            if (readersLeft.decrementAndGet() == 0) {
+               tracks.add(END);
+            }
+         }
+      }
+
+      void cancel() {
+         done.set(true);
+         files.clear();
+      }
+
+      @Override
+      public boolean hasNext() {
+         if (next == null) {
+            try {
+               next = tracks.take();
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+               cancel();
+               next = END;
+            }
+         }
+         if (next == END && walkFailure != null) {
+            throw walkFailure;
+         }
+         return next != END;
+      }
+
+      @Override
+      public TrackDTO next() {
+         if (!hasNext()) {
+            throw new NoSuchElementException();
+         }
+         var track = (TrackDTO) next;
+         next = null;
+         return track;
+      }
+   }
+
+   @Override
+   public void close() {
+      executor.shutdownNow();
+   }
+}
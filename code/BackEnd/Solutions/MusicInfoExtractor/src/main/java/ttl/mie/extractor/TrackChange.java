@@ -0,0 +1,17 @@
+package ttl.mie.extractor;
+
+import java.nio.file.Path;
+import ttl.mie.domain.track.dto.TrackDTO;
+
+/**
+ * A track that appeared, changed or went away since the last look.
+ * For a DELETED track, track is what it was.
+ */
+public record TrackChange(Type type, Path path, TrackDTO track) {
+
+   public enum Type {
+      ADDED,
+      MODIFIED,
+      DELETED
+   }
+}
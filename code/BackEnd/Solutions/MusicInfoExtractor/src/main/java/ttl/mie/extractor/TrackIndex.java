@@ -0,0 +1,318 @@
+package ttl.mie.extractor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import org.jaudiotagger.audio.AudioFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ttl.mie.domain.track.dto.TrackDTO;
+
+/**
+ * What the AudioInfoExtractor found in each music file, kept in a json
+ * file so that the next scan only has to read what changed.
+ * <p>
+ * For each file the index has its size, its last modified time, a
+ * hash of its first HASH_PREFIX_BYTES, and its TrackDTO.  rescan walks
+ * the folder, which costs a directory listing but no file reads, and
+ * then:
+ * <ul>
+ *    <li>Files with the same size and modified time are left alone.</li>
+ *    <li>Files that are new, or have a new size, are read.</li>
+ *    <li>Files with only a new modified time are read if their hash
+ *    prefix changed.  A file that was just touched, or copied back,
+ *    isn't.</li>
+ *    <li>Files that are gone are dropped.</li>
+ * </ul>
+ * Reads happen in parallel, on a pool of parallelism threads.  Each
+ * call returns what changed, with DELETED changes for the tracks that
+ * went away.
+ * <p>
+ * Every music file gets an entry, even one that can't be read, so
+ * that it isn't tried again until it changes.  Such files have no
+ * track.  Since the tracks are kept for every file, filter tracks()
+ * rather than passing a Predicate&lt;AudioFile&gt; in.
+ * <p>
+ * The index is written to a temporary file and then moved over the
+ * old one, so a crash leaves the old index.  saveIfDirty only writes
+ * it if an entry has changed since the last save, including a touched
+ * file's new modified time, which isn't a TrackChange.  An index that can't be
+ * read is thrown away, and the next scan reads everything.
+ */
+public class TrackIndex {
+
+   private static final Logger logger = LoggerFactory.getLogger(TrackIndex.class);
+
+   private static final int VERSION = 1;
+   private static final int HASH_PREFIX_BYTES = 64 * 1024;
+
+   public record Entry(String path, long size, long modified, String hashPrefix, TrackDTO track) {
+   }
+
+   private record Stored(int version, List<Entry> entries) {
+   }
+
+   private final AudioInfoExtractor extractor;
+   private final Path indexFile;
+   private final int parallelism;
+   private final ObjectMapper mapper;
+   private final Predicate<AudioFile> allPass;
+
+   private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+   //Entries changed since the last save
+   private volatile boolean dirty;
+
+   public TrackIndex(AudioInfoExtractor extractor, Path indexFile, int parallelism) {
+      this.extractor = extractor;
+      this.indexFile = indexFile.toAbsolutePath();
+      this.parallelism = parallelism;
+      this.mapper = new ObjectMapper();
+      this.mapper.findAndRegisterModules();
+      this.allPass = extractor.allPass(null);
+      load();
+   }
+
+   private void load() {
+      if (!Files.exists(indexFile)) {
+         return;
+      }
+      try {
+         Stored stored = mapper.readValue(indexFile.toFile(), Stored.class);
+         if (stored.version() == VERSION && stored.entries() != null) {
+            stored.entries().forEach(entry -> entries.put(entry.path(), entry));
+         } else {
+            logger.info("Index {} is version {}, starting over", indexFile, stored.version());
+         }
+      } catch (IOException e) {
+         logger.warn("Can't read index {}, starting over: {}", indexFile, e.getMessage());
+      }
+   }
+
+   public synchronized void save() throws IOException {
+      dirty = false;
+      try {
+         Files.createDirectories(indexFile.getParent());
+         Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+         mapper.writeValue(tmp.toFile(), new Stored(VERSION, new ArrayList<>(entries.values())));
+         Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException | RuntimeException e) {
+         dirty = true;
+         throw e;
+      }
+   }
+
+   /**
+    * @return true if there was anything to save.
+    */
+   public synchronized boolean saveIfDirty() throws IOException {
+      if (!dirty) {
+         return false;
+      }
+      save();
+      return true;
+   }
+
+   /**
+    * Bring the index up to date with everything under folder, and
+    * save it if anything changed.
+    */
+   public synchronized List<TrackChange> rescan(Path folder) throws IOException {
+      Path root = folder.toAbsolutePath().normalize();
+      Map<String, BasicFileAttributes> found = new HashMap<>();
+      Files.walkFileTree(root, new SimpleFileVisitor<>() {
+         @Override
+         public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if (attrs.isRegularFile() && extractor.isMusicFile(file)) {
+               found.put(file.toString(), attrs);
+            }
+            return FileVisitResult.CONTINUE;
+         }
+
+         @Override
+         public FileVisitResult visitFileFailed(Path file, IOException e) {
+            logger.debug("Can't look at {}: {}", file, e.getMessage());
+            return FileVisitResult.CONTINUE;
+         }
+      });
+
+      List<Path> toCheck = new ArrayList<>();
+      found.forEach((path, attrs) -> {
+         Entry entry = entries.get(path);
+         if (entry == null || !sameSizeAndTime(entry, attrs)) {
+            toCheck.add(Path.of(path));
+         }
+      });
+
+      List<TrackChange> changes = new ArrayList<>(refreshAll(toCheck));
+      for (Entry entry : List.copyOf(entries.values())) {
+         Path path = Path.of(entry.path());
+         if (path.startsWith(root) && !found.containsKey(entry.path())) {
+            remove(entry.path()).ifPresent(changes::add);
+         }
+      }
+
+      saveIfDirty();
+      logger.info("Rescan of {}: {} music files, {} looked at, {} changes", root, found.size(),
+            toCheck.size(), changes.size());
+      return changes;
+   }
+
+   /**
+    * Bring the index up to date for one path, which may be a file, a
+    * folder, or something that has gone.  For the TrackLibraryWatcher.
+    * Doesn't save, see saveIfDirty.
+    */
+   public synchronized List<TrackChange> update(Path path) throws IOException {
+      Path absolute = path.toAbsolutePath().normalize();
+      if (Files.isDirectory(absolute)) {
+         List<TrackChange> changes = new ArrayList<>();
+         try (var files = Files.walk(absolute)) {
+            List<Path> music = files.filter(extractor::isMusicFile).toList();
+            changes.addAll(refreshAll(music));
+         }
+         return changes;
+      }
+      if (!Files.exists(absolute)) {
+         //A file, or a whole folder
+         List<TrackChange> changes = new ArrayList<>();
+         for (String key : List.copyOf(entries.keySet())) {
+            if (Path.of(key).startsWith(absolute)) {
+               remove(key).ifPresent(changes::add);
+            }
+         }
+         return changes;
+      }
+      if (!extractor.isMusicFile(absolute)) {
+         return List.of();
+      }
+      var change = refresh(absolute);
+      return change != null ? List.of(change) : List.of();
+   }
+
+   public List<TrackDTO> tracks() {
+      return entries.values().stream()
+            .map(Entry::track)
+            .filter(Objects::nonNull)
+            .toList();
+   }
+
+   public int size() {
+      return entries.size();
+   }
+
+   private List<TrackChange> refreshAll(List<Path> files) {
+      if (files.isEmpty()) {
+         return List.of();
+      }
+      List<TrackChange> changes = new ArrayList<>();
+      try (ExecutorService executor = Executors.newFixedThreadPool(parallelism)) {
+         List<Future<TrackChange>> futures = new ArrayList<>(files.size());
+         for (Path file : files) {
+            futures.add(executor.submit(() -> refresh(file)));
+         }
+         for (var future : futures) {
+            var change = future.get();
+            if (change != null) {
+               changes.add(change);
+            }
+         }
+      } catch (ExecutionException e) {
+         throw new IllegalStateException("Reading tracks failed", e.getCause());
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+      return changes;
+   }
+
+   /**
+    * Look at one music file, and read it if it has changed.
+    * @return the change, or null if there wasn't one.
+    */
+   private TrackChange refresh(Path file) {
+      String key = file.toString();
+      Entry old = entries.get(key);
+      BasicFileAttributes attrs;
+      String hashPrefix;
+      try {
+         attrs = Files.readAttributes(file, BasicFileAttributes.class);
+         if (old != null && sameSizeAndTime(old, attrs)) {
+            return null;
+         }
+         hashPrefix = hashPrefix(file);
+      } catch (NoSuchFileException e) {
+         return remove(key).orElse(null);
+      } catch (IOException e) {
+         logger.debug("Can't look at {}: {}", file, e.getMessage());
+         return null;
+      }
+
+      long size = attrs.size();
+      long modified = attrs.lastModifiedTime().toMillis();
+      if (old != null && old.size() == size && old.hashPrefix().equals(hashPrefix)) {
+         entries.put(key, new Entry(key, size, modified, hashPrefix, old.track()));
+         dirty = true;
+         return null;
+      }
+
+      List<TrackDTO> tracks = extractor.checkForMatchingTrack(file, allPass);
+      TrackDTO track = tracks.isEmpty() ? null : tracks.getFirst();
+      entries.put(key, new Entry(key, size, modified, hashPrefix, track));
+      dirty = true;
+
+      TrackDTO oldTrack = old != null ? old.track() : null;
+      if (track == null) {
+         return oldTrack != null ? new TrackChange(TrackChange.Type.DELETED, file, oldTrack) : null;
+      }
+      return new TrackChange(oldTrack == null ? TrackChange.Type.ADDED : TrackChange.Type.MODIFIED, file, track);
+   }
+
+   private Optional<TrackChange> remove(String key) {
+      Entry old = entries.remove(key);
+      if (old != null) {
+         dirty = true;
+      }
+      if (old == null || old.track() == null) {
+         return Optional.empty();
+      }
+      return Optional.of(new TrackChange(TrackChange.Type.DELETED, Path.of(key), old.track()));
+   }
+
+   private static boolean sameSizeAndTime(Entry entry, BasicFileAttributes attrs) {
+      return entry.size() == attrs.size() && entry.modified() == attrs.lastModifiedTime().toMillis();
+   }
+
+   private static String hashPrefix(Path file) throws IOException {
+      MessageDigest digest;
+      try {
+         digest = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+         throw new IllegalStateException(e);
+      }
+      try (InputStream in = Files.newInputStream(file)) {
+         digest.update(in.readNBytes(HASH_PREFIX_BYTES));
+      }
+      return HexFormat.of().formatHex(digest.digest());
+   }
+}
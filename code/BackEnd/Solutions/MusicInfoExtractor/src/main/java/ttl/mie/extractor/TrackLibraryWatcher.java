@@ -0,0 +1,165 @@
+package ttl.mie.extractor;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a TrackIndex up to date with a folder as files come and go,
+ * and tells a listener about each TrackChange.
+ * <p>
+ * A WatchService only watches one folder, so every folder under root
+ * is registered, and new ones as they turn up.  A file being copied
+ * in fires lots of events, so they are collected until there have
+ * been none for settle, or for at most 10 * settle, and then each
+ * path is looked at once.  If the WatchService drops events
+ * (OVERFLOW), the whole folder is rescanned instead.  The index is
+ * saved after each lot, if it changed.
+ * <p>
+ * The listener is called on the watcher's thread.
+ */
+public class TrackLibraryWatcher implements AutoCloseable {
+
+   private static final Logger logger = LoggerFactory.getLogger(TrackLibraryWatcher.class);
+
+   private final TrackIndex index;
+   private final Path root;
+   private final Duration settle;
+   private final Consumer<TrackChange> listener;
+   private final WatchService watchService;
+   private final Map<WatchKey, Path> folders = new ConcurrentHashMap<>();
+   private final Thread watcher;
+
+   public TrackLibraryWatcher(TrackIndex index, Path root, Duration settle,
+                              Consumer<TrackChange> listener) throws IOException {
+      this.index = index;
+      this.root = root.toAbsolutePath().normalize();
+      this.settle = settle;
+      this.listener = listener;
+      this.watchService = this.root.getFileSystem().newWatchService();
+      registerAll(this.root);
+      this.watcher = Thread.ofPlatform().name("track-watcher").daemon().start(this::watch);
+   }
+
+   private void registerAll(Path folder) throws IOException {
+      Files.walkFileTree(folder, new SimpleFileVisitor<>() {
+         @Override
+         public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+            WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                  StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            folders.put(key, dir);
+            return FileVisitResult.CONTINUE;
+         }
+
+         @Override
+         public FileVisitResult visitFileFailed(Path file, IOException e) {
+            logger.debug("Can't watch {}: {}", file, e.getMessage());
+            return FileVisitResult.CONTINUE;
+         }
+      });
+   }
+
+   private void watch() {
+      Set<Path> pending = new LinkedHashSet<>();
+      boolean overflow = false;
+      long firstPendingAt = 0;
+      long maxWaitNanos = settle.toNanos() * 10;
+      try {
+         while (true) {
+            WatchKey key = pending.isEmpty() && !overflow
+                  ? watchService.take()
+                  : watchService.poll(settle.toNanos(), TimeUnit.NANOSECONDS);
+            if (key != null) {
+               if (pending.isEmpty() && !overflow) {
+                  firstPendingAt = System.nanoTime();
+               }
+               overflow |= collect(key, pending);
+            }
+            if ((key == null || System.nanoTime() - firstPendingAt > maxWaitNanos)
+                  && (overflow || !pending.isEmpty())) {
+               apply(pending, overflow);
+               pending.clear();
+               overflow = false;
+            }
+         }
+      } catch (InterruptedException | ClosedWatchServiceException e) {
+         //We've been closed
+      }
+   }
+
+   /**
+    * @return true if events were lost.
+    */
+   private boolean collect(WatchKey key, Set<Path> pending) {
+      Path folder = folders.get(key);
+      boolean overflow = false;
+      for (WatchEvent<?> event : key.pollEvents()) {
+         if (event.kind() == StandardWatchEventKinds.OVERFLOW || folder == null) {
+            overflow = true;
+            continue;
+         }
+         Path path = folder.resolve((Path) event.context());
+         if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+            try {
+               registerAll(path);
+            } catch (IOException e) {
+               logger.warn("Can't watch new folder {}: {}", path, e.getMessage());
+            }
+         }
+         pending.add(path);
+      }
+      if (!key.reset()) {
+         //The folder has gone
+         folders.remove(key);
+      }
+      return overflow;
+   }
+
+   private void apply(Set<Path> pending, boolean overflow) {
+      List<TrackChange> changes = new ArrayList<>();
+      try {
+         if (overflow) {
+            changes.addAll(index.rescan(root));
+         } else {
+            for (Path path : pending) {
+               changes.addAll(index.update(path));
+            }
+            index.saveIfDirty();
+         }
+      } catch (IOException | RuntimeException e) {
+         logger.warn("Updating the index for {} failed: {}", root, e.getMessage());
+      }
+      for (TrackChange change : changes) {
+         try {
+            listener.accept(change);
+         } catch (RuntimeException e) {
+            logger.warn("Listener failed on {}: {}", change, e.getMessage());
+         }
+      }
+   }
+
+   @Override
+   public void close() throws IOException {
+      watchService.close();
+      watcher.interrupt();
+   }
+}
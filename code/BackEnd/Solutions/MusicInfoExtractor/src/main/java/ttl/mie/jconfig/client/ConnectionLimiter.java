@@ -0,0 +1,180 @@
+package ttl.mie.jconfig.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Caps the number of requests in flight, per route (scheme, host and
+ * port) and in total, for every RestClient that PooledRestClientFactory
+ * makes.  The JDK HttpClient underneath keeps its connections alive and
+ * reuses them, but it has no limit of its own.
+ * <p>
+ * A request holds its permits until its response is closed, which
+ * RestClient does once it has read the body.  A request that can't
+ * get a permit within acquireTimeout fails with an IOException, which
+ * RestClient hands back as a ResourceAccessException.
+ * <p>
+ * The counts are the pool saturation numbers: how many requests are
+ * in flight, how many are waiting right now, and how many have had to
+ * wait or given up waiting.
+ */
+public class ConnectionLimiter implements ClientHttpRequestInterceptor {
+
+   private static final Logger logger = LoggerFactory.getLogger(ConnectionLimiter.class);
+
+   private final int maxTotal;
+   private final int maxPerRoute;
+   private final Duration acquireTimeout;
+   private final Semaphore total;
+   private final Map<String, Semaphore> routes = new ConcurrentHashMap<>();
+
+   private final AtomicInteger waiting = new AtomicInteger();
+   private final LongAdder waits = new LongAdder();
+   private final LongAdder rejections = new LongAdder();
+
+   public ConnectionLimiter(int maxTotal, int maxPerRoute, Duration acquireTimeout) {
+      this.maxTotal = maxTotal;
+      this.maxPerRoute = maxPerRoute;
+      this.acquireTimeout = acquireTimeout;
+      this.total = new Semaphore(maxTotal);
+   }
+
+   @Override
+   public ClientHttpResponse intercept(HttpRequest request, byte[] body,
+                                       ClientHttpRequestExecution execution) throws IOException {
+      String route = routeOf(request.getURI());
+      Semaphore perRoute = routes.computeIfAbsent(route, r -> new Semaphore(maxPerRoute));
+
+      acquire(perRoute, route);
+      try {
+         acquire(total, route);
+      } catch (IOException e) {
+         perRoute.release();
+         throw e;
+      }
+
+      Runnable release = () -> {
+         total.release();
+         perRoute.release();
+      };
+      try {
+         return new ReleasingResponse(execution.execute(request, body), release);
+      } catch (IOException | RuntimeException e) {
+         release.run();
+         throw e;
+      }
+   }
+
+   private void acquire(Semaphore permits, String route) throws IOException {
+      if (permits.tryAcquire()) {
+         return;
+      }
+      waits.increment();
+      waiting.incrementAndGet();
+      try {
+         if (!permits.tryAcquire(acquireTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            rejections.increment();
+            logger.warn("No connection to {} free after {}, {} requests in flight", route, acquireTimeout, getInUse());
+            throw new IOException("Connection pool for " + route + " is full");
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("Interrupted waiting for a connection to " + route);
+      } finally {
+         waiting.decrementAndGet();
+      }
+   }
+
+   static String routeOf(URI uri) {
+      String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase() : "http";
+      int port = uri.getPort() != -1 ? uri.getPort() : scheme.equals("https") ? 443 : 80;
+      return scheme + "://" + uri.getHost() + ":" + port;
+   }
+
+   public int getMaxTotal() {
+      return maxTotal;
+   }
+
+   public int getMaxPerRoute() {
+      return maxPerRoute;
+   }
+
+   public int getInUse() {
+      return maxTotal - total.availablePermits();
+   }
+
+   public int getWaiting() {
+      return waiting.get();
+   }
+
+   public long getWaitCount() {
+      return waits.sum();
+   }
+
+   public long getRejectionCount() {
+      return rejections.sum();
+   }
+
+   /**
+    * Gives the permits back when it is closed, just the once.
+    */
+   private static class ReleasingResponse implements ClientHttpResponse {
+      private final ClientHttpResponse response;
+      private final Runnable release;
+      private final AtomicBoolean released = new AtomicBoolean();
+
+      ReleasingResponse(ClientHttpResponse response, Runnable release) {
+         this.response = response;
+         this.release = release;
+      }
+
+      @Override
+      public HttpStatusCode getStatusCode() throws IOException {
+         return response.getStatusCode();
+      }
+
+      @Override
+      public String getStatusText() throws IOException {
+         return response.getStatusText();
+      }
+
+      @Override
+      public HttpHeaders getHeaders() {
+         return response.getHeaders();
+      }
+
+      @Override
+      public InputStream getBody() throws IOException {
+         return response.getBody();
+      }
+
+      @Override
+      public void close() {
+         try {
+            response.close();
+         } finally {
+            if (released.compareAndSet(false, true)) {
+               release.run();
+            }
+         }
+      }
+   }
+}
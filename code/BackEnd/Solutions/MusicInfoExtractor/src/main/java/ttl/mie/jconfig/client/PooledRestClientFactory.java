@@ -0,0 +1,138 @@
+package ttl.mie.jconfig.client;
+
+import jakarta.annotation.PreDestroy;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Base64;
+import javax.net.ssl.SSLContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+/**
+ * A RestClientFactory whose clients all share one connection pool.
+ * <p>
+ * Every RestClient.builder() in RestClientFactory gets its own
+ * HttpURLConnection based request factory, with no timeouts.  Behind
+ * a busy service that means lots of new connections, and for https
+ * lots of TLS handshakes.  The clients from here all go through one
+ * JDK HttpClient instead:
+ * <ul>
+ *    <li>Connections are kept alive and reused.</li>
+ *    <li>https uses HTTP/2 if the server offers it (ALPN), so all the
+ *    calls to a server share one connection.  Otherwise HTTP/1.1.
+ *    http:// always uses HTTP/1.1, so no h2c upgrade dance.</li>
+ *    <li>One SSLContext, so one TLS session cache.  A new connection
+ *    to a server we have talked to before resumes the session
+ *    instead of doing a full handshake.  If there is an SSLContext
+ *    bean, that's the one, otherwise the JDK default.</li>
+ *    <li>Connect and read timeouts.</li>
+ *    <li>A cap on requests in flight, per route and in total.  See
+ *    ConnectionLimiter, which logs a warning when a call gives up
+ *    waiting.  The numbers are in ttl.mie.actuator.HttpClientPoolMetrics.</li>
+ * </ul>
+ * Properties, with their defaults:
+ * <pre>
+ *    http.client.max-total=100
+ *    http.client.max-per-route=20
+ *    http.client.acquire-timeout=PT1S
+ *    http.client.connect-timeout=PT2S
+ *    http.client.read-timeout=PT5S
+ *    http.client.http2=true
+ * </pre>
+ * It is @Primary, so it is what you get when you ask for a
+ * RestClientFactory.
+ */
+@Component
+@Primary
+public class PooledRestClientFactory extends RestClientFactory {
+
+   private static final Logger logger = LoggerFactory.getLogger(PooledRestClientFactory.class);
+
+   private final HttpClient http1Client;
+   private final HttpClient httpsClient;
+   private final ClientHttpRequestFactory requestFactory;
+   private final ConnectionLimiter connectionLimiter;
+
+   public PooledRestClientFactory(ObjectProvider<SSLContext> sslContext,
+                                  @Value("${http.client.max-total:100}") int maxTotal,
+                                  @Value("${http.client.max-per-route:20}") int maxPerRoute,
+                                  @Value("${http.client.acquire-timeout:PT1S}") Duration acquireTimeout,
+                                  @Value("${http.client.connect-timeout:PT2S}") Duration connectTimeout,
+                                  @Value("${http.client.read-timeout:PT5S}") Duration readTimeout,
+                                  @Value("${http.client.http2:true}") boolean http2) {
+      SSLContext context = sslContext.getIfAvailable();
+      this.http1Client = buildClient(HttpClient.Version.HTTP_1_1, connectTimeout, context);
+      this.httpsClient = http2 ? buildClient(HttpClient.Version.HTTP_2, connectTimeout, context) : http1Client;
+
+      var http1Factory = new JdkClientHttpRequestFactory(http1Client);
+      http1Factory.setReadTimeout(readTimeout);
+      var httpsFactory = new JdkClientHttpRequestFactory(httpsClient);
+      httpsFactory.setReadTimeout(readTimeout);
+      this.requestFactory = (uri, method) -> ("https".equalsIgnoreCase(uri.getScheme()) ? httpsFactory : http1Factory)
+            .createRequest(uri, method);
+
+      this.connectionLimiter = new ConnectionLimiter(maxTotal, maxPerRoute, acquireTimeout);
+
+      logger.info("Pooled http clients: max {} per route, {} total, connect timeout {}, read timeout {}, http2 {}",
+            maxPerRoute, maxTotal, connectTimeout, readTimeout, http2);
+   }
+
+   private static HttpClient buildClient(HttpClient.Version version, Duration connectTimeout, SSLContext sslContext) {
+      var builder = HttpClient.newBuilder()
+            .version(version)
+            .connectTimeout(connectTimeout)
+            .followRedirects(HttpClient.Redirect.NORMAL);
+      if (sslContext != null) {
+         builder.sslContext(sslContext);
+      }
+      return builder.build();
+   }
+
+   @PreDestroy
+   public void close() {
+      http1Client.close();
+      if (httpsClient != http1Client) {
+         httpsClient.close();
+      }
+   }
+
+   /**
+    * A RestClient.Builder on the shared pool, for anybody who wants to
+    * set up their own headers etc.
+    */
+   public RestClient.Builder pooledBuilder(String baseUrl) {
+      return RestClient.builder()
+            .requestFactory(requestFactory)
+            .requestInterceptor(connectionLimiter)
+            .baseUrl(baseUrl)
+            .defaultHeader("Accept", "application/json")
+            .defaultHeader("Content-Type", "application/json");
+   }
+
+   @Override
+   public RestClient noAuth(String baseUrl) {
+      return pooledBuilder(baseUrl).build();
+   }
+
+   @Override
+   public RestClient basicAuth(String baseUrl, String user, String pw) {
+      return pooledBuilder(baseUrl)
+            .defaultHeader("Authorization", basicAuthHeader(user, pw))
+            .build();
+   }
+
+   private static String basicAuthHeader(String user, String pw) {
+      return "basic " + Base64.getEncoder().encodeToString((user + ":" + pw).getBytes());
+   }
+
+   public ConnectionLimiter getConnectionLimiter() {
+      return connectionLimiter;
+   }
+}
@@ -0,0 +1,127 @@
+package ttl.mie.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a blocking remote lookup for every entity in a list at the
+ * same time, each on its own virtual thread.  E.g. the price of each
+ * track in a listing.  The listing then takes about as long as the
+ * slowest lookup, instead of the sum of all of them.
+ * <p>
+ * Make one of these per downstream service and share it:
+ * <ul>
+ *    <li>maxConcurrent permits are shared by all callers, so big
+ *    listings, or lots of them at once, can't swamp the downstream.</li>
+ *    <li>deadline is how long a whole enrich call gets.  Lookups
+ *    still running after that are cancelled.</li>
+ * </ul>
+ * A lookup that fails or runs out of time gives null to the apply
+ * function, so the entity goes out without, say, a price, instead of
+ * the whole request failing.  apply is called on the caller's thread,
+ * in list order, so it is safe to touch JPA entities there.
+ */
+public class FanOutEnricher implements AutoCloseable {
+
+   private static final Logger logger = LoggerFactory.getLogger(FanOutEnricher.class);
+
+   /**
+    * How an enrich call went.  failed lookups threw, timedOut ones
+    * didn't finish before the deadline.
+    */
+   public record Outcome(int total, int failed, int timedOut) {
+      public boolean isComplete() {
+         return failed == 0 && timedOut == 0;
+      }
+   }
+
+   private final String name;
+   private final Semaphore permits;
+   private final Duration deadline;
+   private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+   public FanOutEnricher(String name, int maxConcurrent, Duration deadline) {
+      this.name = name;
+      this.permits = new Semaphore(maxConcurrent);
+      this.deadline = deadline;
+   }
+
+   public <T, R> Outcome enrich(List<T> items,
+                                Function<? super T, ? extends R> lookup,
+                                BiConsumer<? super T, ? super R> apply) {
+      if (items.isEmpty()) {
+         return new Outcome(0, 0, 0);
+      }
+      long deadlineAt = System.nanoTime() + deadline.toNanos();
+
+      List<Future<R>> futures = new ArrayList<>(items.size());
+      for (T item : items) {
+         futures.add(executor.submit(() -> {
+            permits.acquire();
+            try {
+               return lookup.apply(item);
+            } finally {
+               permits.release();
+            }
+         }));
+      }
+
+      int failed = 0;
+      int timedOut = 0;
+      boolean interrupted = false;
+      for (int i = 0; i < items.size(); i++) {
+         var future = futures.get(i);
+         R result = null;
+         if (interrupted) {
+            future.cancel(true);
+            timedOut++;
+         } else {
+            try {
+               //Once the deadline is past this is a timeout of 0, which
+               //still picks up anything that has finished.
+               result = future.get(Math.max(0, deadlineAt - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException | CancellationException e) {
+               future.cancel(true);
+               timedOut++;
+            } catch (ExecutionException e) {
+               failed++;
+               logger.debug("{}: lookup for {} failed", name, items.get(i), e.getCause());
+            } catch (InterruptedException e) {
+               //Give up on everything that's left, and pass the interrupt on at the end
+               interrupted = true;
+               future.cancel(true);
+               timedOut++;
+            }
+         }
+         apply.accept(items.get(i), result);
+      }
+      if (interrupted) {
+         Thread.currentThread().interrupt();
+      }
+
+      var outcome = new Outcome(items.size(), failed, timedOut);
+      if (!outcome.isComplete()) {
+         logger.warn("{}: {} of {} lookups failed and {} timed out after {}", name,
+               failed, items.size(), timedOut, deadline);
+      }
+      return outcome;
+   }
+
+   @Override
+   public void close() {
+      executor.shutdownNow();
+   }
+}
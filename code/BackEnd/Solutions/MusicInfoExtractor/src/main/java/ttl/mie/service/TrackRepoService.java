@@ -1,5 +1,7 @@
 package ttl.mie.service;
 
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,10 +26,20 @@ public class TrackRepoService {
 
    private String getPriceUrl;
 
+   private final FanOutEnricher priceEnricher;
+
    public TrackRepoService(@Value("${pricing.service.url}") String priceBaseUrl,
-                           RestClientFactory restClientFactory) {
+                           RestClientFactory restClientFactory,
+                           @Value("${pricing.fanout.max-concurrent:16}") int maxConcurrent,
+                           @Value("${pricing.fanout.deadline:PT3S}") Duration deadline) {
       this.getPriceUrl = priceBaseUrl + "/{trackId}";
       this.restPriceClient = restClientFactory.noAuth(getPriceUrl);
+      this.priceEnricher = new FanOutEnricher("pricing", maxConcurrent, deadline);
+   }
+
+   @PreDestroy
+   public void close() {
+      priceEnricher.close();
    }
 
    public TrackEntity addTrack(TrackEntity track) {
@@ -59,7 +71,12 @@ public class TrackRepoService {
 
    public List<TrackEntity> getAllTracks() {
       List<TrackEntity> tracks = trackRepo.findAll();
-      tracks.forEach(this::addPriceToTrack);
+      //Price the tracks all at once, not one after another
+      priceEnricher.enrich(tracks, track -> fetchPrice(track.getTrackId()), (track, price) -> {
+         if (price != null) {
+            track.setPrice(price);
+         }
+      });
 
       return tracks;
    }
@@ -69,21 +86,25 @@ public class TrackRepoService {
 //   }
 
    private TrackEntity addPriceToTrack(TrackEntity track) {
+      String price = fetchPrice(track.getTrackId());
+      if (price != null) {
+         track.setPrice(price);
+      }
+      return track;
+   }
 
+   /**
+    * @return the price, or null if the pricing service doesn't have one.
+    */
+   private String fetchPrice(int trackId) {
       ResponseEntity<String> response = restPriceClient.get()
-            .uri(getPriceUrl, track.getTrackId())
+            .uri(getPriceUrl, trackId)
             .retrieve()
             .onStatus(code -> code == HttpStatus.NOT_FOUND, (req, resp) -> {
                //Do Nothing
             })
             .toEntity(String.class);
-      if (response.getStatusCode() == HttpStatus.OK) {
-         String price = response.getBody();
-         if (price != null) {
-            track.setPrice(price);
-         }
-      }
-      return track;
+      return response.getStatusCode() == HttpStatus.OK ? response.getBody() : null;
    }
 
 }
@@ -0,0 +1,245 @@
+package ttl.mie.extractor;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ttl.mie.domain.track.dto.TrackDTO;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the DiscogRestHandler against a little stub of the Discogs api.
+ * Each album is a master with one artist, so each lookup is 4 calls:
+ * search, master, artist for the members flow, and artist again.
+ */
+public class DiscogsLookupSchedulerTest {
+
+   private static final List<String> ALBUMS = List.of("Kind of Blue", "Blue Train", "Speak No Evil");
+
+   @TempDir
+   Path dir;
+
+   private HttpServer server;
+   private final List<String> searches = new CopyOnWriteArrayList<>();
+   private final AtomicInteger calls = new AtomicInteger();
+   private final AtomicInteger tooManyRequests = new AtomicInteger();
+   private volatile String limitHeader = "6000";
+   private volatile String remainingHeader = "5999";
+   private volatile int failWith;
+   private volatile CountDownLatch gate;
+
+   @BeforeEach
+   public void startStub() throws IOException {
+      server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+      server.createContext("/", this::handle);
+      server.start();
+   }
+
+   @AfterEach
+   public void stopStub() {
+      server.stop(0);
+   }
+
+   private void handle(HttpExchange exchange) throws IOException {
+      calls.incrementAndGet();
+      var gate = this.gate;
+      if (gate != null) {
+         try {
+            gate.await();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      }
+      String path = exchange.getRequestURI().getPath();
+      exchange.getResponseHeaders().add(DiscogsRateLimiter.LIMIT_HEADER, limitHeader);
+      exchange.getResponseHeaders().add(DiscogsRateLimiter.REMAINING_HEADER, remainingHeader);
+      if (tooManyRequests.getAndDecrement() > 0) {
+         exchange.getResponseHeaders().add("Retry-After", "0");
+         exchange.sendResponseHeaders(429, -1);
+         exchange.close();
+         return;
+      }
+
+      if (failWith > 0) {
+         exchange.sendResponseHeaders(failWith, -1);
+         exchange.close();
+         return;
+      }
+
+      String body;
+      if (path.equals("/database/search")) {
+         String query = exchange.getRequestURI().getQuery();
+         String album = query.substring(query.indexOf("release_title=") + "release_title=".length());
+         searches.add(album);
+         int id = ALBUMS.indexOf(album) + 1;
+         body = STR."""
+               {"results": [{"master_id": "\{id}", "id": "\{id}", "type": "master"}]}""";
+      } else if (path.startsWith("/masters/")) {
+         String id = path.substring("/masters/".length());
+         body = STR."""
+               {"images": [{"uri": "http://images/\{id}.jpg"}], "genres": ["Jazz"], "styles": ["Hard Bop"],
+                "year": "1959", "artists": [{"id": "\{id}"}]}""";
+      } else if (path.startsWith("/artists/")) {
+         String id = path.substring("/artists/".length());
+         body = STR."""
+               {"id": "\{id}", "name": "Artist \{id}", "realname": "Real \{id}", "profile": "", "urls": []}""";
+      } else {
+         exchange.sendResponseHeaders(404, -1);
+         exchange.close();
+         return;
+      }
+      byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, bytes.length);
+      try (var out = exchange.getResponseBody()) {
+         out.write(bytes);
+      }
+   }
+
+   private DiscogRestHandler handler(int requestsPerMinute, int threads) {
+      return new DiscogRestHandler("Discogs token=test",
+            "http://localhost:" + server.getAddress().getPort(),
+            dir.resolve("discogsCache.json"), requestsPerMinute, threads);
+   }
+
+   /**
+    * 15 tracks from the first album, 10 from the second and 5 from
+    * the third, spelled a little differently now and then.
+    */
+   private static List<TrackDTO> tracks() {
+      List<TrackDTO> tracks = new ArrayList<>();
+      int[] counts = {15, 10, 5};
+      for (int a = 0; a < ALBUMS.size(); a++) {
+         for (int i = 0; i < counts[a]; i++) {
+            String group = i % 2 == 0 ? "Some Group" : " some  group ";
+            tracks.add(TrackDTO.builder()
+                  .title("Track " + i)
+                  .group(group)
+                  .artist(group)
+                  .album(ALBUMS.get(a))
+                  .build());
+         }
+      }
+      //Least popular first, to see that the order is ours
+      return new ArrayList<>(tracks.reversed());
+   }
+
+   @Test
+   public void testEachKeyIsFetchedOnceAcrossRuns() {
+      var tracks = tracks();
+      try (var handler = handler(6000, 4)) {
+         handler.getArtistInfoFromDiscogs(tracks);
+      }
+      assertEquals(3, searches.size());
+      assertEquals(12, calls.get());
+      assertTrue(tracks.stream().allMatch(t -> t.imageUrl().startsWith("http://images/")));
+      assertTrue(tracks.stream().allMatch(t -> t.artists().getFirst().name().startsWith("Artist ")));
+
+      //A new handler, as in the next run, gets it all from the cache file
+      var again = tracks();
+      try (var handler = handler(6000, 4)) {
+         handler.getArtistInfoFromDiscogs(again);
+      }
+      assertEquals(12, calls.get());
+      assertEquals(tracks.stream().map(TrackDTO::imageUrl).toList(),
+            again.stream().map(TrackDTO::imageUrl).toList());
+   }
+
+   @Test
+   public void testMostTracksAreLookedUpFirst() {
+      try (var handler = handler(6000, 1)) {
+         handler.getArtistInfoFromDiscogs(tracks());
+      }
+      assertEquals(ALBUMS, searches);
+   }
+
+   @Test
+   public void testRemainingHeaderSlowsUsDown() {
+      //600 a minute is one every 100ms, once Discogs says we have none left
+      limitHeader = "600";
+      remainingHeader = "0";
+      long start = System.nanoTime();
+      try (var handler = handler(600, 4)) {
+         handler.lookup("Some Group#Kind of Blue");
+      }
+      long millis = (System.nanoTime() - start) / 1_000_000;
+      assertTrue(millis >= 250, "4 calls with none remaining took " + millis + "ms");
+   }
+
+   @Test
+   public void testTooManyRequestsIsTriedAgain() {
+      tooManyRequests.set(2);
+      try (var handler = handler(6000, 1)) {
+         var results = handler.lookup("Some Group#Blue Train");
+         assertEquals("Artist 2", results.artists().getFirst().name());
+      }
+      assertEquals(6, calls.get());
+   }
+
+   @Test
+   public void testServerErrorIsNotCached() {
+      assertFailureIsNotCached(500);
+   }
+
+   @Test
+   public void testUnauthorizedIsNotCached() {
+      assertFailureIsNotCached(401);
+   }
+
+   private void assertFailureIsNotCached(int status) {
+      failWith = status;
+      try (var handler = handler(6000, 1)) {
+         assertThrows(RuntimeException.class, () -> handler.lookup("Some Group#Kind of Blue"));
+         assertEquals(1, calls.get());
+
+         //Had the failure been cached, this would come from there, empty
+         failWith = 0;
+         var results = handler.lookup("Some Group#Kind of Blue");
+         assertEquals("Artist 1", results.artists().getFirst().name());
+      }
+      assertEquals(5, calls.get());
+   }
+
+   @Test
+   public void testCloseFailsLookupsThatHaveNotStarted() throws Exception {
+      gate = new CountDownLatch(1);
+      var handler = handler(6000, 1);
+      //The one thread is stuck on the first, so the second waits in the queue
+      var first = CompletableFuture.supplyAsync(() -> handler.lookup("Some Group#Kind of Blue"));
+      while (calls.get() == 0) {
+         Thread.sleep(10);
+      }
+      var second = CompletableFuture.supplyAsync(() -> handler.lookup("Some Group#Blue Train"));
+      Thread.sleep(100);
+
+      handler.close();
+      gate.countDown();
+
+      var e = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+      assertTrue(e.getCause() instanceof IllegalStateException, e.getCause().toString());
+      //And lookups after close fail too, rather than wait
+      assertThrows(RuntimeException.class, () -> handler.lookup("Some Group#Speak No Evil"));
+      try {
+         first.get(5, TimeUnit.SECONDS);
+      } catch (ExecutionException ignored) {
+         //Interrupted by close, or done; either way it didn't hang
+      }
+   }
+}
@@ -0,0 +1,92 @@
+package ttl.mie.extractor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ttl.mie.domain.track.dto.TrackDTO;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs against a made up library of FOLDERS folders of
+ * TRACKS_PER_FOLDER tracks.  compareWithSearchTrackStream prints how
+ * long the walk takes serially and with the scanner.
+ */
+public class ParallelTrackScannerTest {
+
+   private static final int FOLDERS = 20;
+   private static final int TRACKS_PER_FOLDER = 50;
+   private static final int TRACKS = FOLDERS * TRACKS_PER_FOLDER;
+
+   @TempDir
+   static Path library;
+
+   private final AudioInfoExtractor extractor = new AudioInfoExtractor();
+
+   @BeforeAll
+   public static void makeLibrary() throws Exception {
+      SyntheticTracks.writeLibrary(library, FOLDERS, TRACKS_PER_FOLDER);
+   }
+
+   private Path tracks() {
+      return library.resolve("tracks");
+   }
+
+   @Test
+   public void testFindsEveryMatchingTrack() {
+      try (var scanner = new ParallelTrackScanner(extractor, 8, 100, true);
+           var tracks = scanner.scan(tracks(), Integer.MAX_VALUE, extractor.allPass(null))) {
+         List<TrackDTO> found = tracks.toList();
+         assertEquals(TRACKS, found.size());
+         assertEquals("Synthetic Track", found.getFirst().title());
+      }
+   }
+
+   @Test
+   public void testStopsAtTheLimit() {
+      try (var scanner = new ParallelTrackScanner(extractor, 8, 100, false);
+           var tracks = scanner.scan(tracks(), 10, extractor.allPass(null))) {
+         assertEquals(10, tracks.count());
+      }
+   }
+
+   @Test
+   public void testLimitCountsMatchesNotFiles() throws IOException {
+      //The old parallel search limited the files, and then filtered them
+      var found = extractor.searchTrackStreamPar(tracks().toFile(), 5,
+            af -> af.getFile().getName().startsWith("track1"));
+      assertEquals(5, found.size());
+   }
+
+   @Test
+   public void testMissingFolderFails() {
+      assertThrows(IOException.class, () -> extractor.searchTrackStreamPar(
+            library.resolve("nothing here").toFile(), 10, extractor.allPass(null)));
+   }
+
+   @Test
+   public void compareWithSearchTrackStream() throws IOException {
+      //Once each to warm up
+      extractor.searchTrackStream(tracks().toFile(), extractor.allPass(null));
+      extractor.searchTrackStreamPar(tracks().toFile(), Integer.MAX_VALUE, extractor.allPass(null));
+
+      long start = System.nanoTime();
+      int serial = extractor.searchTrackStream(tracks().toFile(), extractor.allPass(null)).size();
+      long serialNanos = System.nanoTime() - start;
+
+      for (int parallelism : new int[]{2, 4, 8, 16}) {
+         start = System.nanoTime();
+         int parallel = extractor.searchTrackStreamPar(tracks().toFile(), Integer.MAX_VALUE,
+               extractor.allPass(null), parallelism).size();
+         long parallelNanos = System.nanoTime() - start;
+
+         assertEquals(serial, parallel);
+         System.out.printf("%d tracks, serial: %dms, parallelism %d: %dms%n", serial,
+               serialNanos / 1_000_000, parallelism, parallelNanos / 1_000_000);
+      }
+   }
+}
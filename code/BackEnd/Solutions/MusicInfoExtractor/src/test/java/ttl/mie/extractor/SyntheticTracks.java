@@ -0,0 +1,61 @@
+package ttl.mie.extractor;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.jaudiotagger.audio.AudioFile;
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.Tag;
+
+/**
+ * Made up music libraries for the extractor tests: folders of silent,
+ * tagged mp3s, with some files that aren't music mixed in.
+ */
+public class SyntheticTracks {
+
+   /**
+    * A tagged mp3 of frames MPEG-1 Layer 3 frames, 128kbps at 44.1kHz,
+    * with nothing in them.  Enough for the header to be read, at about
+    * 26ms a frame.
+    */
+   public static void writeTrack(Path path, String title, int frames) throws Exception {
+      byte[] frame = new byte[417];
+      frame[0] = (byte) 0xFF;
+      frame[1] = (byte) 0xFB;
+      frame[2] = (byte) 0x90;
+      frame[3] = (byte) 0x64;
+      try (OutputStream out = Files.newOutputStream(path)) {
+         for (int i = 0; i < frames; i++) {
+            out.write(frame);
+         }
+      }
+      AudioFile audioFile = AudioFileIO.read(path.toFile());
+      Tag tag = audioFile.getTagOrCreateAndSetDefault();
+      tag.setField(FieldKey.TITLE, title);
+      tag.setField(FieldKey.ARTIST, "Synthetic Artist");
+      tag.setField(FieldKey.ALBUM, "Synthetic Album");
+      audioFile.commit();
+   }
+
+   /**
+    * folders folders of tracksPerFolder copies of one track, under root.
+    */
+   public static Path writeLibrary(Path root, int folders, int tracksPerFolder) throws Exception {
+      Path template = root.resolve("template.mp3");
+      writeTrack(template, "Synthetic Track", 200);
+
+      Path tracks = Files.createDirectory(root.resolve("tracks"));
+      for (int i = 0; i < folders; i++) {
+         Path folder = Files.createDirectory(tracks.resolve("album" + i));
+         for (int j = 0; j < tracksPerFolder; j++) {
+            Files.copy(template, folder.resolve("track" + j + ".mp3"));
+         }
+         Files.writeString(folder.resolve("cover.txt"), "not music");
+      }
+      return tracks;
+   }
+
+   private SyntheticTracks() {
+   }
+}
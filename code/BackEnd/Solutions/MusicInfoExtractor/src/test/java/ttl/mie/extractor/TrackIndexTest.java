@@ -0,0 +1,132 @@
+package ttl.mie.extractor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TrackIndexTest {
+
+   private static final int FOLDERS = 10;
+   private static final int TRACKS_PER_FOLDER = 50;
+   private static final int TRACKS = FOLDERS * TRACKS_PER_FOLDER;
+
+   @TempDir
+   Path library;
+
+   private Path tracks;
+   private Path indexFile;
+
+   private final AudioInfoExtractor extractor = new AudioInfoExtractor();
+
+   @BeforeEach
+   public void makeLibrary() throws Exception {
+      tracks = SyntheticTracks.writeLibrary(library, FOLDERS, TRACKS_PER_FOLDER);
+      indexFile = library.resolve("index/tracks.json");
+   }
+
+   @Test
+   public void testRescanOnlyReadsWhatChanged() throws Exception {
+      long start = System.nanoTime();
+      List<TrackChange> changes = extractor.openIndex(indexFile).rescan(tracks);
+      long fullNanos = System.nanoTime() - start;
+      assertEquals(TRACKS, changes.size());
+      assertTrue(changes.stream().allMatch(c -> c.type() == TrackChange.Type.ADDED));
+
+      //A new index, from the file
+      TrackIndex index = extractor.openIndex(indexFile);
+      assertEquals(TRACKS, index.tracks().size());
+      start = System.nanoTime();
+      assertEquals(0, index.rescan(tracks).size());
+      long rescanNanos = System.nanoTime() - start;
+
+      System.out.printf("%d tracks, first scan: %dms, rescan: %dms%n", TRACKS,
+            fullNanos / 1_000_000, rescanNanos / 1_000_000);
+   }
+
+   @Test
+   public void testChangedTouchedAndDeletedFiles() throws Exception {
+      TrackIndex index = extractor.openIndex(indexFile);
+      index.rescan(tracks);
+
+      Path changed = tracks.resolve("album0/track0.mp3");
+      SyntheticTracks.writeTrack(changed, "Changed Track", 100);
+      Path touched = tracks.resolve("album0/track1.mp3");
+      Files.setLastModifiedTime(touched, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+      Path deleted = tracks.resolve("album1/track0.mp3");
+      Files.delete(deleted);
+      Path added = tracks.resolve("album1/new.mp3");
+      Files.copy(tracks.resolve("album2/track0.mp3"), added);
+
+      List<TrackChange> changes = index.rescan(tracks);
+
+      assertEquals(3, changes.size());
+      assertEquals(deleted, only(changes, TrackChange.Type.DELETED).path());
+      assertEquals(added, only(changes, TrackChange.Type.ADDED).path());
+      assertEquals("Changed Track", only(changes, TrackChange.Type.MODIFIED).track().title());
+      assertEquals(TRACKS, index.tracks().size());
+   }
+
+   @Test
+   public void testTouchedFileIsSaved() throws Exception {
+      TrackIndex index = extractor.openIndex(indexFile);
+      index.rescan(tracks);
+      assertFalse(index.saveIfDirty());
+
+      Path touched = tracks.resolve("album0/track1.mp3");
+      Files.setLastModifiedTime(touched, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+
+      //Not a change, but the new time has to be saved, or the next
+      //run hashes the file again
+      assertEquals(0, index.update(touched).size());
+      assertTrue(index.saveIfDirty());
+      assertFalse(index.saveIfDirty());
+   }
+
+   private static TrackChange only(List<TrackChange> changes, TrackChange.Type type) {
+      var ofType = changes.stream().filter(c -> c.type() == type).toList();
+      assertEquals(1, ofType.size());
+      return ofType.getFirst();
+   }
+
+   @Test
+   public void testWatcherPushesChanges() throws Exception {
+      TrackIndex index = extractor.openIndex(indexFile);
+      index.rescan(tracks);
+
+      BlockingQueue<TrackChange> changes = new LinkedBlockingQueue<>();
+      try (var watcher = new TrackLibraryWatcher(index, tracks, Duration.ofMillis(200), changes::add)) {
+         Path newFolder = Files.createDirectory(tracks.resolve("new album"));
+         Path added = newFolder.resolve("new.mp3");
+         Files.copy(tracks.resolve("album0/track0.mp3"), added);
+
+         TrackChange change = changes.poll(10, TimeUnit.SECONDS);
+         assertNotNull(change);
+         assertEquals(TrackChange.Type.ADDED, change.type());
+         assertEquals(added, change.path());
+
+         Files.write(added, new byte[]{0}, StandardOpenOption.APPEND);
+         change = changes.poll(10, TimeUnit.SECONDS);
+         assertNotNull(change);
+         assertEquals(TrackChange.Type.MODIFIED, change.type());
+
+         Files.delete(added);
+         change = changes.poll(10, TimeUnit.SECONDS);
+         assertNotNull(change);
+         assertEquals(TrackChange.Type.DELETED, change.type());
+      }
+   }
+}
@@ -1,11 +1,18 @@
 package ttl.mie.dao.repository.track;
 
 import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
@@ -28,9 +35,59 @@ public interface TrackRepo extends JpaRepository<TrackEntity, Integer>,
    @Override
    List<TrackEntity> findAll();
 
-   @Query("select distinct t from TrackEntity t left join fetch t.artists a order by t.trackId")
+   /**
+    * Paging a query with a join fetch makes Hibernate load every row
+    * and do the paging in memory (HHH90003004).  So we page in two
+    * steps.  First the database pages through just the ids.  Then
+    * one query fetches the tracks with those ids, with their artists.
+    * Page N costs the same however big the table gets.
+    */
    @Override
-   Page<TrackEntity> findAll(Pageable page);
+   default Page<TrackEntity> findAll(Pageable page) {
+      if (page.isUnpaged()) {
+         return new PageImpl<>(findAll());
+      }
+      Pageable byId = page.getSort().isSorted() ? page
+            : PageRequest.of(page.getPageNumber(), page.getPageSize(), Sort.by("trackId"));
+      Page<Integer> ids = findTrackIds(byId);
+      return new PageImpl<>(findTracksWithArtistsInOrder(ids.getContent()), byId, ids.getTotalElements());
+   }
+
+   /**
+    * Keyset version of the above.  Up to pageSize tracks with ids
+    * greater than afterTrackId, in trackId order.  For the next page,
+    * pass in the last trackId from this one.  No count query, and no
+    * OFFSET for the database to walk through.
+    */
+   default List<TrackEntity> findPageAfter(int afterTrackId, int pageSize) {
+      return findTracksWithArtistsInOrder(findTrackIdsAfter(afterTrackId, PageRequest.ofSize(pageSize)));
+   }
+
+   @Query(value = "select t.trackId from TrackEntity t",
+         countQuery = "select count(t) from TrackEntity t")
+   Page<Integer> findTrackIds(Pageable page);
+
+   @Query("select t.trackId from TrackEntity t where t.trackId > :afterTrackId order by t.trackId")
+   List<Integer> findTrackIdsAfter(@Param("afterTrackId") int afterTrackId, Pageable page);
+
+   @Query("select distinct t from TrackEntity t left join fetch t.artists a where t.trackId in :ids")
+   List<TrackEntity> findTracksWithArtistsByIds(@Param("ids") Collection<Integer> ids);
+
+   /**
+    * The IN query comes back in whatever order the database likes,
+    * so put the tracks back in the order of the ids.
+    */
+   private List<TrackEntity> findTracksWithArtistsInOrder(List<Integer> ids) {
+      if (ids.isEmpty()) {
+         return List.of();
+      }
+      Map<Integer, TrackEntity> tracks = findTracksWithArtistsByIds(ids).stream()
+            .collect(Collectors.toMap(TrackEntity::getTrackId, Function.identity()));
+      return ids.stream()
+            .map(tracks::get)
+            .filter(Objects::nonNull)
+            .toList();
+   }
 
    List<TrackEntity> findByDurationLessThanEqual(Duration duration);
 }
@@ -30,13 +30,28 @@ public class DBUtils {
    @Autowired
    private TrackRepo trackRepo;
 
+   @Autowired
+   private TrackBatchWriter trackBatchWriter;
+
    public int addTracksToDB(List<TrackDTO> tracks) throws Exception {
       tracks.forEach(audioInfoDao::insert);
       convertToEntityAndAdd(tracks);
       return tracks.size();
    }
 
+   /**
+    * Adds the tracks, and any artists we don't have yet, with JDBC
+    * batches.  See TrackBatchWriter.
+    */
    public void convertToEntityAndAdd(List<TrackDTO> tracks) {
+      trackBatchWriter.insertAll(tracks);
+   }
+
+   /**
+    * The old way, a select per artist and a save per artist and track,
+    * through the repos.  Fine for a few tracks.
+    */
+   public void convertToEntityAndAddOneByOne(List<TrackDTO> tracks) {
       tracks.forEach(ati -> {
          List<ArtistDTO> artists = ati.artists();
          List<ArtistEntity> artistEntities = artists.stream()
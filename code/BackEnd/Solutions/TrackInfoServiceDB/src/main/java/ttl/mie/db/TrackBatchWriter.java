@@ -0,0 +1,238 @@
+package ttl.mie.db;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import javax.sql.DataSource;
+import org.apache.logging.log4j.util.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Component;
+import ttl.mie.domain.track.dto.ArtistDTO;
+import ttl.mie.domain.track.dto.TrackDTO;
+
+/**
+ * Inserts lots of TrackDTOs, with their artists, in JDBC batches.
+ * <p>
+ * Saving them one at a time through the repos costs a select per
+ * artist per track, an insert per new artist and per track, and
+ * leaves every entity in the persistence context until the end.
+ * Hibernate can't batch the inserts either, because the ids are
+ * IDENTITY.  Here the tracks go in chunks of batchSize.  For each
+ * chunk:
+ * <ul>
+ *    <li>The artists already in the database are found with one
+ *    "discogs_id in (...)" select.</li>
+ *    <li>The missing ones are inserted in one batch.  An artist with
+ *    no discogsId can't be matched, so it is always inserted.</li>
+ *    <li>The tracks are inserted in one batch, and then their
+ *    track_artist rows in another.</li>
+ * </ul>
+ * Nothing is kept between chunks except the ids of the artists seen
+ * so far, so memory doesn't grow with the size of the import.  There
+ * is no persistence context involved, so nothing to flush or clear.
+ * <p>
+ * The JdbcTemplate joins the caller's transaction.  An artist that
+ * somebody else inserts between our select and our insert breaks the
+ * discogs_id unique constraint, and the import fails.
+ * <p>
+ * Properties, with their defaults:
+ * <pre>
+ *    ttl.import.batch-size=1000
+ * </pre>
+ */
+@Component
+public class TrackBatchWriter {
+
+   private static final Logger logger = LoggerFactory.getLogger(TrackBatchWriter.class);
+
+   //Keeps the "in" lists under what databases will take
+   private static final int MAX_IN_LIST = 1000;
+
+   public record Result(int tracks, int artistsAdded, int artistsFound, long millis) {
+      public double tracksPerSecond() {
+         return millis > 0 ? tracks * 1000.0 / millis : tracks;
+      }
+   }
+
+   private final JdbcTemplate jdbcTemplate;
+   private final NamedParameterJdbcTemplate namedTemplate;
+   private final int batchSize;
+
+   public TrackBatchWriter(@Qualifier("dataSource") DataSource dataSource,
+                           @Value("${ttl.import.batch-size:1000}") int batchSize) {
+      this.jdbcTemplate = new JdbcTemplate(dataSource);
+      this.namedTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+      this.batchSize = batchSize;
+   }
+
+   public Result insertAll(List<TrackDTO> tracks) {
+      long start = System.currentTimeMillis();
+      Map<String, Integer> artistIds = new HashMap<>();
+      int[] counts = new int[2];
+
+      for (int from = 0; from < tracks.size(); from += batchSize) {
+         List<TrackDTO> chunk = tracks.subList(from, Math.min(from + batchSize, tracks.size()));
+         insertChunk(chunk, artistIds, counts);
+      }
+
+      var result = new Result(tracks.size(), counts[0], counts[1], System.currentTimeMillis() - start);
+      logger.info("Imported {} tracks in {} ms, {} tracks/sec, {} new artists, {} already there",
+            result.tracks(), result.millis(), String.format("%.0f", result.tracksPerSecond()),
+            result.artistsAdded(), result.artistsFound());
+      return result;
+   }
+
+   /**
+    * @param artistIds discogsId to artist_id, for everything seen so far.
+    * @param counts    artists added and found, added to.
+    */
+   private void insertChunk(List<TrackDTO> chunk, Map<String, Integer> artistIds, int[] counts) {
+      //Which discogsIds haven't we seen yet
+      Set<String> unseen = new LinkedHashSet<>();
+      for (TrackDTO track : chunk) {
+         for (ArtistDTO artist : artistsOf(track)) {
+            if (artist.discogsId() != null && !artistIds.containsKey(artist.discogsId())) {
+               unseen.add(artist.discogsId());
+            }
+         }
+      }
+      int before = artistIds.size();
+      findArtistIds(unseen, artistIds);
+      counts[1] += artistIds.size() - before;
+
+      //New artists: one per missing discogsId, and one per artist with none.
+      //Those are told apart by identity, since they have nothing else.
+      Map<String, ArtistDTO> missing = new LinkedHashMap<>();
+      Set<ArtistDTO> anonymous = Collections.newSetFromMap(new IdentityHashMap<>());
+      for (TrackDTO track : chunk) {
+         for (ArtistDTO artist : artistsOf(track)) {
+            if (artist.discogsId() == null) {
+               anonymous.add(artist);
+            } else if (!artistIds.containsKey(artist.discogsId())) {
+               missing.putIfAbsent(artist.discogsId(), artist);
+            }
+         }
+      }
+      List<ArtistDTO> newArtists = new ArrayList<>(missing.values());
+      newArtists.addAll(anonymous);
+      List<Integer> newIds = insert(
+            "insert into artist (discogs_id, name, real_name, url, profile) values (?, ?, ?, ?, ?)",
+            "artist_id", newArtists.size(),
+            (ps, i) -> {
+               var artist = newArtists.get(i);
+               ps.setString(1, artist.discogsId());
+               ps.setString(2, artist.name());
+               ps.setString(3, artist.realName());
+               ps.setString(4, !artist.urls().isEmpty() ? artist.urls().getFirst() : "");
+               ps.setString(5, artist.profile());
+            });
+      counts[0] += newIds.size();
+
+      Map<ArtistDTO, Integer> anonymousIds = new IdentityHashMap<>();
+      for (int i = 0; i < newArtists.size(); i++) {
+         var artist = newArtists.get(i);
+         if (artist.discogsId() != null) {
+            artistIds.put(artist.discogsId(), newIds.get(i));
+         } else {
+            anonymousIds.put(artist, newIds.get(i));
+         }
+      }
+
+      List<Integer> trackIds = insert(
+            "insert into track (title, album, band, imageUrl, duration, format, genre, release_year) "
+                  + "values (?, ?, ?, ?, ?, ?, ?, ?)",
+            "track_id", chunk.size(),
+            (ps, i) -> {
+               var track = chunk.get(i);
+               ps.setString(1, track.title());
+               ps.setString(2, Strings.isNotBlank(track.album()) ? track.album() : null);
+               ps.setString(3, track.group());
+               ps.setString(4, track.imageUrl());
+               ps.setObject(5, track.length() != null ? track.length().toNanos() : null, Types.BIGINT);
+               ps.setString(6, track.format() != null ? track.format().name() : null);
+               ps.setString(7, track.genre());
+               ps.setString(8, Strings.isNotBlank(track.year()) ? track.year() : null);
+            });
+
+      List<int[]> links = new ArrayList<>();
+      for (int i = 0; i < chunk.size(); i++) {
+         //The same artist twice on a track is one row
+         Set<Integer> ids = new LinkedHashSet<>();
+         for (ArtistDTO artist : artistsOf(chunk.get(i))) {
+            ids.add(artist.discogsId() != null ? artistIds.get(artist.discogsId()) : anonymousIds.get(artist));
+         }
+         for (int artistId : ids) {
+            links.add(new int[]{trackIds.get(i), artistId});
+         }
+      }
+      if (links.isEmpty()) {
+         return;
+      }
+      jdbcTemplate.batchUpdate("insert into track_artist (track_id, artist_id) values (?, ?)", links,
+            links.size(), (ps, link) -> {
+               ps.setInt(1, link[0]);
+               ps.setInt(2, link[1]);
+            });
+   }
+
+   private static List<ArtistDTO> artistsOf(TrackDTO track) {
+      return track.artists().stream().filter(Objects::nonNull).toList();
+   }
+
+   private void findArtistIds(Set<String> discogsIds, Map<String, Integer> artistIds) {
+      List<String> all = new ArrayList<>(discogsIds);
+      for (int from = 0; from < all.size(); from += MAX_IN_LIST) {
+         var ids = all.subList(from, Math.min(from + MAX_IN_LIST, all.size()));
+         namedTemplate.query("select artist_id, discogs_id from artist where discogs_id in (:ids)",
+               Map.of("ids", ids),
+               rs -> {
+                  artistIds.put(rs.getString("discogs_id"), rs.getInt("artist_id"));
+               });
+      }
+   }
+
+   private interface RowSetter {
+      void setValues(PreparedStatement ps, int i) throws SQLException;
+   }
+
+   private List<Integer> insert(String sql, String idColumn, int rows, RowSetter setter) {
+      if (rows == 0) {
+         return List.of();
+      }
+      var keys = new GeneratedKeyHolder();
+      jdbcTemplate.batchUpdate(con -> con.prepareStatement(sql, new String[]{idColumn}),
+            new BatchPreparedStatementSetter() {
+               @Override
+               public void setValues(PreparedStatement ps, int i) throws SQLException {
+                  setter.setValues(ps, i);
+               }
+
+               @Override
+               public int getBatchSize() {
+                  return rows;
+               }
+            }, keys);
+      //The only column is the id, but its name is in upper or lower
+      //case depending on the database.
+      return keys.getKeyList().stream()
+            .map(key -> ((Number) key.values().iterator().next()).intValue())
+            .toList();
+   }
+}
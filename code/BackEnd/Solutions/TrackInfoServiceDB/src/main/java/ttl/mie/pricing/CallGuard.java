@@ -0,0 +1,194 @@
+package ttl.mie.pricing;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a slow or dead downstream service from taking our request
+ * threads down with it.  Every call to the service goes through
+ * call(), which gives back the fallback instead of waiting when:
+ * <ul>
+ *    <li>The circuit is open.  failureThreshold calls in a row have
+ *    failed, so for openFor we don't even try.  After that one call
+ *    is let through as a probe (half open).  If it works the circuit
+ *    closes again, if not it stays open for another openFor.</li>
+ *    <li>The bulkhead is full.  At most maxConcurrent calls to the
+ *    service at once.  The rest don't queue, they fall back.</li>
+ *    <li>The call takes longer than timeout, or fails.</li>
+ * </ul>
+ * An idempotent call (a GET, or a read-only POST) that hasn't answered
+ * after hedgeAfter is sent again, if the bulkhead has room, and the
+ * first answer wins.  Same if the first try fails quickly.  That
+ * cuts off the slow tail without doubling the load.  A hedgeAfter of
+ * zero turns hedging off.
+ * <p>
+ * The calls run on virtual threads, so the caller waits at most
+ * timeout.  A call we stopped waiting for still runs to the end, and
+ * holds its bulkhead place until then, since it still holds a
+ * connection to the service.
+ */
+public class CallGuard implements AutoCloseable {
+
+   private static final Logger logger = LoggerFactory.getLogger(CallGuard.class);
+
+   public enum State {CLOSED, OPEN, HALF_OPEN}
+
+   private final String name;
+   private final int failureThreshold;
+   private final long openForNanos;
+   private final long hedgeAfterNanos;
+   private final long timeoutNanos;
+   private final int maxConcurrent;
+   private final Semaphore bulkhead;
+   private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+   private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+   private final AtomicInteger consecutiveFailures = new AtomicInteger();
+   private volatile long openedAt;
+
+   private final LongAdder fallbacks = new LongAdder();
+   private final LongAdder hedges = new LongAdder();
+
+   public CallGuard(String name, int failureThreshold, Duration openFor, int maxConcurrent,
+                    Duration hedgeAfter, Duration timeout) {
+      this.name = name;
+      this.failureThreshold = failureThreshold;
+      this.openForNanos = openFor.toNanos();
+      this.hedgeAfterNanos = hedgeAfter.toNanos();
+      this.timeoutNanos = timeout.toNanos();
+      this.maxConcurrent = maxConcurrent;
+      this.bulkhead = new Semaphore(maxConcurrent);
+   }
+
+   public <T> T call(Supplier<T> call, boolean idempotent, Supplier<T> fallback) {
+      if (!allowCall()) {
+         fallbacks.increment();
+         return fallback.get();
+      }
+      if (!bulkhead.tryAcquire()) {
+         //A probe that can't get in hasn't told us anything
+         state.compareAndSet(State.HALF_OPEN, State.OPEN);
+         logger.debug("{}: bulkhead full", name);
+         fallbacks.increment();
+         return fallback.get();
+      }
+
+      var attempts = new ExecutorCompletionService<T>(executor);
+      attempts.submit(() -> attempt(call));
+      int running = 1;
+      boolean hedged = !idempotent || hedgeAfterNanos == 0;
+      long start = System.nanoTime();
+      long deadline = start + timeoutNanos;
+      Throwable failure = null;
+      try {
+         while (running > 0) {
+            long waitUntil = hedged ? deadline : Math.min(start + hedgeAfterNanos, deadline);
+            Future<T> done = attempts.poll(waitUntil - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (done != null) {
+               running--;
+               try {
+                  T result = done.get();
+                  onSuccess();
+                  return result;
+               } catch (ExecutionException e) {
+                  failure = e.getCause();
+               }
+            } else if (hedged || System.nanoTime() >= deadline) {
+               failure = new TimeoutException(name + " did not answer in " + Duration.ofNanos(timeoutNanos));
+               break;
+            }
+            //Slow or failed, so try again if we may
+            if (!hedged) {
+               hedged = true;
+               if (bulkhead.tryAcquire()) {
+                  hedges.increment();
+                  attempts.submit(() -> attempt(call));
+                  running++;
+               }
+            }
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         failure = e;
+      }
+
+      onFailure(failure);
+      fallbacks.increment();
+      return fallback.get();
+   }
+
+   private <T> T attempt(Supplier<T> call) {
+      try {
+         return call.get();
+      } finally {
+         bulkhead.release();
+      }
+   }
+
+   /**
+    * Closed lets everything through.  Open lets nothing through until
+    * openFor is up, then lets the one caller that gets to flip it to
+    * half open through as the probe.
+    */
+   private boolean allowCall() {
+      return switch (state.get()) {
+         case CLOSED -> true;
+         case HALF_OPEN -> false;
+         case OPEN -> System.nanoTime() - openedAt >= openForNanos
+               && state.compareAndSet(State.OPEN, State.HALF_OPEN);
+      };
+   }
+
+   private void onSuccess() {
+      consecutiveFailures.set(0);
+      if (state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+         logger.info("{}: circuit closed", name);
+      }
+   }
+
+   private void onFailure(Throwable failure) {
+      int failures = consecutiveFailures.incrementAndGet();
+      if (state.get() == State.HALF_OPEN || (failures >= failureThreshold && state.get() == State.CLOSED)) {
+         openedAt = System.nanoTime();
+         state.set(State.OPEN);
+         logger.warn("{}: circuit open for {} after {} failures, last: {}", name,
+               Duration.ofNanos(openForNanos), failures, String.valueOf(failure));
+      } else {
+         logger.debug("{}: call failed: {}", name, String.valueOf(failure));
+      }
+   }
+
+   public State getState() {
+      return state.get();
+   }
+
+   public int getInFlight() {
+      return maxConcurrent - bulkhead.availablePermits();
+   }
+
+   public long getFallbackCount() {
+      return fallbacks.sum();
+   }
+
+   public long getHedgeCount() {
+      return hedges.sum();
+   }
+
+   @Override
+   public void close() {
+      executor.shutdownNow();
+   }
+}
@@ -1,19 +1,50 @@
 package ttl.mie.pricing;
 
+import jakarta.annotation.PreDestroy;
 import java.math.BigDecimal;
-import org.springframework.beans.factory.annotation.Autowired;
+import java.time.Duration;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import ttl.mie.domain.track.entity.TrackEntity;
+import ttl.mie.service.FanOutEnricher;
 
 @Component
 public class PricingUtils {
 
-   @Autowired
-   private PricingProvider pricingProvider;
+   private final PricingProvider pricingProvider;
+   private final FanOutEnricher priceEnricher;
+
+   public PricingUtils(PricingProvider pricingProvider,
+                       @Value("${pricing.fanout.max-concurrent:16}") int maxConcurrent,
+                       @Value("${pricing.fanout.deadline:PT3S}") Duration deadline) {
+      this.pricingProvider = pricingProvider;
+      this.priceEnricher = new FanOutEnricher("pricing", maxConcurrent, deadline);
+   }
 
    public TrackEntity addPriceToTrack(TrackEntity track) {
       BigDecimal price = pricingProvider.getPriceByTrackId(track.getTrackId());
       track.setPrice(price.toString());
       return track;
    }
+
+   /**
+    * Price a whole listing at once, instead of one track after another.
+    * Tracks whose price doesn't come back in time go out without one.
+    */
+   public List<TrackEntity> addPriceToTracks(List<TrackEntity> tracks) {
+      priceEnricher.enrich(tracks,
+            track -> pricingProvider.getPriceByTrackId(track.getTrackId()),
+            (track, price) -> {
+               if (price != null) {
+                  track.setPrice(price.toString());
+               }
+            });
+      return tracks;
+   }
+
+   @PreDestroy
+   public void close() {
+      priceEnricher.close();
+   }
 }
@@ -1,13 +1,26 @@
 package ttl.mie.pricing;
 
+import jakarta.annotation.PreDestroy;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClient;
+import ttl.mie.jconfig.client.RestClientFactory;
 
+/**
+ * Prices from the pricing service.  The calls go through a CallGuard,
+ * so when the service is slow or down a request waits at most
+ * pricing.guard.timeout, instead of until the socket gives up.  What
+ * we give back then is the last price we got for the track, or, if
+ * we never got one, a price from an InMemoryPricingProvider.
+ */
 @Component
 @Profile("networkpricing")
 public class RestClientPricingProvider implements PricingProvider {
@@ -16,18 +29,37 @@ public class RestClientPricingProvider implements PricingProvider {
 
    private RestClient restClient;
 
+   private final CallGuard callGuard;
+   private final PricingProvider fallbackProvider;
+
+   //One per track, so it doesn't need a bound.
+   private final Map<Integer, BigDecimal> lastKnownPrices = new ConcurrentHashMap<>();
+
    private String baseUrl = "http://localhost:10002/price";
-   public RestClientPricingProvider() {
-      this.restClient = RestClient.builder()
-            .baseUrl(baseUrl)
-            .defaultHeader("Accept", "application/json")
-            .defaultHeader("Content-Type", "application/json")
-            .build();
+   public RestClientPricingProvider(RestClientFactory restClientFactory,
+                                    @Value("${pricing.track.upper_limit}") double upperLimit,
+                                    @Value("${pricing.guard.failure-threshold:5}") int failureThreshold,
+                                    @Value("${pricing.guard.open-for:PT10S}") Duration openFor,
+                                    @Value("${pricing.guard.max-concurrent:20}") int maxConcurrent,
+                                    @Value("${pricing.guard.hedge-after:PT0.2S}") Duration hedgeAfter,
+                                    @Value("${pricing.guard.timeout:PT1S}") Duration timeout) {
+      //Pooled, kept alive connections, shared with the other clients
+      this.restClient = restClientFactory.noAuth(baseUrl);
+      this.callGuard = new CallGuard("pricing-service", failureThreshold, openFor, maxConcurrent, hedgeAfter, timeout);
+      this.fallbackProvider = new InMemoryPricingProvider(upperLimit);
+   }
+
+   @PreDestroy
+   public void close() {
+      callGuard.close();
    }
 
    @Override
    public BigDecimal getPriceByTrackId(int trackId) {
-      var result = getRatingFromService(trackId);
+      var result = callGuard.call(() -> getRatingFromService(trackId), true, () -> {
+         var lastKnown = lastKnownPrices.get(trackId);
+         return lastKnown != null ? lastKnown : fallbackProvider.getPriceByTrackId(trackId);
+      });
       return result;
    }
 
@@ -39,6 +71,9 @@ public class RestClientPricingProvider implements PricingProvider {
 
       if(response.getStatusCode() == HttpStatus.OK) {
          var rating = response.getBody();
+         if (rating != null) {
+            lastKnownPrices.put(id, rating);
+         }
          return rating;
       } {
          logger.warn("Bad Status Returned from call to pricing service at: {}, code: {}",
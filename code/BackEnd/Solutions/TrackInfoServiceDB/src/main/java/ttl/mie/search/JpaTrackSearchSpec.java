@@ -13,12 +13,22 @@ public class JpaTrackSearchSpec implements Specification<TrackEntity> {
    public final JpaSearchSpecSupport.SearchType searchType;
    public final Object value;
    public final String propName;
+   private final String[] propPath;
 
    public final static JpaTrackSearchSpec ALL = new JpaTrackSearchSpec(JpaSearchSpecSupport.SearchType.All, "", "");
 
    public JpaTrackSearchSpec(JpaSearchSpecSupport.SearchType searchType, String propName, Object value) {
+      this(searchType, propName, JpaSearchSpecSupport.SearchType.splitPath(propName), value);
+   }
+
+   /**
+    * For a compiled SearchPlan, which has already split propName.
+    */
+   public JpaTrackSearchSpec(JpaSearchSpecSupport.SearchType searchType, String propName, String[] propPath,
+                             Object value) {
       this.searchType = searchType;
       this.propName = propName;
+      this.propPath = propPath;
       this.value = value;
    }
 
@@ -26,6 +36,7 @@ public class JpaTrackSearchSpec implements Specification<TrackEntity> {
                              JpaSearchPredicateBuilder<TrackEntity> predFunction) {
       this.searchType = searchType;
       this.propName = propName;
+      this.propPath = JpaSearchSpecSupport.SearchType.splitPath(propName);
       this.value = value;
       this.predFunction = predFunction;
    }
@@ -58,6 +69,6 @@ public class JpaTrackSearchSpec implements Specification<TrackEntity> {
          }
          return predFunction.makeIt(criteriaBuilder, root, propName, value);
       }
-      return searchType.makeIt(criteriaBuilder, root, propName, value);
+      return searchType.makeIt(criteriaBuilder, root, propPath, value);
    }
 }
@@ -0,0 +1,147 @@
+package ttl.mie.search;
+
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+
+/**
+ * The continuation token for keyset paging.  It holds the sort, and
+ * the values of the sort keys for the last row of the page we just
+ * returned.  The next page starts right after that row.
+ * <p>
+ * To the client it is just an opaque string to send back as the
+ * "after" query parameter.  Inside, it is a base64 encoded query
+ * string, e.g. sort=name,-dob&k.name=java.lang.String:Joe&k.id=java.lang.Integer:42
+ * <p>
+ * Only a few simple types can be sort keys, so that decoding a
+ * token can't be used to load arbitrary classes.
+ *
+ * @param sort
+ * @param keys
+ */
+public record KeysetToken(Sort sort, Map<String, Object> keys) {
+
+   private static final Set<String> KEY_TYPES = Set.of(
+         "java.lang.String", "java.lang.Integer", "java.lang.Long", "java.lang.Double",
+         "java.math.BigDecimal", "java.time.LocalDate", "java.time.LocalDateTime", "java.time.Duration");
+
+   public static KeysetToken of(Sort sort, KeysetScrollPosition position) {
+      return new KeysetToken(sort, position.getKeys());
+   }
+
+   public KeysetScrollPosition position() {
+      return ScrollPosition.forward(keys);
+   }
+
+   /**
+    * "name,-dob" sorts by name ascending, then dob descending.
+    * Spring adds the id at the end to make the order unique.
+    */
+   public static Sort parseSort(String sortParam) {
+      if (sortParam == null || sortParam.isBlank()) {
+         return Sort.unsorted();
+      }
+      List<Sort.Order> orders = new ArrayList<>();
+      for (String prop : sortParam.split(",")) {
+         prop = prop.strip();
+         orders.add(prop.startsWith("-") ? Sort.Order.desc(prop.substring(1)) : Sort.Order.asc(prop));
+      }
+      return Sort.by(orders);
+   }
+
+   public static String formatSort(Sort sort) {
+      List<String> props = new ArrayList<>();
+      sort.forEach(order -> props.add((order.isDescending() ? "-" : "") + order.getProperty()));
+      return String.join(",", props);
+   }
+
+   public String encode() {
+      StringBuilder sb = new StringBuilder("sort=").append(encodePart(formatSort(sort)));
+      keys.forEach((name, value) ->
+            sb.append("&k.").append(encodePart(name)).append("=").append(encodePart(typeOf(value) + ":" + value)));
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+   }
+
+   public static KeysetToken decode(String token) {
+      try {
+         String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+         Sort sort = Sort.unsorted();
+         Map<String, Object> keys = new LinkedHashMap<>();
+         for (String part : raw.split("&")) {
+            int eq = part.indexOf('=');
+            String name = URLDecoder.decode(part.substring(0, eq), StandardCharsets.UTF_8);
+            String value = URLDecoder.decode(part.substring(eq + 1), StandardCharsets.UTF_8);
+            if (name.equals("sort")) {
+               sort = parseSort(value);
+            } else if (name.startsWith("k.")) {
+               int colon = value.indexOf(':');
+               keys.put(name.substring(2), parseKey(value.substring(0, colon), value.substring(colon + 1)));
+            }
+         }
+         if (keys.isEmpty()) {
+            throw new IllegalArgumentException("no keys");
+         }
+         return new KeysetToken(sort, keys);
+      } catch (RuntimeException e) {
+         throw new IllegalArgumentException("Bad continuation token: " + token, e);
+      }
+   }
+
+   private static String typeOf(Object value) {
+      if (value == null) {
+         return "null";
+      }
+      if (value instanceof Enum<?> e) {
+         return e.getDeclaringClass().getName();
+      }
+      String type = value.getClass().getName();
+      if (!KEY_TYPES.contains(type)) {
+         throw new IllegalArgumentException("Can't use a " + type + " as a keyset sort key");
+      }
+      return type;
+   }
+
+   @SuppressWarnings({"unchecked", "rawtypes"})
+   private static Object parseKey(String type, String value) {
+      return switch (type) {
+         case "null" -> null;
+         case "java.lang.String" -> value;
+         case "java.lang.Integer" -> Integer.valueOf(value);
+         case "java.lang.Long" -> Long.valueOf(value);
+         case "java.lang.Double" -> Double.valueOf(value);
+         case "java.math.BigDecimal" -> new BigDecimal(value);
+         case "java.time.LocalDate" -> LocalDate.parse(value);
+         case "java.time.LocalDateTime" -> LocalDateTime.parse(value);
+         case "java.time.Duration" -> Duration.parse(value);
+         default -> {
+            //Must be an enum.  Don't initialize anything that isn't.
+            try {
+               Class<?> cls = Class.forName(type, false, KeysetToken.class.getClassLoader());
+               if (!cls.isEnum()) {
+                  throw new IllegalArgumentException("Not a sort key type: " + type);
+               }
+               yield Enum.valueOf((Class) cls, value);
+            } catch (ClassNotFoundException e) {
+               throw new IllegalArgumentException("Not a sort key type: " + type, e);
+            }
+         }
+      };
+   }
+
+   private static String encodePart(String s) {
+      return URLEncoder.encode(s, StandardCharsets.UTF_8);
+   }
+}
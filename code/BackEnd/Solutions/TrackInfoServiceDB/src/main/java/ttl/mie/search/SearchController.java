@@ -98,10 +98,6 @@ public class SearchController {
    }
 
    public List<TrackEntity> postProcess(List<TrackEntity> result) {
-      result.forEach(track ->  {
-         pricingUtils.addPriceToTrack(track);
-      });
-
-      return result;
+      return pricingUtils.addPriceToTracks(result);
    }
 }
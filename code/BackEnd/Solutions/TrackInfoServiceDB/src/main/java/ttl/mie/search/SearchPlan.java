@@ -0,0 +1,216 @@
+package ttl.mie.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * A compiled search.  Everything about a search that depends only on
+ * which op.property keys are in the query string is worked out once
+ * here: the SearchType for each op symbol, the property path split on
+ * its dots, and the converter for the value.  JPASearchSpecService
+ * keeps plans in a SearchPlanCache, keyed by the Shape of the query,
+ * so for a repeated shape of query all that is left per request is to
+ * look up and convert the values.
+ * <p>
+ * The plan also holds the boolean expression that joins the terms,
+ * see SearchExpr.  The operands of every and are put in order of how
+ * selective they are likely to be: equality on an indexed property
+ * first, then ranges, then the like '%x%' searches that can't use an
+ * index.  The database would mostly work that out for itself, but the
+ * ordering costs nothing here and makes the generated where clause
+ * easy to read.
+ *
+ * @param <E_T>
+ */
+public class SearchPlan<E_T> {
+
+   /**
+    * What plans are cached by.  where is the boolean expression, if
+    * there was one, and combine is how to join the keys if there
+    * wasn't.
+    */
+   public record Shape(List<String> keys, String where, JpaSearchSpecSupport.Operation combine) {
+
+      public boolean isEmpty() {
+         return keys.isEmpty() && where == null;
+      }
+   }
+
+   record Term(String key, JpaSearchSpecSupport.SearchType searchType, String propName,
+               String[] propPath, Function<Object, Object> converter, int selectivity) {
+   }
+
+   private final List<Term> terms;
+   private final Map<String, Term> termsByKey;
+   private final SearchExpr expr;
+
+   private SearchPlan(List<Term> terms, SearchExpr expr) {
+      this.terms = terms;
+      this.termsByKey = new LinkedHashMap<>();
+      terms.forEach(term -> termsByKey.put(term.key(), term));
+      this.expr = order(expr);
+   }
+
+   /**
+    * Search keys look like op.property, e.g. e.title or C.artists.name.
+    * Same as matching ".\\..*", without the regex.
+    */
+   public static boolean isSearchKey(String key) {
+      return key.length() > 1 && key.charAt(1) == '.';
+   }
+
+   /**
+    * The search keys in the context, in order, plus the "where" and
+    * "combine" (and or or, default or) parameters.
+    */
+   public static Shape shapeOf(Map<String, Object> searchContext) {
+      List<String> keys = new ArrayList<>();
+      for (String key : searchContext.keySet()) {
+         if (isSearchKey(key)) {
+            keys.add(key);
+         }
+      }
+      Object where = searchContext.get("where");
+      Object combine = searchContext.get("combine");
+      return new Shape(keys,
+            where != null && !where.toString().isBlank() ? where.toString().strip() : null,
+            combine != null && combine.toString().equalsIgnoreCase("and") ?
+                  JpaSearchSpecSupport.Operation.And : JpaSearchSpecSupport.Operation.Or);
+   }
+
+   public static <E_T> SearchPlan<E_T> compile(Shape shape,
+                                               Function<String, Function<Object, Object>> converters,
+                                               Predicate<String> indexed) {
+      List<Term> terms = new ArrayList<>(shape.keys().size());
+      for (String key : shape.keys()) {
+         //op is the first character, property name starts at position 2
+         var opSymbol = key.substring(0, 1);
+         var searchType = JpaSearchSpecSupport.SearchType.getBySymbol(opSymbol);
+         if (searchType == null) {
+            throw new IllegalArgumentException("Unknown search operator '" + opSymbol + "' in " + key);
+         }
+         var propName = key.substring(2);
+         terms.add(new Term(key, searchType, propName, JpaSearchSpecSupport.SearchType.splitPath(propName),
+               converters.apply(key), selectivity(searchType, indexed.test(propName))));
+      }
+
+      SearchExpr expr = shape.where() != null ?
+            SearchExpr.parse(shape.where()) : SearchExpr.of(shape.combine(), shape.keys());
+      //Every key has to be both in the expression and in the query,
+      //otherwise somebody's search isn't doing what they think it is.
+      var used = expr.keys();
+      for (String key : used) {
+         if (!shape.keys().contains(key)) {
+            throw new IllegalArgumentException("No value for " + key + " in the search expression");
+         }
+      }
+      for (String key : shape.keys()) {
+         if (!used.contains(key)) {
+            throw new IllegalArgumentException(key + " is not in the search expression " + shape.where());
+         }
+      }
+      return new SearchPlan<>(List.copyOf(terms), expr);
+   }
+
+   /**
+    * Lower is more selective.  Indexed equality first, then
+    * ranges, then the negations and likes that read everything.
+    */
+   static int selectivity(JpaSearchSpecSupport.SearchType searchType, boolean indexed) {
+      return switch (searchType) {
+         case Equal -> indexed ? 0 : 1;
+         case Greater, GreaterEqual, Less, LessEqual -> indexed ? 2 : 3;
+         case Null -> 4;
+         case NotEqual, NotNull -> 5;
+         case ContainsString, ContainsStringIC -> 6;
+         case Size -> 7;
+         case All, Custom -> 8;
+      };
+   }
+
+   /**
+    * An and is as selective as its most selective operand, an or is
+    * only as selective as its least.
+    */
+   private int selectivity(SearchExpr e) {
+      return switch (e) {
+         case SearchExpr.Term t -> termsByKey.get(t.key()).selectivity();
+         case SearchExpr.And a -> a.operands().stream().mapToInt(this::selectivity).min().orElse(8);
+         case SearchExpr.Or o -> o.operands().stream().mapToInt(this::selectivity).max().orElse(8);
+         case SearchExpr.Not n -> Math.max(5, selectivity(n.operand()));
+      };
+   }
+
+   private SearchExpr order(SearchExpr e) {
+      return switch (e) {
+         case SearchExpr.Term t -> t;
+         case SearchExpr.And a -> new SearchExpr.And(a.operands().stream()
+               .map(this::order)
+               .sorted(Comparator.comparingInt(this::selectivity))
+               .toList());
+         case SearchExpr.Or o -> new SearchExpr.Or(o.operands().stream().map(this::order).toList());
+         case SearchExpr.Not n -> new SearchExpr.Not(order(n.operand()));
+      };
+   }
+
+   public SearchExpr getExpr() {
+      return expr;
+   }
+
+   /**
+    * Make the Specification for the whole expression, with this
+    * request's values.
+    */
+   public Specification<E_T> bind(Map<String, Object> searchContext) {
+      return bind(expr, searchContext);
+   }
+
+   private Specification<E_T> bind(SearchExpr e, Map<String, Object> searchContext) {
+      return switch (e) {
+         case SearchExpr.Term t -> bindTerm(termsByKey.get(t.key()), searchContext);
+         case SearchExpr.And a -> {
+            Specification<E_T> spec = bind(a.operands().get(0), searchContext);
+            for (int i = 1; i < a.operands().size(); i++) {
+               spec = spec.and(bind(a.operands().get(i), searchContext));
+            }
+            yield spec;
+         }
+         case SearchExpr.Or o -> {
+            Specification<E_T> spec = bind(o.operands().get(0), searchContext);
+            for (int i = 1; i < o.operands().size(); i++) {
+               spec = spec.or(bind(o.operands().get(i), searchContext));
+            }
+            yield spec;
+         }
+         case SearchExpr.Not n -> Specification.not(bind(n.operand(), searchContext));
+      };
+   }
+
+   /**
+    * Make the Specifications for each term on its own, in query order.
+    */
+   public List<Specification<E_T>> bindTerms(Map<String, Object> searchContext) {
+      List<Specification<E_T>> searchSpecs = new ArrayList<>(terms.size());
+      for (Term term : terms) {
+         searchSpecs.add(bindTerm(term, searchContext));
+      }
+      return searchSpecs;
+   }
+
+   @SuppressWarnings("unchecked")
+   private Specification<E_T> bindTerm(Term term, Map<String, Object> searchContext) {
+      Object value = term.converter().apply(searchContext.get(term.key()));
+      var ss = new JpaTrackSearchSpec(term.searchType(), term.propName(), term.propPath(), value);
+      return (Specification<E_T>) (Specification<?>) ss;
+   }
+
+   public int size() {
+      return terms.size();
+   }
+}
@@ -14,6 +14,7 @@ import org.springframework.transaction.annotation.Transactional;
 import ttl.mie.dao.repository.track.TrackRepo;
 import ttl.mie.domain.track.entity.TrackEntity;
 import ttl.mie.pricing.PricingProvider;
+import ttl.mie.pricing.PricingUtils;
 import ttl.mie.search.JPASearchSpecService;
 
 import static org.springframework.data.domain.ExampleMatcher.GenericPropertyMatchers.contains;
@@ -27,13 +28,16 @@ public class TrackRepoService {
    private DecimalFormat decimalFormat = new DecimalFormat("0.00");
 
    private final PricingProvider pricingProvider;
+   private final PricingUtils pricingUtils;
 
 
    public TrackRepoService(TrackRepo trackDAO,
                            PricingProvider pricingProvider,
+                           PricingUtils pricingUtils,
                            JPASearchSpecService<TrackEntity, Integer, TrackRepo> searchService) {
       this.trackDAO = trackDAO;
       this.pricingProvider = pricingProvider;
+      this.pricingUtils = pricingUtils;
       this.searchService = searchService;
    }
 
@@ -65,12 +69,8 @@ public class TrackRepoService {
    }
 
    public List<TrackEntity> getAllTracks() {
-      List<TrackEntity> tracks =
-            trackDAO.findTracksWithArtists().stream()
-                  .map(this::addPriceToTrack)
-                  .toList();
-
-      return tracks;
+      //Price the tracks all at once, not one after another
+      return pricingUtils.addPriceToTracks(trackDAO.findTracksWithArtists());
    }
 
    private TrackEntity addPriceToTrack(TrackEntity track) {
@@ -125,8 +125,7 @@ public class TrackRepoService {
 //      } else {
 //         result = trackDAO.findAll();
 //      }
-      result.forEach(this::addPriceToTrack);
-      return result;
+      return pricingUtils.addPriceToTracks(result);
    }
 
 //   /**
@@ -242,10 +241,7 @@ public class TrackRepoService {
       //Now we make our Example from the probe and the matcher
       Example<TrackEntity> example = Example.of(probe, matcher);
 
-      List<TrackEntity> result = trackDAO.findAll(example).stream()
-            .map(this::addPriceToTrack)
-            .toList();
-      return result;
+      return pricingUtils.addPriceToTracks(trackDAO.findAll(example));
    }
 
 //
@@ -0,0 +1,147 @@
+package ttl.mie.dao.repository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import ttl.mie.dao.repository.track.ArtistRepo;
+import ttl.mie.dao.repository.track.TrackRepo;
+import ttl.mie.db.DBUtils;
+import ttl.mie.db.TrackBatchWriter;
+import ttl.mie.domain.track.Format;
+import ttl.mie.domain.track.dto.ArtistDTO;
+import ttl.mie.domain.track.dto.TrackDTO;
+import ttl.mie.domain.track.entity.TrackEntity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@Transactional
+public class TestTrackBatchWriter {
+
+   private static final int TRACKS = 2000;
+   private static final int ARTISTS = 200;
+
+   @Autowired
+   private TrackBatchWriter trackBatchWriter;
+
+   @Autowired
+   private DBUtils dbUtils;
+
+   @Autowired
+   private TrackRepo trackRepo;
+
+   @Autowired
+   private ArtistRepo artistRepo;
+
+   /**
+    * Each track has two of ARTISTS Discogs artists, and one made up
+    * from its tags, with no discogsId.
+    */
+   private static List<TrackDTO> tracks(String prefix) {
+      List<TrackDTO> tracks = new ArrayList<>();
+      for (int i = 0; i < TRACKS; i++) {
+         tracks.add(TrackDTO.builder()
+               .title(prefix + "-Track " + i)
+               .album(prefix + "-Album " + (i / 10))
+               .group(prefix + "-Group " + (i % ARTISTS))
+               .length(Duration.ofSeconds(200 + i % 100))
+               .format(Format.MP3)
+               .year("1960")
+               .artist(discogsArtist(prefix, i % ARTISTS))
+               .artist(discogsArtist(prefix, (i + 1) % ARTISTS))
+               .artist(new ArtistDTO(prefix + "-Tag Artist " + i))
+               .build());
+      }
+      return tracks;
+   }
+
+   private static ArtistDTO discogsArtist(String prefix, int n) {
+      return new ArtistDTO(0, prefix + "-discogs-" + n, prefix + "-Artist " + n, "Real " + n, "",
+            List.of("http://artists/" + n), null);
+   }
+
+   @Test
+   public void testInsertAllAddsEachDiscogsArtistOnce() {
+      long tracksBefore = trackRepo.count();
+      long artistsBefore = artistRepo.count();
+
+      var result = trackBatchWriter.insertAll(tracks("batch"));
+
+      assertEquals(TRACKS, result.tracks());
+      assertEquals(ARTISTS + TRACKS, result.artistsAdded());
+      assertEquals(0, result.artistsFound());
+      assertEquals(tracksBefore + TRACKS, trackRepo.count());
+      assertEquals(artistsBefore + ARTISTS + TRACKS, artistRepo.count());
+      assertTrue(artistRepo.findByDiscogsId("batch-discogs-7").isPresent());
+
+      //Again, and the Discogs artists are found rather than added
+      var again = trackBatchWriter.insertAll(tracks("batch"));
+      assertEquals(TRACKS, again.artistsAdded());
+      assertEquals(ARTISTS, again.artistsFound());
+   }
+
+   @Test
+   public void testDurationIsStoredAsHibernateWouldStoreIt() {
+      trackBatchWriter.insertAll(tracks("duration"));
+
+      var track = trackRepo.findAll().stream()
+            .filter(t -> t.getTitle().equals("duration-Track 7"))
+            .findFirst().orElseThrow();
+      assertEquals(Duration.ofSeconds(207), track.getDuration());
+   }
+
+   /**
+    * The same tracks, with different prefixes, one by one through
+    * the repos and then batched, should end up as the same rows.
+    */
+   @Test
+   public void testSameRowsAsOneByOne() {
+      long artistsBefore = artistRepo.count();
+      dbUtils.convertToEntityAndAddOneByOne(tracks("single"));
+      trackRepo.flush();
+      long oneByOneArtists = artistRepo.count() - artistsBefore;
+
+      trackBatchWriter.insertAll(tracks("bulk"));
+      long batchedArtists = artistRepo.count() - artistsBefore - oneByOneArtists;
+
+      assertEquals(oneByOneArtists, batchedArtists);
+
+      var all = trackRepo.findAll();
+      Map<String, List<String>> oneByOne = rows(all, "single");
+      Map<String, List<String>> batched = rows(all, "bulk");
+      assertEquals(TRACKS, oneByOne.size());
+      assertEquals(oneByOne, batched);
+   }
+
+   /**
+    * The tracks with the prefix, by title, as their fields and their
+    * artists, with the prefix taken out.
+    */
+   private static Map<String, List<String>> rows(List<TrackEntity> tracks, String prefix) {
+      Map<String, List<String>> rows = new TreeMap<>();
+      for (TrackEntity track : tracks) {
+         if (!track.getTitle().startsWith(prefix + "-")) {
+            continue;
+         }
+         List<String> row = new ArrayList<>(List.of(
+               String.valueOf(track.getAlbum()), String.valueOf(track.getGroup()),
+               String.valueOf(track.getDuration()), String.valueOf(track.getFormat()),
+               String.valueOf(track.getReleaseYear()), String.valueOf(track.getGenre()),
+               String.valueOf(track.getImageUrl())));
+         track.getArtists().stream()
+               .map(a -> a.getDiscogsId() + "|" + a.getName() + "|" + a.getRealName() + "|" + a.getUrl())
+               .sorted()
+               .forEach(row::add);
+         row.replaceAll(field -> field.replace(prefix + "-", ""));
+         rows.put(track.getTitle().substring(prefix.length() + 1), row);
+      }
+      return rows;
+   }
+}
@@ -1,5 +1,7 @@
 package ttl.mie.dao.repository;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -48,6 +50,19 @@ public class TestTrackRepoPaging {
 
    }
 
+   @Test
+   public void testKeysetPagingForTrackRepo() {
+      List<Integer> ids = new ArrayList<>();
+      List<TrackEntity> page = trackRepo.findPageAfter(0, 20);
+      while (!page.isEmpty()) {
+         page.forEach(t -> ids.add(t.getTrackId()));
+         page = trackRepo.findPageAfter(page.get(page.size() - 1).getTrackId(), 20);
+      }
+
+      assertEquals(trackRepo.count(), ids.size());
+      assertEquals(ids.stream().sorted().toList(), ids);
+   }
+
    @Test
    public void testPagingSupportForTrackRepoWithSpecification() {
       int currPage = 0;
@@ -0,0 +1,109 @@
+package ttl.mie.service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FanOutEnricherTest {
+
+   private FanOutEnricher enricher;
+
+   private final List<Integer> ids = IntStream.rangeClosed(1, 20).boxed().toList();
+   private final Map<Integer, String> results = new HashMap<>();
+
+   @AfterEach
+   public void tearDown() {
+      enricher.close();
+   }
+
+   @Test
+   public void testLookupsRunInParallel() {
+      enricher = new FanOutEnricher("test", 20, Duration.ofSeconds(5));
+
+      long start = System.nanoTime();
+      var outcome = enricher.enrich(ids, id -> {
+         sleep(200);
+         return "v" + id;
+      }, results::put);
+      long millis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+      assertTrue(outcome.isComplete());
+      assertEquals(20, results.size());
+      assertEquals("v7", results.get(7));
+      //One after another would be 4 seconds
+      assertTrue(millis < 2000, "took " + millis + "ms");
+   }
+
+   @Test
+   public void testConcurrencyIsLimited() {
+      enricher = new FanOutEnricher("test", 3, Duration.ofSeconds(5));
+      AtomicInteger running = new AtomicInteger();
+      AtomicInteger maxRunning = new AtomicInteger();
+
+      var outcome = enricher.enrich(ids, id -> {
+         maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+         sleep(20);
+         running.decrementAndGet();
+         return "v" + id;
+      }, results::put);
+
+      assertTrue(outcome.isComplete());
+      assertTrue(maxRunning.get() <= 3, "max running was " + maxRunning.get());
+   }
+
+   @Test
+   public void testSlowLookupsGiveNullAfterDeadline() {
+      enricher = new FanOutEnricher("test", 20, Duration.ofMillis(300));
+
+      long start = System.nanoTime();
+      var outcome = enricher.enrich(ids, id -> {
+         if (id % 2 == 0) {
+            sleep(5000);
+         }
+         return "v" + id;
+      }, results::put);
+      long millis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+      assertFalse(outcome.isComplete());
+      assertEquals(10, outcome.timedOut());
+      assertEquals(20, results.size());
+      assertEquals("v1", results.get(1));
+      assertNull(results.get(2));
+      assertTrue(millis < 2000, "took " + millis + "ms");
+   }
+
+   @Test
+   public void testFailedLookupsGiveNull() {
+      enricher = new FanOutEnricher("test", 20, Duration.ofSeconds(5));
+
+      var outcome = enricher.enrich(ids, id -> {
+         if (id == 5) {
+            throw new IllegalStateException("No price for 5");
+         }
+         return "v" + id;
+      }, results::put);
+
+      assertEquals(1, outcome.failed());
+      assertEquals(0, outcome.timedOut());
+      assertNull(results.get(5));
+      assertEquals("v6", results.get(6));
+   }
+
+   private static void sleep(long millis) {
+      try {
+         Thread.sleep(millis);
+      } catch (InterruptedException e) {
+         throw new RuntimeException(e);
+      }
+   }
+}
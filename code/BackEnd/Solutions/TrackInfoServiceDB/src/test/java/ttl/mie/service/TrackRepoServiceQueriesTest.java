@@ -1,5 +1,6 @@
 package ttl.mie.service;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
@@ -11,6 +12,8 @@ import ttl.mie.domain.track.entity.TrackEntity;
 
 import static java.lang.System.out;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 @Transactional
@@ -69,4 +72,24 @@ public class TrackRepoServiceQueriesTest {
 
 //      assertEquals(94, tracks.size());
    }
+
+   @Test
+   public void testKeysetWithoutPage() {
+      Map<String, Object> propMap = new HashMap<>(Map.of("paging", "keyset", "pageSize", "2"));
+
+      List<TrackEntity> tracks = trackService.getTracksByRequestParams(propMap);
+
+      assertEquals(2, tracks.size());
+      assertNotNull(propMap.get("nextToken"));
+   }
+
+   @Test
+   public void testNoSpecsIsNothingInBothModes() {
+      Map<String, Object> offset = new HashMap<>(Map.of("where", " ", "page", "1"));
+      Map<String, Object> keyset = new HashMap<>(Map.of("where", " ", "paging", "keyset"));
+
+      assertTrue(trackService.getTracksByRequestParams(offset).isEmpty());
+      assertTrue(trackService.getTracksByRequestParams(keyset).isEmpty());
+      assertTrue(keyset.containsKey("nextToken"));
+   }
 }
@@ -1,28 +1,49 @@
 package ttl.mie.controller;
 
-import java.text.DecimalFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
+import ttl.mie.service.PriceColumns;
+import ttl.mie.service.PriceFormat;
 import ttl.mie.service.TrackPriceService;
 
 @RestController
 public class TrackPriceController {
 
    private final TrackPriceService priceService;
-   private DecimalFormat decimalFormat = new DecimalFormat("0.00");
 
    public TrackPriceController(TrackPriceService priceService) {
       this.priceService = priceService;
    }
 
+   /**
+    * The price goes out as a bare JSON number, e.g. 12.05, written
+    * straight from the cents.
+    */
    @GetMapping("/price/{trackId}")
-   public ResponseEntity<?> getPriceForTrackId(@PathVariable("trackId") int trackId) {
-      var newPrice = priceService.getPriceByTrackId(trackId);
+   public ResponseEntity<byte[]> getPriceForTrackId(@PathVariable("trackId") int trackId) {
+      long cents = priceService.getPriceCentsByTrackId(trackId);
 
-      return ResponseEntity.ok(decimalFormat.format(newPrice));
+      return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(PriceFormat.toBytes(cents));
+   }
+
+   /**
+    * Many prices in one call.  Takes a JSON array of trackIds, and gives
+    * back the prices in cents in the same order, as PriceColumns.
+    */
+   @PostMapping("/price/bulk")
+   public ResponseEntity<PriceColumns> getPricesForTrackIds(@RequestBody int[] trackIds) {
+      long[] cents = priceService.getPricesCentsByTrackIds(trackIds);
+
+      return ResponseEntity.ok(new PriceColumns(trackIds, cents));
    }
 
    @GetMapping("/admin/lowerLImit")
@@ -49,7 +70,9 @@ public class TrackPriceController {
 
    @GetMapping("/admin/bothLimits")
    public ResponseEntity<?> getBothLimits() {
-      String result = priceService.getLowerLimit() + ":" + priceService.getUpperLimit();
+      //One read, so both limits are from the same update
+      var limits = priceService.getLimits();
+      String result = limits.lowerLimit() + ":" + limits.upperLimit();
 
       return ResponseEntity.ok(result);
    }
@@ -57,9 +80,17 @@ public class TrackPriceController {
    @PutMapping("/admin/bothLimits/{ll}/{ul}")
    public ResponseEntity<?> setBothLimits(@PathVariable("ll") double lowerLimit,
                                           @PathVariable("ul") double upperLimit) {
-      priceService.setLowerLimit(lowerLimit);
-      priceService.setUpperLimit(upperLimit);
+      priceService.setLimits(lowerLimit, upperLimit);
 
       return ResponseEntity.noContent().build();
    }
+
+   /**
+    * A lower limit that isn't below the upper one, or too many trackIds
+    * in a bulk request.
+    */
+   @ExceptionHandler(IllegalArgumentException.class)
+   public ResponseEntity<?> badRequest(IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(e.getMessage());
+   }
 }
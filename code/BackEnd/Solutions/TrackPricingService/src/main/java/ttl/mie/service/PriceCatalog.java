@@ -0,0 +1,145 @@
+package ttl.mie.service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fixed prices, instead of a new random one on every call.  The price
+ * of a track is worked out from the trackId and the limits, so it's
+ * the same every time until the limits change, and the same on every
+ * instance of the service.
+ * <p>
+ * Prices for trackIds 0 to size - 1 are worked out ahead of time into
+ * a long[], so a lookup is an array read.  Any other trackId is worked
+ * out when asked for, which gives the same answer the table would.
+ * <p>
+ * When the limits change, a new table is swapped in straight away and
+ * filled in the background a chunk at a time.  Until a chunk is filled
+ * its trackIds are worked out when asked for, so nobody waits for a
+ * rebuild, and nobody sees a price from the old limits.  A rebuild
+ * that gets overtaken by another change of limits just stops.
+ */
+public class PriceCatalog implements AutoCloseable {
+
+   private static final Logger logger = LoggerFactory.getLogger(PriceCatalog.class);
+
+   private static final int CHUNK = 4096;
+
+   private final int size;
+   private final AtomicReference<Table> current;
+   private final ExecutorService rebuilder =
+         Executors.newSingleThreadExecutor(Thread.ofVirtual().name("price-catalog-rebuild").factory());
+
+   /**
+    * The prices for one set of limits.  Entries below filled are set,
+    * and the volatile write of filled makes them visible.
+    */
+   private static final class Table {
+      private final PriceLimits limits;
+      private final long seed;
+      private final long[] prices;
+      private volatile int filled;
+
+      private Table(PriceLimits limits, int size) {
+         this.limits = limits;
+         this.seed = mix(limits.lowerCents() * 0x9E3779B97F4A7C15L + limits.upperCents());
+         this.prices = new long[size];
+      }
+
+      private long compute(int trackId) {
+         long range = limits.upperCents() - limits.lowerCents();
+         long hash = mix(seed + trackId * 0x9E3779B97F4A7C15L);
+         return limits.lowerCents() + 1 + Math.floorMod(hash, range);
+      }
+
+      private long lookup(int trackId) {
+         return trackId >= 0 && trackId < filled ? prices[trackId] : compute(trackId);
+      }
+   }
+
+   /**
+    * Builds the first table before returning.
+    */
+   public PriceCatalog(PriceLimits limits, int size) {
+      if (size < 0) {
+         throw new IllegalArgumentException("Catalog size has to be 0 or more, not " + size);
+      }
+      this.size = size;
+      var table = new Table(limits, size);
+      this.current = new AtomicReference<>(table);
+      fill(table);
+   }
+
+   public long priceCents(int trackId) {
+      return current.get().lookup(trackId);
+   }
+
+   /**
+    * All from the same limits, even if they change part way through.
+    */
+   public long[] priceCents(int[] trackIds) {
+      var table = current.get();
+      long[] result = new long[trackIds.length];
+      for (int i = 0; i < trackIds.length; i++) {
+         result[i] = table.lookup(trackIds[i]);
+      }
+      return result;
+   }
+
+   public void rebuild(PriceLimits limits) {
+      var table = new Table(limits, size);
+      current.set(table);
+      rebuilder.execute(() -> fill(table));
+   }
+
+   private void fill(Table table) {
+      long start = System.nanoTime();
+      for (int from = 0; from < size; from += CHUNK) {
+         if (current.get() != table) {
+            logger.debug("Rebuild for {} overtaken at {}", table.limits, from);
+            return;
+         }
+         int to = Math.min(from + CHUNK, size);
+         for (int trackId = from; trackId < to; trackId++) {
+            table.prices[trackId] = table.compute(trackId);
+         }
+         table.filled = to;
+      }
+      logger.info("Price catalog of {} built for {} in {}ms", size, table.limits,
+            (System.nanoTime() - start) / 1_000_000);
+   }
+
+   public PriceLimits getLimits() {
+      return current.get().limits;
+   }
+
+   /**
+    * @return how many trackIds of the current table are filled in.
+    * Equal to getSize() once a rebuild is done.
+    */
+   public int getFilled() {
+      return current.get().filled;
+   }
+
+   public int getSize() {
+      return size;
+   }
+
+   /**
+    * SplitMix64's finalizer.  Spreads neighbouring trackIds all over
+    * the range.
+    */
+   private static long mix(long z) {
+      z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+      z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+      return z ^ (z >>> 31);
+   }
+
+   @Override
+   public void close() {
+      rebuilder.shutdownNow();
+   }
+}
@@ -0,0 +1,12 @@
+package ttl.mie.service;
+
+/**
+ * The answer to a bulk price request, as two columns rather than a
+ * list of objects: cents[i] is the price of trackIds[i].  Goes out as
+ * {"trackIds":[1,2],"cents":[1205,1899]}.
+ *
+ * @param trackIds
+ * @param cents
+ */
+public record PriceColumns(int[] trackIds, long[] cents) {
+}
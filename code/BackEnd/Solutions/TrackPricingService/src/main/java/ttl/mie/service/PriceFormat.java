@@ -0,0 +1,58 @@
+package ttl.mie.service;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes an amount in cents as d.cc, straight into bytes, e.g. 1205
+ * is "12.05" and 5 is "0.05".  Same output as a DecimalFormat("0.00"),
+ * without the DecimalFormat, which isn't thread safe, or the
+ * BigDecimal and Strings on the way.
+ */
+public final class PriceFormat {
+
+   private PriceFormat() {
+   }
+
+   /**
+    * @return the ASCII bytes for cents, ready to go out as a response
+    * body.  The only thing allocated is the array.
+    */
+   public static byte[] toBytes(long cents) {
+      byte[] buf = new byte[length(cents)];
+      format(cents, buf);
+      return buf;
+   }
+
+   public static String toString(long cents) {
+      return new String(toBytes(cents), StandardCharsets.US_ASCII);
+   }
+
+   static int length(long cents) {
+      //Work with the negative, so Long.MIN_VALUE works too
+      long n = cents < 0 ? cents : -cents;
+      int digits = 0;
+      do {
+         digits++;
+         n /= 10;
+      } while (n != 0);
+      return (cents < 0 ? 1 : 0) + Math.max(digits, 3) + 1;
+   }
+
+   /**
+    * Fill buf from the end.  It has to be length(cents) long.
+    */
+   static void format(long cents, byte[] buf) {
+      int pos = buf.length;
+      long n = cents < 0 ? cents : -cents;
+      for (int digits = 0; digits < 3 || n != 0; digits++) {
+         if (digits == 2) {
+            buf[--pos] = '.';
+         }
+         buf[--pos] = (byte) ('0' - n % 10);
+         n /= 10;
+      }
+      if (cents < 0) {
+         buf[--pos] = '-';
+      }
+   }
+}
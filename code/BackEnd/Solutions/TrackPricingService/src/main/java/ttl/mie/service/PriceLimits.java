@@ -0,0 +1,35 @@
+package ttl.mie.service;
+
+/**
+ * The range prices are made up from, in cents.  Immutable, so a
+ * change of limits is a swap of the whole thing, and nobody ever
+ * sees a new lower limit with the old upper one.
+ *
+ * @param lowerCents
+ * @param upperCents
+ */
+public record PriceLimits(long lowerCents, long upperCents) {
+
+   public PriceLimits {
+      if (lowerCents >= upperCents) {
+         throw new IllegalArgumentException("Lower limit " + PriceFormat.toString(lowerCents)
+               + " has to be below upper limit " + PriceFormat.toString(upperCents));
+      }
+   }
+
+   public static PriceLimits of(double lowerLimit, double upperLimit) {
+      return new PriceLimits(toCents(lowerLimit), toCents(upperLimit));
+   }
+
+   public static long toCents(double amount) {
+      return Math.round(amount * 100);
+   }
+
+   public double lowerLimit() {
+      return lowerCents / 100.0;
+   }
+
+   public double upperLimit() {
+      return upperCents / 100.0;
+   }
+}
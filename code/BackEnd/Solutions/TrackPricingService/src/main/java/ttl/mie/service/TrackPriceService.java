@@ -1,43 +1,131 @@
 package ttl.mie.service;
 
+import jakarta.annotation.PreDestroy;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+/**
+ * Prices are worked out in whole cents, as longs.  A price is somewhere
+ * above the lower limit and up to and including the upper one, like
+ * the old nextDouble(lower, upper) rounded up to the cent.
+ * <p>
+ * The limits are one immutable PriceLimits, swapped in whole, so the
+ * price path needs no locks and a price never comes from a lower
+ * limit of one update and an upper limit of another.  Setting one
+ * limit is a compare and set on the pair, so two admins setting one
+ * limit each can't lose an update either.
+ * <p>
+ * With pricing.catalog.enabled a track has a fixed price for as long
+ * as the limits stay the same, from a PriceCatalog, instead of a new
+ * random one each time.
+ */
 @Service
 public class TrackPriceService {
 
-   private double upperLimit;
-   private double lowerLimit;
+   private final AtomicReference<PriceLimits> limits;
+   //null unless pricing.catalog.enabled
+   private final PriceCatalog catalog;
+   private final int maxBulkIds;
 
    public TrackPriceService(@Value("${pricing.track.lower_limit}") double lowerLimit,
-                            @Value("${pricing.track.upper_limit}") double upperLimit ) {
-      this.upperLimit = upperLimit;
-      this.lowerLimit = lowerLimit;
+                            @Value("${pricing.track.upper_limit}") double upperLimit,
+                            @Value("${pricing.catalog.enabled:false}") boolean catalogEnabled,
+                            @Value("${pricing.catalog.size:100000}") int catalogSize,
+                            @Value("${pricing.bulk.max-ids:10000}") int maxBulkIds) {
+      this.limits = new AtomicReference<>(PriceLimits.of(lowerLimit, upperLimit));
+      this.catalog = catalogEnabled ? new PriceCatalog(limits.get(), catalogSize) : null;
+      this.maxBulkIds = maxBulkIds;
+   }
+
+   public long getPriceCentsByTrackId(int trackId) {
+      if (catalog != null) {
+         return catalog.priceCents(trackId);
+      }
+      var current = limits.get();
+      return ThreadLocalRandom.current().nextLong(current.lowerCents() + 1, current.upperCents() + 1);
+   }
+
+   /**
+    * @return the prices in the same order as the trackIds.
+    * @throws IllegalArgumentException for more than pricing.bulk.max-ids trackIds.
+    */
+   public long[] getPricesCentsByTrackIds(int[] trackIds) {
+      if (trackIds.length > maxBulkIds) {
+         throw new IllegalArgumentException("At most " + maxBulkIds + " trackIds at a time, not " + trackIds.length);
+      }
+      if (catalog != null) {
+         return catalog.priceCents(trackIds);
+      }
+      var current = limits.get();
+      var random = ThreadLocalRandom.current();
+      long[] result = new long[trackIds.length];
+      for (int i = 0; i < trackIds.length; i++) {
+         result[i] = random.nextLong(current.lowerCents() + 1, current.upperCents() + 1);
+      }
+      return result;
    }
 
    public BigDecimal getPriceByTrackId(int trackId) {
-      var rd = ThreadLocalRandom.current().nextDouble(lowerLimit, upperLimit);
-      var newPrice = new BigDecimal(String.valueOf(rd)).setScale(2, RoundingMode.CEILING);
+      return BigDecimal.valueOf(getPriceCentsByTrackId(trackId), 2);
+   }
 
-      return newPrice;
+   public PriceLimits getLimits() {
+      return limits.get();
    }
 
    public double getLowerLimit() {
-      return lowerLimit;
+      return limits.get().lowerLimit();
    }
 
+   /**
+    * @throws IllegalArgumentException if it isn't below the upper limit.
+    */
    public void setLowerLimit(double lowerLimit) {
-      this.lowerLimit = lowerLimit;
+      long lowerCents = PriceLimits.toCents(lowerLimit);
+      limits.updateAndGet(current -> new PriceLimits(lowerCents, current.upperCents()));
+      syncCatalog();
    }
 
    public double getUpperLimit() {
-      return upperLimit;
+      return limits.get().upperLimit();
    }
 
+   /**
+    * @throws IllegalArgumentException if it isn't above the lower limit.
+    */
    public void setUpperLimit(double upperLimit) {
-      this.upperLimit = upperLimit;
+      long upperCents = PriceLimits.toCents(upperLimit);
+      limits.updateAndGet(current -> new PriceLimits(current.lowerCents(), upperCents));
+      syncCatalog();
+   }
+
+   /**
+    * Both at once, so there's no moment with one new and one old.
+    */
+   public void setLimits(double lowerLimit, double upperLimit) {
+      limits.set(PriceLimits.of(lowerLimit, upperLimit));
+      syncCatalog();
+   }
+
+   /**
+    * Rebuild the catalog for whatever the limits are now.  Synchronized,
+    * and reading the limits inside, so that two admin updates at once
+    * can't leave the catalog on the older limits.
+    */
+   private synchronized void syncCatalog() {
+      var current = limits.get();
+      if (catalog != null && !catalog.getLimits().equals(current)) {
+         catalog.rebuild(current);
+      }
+   }
+
+   @PreDestroy
+   public void close() {
+      if (catalog != null) {
+         catalog.close();
+      }
    }
 }
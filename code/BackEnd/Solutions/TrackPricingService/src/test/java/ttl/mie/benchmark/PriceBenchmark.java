@@ -0,0 +1,77 @@
+package ttl.mie.benchmark;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ttl.mie.service.PriceFormat;
+import ttl.mie.service.TrackPriceService;
+
+/**
+ * Making the body of a /price/{trackId} response, the old way and
+ * the new way.  Run with the gc profiler, which main turns on, to see
+ * the allocation rate (gc.alloc.rate.norm is bytes per op) next to
+ * the ops/ms.
+ * <p>
+ * The old way gets its own DecimalFormat per thread, which is the
+ * best case for it.  The real one was shared, and so wrong as well
+ * as slow.
+ * <p>
+ * Run main from the IDE, or after a test-compile with:
+ * mvn exec:java -Dexec.classpathScope=test -Dexec.mainClass=ttl.mie.benchmark.PriceBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class PriceBenchmark {
+
+   @State(Scope.Benchmark)
+   public static class Service {
+      TrackPriceService priceService = new TrackPriceService(10.00, 20.00, false, 0, 10_000);
+   }
+
+   @State(Scope.Thread)
+   public static class OldWay {
+      double lowerLimit = 10.00;
+      double upperLimit = 20.00;
+      DecimalFormat decimalFormat = new DecimalFormat("0.00");
+   }
+
+   @Benchmark
+   public byte[] bigDecimalAndDecimalFormat(OldWay old) {
+      var rd = ThreadLocalRandom.current().nextDouble(old.lowerLimit, old.upperLimit);
+      var newPrice = new BigDecimal(String.valueOf(rd)).setScale(2, RoundingMode.CEILING);
+      return old.decimalFormat.format(newPrice).getBytes(StandardCharsets.UTF_8);
+   }
+
+   @Benchmark
+   public byte[] cents(Service service) {
+      return PriceFormat.toBytes(service.priceService.getPriceCentsByTrackId(1));
+   }
+
+   public static void main(String[] args) throws RunnerException {
+      new Runner(new OptionsBuilder()
+            .include(PriceBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+   }
+}
@@ -0,0 +1,103 @@
+package ttl.mie.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import ttl.mie.TrackPriceApplication;
+
+/**
+ * Pricing a list of tracks over http, one GET /price/{trackId} per
+ * track the way TrackRepoService.getAllTracks does it, against one
+ * POST /price/bulk for the lot.  An op is pricing all of the tracks,
+ * so the ops/s are directly comparable.
+ * <p>
+ * Starts the whole service, with the price catalog on, on a free
+ * port, and calls it from 4 threads over one shared HttpClient.
+ * <p>
+ * Run main from the IDE, or after a test-compile with:
+ * mvn exec:java -Dexec.classpathScope=test -Dexec.mainClass=ttl.mie.benchmark.PriceBulkBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class PriceBulkBenchmark {
+
+   @Param({"10", "100", "1000"})
+   private int tracks;
+
+   private ConfigurableApplicationContext context;
+   private HttpClient client;
+   private String baseUrl;
+   private String bulkBody;
+
+   @Setup(Level.Trial)
+   public void setup() {
+      context = SpringApplication.run(TrackPriceApplication.class,
+            "--server.port=0",
+            "--pricing.catalog.enabled=true",
+            "--logging.level.org.springframework=warn");
+      baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/price/";
+      client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+      bulkBody = IntStream.rangeClosed(1, tracks)
+            .mapToObj(String::valueOf)
+            .collect(Collectors.joining(",", "[", "]"));
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      client.close();
+      context.close();
+   }
+
+   @Benchmark
+   public void perId(Blackhole blackhole) throws IOException, InterruptedException {
+      for (int trackId = 1; trackId <= tracks; trackId++) {
+         var request = HttpRequest.newBuilder(URI.create(baseUrl + trackId)).GET().build();
+         blackhole.consume(client.send(request, HttpResponse.BodyHandlers.ofByteArray()).body());
+      }
+   }
+
+   @Benchmark
+   public byte[] bulk() throws IOException, InterruptedException {
+      var request = HttpRequest.newBuilder(URI.create(baseUrl + "bulk"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(bulkBody))
+            .build();
+      return client.send(request, HttpResponse.BodyHandlers.ofByteArray()).body();
+   }
+
+   public static void main(String[] args) throws RunnerException {
+      new Runner(new OptionsBuilder()
+            .include(PriceBulkBenchmark.class.getSimpleName())
+            .build()).run();
+   }
+}
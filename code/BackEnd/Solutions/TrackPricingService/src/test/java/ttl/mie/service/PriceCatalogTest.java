@@ -0,0 +1,57 @@
+package ttl.mie.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PriceCatalogTest {
+
+   private final PriceLimits limits = PriceLimits.of(10.00, 20.00);
+
+   @Test
+   public void testPricesAreFixedAndInRange() {
+      try (var catalog = new PriceCatalog(limits, 1000);
+           var other = new PriceCatalog(limits, 10)) {
+         assertEquals(1000, catalog.getFilled());
+         for (int trackId = -100; trackId < 2000; trackId++) {
+            long cents = catalog.priceCents(trackId);
+            assertTrue(cents > 1000 && cents <= 2000, trackId + ": " + cents);
+            //From the table or worked out, it's the same price
+            assertEquals(cents, other.priceCents(trackId));
+         }
+      }
+   }
+
+   @Test
+   public void testBulkSameAsOneAtATime() {
+      try (var catalog = new PriceCatalog(limits, 100)) {
+         int[] trackIds = {5, 99, 100, 5000, -1, 5};
+         long[] cents = catalog.priceCents(trackIds);
+         for (int i = 0; i < trackIds.length; i++) {
+            assertEquals(catalog.priceCents(trackIds[i]), cents[i]);
+         }
+      }
+   }
+
+   @Test
+   public void testRebuildForNewLimits() throws InterruptedException {
+      var newLimits = PriceLimits.of(1.00, 2.00);
+      try (var catalog = new PriceCatalog(limits, 50_000);
+           var expected = new PriceCatalog(newLimits, 0)) {
+         catalog.rebuild(newLimits);
+
+         //New prices straight away, filled in or not
+         assertEquals(newLimits, catalog.getLimits());
+         assertEquals(expected.priceCents(40_000), catalog.priceCents(40_000));
+
+         for (int i = 0; i < 100 && catalog.getFilled() < catalog.getSize(); i++) {
+            Thread.sleep(20);
+         }
+         assertEquals(50_000, catalog.getFilled());
+         int[] trackIds = {0, 1, 4095, 4096, 49_999};
+         assertArrayEquals(expected.priceCents(trackIds), catalog.priceCents(trackIds));
+      }
+   }
+}
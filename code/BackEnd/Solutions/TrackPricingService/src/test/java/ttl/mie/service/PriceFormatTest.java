@@ -0,0 +1,44 @@
+package ttl.mie.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PriceFormatTest {
+
+   @Test
+   public void testFormat() {
+      assertEquals("0.00", PriceFormat.toString(0));
+      assertEquals("0.05", PriceFormat.toString(5));
+      assertEquals("0.50", PriceFormat.toString(50));
+      assertEquals("12.05", PriceFormat.toString(1205));
+      assertEquals("20.00", PriceFormat.toString(2000));
+      assertEquals("-0.05", PriceFormat.toString(-5));
+      assertEquals("-92233720368547758.08", PriceFormat.toString(Long.MIN_VALUE));
+   }
+
+   @Test
+   public void testSameAsDecimalFormat() {
+      var decimalFormat = new DecimalFormat("0.00");
+      for (long cents = 0; cents < 100_000; cents += 7) {
+         assertEquals(decimalFormat.format(BigDecimal.valueOf(cents, 2).setScale(2, RoundingMode.CEILING)),
+               PriceFormat.toString(cents));
+      }
+   }
+
+   @Test
+   public void testLimits() {
+      var limits = PriceLimits.of(10.00, 20.00);
+      assertEquals(1000, limits.lowerCents());
+      assertEquals(2000, limits.upperCents());
+      assertEquals(10.00, limits.lowerLimit());
+
+      assertEquals(1999, PriceLimits.toCents(19.99));
+      assertThrows(IllegalArgumentException.class, () -> PriceLimits.of(20.00, 10.00));
+      assertThrows(IllegalArgumentException.class, () -> PriceLimits.of(10.00, 10.00));
+   }
+}
@@ -20,6 +20,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import ttl.larku.domain.Student;
 import ttl.larku.service.StudentService;
@@ -71,6 +72,23 @@ public class StudentRestController {
         return ResponseEntity.ok(RestResultWrapper.ofValue(students));
     }
 
+    /**
+     * Paged version of getAllStudents, e.g. /adminrest/student?fromId=1&limit=100
+     * For the next page, use fromId = (id of last Student returned) + 1.
+     */
+    @GetMapping(params = "limit")
+    public ResponseEntity<?> getStudentsPage(@RequestParam(name = "fromId", defaultValue = "1") int fromId,
+                                             @RequestParam("limit") int limit) {
+        if (limit <= 0) {
+            var pd = uriCreator.getProblemDetail(HttpStatus.BAD_REQUEST,
+                  "limit must be positive, was " + limit);
+            return ResponseEntity.badRequest()
+                  .body(RestResultWrapper.ofError(pd));
+        }
+        List<Student> students = studentService.getStudents(fromId, limit);
+        return ResponseEntity.ok(RestResultWrapper.ofValue(students));
+    }
+
 //    @PostMapping
     public ResponseEntity<?> createStudent(@RequestBody Student s) {
         s = studentService.createStudent(s);
@@ -1,13 +1,17 @@
 package ttl.larku.controllers.rest;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.util.List;
 import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.Errors;
 import org.springframework.validation.Validator;
@@ -20,7 +24,9 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ttl.larku.domain.Student;
 import ttl.larku.service.StudentJdbcService;
 import ttl.larku.service.StudentService;
@@ -32,12 +38,15 @@ import static java.util.stream.Collectors.toList;
 public class StudentRestJdbcController {
 
     private final UriCreator uriCreator;
+    private final ObjectMapper objectMapper;
     private StudentJdbcService studentService;
 
     //Constructor injection.  Also helps with testing.
-    public StudentRestJdbcController(StudentJdbcService studentService, UriCreator uriCreator) {
+    public StudentRestJdbcController(StudentJdbcService studentService, UriCreator uriCreator,
+                                     ObjectMapper objectMapper) {
         this.studentService = studentService;
         this.uriCreator = uriCreator;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/{id}")
@@ -72,6 +81,44 @@ public class StudentRestJdbcController {
         return ResponseEntity.ok(RestResultWrapper.ofValue(students));
     }
 
+    /**
+     * Every student, one JSON object per line.  The rows are read a
+     * page at a time and written out as they come, so this runs in
+     * constant memory however big the table is.
+     * <p>
+     * pageSize is checked here, because once streaming has started
+     * the status has been sent, and a failure just cuts the body short.
+     * The error is still a StreamingResponseBody, since Spring only
+     * streams a ResponseEntity whose declared body type is one.
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportStudents(
+            @RequestParam(name = "pageSize", defaultValue = "1000") int pageSize) {
+        if (pageSize <= 0) {
+            var pd = uriCreator.getProblemDetail(HttpStatus.BAD_REQUEST,
+                  "pageSize must be positive, was " + pageSize);
+            return ResponseEntity.badRequest()
+                  .contentType(MediaType.APPLICATION_JSON)
+                  .body(out -> objectMapper.writeValue(out, RestResultWrapper.ofError(pd)));
+        }
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.setRootValueSeparator(null);
+                studentService.exportStudents(pageSize, student -> {
+                    try {
+                        objectMapper.writeValue(generator, student);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
 //    @PostMapping
     public ResponseEntity<?> createStudent(@RequestBody Student s) {
         s = studentService.createStudent(s);
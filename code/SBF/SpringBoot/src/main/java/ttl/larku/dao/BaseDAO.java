@@ -1,7 +1,12 @@
 package ttl.larku.dao;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.NavigableSet;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
 
@@ -26,10 +31,69 @@ public interface BaseDAO<T> {
     public void createStore();
 
     default public List<T> findBy(Predicate<T> pred) {
-        List<T> x = findAll();
-        List<T> result = findAll().stream()
-                .filter(pred)
-                .collect(toList());
+        try (Stream<T> stream = stream()) {
+            List<T> result = stream
+                    .filter(pred)
+                    .collect(toList());
+            return result;
+        }
+    }
+
+    /**
+     * Walk over everything in the store without making a copy of it first.
+     * The default just streams over findAll(), so it still copies.
+     * Implementations that can do better, e.g. the InMemory DAOs
+     * which stream straight off their Map, should override this.
+     * <p>
+     * The stream may be holding on to a database cursor, so close
+     * it when you are done, e.g. with try-with-resources.
+     */
+    default public Stream<T> stream() {
+        return findAll().stream();
+    }
+
+    default public void forEach(Consumer<? super T> action) {
+        try (Stream<T> stream = stream()) {
+            stream.forEach(action);
+        }
+    }
+
+    /**
+     * Return at most limit objects, with ids >= fromId, in id order.
+     * To get the next page, call again with fromId = (last id + 1).
+     * A limit that isn't positive is an IllegalArgumentException,
+     * see checkScanLimit.
+     * <p>
+     * There is no default, since only the store knows how to get at
+     * its ids in order.  See the static scan below for one way.
+     */
+    public List<T> scan(int fromId, int limit);
+
+    /**
+     * scan for a store that keeps its ids in a sorted set, e.g. the
+     * keySet of a ConcurrentSkipListMap.  We start at fromId in the set,
+     * so a page costs limit lookups, however many ids are below fromId
+     * or have been deleted.  An id whose object has gone by the time we
+     * look it up is skipped.
+     */
+    public static <T> List<T> scan(NavigableSet<Integer> ids, IntFunction<T> lookup, int fromId, int limit) {
+        checkScanLimit(limit);
+        List<T> result = new ArrayList<>(Math.min(limit, 64));
+        for (int id : ids.tailSet(fromId, true)) {
+            if (result.size() == limit) {
+                break;
+            }
+            T obj = lookup.apply(id);
+            if (obj != null) {
+                result.add(obj);
+            }
+        }
         return result;
     }
+
+    public static void checkScanLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive, was " + limit);
+        }
+    }
 }
@@ -0,0 +1,102 @@
+package ttl.larku.dao;
+
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A Predicate that also knows which field it is testing, and how.
+ * DAOs that keep secondary indexes (the InMemory ones) look at the
+ * field and operation and answer the query from an index.
+ * Everybody else just calls test() on it like any other Predicate,
+ * so the default BaseDAO.findBy keeps working unchanged.
+ *
+ * @param <T>
+ * @author anil
+ */
+public class IndexedPredicate<T> implements Predicate<T> {
+
+    public enum Op {
+        EQUALS,
+        CONTAINS,
+        RANGE
+    }
+
+    private final String field;
+    private final Op op;
+    private final Object value;
+    private final Object upperValue;
+    private final Function<T, ?> getter;
+
+    private IndexedPredicate(String field, Op op, Object value, Object upperValue, Function<T, ?> getter) {
+        this.field = field;
+        this.op = op;
+        this.value = value;
+        this.upperValue = upperValue;
+        this.getter = getter;
+    }
+
+    public static <T, K> IndexedPredicate<T> equalTo(String field, Function<T, K> getter, K value) {
+        return new IndexedPredicate<>(field, Op.EQUALS, value, null, getter);
+    }
+
+    public static <T> IndexedPredicate<T> contains(String field, Function<T, String> getter, String value) {
+        return new IndexedPredicate<>(field, Op.CONTAINS, value, null, getter);
+    }
+
+    /**
+     * Both ends of the range are inclusive.
+     */
+    public static <T, K extends Comparable<? super K>> IndexedPredicate<T> between(String field,
+                                                                                 Function<T, K> getter,
+                                                                                 K from, K to) {
+        return new IndexedPredicate<>(field, Op.RANGE, from, to, getter);
+    }
+
+    @Override
+    public boolean test(T t) {
+        return testField(getter.apply(t));
+    }
+
+    /**
+     * The same test, given just the value of the field.  For DAOs
+     * that can get at one field without building the whole object.
+     */
+    @SuppressWarnings("unchecked")
+    public boolean testField(Object fieldValue) {
+        return switch (op) {
+            case EQUALS -> Objects.equals(fieldValue, value);
+            case CONTAINS -> fieldValue instanceof String s && s.contains((String) value);
+            case RANGE -> {
+                var k = (Comparable<Object>) fieldValue;
+                yield k != null && k.compareTo(value) >= 0 && k.compareTo(upperValue) <= 0;
+            }
+        };
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public Object getUpperValue() {
+        return upperValue;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedPredicate{" +
+                "field='" + field + '\'' +
+                ", op=" + op +
+                ", value=" + value +
+                (upperValue != null ? ", upperValue=" + upperValue : "") +
+                '}';
+    }
+}
@@ -6,12 +6,16 @@ import ttl.larku.domain.ScheduledClass;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class InMemoryClassDAO implements BaseDAO<ScheduledClass> {
 
-    private Map<Integer, ScheduledClass> classes = new ConcurrentHashMap<Integer, ScheduledClass>();
+    //Sorted by id, for scan
+    private NavigableMap<Integer, ScheduledClass> classes = new ConcurrentSkipListMap<>();
     private AtomicInteger nextId = new AtomicInteger(1);
 
 
@@ -45,6 +49,21 @@ public class InMemoryClassDAO implements BaseDAO<ScheduledClass> {
         return new ArrayList<ScheduledClass>(classes.values());
     }
 
+    @Override
+    public Stream<ScheduledClass> stream() {
+        return classes.values().stream();
+    }
+
+    @Override
+    public void forEach(Consumer<? super ScheduledClass> action) {
+        classes.values().forEach(action);
+    }
+
+    @Override
+    public List<ScheduledClass> scan(int fromId, int limit) {
+        return BaseDAO.scan(classes.navigableKeySet(), classes::get, fromId, limit);
+    }
+
     @Override
     public void deleteStore() {
         classes = null;
@@ -52,11 +71,11 @@ public class InMemoryClassDAO implements BaseDAO<ScheduledClass> {
 
     @Override
     public void createStore() {
-        classes = new ConcurrentHashMap<>();
+        classes = new ConcurrentSkipListMap<>();
         nextId = new AtomicInteger(1);
     }
 
     public void setClasses(Map<Integer, ScheduledClass> classes) {
-        this.classes = classes;
+        this.classes = new ConcurrentSkipListMap<>(classes);
     }
 }
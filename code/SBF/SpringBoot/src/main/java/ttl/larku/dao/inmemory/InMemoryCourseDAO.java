@@ -3,25 +3,102 @@ package ttl.larku.dao.inmemory;
 import ttl.larku.dao.BaseDAO;
 import ttl.larku.domain.Course;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public class InMemoryCourseDAO implements BaseDAO<Course> {
 
     private Map<Integer, Course> courses = new ConcurrentHashMap<Integer, Course>();
+    //The ids in the store, sorted, for scan.  The store stays a
+    //ConcurrentHashMap because its compute is atomic, and the indexes
+    //rely on that; ConcurrentSkipListMap's may run the function twice.
+    private NavigableSet<Integer> ids = new ConcurrentSkipListSet<>();
     private AtomicInteger nextId = new AtomicInteger(1);
+    private final IndexSet<Course> indexes = new IndexSet<Course>()
+            .add(new HashIndex<>("code", Course::getCode))
+            .add(new NGramIndex<>("code", Course::getCode));
+    private InMemoryJournal<Course> journal;
+
+    /**
+     * Make this DAO persistent.  Whatever the journal recovers becomes
+     * the contents of the store, and from then on every change is
+     * logged before we return.
+     */
+    public void setJournal(InMemoryJournal<Course> journal, Duration snapshotInterval) {
+        this.journal = journal;
+        Map<Integer, Course> recovered = journal.recover();
+        if (!recovered.isEmpty()) {
+            courses = new ConcurrentHashMap<>(recovered);
+            ids = new ConcurrentSkipListSet<>(courses.keySet());
+            indexes.rebuild(courses);
+        }
+        nextId = new AtomicInteger(journal.getRecoveredNextId());
+        journal.startSnapshots(() -> courses, () -> nextId.get(), snapshotInterval);
+    }
+
+    public InMemoryJournal<Course> getJournal() {
+        return journal;
+    }
+
+    /**
+     * Spring calls this on shutdown, as an inferred destroy method.
+     */
+    public void close() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
 
     @Override
     public boolean update(Course updateObject) {
-        return courses.computeIfPresent(updateObject.getId(), (key, oldValue) -> updateObject) != null;
+        int id = updateObject.getId();
+        //Indexed in the compute, so the index changes along with the store
+        BooleanSupplier change = () -> courses.computeIfPresent(id, (key, oldValue) -> {
+            indexes.index(key, updateObject);
+            return updateObject;
+        }) != null;
+        if (journal == null) {
+            return change.getAsBoolean();
+        }
+        //Logged after the compute, so there is no file I/O inside it
+        boolean updated = journal.logPut(id, updateObject, change);
+        if (updated) {
+            sync();
+        }
+        return updated;
     }
 
     @Override
     public boolean delete(Course course) {
-        return courses.remove(course.getId()) != null;
+        int id = course.getId();
+        BooleanSupplier change = () -> {
+            boolean[] deleted = new boolean[1];
+            courses.computeIfPresent(id, (key, oldValue) -> {
+                indexes.unindex(key);
+                ids.remove(key);
+                deleted[0] = true;
+                return null;
+            });
+            return deleted[0];
+        };
+        if (journal == null) {
+            return change.getAsBoolean();
+        }
+        boolean deleted = journal.logDelete(id, change);
+        if (deleted) {
+            sync();
+        }
+        return deleted;
     }
 
     @Override
@@ -29,8 +106,20 @@ public class InMemoryCourseDAO implements BaseDAO<Course> {
         //Create a new Id
         int newId = nextId.getAndIncrement();
         newObject.setId(newId);
-        courses.put(newId, newObject);
-
+        BooleanSupplier change = () -> {
+            courses.compute(newId, (key, oldValue) -> {
+                indexes.index(key, newObject);
+                ids.add(key);
+                return newObject;
+            });
+            return true;
+        };
+        if (journal == null) {
+            change.getAsBoolean();
+        } else {
+            journal.logPut(newId, newObject, change);
+            sync();
+        }
         return newObject;
     }
 
@@ -44,15 +133,48 @@ public class InMemoryCourseDAO implements BaseDAO<Course> {
         return new ArrayList<Course>(courses.values());
     }
 
+    @Override
+    public Stream<Course> stream() {
+        return courses.values().stream();
+    }
+
+    @Override
+    public void forEach(Consumer<? super Course> action) {
+        courses.values().forEach(action);
+    }
+
+    @Override
+    public List<Course> scan(int fromId, int limit) {
+        return BaseDAO.scan(ids, courses::get, fromId, limit);
+    }
+
+    /**
+     * IndexedPredicates on an indexed field are answered from the
+     * index.  Anything else is a scan, as before.
+     */
+    @Override
+    public List<Course> findBy(Predicate<Course> pred) {
+        List<Course> result = indexes.query(pred, courses);
+        return result != null ? result : BaseDAO.super.findBy(pred);
+    }
+
     @Override
     public void deleteStore() {
         courses = null;
+        ids = null;
+        indexes.clear();
     }
 
     @Override
     public void createStore() {
         courses = new ConcurrentHashMap<>();
+        ids = new ConcurrentSkipListSet<>();
         nextId = new AtomicInteger(1);
+        indexes.clear();
+        if (journal != null) {
+            journal.logClear();
+        }
+        sync();
     }
 
     public Map<Integer, Course> getCourses() {
@@ -61,5 +183,13 @@ public class InMemoryCourseDAO implements BaseDAO<Course> {
 
     public void setCourses(Map<Integer, Course> courses) {
         this.courses = courses;
+        ids = new ConcurrentSkipListSet<>(courses.keySet());
+        indexes.rebuild(courses);
+    }
+
+    private void sync() {
+        if (journal != null) {
+            journal.sync();
+        }
     }
 }
@@ -0,0 +1,578 @@
+package ttl.larku.dao.inmemory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ttl.larku.dao.offheap.RowCodec;
+
+/**
+ * Optional persistence for the InMemory DAOs: a write ahead log
+ * plus periodic snapshots.
+ * <p>
+ * Every change to the DAO is appended to a memory mapped log file
+ * before the DAO returns.  The DAO makes the change (e.g. in a
+ * ConcurrentHashMap compute) through logPut/logDelete, which append
+ * the record after the change, not inside it, under a lock striped by
+ * id.  So the records for an id are in the same order as its changes,
+ * and no file I/O is done while holding a map bin.  Writers use group commit.  Each writer
+ * appends its record and then waits, and a single flusher thread forces
+ * the log to disk once for everybody who is waiting.  With
+ * SyncMode.ASYNC the writers don't wait, and a crash can lose the
+ * last few milliseconds of changes.
+ * <p>
+ * Every snapshotInterval, and whenever a log file fills up, we switch
+ * to a new log file (a new "generation") and write every object to a
+ * snapshot file for that generation.
+ * <p>
+ * Every log record holds the whole object, or a delete of an id.  So
+ * replaying a record is idempotent, and it does not matter if a
+ * snapshot picks up changes that are also in the log.  On startup,
+ * recover() loads the newest snapshot (generation s).  It then replays
+ * the log files from generation s-1 onwards.  s-1 is included to cover
+ * writes that were still in flight when the snapshot started.  A torn
+ * record at the end of a log, from a crash in the middle of a write,
+ * fails its CRC check, and replay stops there.
+ * <p>
+ * Files in the directory, for a journal named "students":
+ * students.000042.wal, students.000042.snapshot
+ *
+ * @param <T>
+ */
+public class InMemoryJournal<T> implements AutoCloseable {
+
+    public enum SyncMode {
+        GROUP_COMMIT,
+        ASYNC
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryJournal.class);
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final byte OP_CLEAR = 3;
+
+    private static final int SNAPSHOT_MAGIC = 0x4C4B5553;  //LKUS
+    private static final int RECORD_HEADER = Integer.BYTES + Integer.BYTES;  //length, crc
+    private static final int BODY_HEADER = 1 + Integer.BYTES;  //op, id
+    private static final int STRIPES = 64;
+
+    private final Path dir;
+    private final String name;
+    private final RowCodec<T> codec;
+    private final ToIntFunction<T> idOf;
+    private final int logFileSize;
+    private final SyncMode syncMode;
+    private final Duration groupCommitDelay;
+    private final Pattern filePattern;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Object[] stripes = new Object[STRIPES];
+    private final Object syncMonitor = new Object();
+    private final CRC32 crc = new CRC32();
+
+    private long generation;
+    private FileChannel logChannel;
+    private MappedByteBuffer log;
+    private long appendedSeq;
+    private long durableSeq;
+    private volatile boolean closed;
+
+    private Thread flusher;
+    private ScheduledExecutorService snapshotter;
+    private Supplier<Map<Integer, T>> state;
+    private Supplier<Integer> nextId;
+    private int recoveredNextId = 1;
+
+    public InMemoryJournal(Path dir, String name, RowCodec<T> codec, ToIntFunction<T> idOf) {
+        this(dir, name, codec, idOf, 64 * 1024 * 1024, SyncMode.GROUP_COMMIT, Duration.ofMillis(2));
+    }
+
+    public InMemoryJournal(Path dir, String name, RowCodec<T> codec, ToIntFunction<T> idOf,
+                           int logFileSize, SyncMode syncMode, Duration groupCommitDelay) {
+        this.dir = dir;
+        this.name = name;
+        this.codec = codec;
+        this.idOf = idOf;
+        this.logFileSize = logFileSize;
+        this.syncMode = syncMode;
+        this.groupCommitDelay = groupCommitDelay;
+        this.filePattern = Pattern.compile(Pattern.quote(name) + "\\.(\\d+)\\.(wal|snapshot)");
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * Load the newest snapshot and replay the logs after it.
+     * Call this once, before anything is logged.
+     *
+     * @return the recovered objects, by id.
+     */
+    public Map<Integer, T> recover() {
+        try {
+            Files.createDirectories(dir);
+            long start = System.nanoTime();
+
+            Map<Integer, T> store = new HashMap<>();
+            long snapshotGen = -1;
+            List<Long> snapshots = generations("snapshot");
+            if (!snapshots.isEmpty()) {
+                snapshotGen = snapshots.get(snapshots.size() - 1);
+                loadSnapshot(fileFor(snapshotGen, "snapshot"), store);
+            }
+            int replayed = 0;
+            long lastGen = snapshotGen;
+            for (long gen : generations("wal")) {
+                if (gen >= snapshotGen - 1) {
+                    replayed += replayLog(fileFor(gen, "wal"), store);
+                }
+                lastGen = Math.max(lastGen, gen);
+            }
+
+            int maxId = store.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+            recoveredNextId = Math.max(recoveredNextId, maxId + 1);
+
+            openLog(lastGen + 1);
+            startFlusher();
+
+            logger.info("Journal {}: recovered {} objects (snapshot {}, {} log records replayed) in {} ms",
+                    name, store.size(), snapshotGen, replayed, (System.nanoTime() - start) / 1_000_000);
+            return store;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The next id to hand out, based on what was recovered.
+     */
+    public int getRecoveredNextId() {
+        return recoveredNextId;
+    }
+
+    /**
+     * Take a snapshot every interval.  The state supplier should return
+     * the live store of the DAO.  It is iterated, not copied.
+     */
+    public void startSnapshots(Supplier<Map<Integer, T>> state, Supplier<Integer> nextId, Duration interval) {
+        this.state = state;
+        this.nextId = nextId;
+        snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "journal-snapshot-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+        snapshotter.scheduleWithFixedDelay(this::snapshotQuietly,
+                interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Run change, and if it returns true, log obj as the new value for id.
+     *
+     * @return what change returned.
+     */
+    public boolean logPut(int id, T obj, BooleanSupplier change) {
+        synchronized (stripeFor(id)) {
+            if (!change.getAsBoolean()) {
+                return false;
+            }
+            int bodySize = BODY_HEADER + codec.encodedSize(obj);
+            append(OP_PUT, id, bodySize, obj);
+            return true;
+        }
+    }
+
+    /**
+     * Run change, and if it returns true, log a delete of id.
+     *
+     * @return what change returned.
+     */
+    public boolean logDelete(int id, BooleanSupplier change) {
+        synchronized (stripeFor(id)) {
+            if (!change.getAsBoolean()) {
+                return false;
+            }
+            append(OP_DELETE, id, BODY_HEADER, null);
+            return true;
+        }
+    }
+
+    private Object stripeFor(int id) {
+        return stripes[Math.floorMod(id, STRIPES)];
+    }
+
+    public void logClear() {
+        append(OP_CLEAR, 0, BODY_HEADER, null);
+    }
+
+    /**
+     * Wait until everything appended so far is on disk.
+     * Returns right away for SyncMode.ASYNC.
+     */
+    public void sync() {
+        if (syncMode == SyncMode.ASYNC) {
+            return;
+        }
+        synchronized (syncMonitor) {
+            long target = appendedSeq;
+            syncMonitor.notifyAll();
+            while (durableSeq < target && !closed) {
+                try {
+                    syncMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Switch to a new log file, and write everything in the store
+     * to a snapshot for the new generation.  Old files are removed
+     * once the snapshot is safely on disk.
+     */
+    public void snapshot() throws IOException {
+        if (state == null) {
+            return;
+        }
+        long gen;
+        appendLock.lock();
+        try {
+            gen = generation + 1;
+            openLog(gen);
+        } finally {
+            appendLock.unlock();
+        }
+        writeSnapshot(gen);
+    }
+
+    /**
+     * Write the snapshot for gen, which the log has already switched to.
+     */
+    private void writeSnapshot(long gen) throws IOException {
+        Path tmp = dir.resolve(fileFor(gen, "snapshot").getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024);
+            buffer.putInt(SNAPSHOT_MAGIC);
+            buffer.putInt(nextId.get());
+            for (T obj : state.get().values()) {
+                buffer = writeRow(obj, buffer, out);
+            }
+            if (buffer.remaining() < Integer.BYTES) {
+                drain(buffer, out);
+            }
+            buffer.putInt(-1);
+            drain(buffer, out);
+            out.force(true);
+        }
+        Files.move(tmp, fileFor(gen, "snapshot"), StandardCopyOption.ATOMIC_MOVE);
+
+        for (long old : generations("snapshot")) {
+            if (old < gen) {
+                Files.deleteIfExists(fileFor(old, "snapshot"));
+            }
+        }
+        for (long old : generations("wal")) {
+            if (old < gen - 1) {
+                Files.deleteIfExists(fileFor(old, "wal"));
+            }
+        }
+        logger.debug("Journal {}: snapshot {} written", name, gen);
+    }
+
+    @Override
+    public void close() {
+        if (snapshotter != null) {
+            snapshotter.shutdown();
+        }
+        appendLock.lock();
+        try {
+            if (log != null) {
+                log.force();
+            }
+            closed = true;
+            synchronized (syncMonitor) {
+                durableSeq = appendedSeq;
+                syncMonitor.notifyAll();
+            }
+            if (logChannel != null) {
+                logChannel.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            appendLock.unlock();
+        }
+        if (flusher != null) {
+            flusher.interrupt();
+        }
+    }
+
+    private void append(byte op, int id, int bodySize, T obj) {
+        if (RECORD_HEADER + bodySize + Integer.BYTES > logFileSize) {
+            throw new IllegalArgumentException("Record of " + bodySize + " bytes does not fit in a log file");
+        }
+        appendLock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Journal " + name + " is closed");
+            }
+            //Leave room for the zero length that marks the end.
+            if (log.remaining() < RECORD_HEADER + bodySize + Integer.BYTES) {
+                //Snapshot the generation we have just switched to,
+                //rather than have snapshot() switch again.
+                long gen = generation + 1;
+                openLog(gen);
+                if (snapshotter != null && state != null) {
+                    snapshotter.execute(() -> writeSnapshotQuietly(gen));
+                }
+            }
+            int start = log.position();
+            try {
+                log.position(start + RECORD_HEADER);
+                log.put(op);
+                log.putInt(id);
+                if (obj != null) {
+                    codec.encode(obj, log);
+                }
+                if (log.position() != start + RECORD_HEADER + bodySize) {
+                    throw new IllegalStateException("Codec wrote " + (log.position() - start - RECORD_HEADER)
+                            + " bytes, expected " + bodySize);
+                }
+            } catch (RuntimeException e) {
+                //Back out, so the next record goes where replay will find it.
+                log.position(start);
+                throw e;
+            }
+            crc.reset();
+            crc.update(log.slice(start + RECORD_HEADER, bodySize));
+            log.putInt(start, bodySize);
+            log.putInt(start + Integer.BYTES, (int) crc.getValue());
+
+            synchronized (syncMonitor) {
+                appendedSeq++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Must be called with appendLock held, or before anybody can append.
+     * Forces the old log, so nothing waits on a file we no longer flush.
+     */
+    private void openLog(long gen) throws IOException {
+        if (log != null) {
+            log.force();
+            logChannel.close();
+            synchronized (syncMonitor) {
+                durableSeq = appendedSeq;
+                syncMonitor.notifyAll();
+            }
+        }
+        generation = gen;
+        logChannel = FileChannel.open(fileFor(gen, "wal"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        log = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, logFileSize);
+    }
+
+    private void startFlusher() {
+        flusher = new Thread(this::flushLoop, "journal-flusher-" + name);
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * The group commit.  Wait for somebody to append, give others a
+     * moment to join in, and then force once for all of them.
+     */
+    private void flushLoop() {
+        while (!closed) {
+            try {
+                synchronized (syncMonitor) {
+                    while (durableSeq >= appendedSeq && !closed) {
+                        syncMonitor.wait(100);
+                    }
+                }
+                if (!groupCommitDelay.isZero()) {
+                    Thread.sleep(groupCommitDelay.toMillis());
+                }
+                long target;
+                MappedByteBuffer toForce;
+                appendLock.lock();
+                try {
+                    if (closed) {
+                        return;
+                    }
+                    synchronized (syncMonitor) {
+                        target = appendedSeq;
+                    }
+                    toForce = log;
+                } finally {
+                    appendLock.unlock();
+                }
+                //Force outside the lock, so appends can carry on meanwhile.
+                toForce.force();
+                synchronized (syncMonitor) {
+                    durableSeq = Math.max(durableSeq, target);
+                    syncMonitor.notifyAll();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Journal {}: flush failed", name, e);
+            }
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Journal {}: snapshot failed", name, e);
+        }
+    }
+
+    private void writeSnapshotQuietly(long gen) {
+        try {
+            writeSnapshot(gen);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Journal {}: snapshot failed", name, e);
+        }
+    }
+
+    private void loadSnapshot(Path file, Map<Integer, T> store) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            if (buffer.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a snapshot file: " + file);
+            }
+            recoveredNextId = buffer.getInt();
+            int size;
+            while ((size = buffer.getInt()) >= 0) {
+                int end = buffer.position() + size;
+                T obj = codec.decode(buffer);
+                buffer.position(end);
+                store.put(idOf.applyAsInt(obj), obj);
+            }
+        }
+    }
+
+    private int replayLog(Path file, Map<Integer, T> store) throws IOException {
+        int count = 0;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            CRC32 check = new CRC32();
+            while (buffer.remaining() >= RECORD_HEADER) {
+                int start = buffer.position();
+                int bodySize = buffer.getInt();
+                int expectedCrc = buffer.getInt();
+                if (bodySize < BODY_HEADER || bodySize > buffer.remaining()) {
+                    break;
+                }
+                check.reset();
+                check.update(buffer.slice(start + RECORD_HEADER, bodySize));
+                if ((int) check.getValue() != expectedCrc) {
+                    logger.warn("Journal {}: torn record at {} in {}, stopping replay", name, start, file);
+                    break;
+                }
+                byte op = buffer.get();
+                int id = buffer.getInt();
+                switch (op) {
+                    case OP_PUT -> store.put(id, codec.decode(buffer));
+                    case OP_DELETE -> store.remove(id);
+                    case OP_CLEAR -> store.clear();
+                    default -> throw new IOException("Unknown op " + op + " in " + file);
+                }
+                buffer.position(start + RECORD_HEADER + bodySize);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The objects are live, and somebody may be changing one while we
+     * encode it.  If that makes the encoded size come out different,
+     * we just encode it again.  Whatever we miss is in the log.
+     */
+    private ByteBuffer writeRow(T obj, ByteBuffer buffer, FileChannel out) throws IOException {
+        while (true) {
+            int size = codec.encodedSize(obj);
+            if (buffer.remaining() < Integer.BYTES + size) {
+                drain(buffer, out);
+                if (buffer.capacity() < Integer.BYTES + size) {
+                    buffer = ByteBuffer.allocate(Integer.BYTES + size);
+                }
+            }
+            int start = buffer.position();
+            try {
+                buffer.putInt(size);
+                codec.encode(obj, buffer);
+                if (buffer.position() == start + Integer.BYTES + size) {
+                    return buffer;
+                }
+            } catch (BufferOverflowException e) {
+                //changed under us, try again
+            }
+            buffer.position(start);
+        }
+    }
+
+    private void drain(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private Path fileFor(long gen, String type) {
+        return dir.resolve(String.format("%s.%06d.%s", name, gen, type));
+    }
+
+    /**
+     * The generations we have files of the given type for, oldest first.
+     */
+    private List<Long> generations(String type) throws IOException {
+        List<Long> result = new ArrayList<>();
+        try (var files = Files.list(dir)) {
+            files.forEach(f -> {
+                Matcher m = filePattern.matcher(f.getFileName().toString());
+                if (m.matches() && m.group(2).equals(type)) {
+                    result.add(Long.parseLong(m.group(1)));
+                }
+            });
+        }
+        result.sort(null);
+        return result;
+    }
+}
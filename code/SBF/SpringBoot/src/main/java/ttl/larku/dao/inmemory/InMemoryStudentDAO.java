@@ -3,17 +3,32 @@ package ttl.larku.dao.inmemory;
 import ttl.larku.dao.BaseDAO;
 import ttl.larku.domain.Student;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public class InMemoryStudentDAO implements BaseDAO<Student> {
 
     private Map<Integer, Student> students = new ConcurrentHashMap<>();
+    //The ids in the store, sorted, for scan.  The store stays a
+    //ConcurrentHashMap because its compute is atomic, and the indexes
+    //rely on that; ConcurrentSkipListMap's may run the function twice.
+    private NavigableSet<Integer> ids = new ConcurrentSkipListSet<>();
     private AtomicInteger nextId = new AtomicInteger(1);
+    private final IndexSet<Student> indexes = new IndexSet<Student>()
+            .add(new NGramIndex<>("name", Student::getName))
+            .add(new RangeIndex<>("dob", Student::getDob));
     private String from;
+    private InMemoryJournal<Student> journal;
 
     public InMemoryStudentDAO(String from) {
         this.from = from + ": ";
@@ -23,14 +38,76 @@ public class InMemoryStudentDAO implements BaseDAO<Student> {
         this("InMem");
     }
 
+    /**
+     * Make this DAO persistent.  Whatever the journal recovers becomes
+     * the contents of the store, and from then on every change is
+     * logged before we return.
+     */
+    public void setJournal(InMemoryJournal<Student> journal, Duration snapshotInterval) {
+        this.journal = journal;
+        Map<Integer, Student> recovered = journal.recover();
+        if (!recovered.isEmpty()) {
+            students = new ConcurrentHashMap<>(recovered);
+            ids = new ConcurrentSkipListSet<>(students.keySet());
+            indexes.rebuild(students);
+        }
+        nextId = new AtomicInteger(journal.getRecoveredNextId());
+        journal.startSnapshots(() -> students, () -> nextId.get(), snapshotInterval);
+    }
+
+    public InMemoryJournal<Student> getJournal() {
+        return journal;
+    }
+
+    /**
+     * Spring calls this on shutdown, as an inferred destroy method.
+     */
+    public void close() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
     @Override
     public boolean update(Student updateObject) {
-        return students.computeIfPresent(updateObject.getId(), (key, oldValue) -> updateObject) != null;
+        int id = updateObject.getId();
+        //Indexed in the compute, so the index changes along with the store
+        BooleanSupplier change = () -> students.computeIfPresent(id, (key, oldValue) -> {
+            indexes.index(key, updateObject);
+            return updateObject;
+        }) != null;
+        if (journal == null) {
+            return change.getAsBoolean();
+        }
+        //Logged after the compute, so there is no file I/O inside it
+        boolean updated = journal.logPut(id, updateObject, change);
+        if (updated) {
+            sync();
+        }
+        return updated;
     }
 
     @Override
     public boolean delete(Student student) {
-        return students.remove(student.getId()) != null;
+        int id = student.getId();
+        BooleanSupplier change = () -> {
+            boolean[] deleted = new boolean[1];
+            students.computeIfPresent(id, (key, oldValue) -> {
+                indexes.unindex(key);
+                ids.remove(key);
+                deleted[0] = true;
+                return null;
+            });
+            return deleted[0];
+        };
+        if (journal == null) {
+            return change.getAsBoolean();
+        }
+        boolean deleted = journal.logDelete(id, change);
+        if (deleted) {
+            sync();
+        }
+        return deleted;
     }
 
     @Override
@@ -38,9 +115,21 @@ public class InMemoryStudentDAO implements BaseDAO<Student> {
         //Create a new Id
         int newId = nextId.getAndIncrement();
         newObject.setId(newId);
-        students.put(newId, newObject);
-
         newObject.setName(from + newObject.getName());
+        BooleanSupplier change = () -> {
+            students.compute(newId, (key, oldValue) -> {
+                indexes.index(key, newObject);
+                ids.add(key);
+                return newObject;
+            });
+            return true;
+        };
+        if (journal == null) {
+            change.getAsBoolean();
+        } else {
+            journal.logPut(newId, newObject, change);
+            sync();
+        }
         return newObject;
     }
 
@@ -54,15 +143,48 @@ public class InMemoryStudentDAO implements BaseDAO<Student> {
         return new ArrayList<Student>(students.values());
     }
 
+    @Override
+    public Stream<Student> stream() {
+        return students.values().stream();
+    }
+
+    @Override
+    public void forEach(Consumer<? super Student> action) {
+        students.values().forEach(action);
+    }
+
+    @Override
+    public List<Student> scan(int fromId, int limit) {
+        return BaseDAO.scan(ids, students::get, fromId, limit);
+    }
+
+    /**
+     * IndexedPredicates on an indexed field are answered from the
+     * index.  Anything else is a scan, as before.
+     */
+    @Override
+    public List<Student> findBy(Predicate<Student> pred) {
+        List<Student> result = indexes.query(pred, students);
+        return result != null ? result : BaseDAO.super.findBy(pred);
+    }
+
     @Override
     public void deleteStore() {
         students = null;
+        ids = null;
+        indexes.clear();
     }
 
     @Override
     public void createStore() {
         students = new ConcurrentHashMap<>();
+        ids = new ConcurrentSkipListSet<>();
         nextId = new AtomicInteger(1);
+        indexes.clear();
+        if (journal != null) {
+            journal.logClear();
+        }
+        sync();
     }
 
     public Map<Integer, Student> getStudents() {
@@ -71,5 +193,13 @@ public class InMemoryStudentDAO implements BaseDAO<Student> {
 
     public void setStudents(Map<Integer, Student> students) {
         this.students = students;
+        ids = new ConcurrentSkipListSet<>(students.keySet());
+        indexes.rebuild(students);
+    }
+
+    private void sync() {
+        if (journal != null) {
+            journal.sync();
+        }
     }
 }
@@ -0,0 +1,60 @@
+package ttl.larku.dao.inmemory;
+
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import ttl.larku.dao.IndexedPredicate;
+
+/**
+ * Ordered index.  Answers RANGE (and EQUALS) predicates by walking
+ * only the part of a skip list that falls inside the range.
+ */
+public class RangeIndex<T, K extends Comparable<? super K>> extends SecondaryIndex<T, K> {
+
+    private final NavigableMap<K, Set<Integer>> buckets = new ConcurrentSkipListMap<>();
+
+    public RangeIndex(String field, Function<T, K> keyExtractor) {
+        super(field, keyExtractor);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<Integer> candidates(IndexedPredicate<T> pred) {
+        if (pred.getValue() == null) {
+            return null;
+        }
+        K from = (K) pred.getValue();
+        K to = switch (pred.getOp()) {
+            case EQUALS -> from;
+            case RANGE -> (K) pred.getUpperValue();
+            default -> null;
+        };
+        if (to == null) {
+            return null;
+        }
+        if (from.compareTo(to) > 0) {
+            return Set.of();
+        }
+
+        Set<Integer> result = new TreeSet<>();
+        buckets.subMap(from, true, to, true).values().forEach(result::addAll);
+        return result;
+    }
+
+    @Override
+    protected void addKey(int id, K key) {
+        addToBucket(buckets, key, id);
+    }
+
+    @Override
+    protected void removeKey(int id, K key) {
+        removeFromBucket(buckets, key, id);
+    }
+
+    @Override
+    protected void clearKeys() {
+        buckets.clear();
+    }
+}
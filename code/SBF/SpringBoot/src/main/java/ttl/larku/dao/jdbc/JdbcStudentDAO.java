@@ -1,11 +1,28 @@
 package ttl.larku.dao.jdbc;
 
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
@@ -15,10 +32,52 @@ import ttl.larku.domain.Student;
 @Repository
 public class JdbcStudentDAO implements BaseDAO<Student> {
 
+    private JdbcTemplate jdbcTemplate;
     private JdbcClient jdbcClient;
+    private int batchSize = 500;
+
+    //Same DataSource, but with a fetch size, for stream().
+    private JdbcTemplate streamingTemplate;
+    private JdbcClient streamingClient;
 
     public JdbcStudentDAO(DataSource dataSource) {
-        jdbcClient = JdbcClient.create(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcClient = JdbcClient.create(jdbcTemplate);
+
+        streamingTemplate = new JdbcTemplate(dataSource);
+        streamingTemplate.setFetchSize(1000);
+        streamingClient = JdbcClient.create(streamingTemplate);
+    }
+
+    /**
+     * How many rows createAll and updateAll send to the database
+     * in one batch.
+     */
+    @Value("${ttl.larku.jdbc.batch-size:500}")
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1, got " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * How many rows stream() asks the driver for at a time.
+     */
+    @Value("${ttl.larku.jdbc.fetch-size:1000}")
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("fetchSize must be at least 1, got " + fetchSize);
+        }
+        streamingTemplate.setFetchSize(fetchSize);
+    }
+
+    public int getFetchSize() {
+        return streamingTemplate.getFetchSize();
     }
 
     private String updateSql = "update student set name = ?, dob = ?, status = ? where id = ?";
@@ -56,6 +115,111 @@ public class JdbcStudentDAO implements BaseDAO<Student> {
         return newObject;
     }
 
+    /**
+     * Insert all the students, batchSize rows per round trip, and set
+     * the generated id on each one.
+     * <p>
+     * Call this inside a transaction if you want all or nothing.
+     * Otherwise each batch is committed on its own.
+     *
+     * @return the students, with their ids set.
+     */
+    public List<Student> createAll(Collection<Student> students) {
+        createAll(students.iterator());
+        return new ArrayList<>(students);
+    }
+
+    /**
+     * Insert students as they come off the iterator.  Only one batch
+     * is held on to at a time, so the input can be arbitrarily large.
+     * Each Student gets its generated id set as its batch goes in.
+     *
+     * @return the number of students inserted.
+     */
+    public int createAll(Iterator<? extends Student> students) {
+        return jdbcTemplate.execute((Connection conn) -> {
+            int count = 0;
+            List<Student> batch = new ArrayList<>(batchSize);
+            try (PreparedStatement ps = conn.prepareStatement(insertSql, new String[]{"id"})) {
+                while (students.hasNext()) {
+                    Student student = students.next();
+                    bindColumns(ps, student);
+                    ps.addBatch();
+                    batch.add(student);
+                    if (batch.size() == batchSize || !students.hasNext()) {
+                        ps.executeBatch();
+                        assignKeys(ps, batch);
+                        count += batch.size();
+                        batch.clear();
+                    }
+                }
+            }
+            return count;
+        });
+    }
+
+    public int updateAll(Collection<Student> students) {
+        return updateAll(students.iterator());
+    }
+
+    /**
+     * Batched version of update.
+     *
+     * @return the number of students that were actually updated.
+     * Students whose id is not in the table are skipped, as with update.
+     */
+    public int updateAll(Iterator<? extends Student> students) {
+        return jdbcTemplate.execute((Connection conn) -> {
+            int count = 0;
+            int pending = 0;
+            try (PreparedStatement ps = conn.prepareStatement(updateSql)) {
+                while (students.hasNext()) {
+                    Student student = students.next();
+                    bindColumns(ps, student);
+                    ps.setInt(4, student.getId());
+                    ps.addBatch();
+                    if (++pending == batchSize || !students.hasNext()) {
+                        for (int rows : ps.executeBatch()) {
+                            //Some drivers only tell us it worked, not how many rows
+                            count += rows == Statement.SUCCESS_NO_INFO ? 1 : rows;
+                        }
+                        pending = 0;
+                    }
+                }
+            }
+            return count;
+        });
+    }
+
+    /**
+     * name, dob, status - the first three parameters of both
+     * insertSql and updateSql.
+     */
+    private void bindColumns(PreparedStatement ps, Student student) throws SQLException {
+        ps.setString(1, student.getName());
+        if (student.getDob() != null) {
+            ps.setDate(2, Date.valueOf(student.getDob()));
+        } else {
+            ps.setNull(2, Types.DATE);
+        }
+        ps.setString(3, student.getStatus().toString());
+    }
+
+    /**
+     * The driver hands back the keys for the whole batch, in order.
+     */
+    private void assignKeys(PreparedStatement ps, List<Student> batch) throws SQLException {
+        try (ResultSet keys = ps.getGeneratedKeys()) {
+            for (Student student : batch) {
+                if (!keys.next()) {
+                    throw new DataRetrievalFailureException("Got fewer generated keys than the "
+                            + batch.size() + " rows inserted");
+                }
+                student.setId(keys.getInt(1));
+            }
+        }
+    }
+
     private String findByIdSql = "select * from student where id = ?";
     public Student findById(int id) {
         var result = jdbcClient.sql(findByIdSql)
@@ -73,6 +237,86 @@ public class JdbcStudentDAO implements BaseDAO<Student> {
         return result;
     }
 
+    /**
+     * Stream every student off a database cursor, fetchSize rows at a
+     * time, instead of building the whole List like findAll does.
+     * <p>
+     * The stream holds a connection until it is closed, so always use
+     * it in a try-with-resources.  Note that the Postgres driver only
+     * uses a cursor when auto commit is off, i.e. inside a
+     * transaction.  Outside of one it reads the whole result set.
+     * For a long export with no transaction, use streamByKeyset.
+     */
+    @Override
+    public Stream<Student> stream() {
+        return streamingClient.sql(findAllSql)
+              .query(Student.class)
+              .stream();
+    }
+
+    private String findAfterSql = "select * from student where id > ? order by id limit ?";
+
+    /**
+     * Keyset pagination.  Return at most limit students with an id
+     * greater than afterId, in id order.  For the next page, pass in
+     * the id of the last student on this one.  Unlike an offset, this
+     * costs the same however deep into the table we are.
+     */
+    public List<Student> findAfter(int afterId, int limit) {
+        var result = jdbcClient.sql(findAfterSql)
+              .param(afterId)
+              .param(limit)
+              .query(Student.class)
+              .list();
+        return result;
+    }
+
+    /**
+     * Stream every student, one findAfter page at a time.  No
+     * connection is held between pages, so this works with or without
+     * a transaction, and only one page is in memory at a time.
+     * Rows inserted or deleted while we are part way through may or
+     * may not show up.
+     */
+    public Stream<Student> streamByKeyset(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be at least 1, got " + pageSize);
+        }
+        Iterator<Student> pages = new Iterator<>() {
+            private List<Student> page = findAfter(0, pageSize);
+            private int pos;
+
+            @Override
+            public boolean hasNext() {
+                if (pos == page.size() && page.size() == pageSize) {
+                    page = findAfter(page.get(pos - 1).getId(), pageSize);
+                    pos = 0;
+                }
+                return pos < page.size();
+            }
+
+            @Override
+            public Student next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.get(pos++);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages,
+              Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * scan is findAfter, from the id just below fromId.  Ids start
+     * at 1, so anything below that is the same as 1.
+     */
+    @Override
+    public List<Student> scan(int fromId, int limit) {
+        BaseDAO.checkScanLimit(limit);
+        return findAfter(Math.max(fromId, 1) - 1, limit);
+    }
+
     public void deleteStore() {
     }
 
@@ -6,12 +6,16 @@ import ttl.larku.domain.Course;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class JPACourseDAO implements BaseDAO<Course> {
 
-    private Map<Integer, Course> courses = new ConcurrentHashMap<>();
+    //Sorted by id, for scan
+    private NavigableMap<Integer, Course> courses = new ConcurrentSkipListMap<>();
     private AtomicInteger nextId = new AtomicInteger(1);
 
     private String from;
@@ -50,12 +54,24 @@ public class JPACourseDAO implements BaseDAO<Course> {
         return new ArrayList<Course>(courses.values());
     }
 
+    public Stream<Course> stream() {
+        return courses.values().stream();
+    }
+
+    public void forEach(Consumer<? super Course> action) {
+        courses.values().forEach(action);
+    }
+
+    public List<Course> scan(int fromId, int limit) {
+        return BaseDAO.scan(courses.navigableKeySet(), courses::get, fromId, limit);
+    }
+
     public void deleteStore() {
         courses = null;
     }
 
     public void createStore() {
-        courses = new ConcurrentHashMap<>();
+        courses = new ConcurrentSkipListMap<>();
         nextId = new AtomicInteger(1);
     }
 
@@ -64,6 +80,6 @@ public class JPACourseDAO implements BaseDAO<Course> {
     }
 
     public void setCourses(Map<Integer, Course> courses) {
-        this.courses = courses;
+        this.courses = new ConcurrentSkipListMap<>(courses);
     }
 }
@@ -6,12 +6,16 @@ import ttl.larku.domain.Student;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class JPAStudentDAO implements BaseDAO<Student> {
 
-    private Map<Integer, Student> students = new ConcurrentHashMap<>();
+    //Sorted by id, for scan
+    private NavigableMap<Integer, Student> students = new ConcurrentSkipListMap<>();
     private AtomicInteger nextId = new AtomicInteger(1);
 
     private String from;
@@ -52,12 +56,24 @@ public class JPAStudentDAO implements BaseDAO<Student> {
         return new ArrayList<Student>(students.values());
     }
 
+    public Stream<Student> stream() {
+        return students.values().stream();
+    }
+
+    public void forEach(Consumer<? super Student> action) {
+        students.values().forEach(action);
+    }
+
+    public List<Student> scan(int fromId, int limit) {
+        return BaseDAO.scan(students.navigableKeySet(), students::get, fromId, limit);
+    }
+
     public void deleteStore() {
         students = null;
     }
 
     public void createStore() {
-        students = new ConcurrentHashMap<>();
+        students = new ConcurrentSkipListMap<>();
         nextId = new AtomicInteger(1);
     }
 
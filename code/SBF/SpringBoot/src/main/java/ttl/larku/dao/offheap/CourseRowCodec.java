@@ -0,0 +1,58 @@
+package ttl.larku.dao.offheap;
+
+import java.nio.ByteBuffer;
+import ttl.larku.domain.Course;
+
+import static ttl.larku.dao.offheap.RowCodec.getString;
+import static ttl.larku.dao.offheap.RowCodec.putString;
+import static ttl.larku.dao.offheap.RowCodec.sizeOf;
+import static ttl.larku.dao.offheap.RowCodec.skipString;
+
+/**
+ * Encodes Courses as rows for OffHeapCourseDAO and InMemoryJournal.
+ * <p>
+ * Row layout: id(int) code(string) title(string) credits(float)
+ */
+public class CourseRowCodec implements RowCodec<Course> {
+
+    @Override
+    public int encodedSize(Course course) {
+        return Integer.BYTES + sizeOf(course.getCode()) + sizeOf(course.getTitle()) + Float.BYTES;
+    }
+
+    @Override
+    public void encode(Course course, ByteBuffer buffer) {
+        buffer.putInt(course.getId());
+        putString(buffer, course.getCode());
+        putString(buffer, course.getTitle());
+        buffer.putFloat(course.getCredits());
+    }
+
+    @Override
+    public Course decode(ByteBuffer buffer) {
+        Course course = new Course();
+        course.setId(buffer.getInt());
+        course.setCode(getString(buffer));
+        course.setTitle(getString(buffer));
+        course.setCredits(buffer.getFloat());
+        return course;
+    }
+
+    @Override
+    public boolean hasField(String field) {
+        return field.equals("code") || field.equals("title");
+    }
+
+    @Override
+    public Object decodeField(ByteBuffer buffer, String field) {
+        buffer.position(buffer.position() + Integer.BYTES);
+        if (field.equals("code")) {
+            return getString(buffer);
+        }
+        skipString(buffer);
+        if (field.equals("title")) {
+            return getString(buffer);
+        }
+        return RowCodec.super.decodeField(buffer, field);
+    }
+}
@@ -0,0 +1,26 @@
+package ttl.larku.dao.offheap;
+
+import ttl.larku.domain.Course;
+
+/**
+ * Courses stored off heap.  See OffHeapDAO.
+ * <p>
+ * The rating is not stored.  CourseServiceWithRating fills it in
+ * on the way out.
+ */
+public class OffHeapCourseDAO extends OffHeapDAO<Course> {
+
+    public OffHeapCourseDAO() {
+        super(new CourseRowCodec());
+    }
+
+    @Override
+    protected int idOf(Course course) {
+        return course.getId();
+    }
+
+    @Override
+    protected void assignId(Course course, int id) {
+        course.setId(id);
+    }
+}
@@ -0,0 +1,343 @@
+package ttl.larku.dao.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import ttl.larku.dao.BaseDAO;
+import ttl.larku.dao.IndexedPredicate;
+
+/**
+ * A BaseDAO that keeps its objects encoded as rows in a direct
+ * (off heap) ByteBuffer, instead of as a Map of POJOs.
+ * <p>
+ * The only things on the heap are the id -> row offset table, which
+ * is a primitive IntLongHashMap, and the buffer object itself.  So there
+ * is no boxing of ids, and no per object headers, fields or Strings.
+ * An object is only decoded when somebody asks for it, and we never
+ * hold on to the decoded copy.  findBy decodes just the field it is
+ * testing, see there.  That also means that changing an object
+ * you got from here does nothing until you call update with it.
+ * <p>
+ * Rows are appended to the end of the buffer.  update and delete just
+ * leave the old row behind as garbage, and the buffer is compacted
+ * when it needs to grow and at least half of it is garbage.
+ * <p>
+ * A single ByteBuffer can hold at most 2GB.
+ *
+ * @param <T>
+ */
+public abstract class OffHeapDAO<T> implements BaseDAO<T> {
+
+    private static final long MISSING = -1;
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final int ROW_HEADER = Integer.BYTES;
+
+    private final RowCodec<T> codec;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private IntLongHashMap offsets;
+    private ByteBuffer rows;
+    private int writePosition;
+    private int garbageBytes;
+    private AtomicInteger nextId;
+
+    protected OffHeapDAO(RowCodec<T> codec) {
+        this.codec = codec;
+        createStore();
+    }
+
+    protected abstract int idOf(T obj);
+
+    protected abstract void assignId(T obj, int id);
+
+    /**
+     * Hook for subclasses to touch a new object before it is stored.
+     */
+    protected void beforeInsert(T newObject) {
+    }
+
+    @Override
+    public T insert(T newObject) {
+        int newId = nextId.getAndIncrement();
+        assignId(newObject, newId);
+        beforeInsert(newObject);
+
+        lock.writeLock().lock();
+        try {
+            offsets.put(newId, append(newObject), MISSING);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return newObject;
+    }
+
+    @Override
+    public boolean update(T updateObject) {
+        int id = idOf(updateObject);
+        lock.writeLock().lock();
+        try {
+            long oldOffset = offsets.get(id, MISSING);
+            if (oldOffset == MISSING) {
+                return false;
+            }
+            //Get the old size first, append may compact and move things.
+            int oldSize = rowSize(oldOffset);
+            offsets.put(id, append(updateObject), MISSING);
+            garbageBytes += oldSize;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean delete(T deleteObject) {
+        lock.writeLock().lock();
+        try {
+            long oldOffset = offsets.remove(idOf(deleteObject), MISSING);
+            if (oldOffset == MISSING) {
+                return false;
+            }
+            garbageBytes += rowSize(oldOffset);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public T findById(int id) {
+        lock.readLock().lock();
+        try {
+            long offset = offsets.get(id, MISSING);
+            return offset != MISSING ? decodeAt(offset) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<T> findAll() {
+        lock.readLock().lock();
+        try {
+            int[] ids = offsets.keys();
+            List<T> result = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                result.add(decodeAt(offsets.get(id, MISSING)));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Only the ids are copied.  Each row is decoded as the stream
+     * gets to it.  Rows deleted in the meantime are skipped.
+     */
+    @Override
+    public Stream<T> stream() {
+        int[] ids;
+        lock.readLock().lock();
+        try {
+            ids = offsets.keys();
+        } finally {
+            lock.readLock().unlock();
+        }
+        return Arrays.stream(ids)
+                .mapToObj(this::findById)
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * Fields are decoded lazily here.  For an IndexedPredicate on a
+     * field the codec can pick out, only that field is decoded from
+     * each row to test it, and only the rows that match are decoded
+     * whole.  Anything else goes through stream() and decodes every row.
+     */
+    @Override
+    public List<T> findBy(Predicate<T> pred) {
+        if (!(pred instanceof IndexedPredicate<T> indexed) || !codec.hasField(indexed.getField())) {
+            return BaseDAO.super.findBy(pred);
+        }
+        String field = indexed.getField();
+        lock.readLock().lock();
+        try {
+            List<T> result = new ArrayList<>();
+            ByteBuffer reader = rows.duplicate();
+            for (int id : offsets.keys()) {
+                long offset = offsets.get(id, MISSING);
+                reader.position((int) offset + ROW_HEADER);
+                if (indexed.testField(codec.decodeField(reader, field))) {
+                    result.add(decodeAt(offset));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        stream().forEach(action);
+    }
+
+    /**
+     * The offsets table isn't sorted, but insert hands out the ids in
+     * order, so we just walk them up from fromId and skip the ones that
+     * have been deleted.  A page costs limit lookups plus one for each
+     * deleted id we pass, with nothing copied or sorted.  Only the rows
+     * we return are decoded.
+     */
+    @Override
+    public List<T> scan(int fromId, int limit) {
+        BaseDAO.checkScanLimit(limit);
+        lock.readLock().lock();
+        try {
+            List<T> result = new ArrayList<>(Math.min(limit, 64));
+            int lastId = nextId.get() - 1;
+            for (int id = Math.max(fromId, 1); id <= lastId && result.size() < limit; id++) {
+                long offset = offsets.get(id, MISSING);
+                if (offset != MISSING) {
+                    result.add(decodeAt(offset));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteStore() {
+        lock.writeLock().lock();
+        try {
+            offsets = null;
+            rows = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void createStore() {
+        lock.writeLock().lock();
+        try {
+            offsets = new IntLongHashMap();
+            rows = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+            writePosition = 0;
+            garbageBytes = 0;
+            nextId = new AtomicInteger(1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return offsets.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bytes of heap held by the id table.
+     */
+    public long heapBytes() {
+        lock.readLock().lock();
+        try {
+            return offsets.heapBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bytes of off heap memory held by the row buffer.
+     */
+    public long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return rows.capacity();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Everything below must be called with the lock held.
+
+    private T decodeAt(long offset) {
+        ByteBuffer reader = rows.duplicate();
+        reader.position((int) offset + ROW_HEADER);
+        return codec.decode(reader);
+    }
+
+    private int rowSize(long offset) {
+        return ROW_HEADER + rows.getInt((int) offset);
+    }
+
+    private long append(T obj) {
+        int size = codec.encodedSize(obj);
+        ensureCapacity(ROW_HEADER + size);
+
+        int offset = writePosition;
+        ByteBuffer writer = rows.duplicate();
+        writer.position(offset);
+        writer.putInt(size);
+        codec.encode(obj, writer);
+        if (writer.position() != offset + ROW_HEADER + size) {
+            throw new IllegalStateException("Codec wrote " + (writer.position() - offset - ROW_HEADER)
+                    + " bytes, but said it would write " + size);
+        }
+        writePosition = writer.position();
+        return offset;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (rows.capacity() - writePosition >= needed) {
+            return;
+        }
+        int live = writePosition - garbageBytes;
+        long wanted = (long) live + needed;
+        long newCapacity = rows.capacity();
+        //Only grow if compacting would leave it more than half full.
+        while (newCapacity < wanted * 2) {
+            newCapacity *= 2;
+        }
+        if (newCapacity > Integer.MAX_VALUE - 8) {
+            newCapacity = Integer.MAX_VALUE - 8;
+            if (newCapacity < wanted) {
+                throw new IllegalStateException("OffHeap store is full");
+            }
+        }
+        compactInto(ByteBuffer.allocateDirect((int) newCapacity));
+    }
+
+    /**
+     * Copy only the live rows into the new buffer, and point the
+     * offsets at their new positions.
+     */
+    private void compactInto(ByteBuffer newRows) {
+        int position = 0;
+        for (int id : offsets.keys()) {
+            long oldOffset = offsets.get(id, MISSING);
+            int size = rowSize(oldOffset);
+            newRows.put(position, rows, (int) oldOffset, size);
+            offsets.put(id, position, MISSING);
+            position += size;
+        }
+        rows = newRows;
+        writePosition = position;
+        garbageBytes = 0;
+    }
+}
@@ -0,0 +1,47 @@
+package ttl.larku.dao.offheap;
+
+import java.util.function.IntFunction;
+import ttl.larku.domain.ScheduledClass;
+import ttl.larku.domain.Student;
+
+/**
+ * Students stored off heap.  See OffHeapDAO.
+ * <p>
+ * Only the ids of a Student's classes are stored, and classLookup
+ * turns them back into ScheduledClasses.  See StudentRowCodec.  As
+ * with anything from here, a registration is only kept once the
+ * Student is updated, which the RegistrationService does.
+ */
+public class OffHeapStudentDAO extends OffHeapDAO<Student> {
+
+    private String from;
+
+    public OffHeapStudentDAO(String from, IntFunction<ScheduledClass> classLookup) {
+        super(new StudentRowCodec(classLookup));
+        this.from = from + ": ";
+    }
+
+    public OffHeapStudentDAO(String from) {
+        super(new StudentRowCodec());
+        this.from = from + ": ";
+    }
+
+    public OffHeapStudentDAO() {
+        this("OffHeap");
+    }
+
+    @Override
+    protected int idOf(Student student) {
+        return student.getId();
+    }
+
+    @Override
+    protected void assignId(Student student, int id) {
+        student.setId(id);
+    }
+
+    @Override
+    protected void beforeInsert(Student newObject) {
+        newObject.setName(from + newObject.getName());
+    }
+}
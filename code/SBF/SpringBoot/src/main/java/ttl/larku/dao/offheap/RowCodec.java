@@ -0,0 +1,103 @@
+package ttl.larku.dao.offheap;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns an object into a row of bytes in a ByteBuffer, and back.
+ * Used by OffHeapDAO to keep its objects outside the Java heap.
+ * <p>
+ * encode must write exactly encodedSize(obj) bytes, starting at
+ * the current position of the buffer.  decode reads starting at
+ * the current position.
+ *
+ * @param <T>
+ */
+public interface RowCodec<T> {
+
+    int encodedSize(T obj);
+
+    void encode(T obj, ByteBuffer buffer);
+
+    T decode(ByteBuffer buffer);
+
+    /**
+     * Decodes just the one field of the row, reading from the start
+     * of the row, so that OffHeapDAO.findBy can test a row without
+     * decoding all of it.  Returns false from hasField for fields it
+     * can't pick out on their own, which is all of them by default.
+     */
+    default boolean hasField(String field) {
+        return false;
+    }
+
+    default Object decodeField(ByteBuffer buffer, String field) {
+        throw new UnsupportedOperationException("No field " + field + " in " + getClass().getSimpleName());
+    }
+
+    /*
+     * Helpers for the codecs.  Strings are stored as an int length
+     * followed by UTF-8 bytes.  A length of -1 means null.
+     */
+
+    static int sizeOf(String s) {
+        if (s == null) {
+            return Integer.BYTES;
+        }
+        int bytes = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return Integer.BYTES + bytes;
+    }
+
+    static void putString(ByteBuffer buffer, String s) {
+        if (s == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void skipString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length > 0) {
+            buffer.position(buffer.position() + length);
+        }
+    }
+
+    /**
+     * Enums are stored as a byte ordinal, -1 for null.
+     */
+    static void putEnum(ByteBuffer buffer, Enum<?> e) {
+        buffer.put(e != null ? (byte) e.ordinal() : -1);
+    }
+
+    static <E extends Enum<E>> E getEnum(ByteBuffer buffer, E[] values) {
+        byte ordinal = buffer.get();
+        return ordinal >= 0 ? values[ordinal] : null;
+    }
+}
@@ -0,0 +1,128 @@
+package ttl.larku.dao.offheap;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.IntFunction;
+import ttl.larku.domain.PhoneNumber;
+import ttl.larku.domain.ScheduledClass;
+import ttl.larku.domain.Student;
+
+import static ttl.larku.dao.offheap.RowCodec.getEnum;
+import static ttl.larku.dao.offheap.RowCodec.getString;
+import static ttl.larku.dao.offheap.RowCodec.putEnum;
+import static ttl.larku.dao.offheap.RowCodec.putString;
+import static ttl.larku.dao.offheap.RowCodec.sizeOf;
+import static ttl.larku.dao.offheap.RowCodec.skipString;
+
+/**
+ * Encodes Students as rows for OffHeapStudentDAO and InMemoryJournal.
+ * <p>
+ * Row layout:
+ * id(int) name(string) dob(long epoch day, MIN_VALUE for null)
+ * status(byte) phoneCount(int) [number(string) type(byte)]...
+ * classCount(int) [classId(int)]...
+ * <p>
+ * Only the ids of a Student's classes are stored.  They are turned
+ * back into ScheduledClasses by the classLookup, e.g. the class DAO's
+ * findById, and ids it can't find are dropped.  With no classLookup,
+ * the classes come back as ScheduledClasses with just the id set, so
+ * that encoding them again still keeps them.
+ */
+public class StudentRowCodec implements RowCodec<Student> {
+
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final Student.Status[] STATUSES = Student.Status.values();
+    private static final PhoneNumber.Type[] PHONE_TYPES = PhoneNumber.Type.values();
+
+    private final IntFunction<ScheduledClass> classLookup;
+
+    public StudentRowCodec(IntFunction<ScheduledClass> classLookup) {
+        this.classLookup = classLookup;
+    }
+
+    public StudentRowCodec() {
+        this(id -> {
+            ScheduledClass sClass = new ScheduledClass();
+            sClass.setId(id);
+            return sClass;
+        });
+    }
+
+    @Override
+    public int encodedSize(Student student) {
+        int size = Integer.BYTES + sizeOf(student.getName()) + Long.BYTES + 1 + Integer.BYTES;
+        for (PhoneNumber phoneNumber : student.getPhoneNumbers()) {
+            size += sizeOf(phoneNumber.getNumber()) + 1;
+        }
+        size += Integer.BYTES + student.getClasses().size() * Integer.BYTES;
+        return size;
+    }
+
+    @Override
+    public void encode(Student student, ByteBuffer buffer) {
+        buffer.putInt(student.getId());
+        putString(buffer, student.getName());
+        buffer.putLong(student.getDob() != null ? student.getDob().toEpochDay() : NO_DATE);
+        putEnum(buffer, student.getStatus());
+        List<PhoneNumber> phoneNumbers = student.getPhoneNumbers();
+        buffer.putInt(phoneNumbers.size());
+        for (PhoneNumber phoneNumber : phoneNumbers) {
+            putString(buffer, phoneNumber.getNumber());
+            putEnum(buffer, phoneNumber.getType());
+        }
+        List<ScheduledClass> classes = student.getClasses();
+        buffer.putInt(classes.size());
+        for (ScheduledClass sClass : classes) {
+            buffer.putInt(sClass.getId());
+        }
+    }
+
+    @Override
+    public Student decode(ByteBuffer buffer) {
+        Student student = new Student();
+        student.setId(buffer.getInt());
+        student.setName(getString(buffer));
+        long epochDay = buffer.getLong();
+        student.setDob(epochDay != NO_DATE ? LocalDate.ofEpochDay(epochDay) : null);
+        student.setStatus(getEnum(buffer, STATUSES));
+        int phoneCount = buffer.getInt();
+        for (int i = 0; i < phoneCount; i++) {
+            String number = getString(buffer);
+            student.addPhoneNumber(new PhoneNumber(getEnum(buffer, PHONE_TYPES), number));
+        }
+        int classCount = buffer.getInt();
+        for (int i = 0; i < classCount; i++) {
+            ScheduledClass sClass = classLookup.apply(buffer.getInt());
+            if (sClass != null) {
+                student.addClass(sClass);
+            }
+        }
+        return student;
+    }
+
+    @Override
+    public boolean hasField(String field) {
+        return switch (field) {
+            case "name", "dob", "status" -> true;
+            default -> false;
+        };
+    }
+
+    @Override
+    public Object decodeField(ByteBuffer buffer, String field) {
+        buffer.position(buffer.position() + Integer.BYTES);
+        if (field.equals("name")) {
+            return getString(buffer);
+        }
+        skipString(buffer);
+        long epochDay = buffer.getLong();
+        if (field.equals("dob")) {
+            return epochDay != NO_DATE ? LocalDate.ofEpochDay(epochDay) : null;
+        }
+        if (field.equals("status")) {
+            return getEnum(buffer, STATUSES);
+        }
+        return RowCodec.super.decodeField(buffer, field);
+    }
+}
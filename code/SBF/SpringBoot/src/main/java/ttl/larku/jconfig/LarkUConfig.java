@@ -1,6 +1,9 @@
 package ttl.larku.jconfig;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -11,9 +14,15 @@ import org.springframework.validation.Validator;
 import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
 import ttl.larku.dao.BaseDAO;
 import ttl.larku.dao.inmemory.InMemoryCourseDAO;
+import ttl.larku.dao.inmemory.InMemoryJournal;
+import ttl.larku.dao.inmemory.InMemoryStudentDAO;
 import ttl.larku.dao.jdbc.JdbcStudentDAO;
 import ttl.larku.dao.jpahibernate.JPAClassDAO;
 import ttl.larku.dao.jpahibernate.JPACourseDAO;
+import ttl.larku.dao.offheap.CourseRowCodec;
+import ttl.larku.dao.offheap.OffHeapCourseDAO;
+import ttl.larku.dao.offheap.OffHeapStudentDAO;
+import ttl.larku.dao.offheap.StudentRowCodec;
 import ttl.larku.domain.Course;
 import ttl.larku.domain.ScheduledClass;
 import ttl.larku.domain.Student;
@@ -29,10 +38,31 @@ public class LarkUConfig {
 
    private LarkUTestDataConfig testDataProducer = new LarkUTestDataConfig();
 
+   /**
+    * If this is set, the InMemory DAOs keep a write ahead log and
+    * snapshots in this directory, and so survive a restart.
+    * If it is empty, they are purely in memory, as always.
+    */
+   @Value("${ttl.larku.inmemory.journal.dir:}")
+   private String journalDir;
+
+   @Value("${ttl.larku.inmemory.journal.snapshot-interval:PT5M}")
+   private Duration snapshotInterval;
+
    @Bean
    @Profile("development")
    public BaseDAO<Student> studentDAO() {
-      return inMemoryStudentDAO();
+      if (journalDir.isBlank()) {
+         return inMemoryStudentDAO();
+      }
+      var dao = new InMemoryStudentDAO();
+      dao.setJournal(new InMemoryJournal<>(Path.of(journalDir), "students",
+            new StudentRowCodec(id -> classDAO().findById(id)), Student::getId), snapshotInterval);
+      //Only a brand new store gets the test data.
+      if (dao.findAll().isEmpty()) {
+         testDataProducer.initStudentDAO(dao);
+      }
+      return dao;
    }
 
    @Bean(name = "studentDAO")
@@ -47,10 +77,27 @@ public class LarkUConfig {
       return new JdbcStudentDAO(dataSource);
    }
 
+   @Bean(name = "studentDAO")
+   @Profile("offheap")
+   public BaseDAO<Student> studentDAOOffHeap() {
+      var dao = new OffHeapStudentDAO("OffHeap", id -> classDAO().findById(id));
+      testDataProducer.initStudentDAO(dao);
+      return dao;
+   }
+
    @Bean
    @Profile("development")
    public BaseDAO<Course> courseDAO() {
-      return inMemoryCourseDAO();
+      if (journalDir.isBlank()) {
+         return inMemoryCourseDAO();
+      }
+      var dao = new InMemoryCourseDAO();
+      dao.setJournal(new InMemoryJournal<>(Path.of(journalDir), "courses",
+            new CourseRowCodec(), Course::getId), snapshotInterval);
+      if (dao.findAll().isEmpty()) {
+         testDataProducer.initCourseDAO(dao);
+      }
+      return dao;
    }
 
    @Bean(name = "courseDAO")
@@ -59,8 +106,16 @@ public class LarkUConfig {
       return jpaCourseDAO();
    }
 
+   @Bean(name = "courseDAO")
+   @Profile("offheap")
+   public BaseDAO<Course> courseDAOOffHeap() {
+      var dao = new OffHeapCourseDAO();
+      testDataProducer.initCourseDAO(dao);
+      return dao;
+   }
+
    @Bean
-   @Profile("development")
+   @Profile("development | offheap")
    public BaseDAO<ScheduledClass> classDAO() {
       return inMemoryClassDAO();
    }
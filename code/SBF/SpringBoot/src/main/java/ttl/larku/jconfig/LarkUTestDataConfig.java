@@ -143,6 +143,7 @@ public class LarkUTestDataConfig {
         Student s = dao.findById(student1().getId());
         s.addClass(classDAO.findById(1));
         s.addClass(classDAO.findById(2));
+        dao.update(s);
     }
 
     public Map<Integer, Student> initStudents() {
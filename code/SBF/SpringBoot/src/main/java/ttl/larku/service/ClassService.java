@@ -42,21 +42,21 @@ public class ClassService {
    }
 
    public List<ScheduledClass> getScheduledClasses(String code, LocalDate startDate, LocalDate endDate) {
-      List<ScheduledClass> result = classDAO.findAll().stream()
-            .filter(sc -> sc.getCourse().getCode().equals(code)
-                  && sc.getStartDate().equals(startDate)
-                  && sc.getEndDate().equals(endDate))
-            .collect(Collectors.toList());
-
-      return result;
+      try (var classes = classDAO.stream()) {
+         return classes
+               .filter(sc -> sc.getCourse().getCode().equals(code)
+                     && sc.getStartDate().equals(startDate)
+                     && sc.getEndDate().equals(endDate))
+               .collect(Collectors.toList());
+      }
    }
 
    public List<ScheduledClass> getScheduledClassesByCourseCode(String code) {
-      List<ScheduledClass> result = classDAO.findAll().stream()
-            .filter(sc -> sc.getCourse().getCode().equals(code))
-            .collect(Collectors.toList());
-
-      return result;
+      try (var classes = classDAO.stream()) {
+         return classes
+               .filter(sc -> sc.getCourse().getCode().equals(code))
+               .collect(Collectors.toList());
+      }
    }
 
 
@@ -1,10 +1,12 @@
 package ttl.larku.service;
 
+import java.util.ArrayList;
 import java.util.List;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClient;
 import ttl.larku.dao.BaseDAO;
+import ttl.larku.dao.IndexedPredicate;
 import ttl.larku.domain.Course;
 import ttl.larku.rating.RatingProvider;
 
@@ -62,7 +64,7 @@ public class CourseServiceWithRating implements CourseService {
     }
 
     public Course getCourseByCode(String code) {
-        List<Course> courses = courseDAO.findBy(c -> c.getCode().contains(code));
+        List<Course> courses = courseDAO.findBy(IndexedPredicate.contains("code", Course::getCode, code));
         if(!courses.isEmpty()) { //take the first one
             var course = courses.get(0);
             course.setRating(ratingProvider.getRating(course.getId()));
@@ -81,8 +83,11 @@ public class CourseServiceWithRating implements CourseService {
     }
 
     public List<Course> getAllCourses() {
-        var courses = courseDAO.findAll();
-        courses.forEach(c -> c.setRating(ratingProvider.getRating(c.getId())));
+        List<Course> courses = new ArrayList<>();
+        courseDAO.forEach(c -> {
+            c.setRating(ratingProvider.getRating(c.getId()));
+            courses.add(c);
+        });
 
         return courses;
     }
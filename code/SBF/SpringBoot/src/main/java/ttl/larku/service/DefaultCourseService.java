@@ -4,6 +4,7 @@ import java.util.List;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 import ttl.larku.dao.BaseDAO;
+import ttl.larku.dao.IndexedPredicate;
 import ttl.larku.domain.Course;
 
 //@Service("courseService")
@@ -53,7 +54,7 @@ public class DefaultCourseService implements CourseService {
 
     @Override
     public Course getCourseByCode(String code) {
-        List<Course> courses = courseDAO.findBy(c -> c.getCode().contains(code));
+        List<Course> courses = courseDAO.findBy(IndexedPredicate.contains("code", Course::getCode, code));
         return courses.size() > 0 ? courses.get(0) : null;
     }
 
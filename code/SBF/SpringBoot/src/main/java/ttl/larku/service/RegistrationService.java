@@ -25,9 +25,14 @@ public class RegistrationService {
     }
 
     public boolean deleteClassFromSchedule(ScheduledClass sc) {
+       //The class may hold an old copy of the Student, so get it again
        sc.getStudents()
              .forEach(s -> {
-                 s.dropClass(sc);
+                 Student student = studentService.getStudent(s.getId());
+                 if (student != null) {
+                     student.dropClass(sc);
+                     studentService.updateStudent(student);
+                 }
              });
 
        return classService.deleteScheduledClass(sc.getId());
@@ -48,6 +53,8 @@ public class RegistrationService {
                 if (sc.getStartDate().equals(startDate)) {
                     sc.addStudent(student);
                     student.addClass(sc);
+                    //The DAO may have given us a copy, e.g. OffHeapStudentDAO
+                    studentService.updateStudent(student);
                     return true;
                 }
             }
@@ -62,6 +69,7 @@ public class RegistrationService {
             if (sc.getStartDate().equals(startDate)) {
                 sc.removeStudent(student);
                 student.dropClass(sc);
+                studentService.updateStudent(student);
                 return true;
             }
         }
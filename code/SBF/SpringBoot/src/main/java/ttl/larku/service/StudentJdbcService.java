@@ -2,10 +2,13 @@ package ttl.larku.service;
 
 import java.time.Duration;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 import ttl.larku.dao.BaseDAO;
+import ttl.larku.dao.IndexedPredicate;
 import ttl.larku.dao.jdbc.JdbcStudentDAO;
 import ttl.larku.domain.Student;
 import ttl.larku.domain.Student.Status;
@@ -79,8 +82,18 @@ public class StudentJdbcService {
         return studentDAO.findAll();
     }
 
+    /**
+     * Hand every student to action, pageSize at a time, without ever
+     * having the whole table in memory.  For exports.
+     */
+    public void exportStudents(int pageSize, Consumer<Student> action) {
+        try (Stream<Student> students = studentDAO.streamByKeyset(pageSize)) {
+            students.forEach(action);
+        }
+    }
+
     public List<Student> getByName(String name) {
-        List<Student> result = studentDAO.findBy(s -> s.getName().contains(name));
+        List<Student> result = studentDAO.findBy(IndexedPredicate.contains("name", Student::getName, name));
 
         return result;
     }
@@ -5,6 +5,7 @@ import java.util.List;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import ttl.larku.dao.BaseDAO;
+import ttl.larku.dao.IndexedPredicate;
 import ttl.larku.domain.Student;
 import ttl.larku.domain.Student.Status;
 import ttl.larku.domain.StudentCreatedEvent;
@@ -77,8 +78,16 @@ public class StudentService {
         return studentDAO.findAll();
     }
 
+    /**
+     * A page of at most limit Students, starting at fromId.
+     * For big stores, use this instead of getAllStudents.
+     */
+    public List<Student> getStudents(int fromId, int limit) {
+        return studentDAO.scan(fromId, limit);
+    }
+
     public List<Student> getByName(String name) {
-        List<Student> result = studentDAO.findBy(s -> s.getName().contains(name));
+        List<Student> result = studentDAO.findBy(IndexedPredicate.contains("name", Student::getName, name));
 
         return result;
     }
@@ -0,0 +1,93 @@
+package ttl.larku.benchmark;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ttl.larku.dao.jdbc.JdbcStudentDAO;
+import ttl.larku.domain.Student;
+
+/**
+ * Rows per second into an in memory H2 database, one insert at a
+ * time versus JdbcStudentDAO.createAll with different batch sizes.
+ * <p>
+ * Run main from the IDE, or after a test-compile with:
+ * mvn exec:java -Dexec.classpathScope=test -Dexec.mainClass=ttl.larku.benchmark.JdbcBatchInsertBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JdbcBatchInsertBenchmark {
+
+    private static final int ROWS = 1000;
+
+    @Param({"1", "100", "1000"})
+    public int batchSize;
+
+    private JdbcTemplate jdbcTemplate;
+    private JdbcStudentDAO dao;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:batchbench;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists student ("
+                + "id int generated by default as identity primary key, "
+                + "name varchar(255), dob date, status varchar(20))");
+        dao = new JdbcStudentDAO(dataSource);
+        dao.setBatchSize(batchSize);
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() {
+        jdbcTemplate.execute("truncate table student");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int insertOneAtATime() {
+        Iterator<Student> students = students();
+        int count = 0;
+        while (students.hasNext()) {
+            dao.insert(students.next());
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int createAll() {
+        return dao.createAll(students());
+    }
+
+    private static Iterator<Student> students() {
+        return IntStream.range(0, ROWS).mapToObj(StudentDAOBenchmark::makeStudent).iterator();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JdbcBatchInsertBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,104 @@
+package ttl.larku.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ttl.larku.dao.inmemory.InMemoryJournal;
+import ttl.larku.dao.inmemory.InMemoryStudentDAO;
+import ttl.larku.dao.offheap.StudentRowCodec;
+import ttl.larku.domain.Student;
+
+/**
+ * How long does a journaled InMemoryStudentDAO take to come back
+ * after a restart?  "log" replays every insert from the write ahead
+ * log, "snapshot" loads a snapshot taken after the inserts.
+ * <p>
+ * Run main from the IDE, or after a test-compile with:
+ * mvn exec:java -Dexec.classpathScope=test -Dexec.mainClass=ttl.larku.benchmark.JournalRecoveryBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JournalRecoveryBenchmark {
+
+    @Param({"log", "snapshot"})
+    public String recoverFrom;
+
+    @Param({"100000"})
+    public int storeSize;
+
+    private Path dir;
+    private InMemoryStudentDAO dao;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("journal-bench");
+        InMemoryStudentDAO writer = open();
+        StudentDAOBenchmark.fill(writer, storeSize);
+        if (recoverFrom.equals("snapshot")) {
+            writer.getJournal().snapshot();
+        }
+        writer.close();
+    }
+
+    @Benchmark
+    public InMemoryStudentDAO recover() {
+        dao = open();
+        return dao;
+    }
+
+    /**
+     * Close without writing anything, so every iteration
+     * recovers the same files.
+     */
+    @TearDown(Level.Invocation)
+    public void closeDAO() {
+        if (dao != null) {
+            dao.close();
+            dao = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private InMemoryStudentDAO open() {
+        InMemoryStudentDAO dao = new InMemoryStudentDAO();
+        dao.setJournal(new InMemoryJournal<>(dir, "students", new StudentRowCodec(), Student::getId),
+                Duration.ofHours(1));
+        return dao;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JournalRecoveryBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,141 @@
+package ttl.larku.benchmark;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ttl.larku.dao.BaseDAO;
+import ttl.larku.dao.inmemory.InMemoryStudentDAO;
+import ttl.larku.dao.offheap.OffHeapStudentDAO;
+import ttl.larku.domain.Student;
+
+/**
+ * Compare InMemoryStudentDAO with OffHeapStudentDAO for
+ * insert, findById and scan throughput.
+ * <p>
+ * Run main from the IDE, or after a test-compile with:
+ * mvn exec:java -Dexec.classpathScope=test -Dexec.mainClass=ttl.larku.benchmark.StudentDAOBenchmark
+ * <p>
+ * main also prints the retained heap of each DAO with 1 million
+ * Students in it.  The InMemory one needs about 2GB of heap for
+ * that, e.g. -Xmx4g.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+//Its own heap, not whatever main was given for the retained heap numbers.
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class StudentDAOBenchmark {
+
+    @Param({"inmemory", "offheap"})
+    public String daoType;
+
+    @Param({"100000"})
+    public int storeSize;
+
+    private BaseDAO<Student> dao;
+    private int nextLookup;
+
+    //insert gets an empty store for each iteration, otherwise
+    //it grows by millions of Students over the run.
+    private BaseDAO<Student> insertDAO;
+    private int nextInsert;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        dao = makeDAO(daoType);
+        fill(dao, storeSize);
+    }
+
+    @Setup(Level.Iteration)
+    public void emptyInsertStore() {
+        insertDAO = makeDAO(daoType);
+        nextInsert = 0;
+    }
+
+    @Benchmark
+    public Student insert() {
+        return insertDAO.insert(makeStudent(nextInsert++));
+    }
+
+    @Benchmark
+    public Student findById() {
+        nextLookup = nextLookup % storeSize + 1;
+        return dao.findById(nextLookup);
+    }
+
+    @Benchmark
+    public void scan(Blackhole bh) {
+        nextLookup = nextLookup % storeSize + 1;
+        List<Student> page = dao.scan(nextLookup, 100);
+        bh.consume(page);
+    }
+
+    @Benchmark
+    public long streamAll() {
+        return dao.stream().filter(s -> s.getStatus() == Student.Status.PART_TIME).count();
+    }
+
+    static BaseDAO<Student> makeDAO(String daoType) {
+        return daoType.equals("offheap") ? new OffHeapStudentDAO() : new InMemoryStudentDAO();
+    }
+
+    static void fill(BaseDAO<Student> dao, int count) {
+        for (int i = 0; i < count; i++) {
+            dao.insert(makeStudent(i));
+        }
+    }
+
+    static Student makeStudent(int i) {
+        return new Student("Student " + i, "206 555 " + i,
+                LocalDate.of(1990, 1, 1).plusDays(i % 5000),
+                i % 2 == 0 ? Student.Status.FULL_TIME : Student.Status.PART_TIME);
+    }
+
+    static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        int count = 1_000_000;
+        //offheap first, so that its baseline isn't thrown off by the
+        //collection of the much bigger InMemory store
+        for (String daoType : List.of("offheap", "inmemory")) {
+            long before = usedHeap();
+            BaseDAO<Student> dao = makeDAO(daoType);
+            fill(dao, count);
+            long after = usedHeap();
+            System.out.printf("%s: retained heap for %d students: %,d bytes%n", daoType, count, after - before);
+            if (dao instanceof OffHeapStudentDAO offHeap) {
+                System.out.printf("%s: id table: %,d bytes, off heap buffer: %,d bytes%n", daoType,
+                        offHeap.heapBytes(), offHeap.offHeapBytes());
+            }
+            dao = null;
+        }
+
+        new Runner(new OptionsBuilder()
+                .include(StudentDAOBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,97 @@
+package ttl.larku.controllers.unit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ttl.larku.controllers.rest.StudentRestJdbcController;
+import ttl.larku.controllers.rest.UriCreator;
+import ttl.larku.domain.Student;
+import ttl.larku.service.StudentJdbcService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+@ExtendWith(MockitoExtension.class)
+@Tag("unit")
+public class StudentRestJdbcControllerUnitTest {
+
+   private StudentRestJdbcController controller;
+
+   @Mock
+   private StudentJdbcService studentService;
+
+   @Mock
+   private UriCreator uriCreator;
+
+   private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+   List<Student> students = Arrays.asList(
+         new Student("Manoj", "282 929 9292", Student.Status.FULL_TIME),
+         new Student("Alice", "393 9393 030", Student.Status.HIBERNATING));
+
+   @BeforeEach
+   public void setup() {
+      controller = new StudentRestJdbcController(studentService, uriCreator, objectMapper);
+   }
+
+   @Test
+   public void testExportWritesOneStudentPerLine() throws Exception {
+      Mockito.doAnswer(invocation -> {
+         Consumer<Student> action = invocation.getArgument(1);
+         students.forEach(action);
+         return null;
+      }).when(studentService).exportStudents(ArgumentMatchers.eq(50), ArgumentMatchers.any());
+
+      ResponseEntity<StreamingResponseBody> response = controller.exportStudents(50);
+      assertEquals(200, response.getStatusCode().value());
+      assertEquals(MediaType.APPLICATION_NDJSON, response.getHeaders().getContentType());
+
+      String[] lines = write(response).split("\n");
+      assertEquals(2, lines.length);
+      assertEquals("Manoj", objectMapper.readTree(lines[0]).get("name").asText());
+      assertEquals("Alice", objectMapper.readTree(lines[1]).get("name").asText());
+
+      Mockito.verify(studentService).exportStudents(ArgumentMatchers.eq(50), ArgumentMatchers.any());
+   }
+
+   @Test
+   public void testExportBadPageSizeIsBadRequest() throws Exception {
+      var status = HttpStatus.BAD_REQUEST;
+      var message = "pageSize must be positive, was 0";
+      var pd = ProblemDetail.forStatusAndDetail(status, message);
+      Mockito.when(uriCreator.getProblemDetail(status, message)).thenReturn(pd);
+
+      ResponseEntity<StreamingResponseBody> response = controller.exportStudents(0);
+      assertEquals(400, response.getStatusCode().value());
+      assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+
+      JsonNode body = objectMapper.readTree(write(response));
+      assertEquals("Error", body.get("status").asText());
+
+      Mockito.verify(uriCreator).getProblemDetail(status, message);
+      Mockito.verifyNoInteractions(studentService);
+   }
+
+   private String write(ResponseEntity<StreamingResponseBody> response) throws Exception {
+      var out = new ByteArrayOutputStream();
+      response.getBody().writeTo(out);
+      return out.toString(StandardCharsets.UTF_8);
+   }
+}
@@ -0,0 +1,164 @@
+package ttl.larku.dao;
+
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ttl.larku.dao.inmemory.InMemoryJournal;
+import ttl.larku.dao.inmemory.InMemoryStudentDAO;
+import ttl.larku.dao.offheap.StudentRowCodec;
+import ttl.larku.domain.Student;
+import ttl.larku.domain.Student.Status;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@Tag("unit")
+public class InMemoryJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private InMemoryStudentDAO dao;
+
+    @AfterEach
+    public void tearDown() {
+        if (dao != null) {
+            dao.close();
+        }
+    }
+
+    @Test
+    public void testChangesSurviveRestart() {
+        dao = open();
+        Student student1 = dao.insert(new Student("Bloke", "290 298 4790", LocalDate.of(1999, 10, 10), Status.FULL_TIME));
+        Student student2 = dao.insert(new Student("Blokess", "3838 939 93939", Status.HIBERNATING));
+        Student student3 = dao.insert(new Student("Karl Jung", "383 9393 9393", Status.PART_TIME));
+
+        student1.setName("Nuevo Bloke");
+        dao.update(student1);
+        dao.delete(student2);
+
+        dao = restart();
+        assertEquals(2, dao.findAll().size());
+        assertEquals("Nuevo Bloke", dao.findById(student1.getId()).getName());
+        assertEquals(LocalDate.of(1999, 10, 10), dao.findById(student1.getId()).getDob());
+        assertNull(dao.findById(student2.getId()));
+        assertEquals(student3.getName(), dao.findById(student3.getId()).getName());
+
+        //Ids are not handed out again
+        Student student4 = dao.insert(new Student("Another Bloke"));
+        assertEquals(4, student4.getId());
+    }
+
+    @Test
+    public void testRecoverFromSnapshotAndLog() throws IOException {
+        dao = open();
+        for (int i = 0; i < 100; i++) {
+            dao.insert(new Student("Student " + i));
+        }
+        dao.getJournal().snapshot();
+        dao.delete(dao.findById(1));
+        dao.insert(new Student("After Snapshot"));
+
+        dao = restart();
+        assertEquals(100, dao.findAll().size());
+        assertNull(dao.findById(1));
+        assertEquals("InMem: After Snapshot", dao.findById(101).getName());
+        assertEquals(1, dao.findBy(IndexedPredicate.contains("name", Student::getName, "Snapshot")).size());
+    }
+
+    @Test
+    public void testTornRecordIsIgnored() throws IOException {
+        dao = open();
+        dao.insert(new Student("Bloke"));
+        dao.insert(new Student("Blokess"));
+        dao.close();
+        dao = null;
+
+        //Scribble over the last few bytes of the second record
+        Path wal;
+        try (Stream<Path> files = Files.list(dir)) {
+            wal = files.filter(p -> p.toString().endsWith(".wal")).sorted().reduce((a, b) -> b).orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(wal.toFile(), "rw")) {
+            long end = 0;
+            file.seek(0);
+            int size;
+            while ((size = file.readInt()) > 0) {
+                end = file.getFilePointer() + Integer.BYTES + size;
+                file.seek(end);
+            }
+            file.seek(end - 3);
+            file.write(new byte[]{1, 2, 3});
+        }
+
+        dao = open();
+        List<Student> students = dao.findAll();
+        assertEquals(1, students.size());
+        assertEquals("InMem: Bloke", students.get(0).getName());
+    }
+
+    /**
+     * The log is written after the store changes, outside the compute,
+     * so the last record for an id has to be its last change even when
+     * lots of threads update the same ids.
+     */
+    @Test
+    public void testConcurrentUpdatesRecoverToTheLastValue() throws InterruptedException {
+        dao = open();
+        for (int i = 0; i < 4; i++) {
+            dao.insert(new Student("Student " + i));
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            Thread updater = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    Student student = new Student("Thread " + thread + ", " + i);
+                    student.setId(1 + i % 4);
+                    dao.update(student);
+                }
+            });
+            updater.start();
+            threads.add(updater);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Map<Integer, String> before = names(dao);
+
+        dao = restart();
+        assertEquals(before, names(dao));
+    }
+
+    private static Map<Integer, String> names(InMemoryStudentDAO dao) {
+        Map<Integer, String> names = new TreeMap<>();
+        dao.forEach(student -> names.put(student.getId(), student.getName()));
+        return names;
+    }
+
+    private InMemoryStudentDAO open() {
+        InMemoryStudentDAO dao = new InMemoryStudentDAO();
+        dao.setJournal(new InMemoryJournal<>(dir, "students", new StudentRowCodec(), Student::getId),
+                Duration.ofHours(1));
+        return dao;
+    }
+
+    private InMemoryStudentDAO restart() {
+        dao.close();
+        return open();
+    }
+}
@@ -8,9 +8,12 @@ import ttl.larku.dao.inmemory.InMemoryStudentDAO;
 import ttl.larku.domain.Student;
 import ttl.larku.domain.Student.Status;
 
+import java.time.LocalDate;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Tag("unit")
@@ -94,4 +97,103 @@ public class InMemoryStudentDAOTest {
 
     }
 
+    @Test
+    public void testFindByNameFromIndex() {
+        List<Student> students = dao.findBy(IndexedPredicate.contains("name", Student::getName, "Blokess"));
+        assertEquals(1, students.size());
+        assertTrue(students.get(0).getName().contains(name2));
+
+        students = dao.findBy(IndexedPredicate.contains("name", Student::getName, name1));
+        assertEquals(2, students.size());
+    }
+
+    @Test
+    public void testFindByNameIsInIdOrder() {
+        for (int i = 0; i < 50; i++) {
+            dao.insert(new Student(name1 + " " + i, phoneNumber1, Status.FULL_TIME));
+        }
+        List<Student> students = dao.findBy(IndexedPredicate.contains("name", Student::getName, name1));
+        assertEquals(52, students.size());
+        assertEquals(student1.getId(), students.get(0).getId());
+        for (int i = 1; i < students.size(); i++) {
+            assertTrue(students.get(i - 1).getId() < students.get(i).getId());
+        }
+    }
+
+    @Test
+    public void testFindByNameAfterUpdate() {
+        Student student = dao.findById(1);
+        student.setName(newName);
+        dao.update(student);
+
+        assertEquals(1, dao.findBy(IndexedPredicate.contains("name", Student::getName, "Jung")).size());
+        assertEquals(1, dao.findBy(IndexedPredicate.contains("name", Student::getName, name1)).size());
+    }
+
+    @Test
+    public void testFindByNameAfterDelete() {
+        dao.delete(dao.findById(2));
+
+        List<Student> students = dao.findBy(IndexedPredicate.contains("name", Student::getName, name1));
+        assertEquals(1, students.size());
+        assertFalse(students.get(0).getName().contains(name2));
+    }
+
+    @Test
+    public void testFindByDobRange() {
+        dao.insert(new Student("Old", phoneNumber1, LocalDate.of(1960, 5, 4), Status.FULL_TIME));
+        dao.insert(new Student("Young", phoneNumber1, LocalDate.of(2001, 10, 1), Status.FULL_TIME));
+
+        List<Student> students = dao.findBy(IndexedPredicate.between("dob", Student::getDob,
+                LocalDate.of(1950, 1, 1), LocalDate.of(1999, 12, 31)));
+        assertEquals(1, students.size());
+        assertTrue(students.get(0).getName().contains("Old"));
+    }
+
+    @Test
+    public void testShortQueryFallsBackToScan() {
+        List<Student> students = dao.findBy(IndexedPredicate.contains("name", Student::getName, "ss"));
+        assertEquals(1, students.size());
+    }
+
+    @Test
+    public void testStream() {
+        assertEquals(2, dao.stream().count());
+    }
+
+    @Test
+    public void testScan() {
+        dao.insert(new Student("Third", phoneNumber1, Status.FULL_TIME));
+        dao.delete(dao.findById(2));
+
+        List<Student> page = dao.scan(1, 1);
+        assertEquals(1, page.size());
+        assertEquals(1, page.get(0).getId());
+
+        page = dao.scan(page.get(0).getId() + 1, 5);
+        assertEquals(1, page.size());
+        assertEquals(3, page.get(0).getId());
+
+        assertEquals(0, dao.scan(4, 5).size());
+    }
+
+    @Test
+    public void testScanSkipsDeletedRuns() {
+        for (int i = 0; i < 100; i++) {
+            dao.insert(new Student("More " + i, phoneNumber1, Status.FULL_TIME));
+        }
+        //Students 1 to 99 gone, so the page starts at 100
+        for (int id = 1; id < 100; id++) {
+            dao.delete(dao.findById(id));
+        }
+
+        List<Student> page = dao.scan(Integer.MIN_VALUE, 2);
+        assertEquals(List.of(100, 101), page.stream().map(Student::getId).toList());
+    }
+
+    @Test
+    public void testScanRejectsNonPositiveLimit() {
+        assertThrows(IllegalArgumentException.class, () -> dao.scan(1, 0));
+        assertThrows(IllegalArgumentException.class, () -> dao.scan(1, -1));
+    }
 }
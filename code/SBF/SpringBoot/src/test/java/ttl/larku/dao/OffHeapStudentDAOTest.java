@@ -0,0 +1,157 @@
+package ttl.larku.dao;
+
+
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import ttl.larku.dao.offheap.OffHeapStudentDAO;
+import ttl.larku.domain.ScheduledClass;
+import ttl.larku.domain.Student;
+import ttl.larku.domain.Student.Status;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+public class OffHeapStudentDAOTest {
+
+    private String name1 = "Bloke";
+    private String name2 = "Blokess";
+    private String newName = "Karl Jung";
+    private String phoneNumber1 = "290 298 4790";
+    private String phoneNumber2 = "3838 939 93939";
+    private Student student1;
+    private Student student2;
+
+    private OffHeapStudentDAO dao;
+
+    @BeforeEach
+    public void setup() {
+        dao = new OffHeapStudentDAO();
+        dao.createStore();
+
+        student1 = new Student(name1, phoneNumber1, LocalDate.of(1999, 10, 10), Status.FULL_TIME);
+        student2 = new Student(name2, phoneNumber2, Status.HIBERNATING);
+
+        dao.insert(student1);
+        dao.insert(student2);
+    }
+
+    @Test
+    public void testGetAll() {
+        List<Student> students = dao.findAll();
+        assertEquals(2, students.size());
+    }
+
+    @Test
+    public void testGetOneDecodesAllFields() {
+        Student student = dao.findById(1);
+        assertTrue(student.getName().contains(name1));
+        assertEquals(phoneNumber1, student.getPhoneNumber());
+        assertEquals(LocalDate.of(1999, 10, 10), student.getDob());
+        assertEquals(Status.FULL_TIME, student.getStatus());
+
+        student = dao.findById(2);
+        assertNull(student.getDob());
+        assertEquals(Status.HIBERNATING, student.getStatus());
+    }
+
+    @Test
+    public void testChangesNeedUpdate() {
+        Student student = dao.findById(1);
+        student.setName(newName);
+        assertFalse(dao.findById(1).getName().contains(newName));
+
+        assertTrue(dao.update(student));
+        assertEquals(newName, dao.findById(1).getName());
+    }
+
+    @Test
+    public void testDelete() {
+        assertTrue(dao.delete(dao.findById(1)));
+        assertNull(dao.findById(1));
+        assertEquals(1, dao.findAll().size());
+        assertFalse(dao.delete(student1));
+    }
+
+    @Test
+    public void testManyUpdatesAndDeletes() {
+        for (int i = 0; i < 20_000; i++) {
+            dao.insert(new Student("Student " + i, phoneNumber1, Status.PART_TIME));
+        }
+        for (int id = 3; id < 20_002; id += 2) {
+            dao.delete(dao.findById(id));
+        }
+        for (int id = 4; id < 20_002; id += 2) {
+            Student student = dao.findById(id);
+            student.setName("Updated " + id);
+            dao.update(student);
+        }
+
+        assertEquals(10_002, dao.stream().count());
+        assertNull(dao.findById(3));
+        assertEquals("Updated 20000", dao.findById(20_000).getName());
+
+        List<Student> page = dao.scan(5, 3);
+        assertEquals(List.of(6, 8, 10), page.stream().map(Student::getId).toList());
+    }
+
+    @Test
+    public void testFindByFieldMatchesFullDecode() {
+        for (int i = 0; i < 100; i++) {
+            dao.insert(new Student("Student " + i, phoneNumber1, LocalDate.of(2000, 1, 1).plusDays(i),
+                    i % 2 == 0 ? Status.PART_TIME : Status.FULL_TIME));
+        }
+        dao.delete(dao.findById(10));
+        Student moved = dao.findById(20);
+        moved.setName("Moved Student 1");
+        dao.update(moved);
+
+        List<IndexedPredicate<Student>> preds = List.of(
+                IndexedPredicate.contains("name", Student::getName, "Student 1"),
+                IndexedPredicate.equalTo("status", Student::getStatus, Status.FULL_TIME),
+                IndexedPredicate.between("dob", Student::getDob,
+                        LocalDate.of(2000, 1, 5), LocalDate.of(2000, 1, 20)));
+        for (IndexedPredicate<Student> pred : preds) {
+            List<Student> byField = dao.findBy(pred);
+            List<Student> byStream = dao.stream().filter(pred).toList();
+            assertFalse(byField.isEmpty(), pred.toString());
+            assertEquals(ids(byStream), ids(byField), pred.toString());
+        }
+
+        //The matches come back whole
+        Student student = dao.findBy(IndexedPredicate.contains("name", Student::getName, "Student 42")).get(0);
+        assertEquals(phoneNumber1, student.getPhoneNumber());
+        assertEquals(LocalDate.of(2000, 2, 12), student.getDob());
+    }
+
+    @Test
+    public void testClassesAreKeptByUpdate() {
+        ScheduledClass math = new ScheduledClass();
+        math.setId(7);
+        dao = new OffHeapStudentDAO("OffHeap", id -> id == math.getId() ? math : null);
+        dao.insert(student1);
+
+        Student student = dao.findById(1);
+        student.addClass(math);
+        assertTrue(dao.findById(1).getClasses().isEmpty());
+
+        dao.update(student);
+        assertEquals(List.of(math), dao.findById(1).getClasses());
+
+        //Classes that are gone by the time we decode are left out
+        ScheduledClass gone = new ScheduledClass();
+        gone.setId(8);
+        student.addClass(gone);
+        dao.update(student);
+        assertEquals(List.of(math), dao.findById(1).getClasses());
+    }
+
+    private List<Integer> ids(List<Student> students) {
+        return students.stream().map(Student::getId).sorted().toList();
+    }
+}
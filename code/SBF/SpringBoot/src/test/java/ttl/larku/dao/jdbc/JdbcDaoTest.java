@@ -1,7 +1,11 @@
 package ttl.larku.dao.jdbc;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -12,6 +16,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
@@ -20,6 +25,15 @@ public class JdbcDaoTest {
    @Autowired
    private JdbcStudentDAO studentDAO;
 
+   private int batchSize;
+
+   @AfterEach
+   public void resetBatchSize() {
+      if (batchSize > 0) {
+         studentDAO.setBatchSize(batchSize);
+      }
+   }
+
    @Test
    public void testFindAll() {
       List<Student> students = studentDAO.findAll();
@@ -28,6 +42,44 @@ public class JdbcDaoTest {
       assertEquals(4, students.size());
    }
 
+   @Test
+   @Transactional
+   public void testStreamMatchesFindAll() {
+      studentDAO.setFetchSize(2);
+      try (Stream<Student> students = studentDAO.stream()) {
+         assertEquals(studentDAO.findAll().size(), students.count());
+      } finally {
+         studentDAO.setFetchSize(1000);
+      }
+   }
+
+   @Test
+   public void testKeysetPagesCoverAllStudentsInOrder() {
+      List<Student> all = studentDAO.findAll();
+
+      List<Student> firstPage = studentDAO.findAfter(0, 3);
+      assertEquals(Math.min(3, all.size()), firstPage.size());
+      List<Student> nextPage = studentDAO.findAfter(firstPage.get(firstPage.size() - 1).getId(), 3);
+      assertTrue(nextPage.isEmpty() || nextPage.get(0).getId() > firstPage.get(firstPage.size() - 1).getId());
+
+      try (Stream<Student> students = studentDAO.streamByKeyset(3)) {
+         List<Integer> ids = students.map(Student::getId).toList();
+         assertEquals(all.size(), ids.size());
+         assertEquals(ids.stream().sorted().toList(), ids);
+      }
+   }
+
+   @Test
+   public void testScanStartsAtFromId() {
+      List<Student> firstPage = studentDAO.findAfter(0, 3);
+      int firstId = firstPage.get(0).getId();
+
+      assertEquals(firstPage.stream().map(Student::getId).toList(),
+            studentDAO.scan(firstId, 3).stream().map(Student::getId).toList());
+      assertEquals(firstId, studentDAO.scan(Integer.MIN_VALUE, 1).get(0).getId());
+      assertThrows(IllegalArgumentException.class, () -> studentDAO.scan(firstId, 0));
+   }
+
    @Test
    public void testFindOneWithGoodId() {
       Student student = studentDAO.findById(1);
@@ -54,6 +106,54 @@ public class JdbcDaoTest {
       assertTrue(student.getId() > 0);
    }
 
+   @Test
+   @Transactional
+   public void testCreateAllAssignsIdsAcrossBatches() {
+      batchSize = studentDAO.getBatchSize();
+      studentDAO.setBatchSize(3);
+      List<Student> newStudents = new ArrayList<>();
+      for (int i = 0; i < 7; i++) {
+         newStudents.add(new Student("Batch Guy " + i, "", LocalDate.parse("1999-08-02"), Student.Status.FULL_TIME));
+      }
+
+      List<Student> created = studentDAO.createAll(newStudents);
+
+      assertEquals(7, created.size());
+      assertEquals(7, created.stream().mapToInt(Student::getId).distinct().count());
+      for (Student student : created) {
+         assertEquals(student.getName(), studentDAO.findById(student.getId()).getName());
+      }
+   }
+
+   @Test
+   @Transactional
+   public void testCreateAllFromIterator() {
+      batchSize = studentDAO.getBatchSize();
+      studentDAO.setBatchSize(2);
+      int before = studentDAO.findAll().size();
+
+      int count = studentDAO.createAll(IntStream.range(0, 5)
+            .mapToObj(i -> new Student("Streamed Guy " + i, "", Student.Status.PART_TIME))
+            .iterator());
+
+      assertEquals(5, count);
+      assertEquals(before + 5, studentDAO.findAll().size());
+   }
+
+   @Test
+   @Transactional
+   public void testUpdateAllSkipsMissingStudents() {
+      Student existing = studentDAO.findById(1);
+      existing.setName("Yahhooo");
+      Student missing = new Student("Nobody", "", Student.Status.FULL_TIME);
+      missing.setId(1000);
+
+      int updated = studentDAO.updateAll(List.of(existing, missing));
+
+      assertEquals(1, updated);
+      assertEquals("Yahhooo", studentDAO.findById(1).getName());
+   }
+
 //   @Test
 //   @Transactional
 //   public void testDeleteExitingStudent() {
@@ -0,0 +1,65 @@
+package ttl.larku.service.reg.unit;
+
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import ttl.larku.dao.BaseDAO;
+import ttl.larku.dao.offheap.OffHeapStudentDAO;
+import ttl.larku.domain.ScheduledClass;
+import ttl.larku.jconfig.LarkUTestDataConfig;
+import ttl.larku.service.ClassService;
+import ttl.larku.service.RegistrationService;
+import ttl.larku.service.StudentService;
+import ttl.larku.service.props.ServiceThatWeDontOwn;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The OffHeapStudentDAO hands out copies, so a registration is only
+ * kept if the RegistrationService writes the Student back.
+ */
+@Tag("unit")
+public class RegistrationServiceOffHeapTest {
+
+    private final LarkUTestDataConfig testData = new LarkUTestDataConfig();
+
+    private BaseDAO<ScheduledClass> classDAO;
+    private StudentService studentService;
+    private RegistrationService registrationService;
+
+    @BeforeEach
+    public void setup() {
+        classDAO = testData.classDAOWithInitData();
+        var studentDAO = new OffHeapStudentDAO("OffHeap", id -> classDAO.findById(id));
+        testData.initStudentDAO(studentDAO);
+
+        studentService = new StudentService(studentDAO, event -> {}, new ServiceThatWeDontOwn());
+        ClassService classService = new ClassService();
+        classService.setClassDAO(classDAO);
+
+        registrationService = new RegistrationService();
+        registrationService.setStudentService(studentService);
+        registrationService.setClassService(classService);
+    }
+
+    @Test
+    public void testInitDataKeepsRegistrations() {
+        assertEquals(List.of(classDAO.findById(1), classDAO.findById(2)),
+                studentService.getStudent(1).getClasses());
+    }
+
+    @Test
+    public void testRegistrationIsReadBack() {
+        LocalDate startDate = LocalDate.parse("2022-10-10");
+        assertTrue(registrationService.registerStudentForClass(2, "BOT-202", startDate));
+
+        assertEquals(List.of(classDAO.findById(2)), studentService.getStudent(2).getClasses());
+        assertEquals(1, registrationService.getStudentsForClass("BOT-202", startDate).size());
+
+        assertTrue(registrationService.dropStudentFromClass(2, "BOT-202", startDate));
+        assertTrue(studentService.getStudent(2).getClasses().isEmpty());
+    }
+}
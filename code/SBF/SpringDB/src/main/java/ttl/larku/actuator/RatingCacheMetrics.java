@@ -0,0 +1,56 @@
+package ttl.larku.actuator;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.concurrent.TimeUnit;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ttl.larku.rating.CachingRatingProvider;
+
+/**
+ * The rating cache numbers, at /actuator/metrics/rating.cache.requests etc.
+ * Boot binds any MeterBinder bean to the registry for us.
+ * <p>
+ * The hit rate is rating.cache.requests with tag result:hit over the
+ * total.  rating.cache.loads has a count, a total time and a mean for
+ * the calls that went to the rating service.
+ */
+@Component
+@Profile("cachedrating")
+public class RatingCacheMetrics implements MeterBinder {
+
+    private final CachingRatingProvider cache;
+
+    public RatingCacheMetrics(CachingRatingProvider cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("rating.cache.requests", cache, CachingRatingProvider::getHitCount)
+                .tag("result", "hit")
+                .description("Ratings found in the cache")
+                .register(registry);
+        FunctionCounter.builder("rating.cache.requests", cache, CachingRatingProvider::getMissCount)
+                .tag("result", "miss")
+                .description("Ratings not in the cache, or expired")
+                .register(registry);
+
+        FunctionTimer.builder("rating.cache.loads", cache,
+                        c -> c.getLoadSuccessCount() + c.getLoadFailureCount(),
+                        CachingRatingProvider::getTotalLoadTimeNanos, TimeUnit.NANOSECONDS)
+                .description("Calls to the rating service to fill the cache")
+                .register(registry);
+        FunctionCounter.builder("rating.cache.load.failures", cache, CachingRatingProvider::getLoadFailureCount)
+                .register(registry);
+        FunctionCounter.builder("rating.cache.refreshes", cache, CachingRatingProvider::getRefreshCount)
+                .description("Background reloads of entries close to expiry")
+                .register(registry);
+
+        Gauge.builder("rating.cache.size", cache, CachingRatingProvider::size)
+                .register(registry);
+    }
+}
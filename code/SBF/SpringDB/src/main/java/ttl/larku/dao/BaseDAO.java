@@ -26,7 +26,6 @@ public interface BaseDAO<T> {
     public void createStore();
 
     default public List<T> findBy(Predicate<T> pred) {
-        List<T> x = findAll();
         List<T> result = findAll().stream()
                 .filter(pred)
                 .collect(toList());
@@ -34,6 +33,6 @@ public interface BaseDAO<T> {
     }
 
     default boolean exists(int id) {
-        throw new UnsupportedOperationException("Needs implementing");
+        return findById(id) != null;
     }
 }
@@ -0,0 +1,93 @@
+package ttl.larku.dao;
+
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A Predicate that also knows which field it is testing, and how.
+ * DAOs that keep secondary indexes (the InMemory ones) look at the
+ * field and operation and answer the query from an index.
+ * Everybody else just calls test() on it like any other Predicate,
+ * so the default BaseDAO.findBy keeps working unchanged.
+ *
+ * @param <T>
+ * @author anil
+ */
+public class IndexedPredicate<T> implements Predicate<T> {
+
+    public enum Op {
+        EQUALS,
+        CONTAINS,
+        RANGE
+    }
+
+    private final String field;
+    private final Op op;
+    private final Object value;
+    private final Object upperValue;
+    private final Predicate<T> test;
+
+    private IndexedPredicate(String field, Op op, Object value, Object upperValue, Predicate<T> test) {
+        this.field = field;
+        this.op = op;
+        this.value = value;
+        this.upperValue = upperValue;
+        this.test = test;
+    }
+
+    public static <T, K> IndexedPredicate<T> equalTo(String field, Function<T, K> getter, K value) {
+        return new IndexedPredicate<>(field, Op.EQUALS, value, null,
+                t -> Objects.equals(getter.apply(t), value));
+    }
+
+    public static <T> IndexedPredicate<T> contains(String field, Function<T, String> getter, String value) {
+        return new IndexedPredicate<>(field, Op.CONTAINS, value, null, t -> {
+            String s = getter.apply(t);
+            return s != null && s.contains(value);
+        });
+    }
+
+    /**
+     * Both ends of the range are inclusive.
+     */
+    public static <T, K extends Comparable<? super K>> IndexedPredicate<T> between(String field,
+                                                                                 Function<T, K> getter,
+                                                                                 K from, K to) {
+        return new IndexedPredicate<>(field, Op.RANGE, from, to, t -> {
+            K k = getter.apply(t);
+            return k != null && k.compareTo(from) >= 0 && k.compareTo(to) <= 0;
+        });
+    }
+
+    @Override
+    public boolean test(T t) {
+        return test.test(t);
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public Object getUpperValue() {
+        return upperValue;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedPredicate{" +
+                "field='" + field + '\'' +
+                ", op=" + op +
+                ", value=" + value +
+                (upperValue != null ? ", upperValue=" + upperValue : "") +
+                '}';
+    }
+}
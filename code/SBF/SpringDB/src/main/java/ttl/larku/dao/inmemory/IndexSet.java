@@ -0,0 +1,74 @@
+package ttl.larku.dao.inmemory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+import ttl.larku.dao.IndexedPredicate;
+
+/**
+ * The secondary indexes of one InMemory DAO.  The DAO calls
+ * index/unindex as it changes its store, and query from findBy.
+ *
+ * @param <T>
+ */
+public class IndexSet<T> {
+
+    private final List<SecondaryIndex<T, ?>> indexes = new CopyOnWriteArrayList<>();
+
+    public IndexSet<T> add(SecondaryIndex<T, ?> index) {
+        indexes.add(index);
+        return this;
+    }
+
+    public void index(int id, T obj) {
+        indexes.forEach(idx -> idx.add(id, obj));
+    }
+
+    public void unindex(int id) {
+        indexes.forEach(idx -> idx.remove(id));
+    }
+
+    public void clear() {
+        indexes.forEach(SecondaryIndex::clear);
+    }
+
+    public void rebuild(Map<Integer, T> store) {
+        clear();
+        if (store != null) {
+            store.forEach(this::index);
+        }
+    }
+
+    /**
+     * Answer the predicate from an index if we can.
+     *
+     * @return the matching objects, or null if the predicate is not
+     * an IndexedPredicate, or no index can handle it.  The caller
+     * should then fall back to a scan.
+     */
+    public List<T> query(Predicate<T> pred, Map<Integer, T> store) {
+        if (!(pred instanceof IndexedPredicate<T> ip)) {
+            return null;
+        }
+        for (SecondaryIndex<T, ?> idx : indexes) {
+            if (!idx.getField().equals(ip.getField())) {
+                continue;
+            }
+            Set<Integer> ids = idx.candidates(ip);
+            if (ids != null) {
+                List<T> result = new ArrayList<>(ids.size());
+                for (Integer id : ids) {
+                    T obj = store.get(id);
+                    if (obj != null && ip.test(obj)) {
+                        result.add(obj);
+                    }
+                }
+                return result;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,92 @@
+package ttl.larku.dao.inmemory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import ttl.larku.dao.IndexedPredicate;
+
+/**
+ * Substring index for String fields.
+ * <p>
+ * Every value is broken up into its n-grams (3 characters by default),
+ * and we keep a set of ids per n-gram.  A CONTAINS query for "Manoj"
+ * can then only match ids that are in the sets for "Man", "ano" and "noj",
+ * so we intersect those, starting with the smallest.
+ * <p>
+ * Queries shorter than n can't be answered from the index, and
+ * we return null so the DAO falls back to a scan.
+ */
+public class NGramIndex<T> extends SecondaryIndex<T, String> {
+
+    public static final int DEFAULT_GRAM_SIZE = 3;
+
+    private final int gramSize;
+    private final Map<String, Set<Integer>> grams = new ConcurrentHashMap<>();
+
+    public NGramIndex(String field, Function<T, String> keyExtractor) {
+        this(field, keyExtractor, DEFAULT_GRAM_SIZE);
+    }
+
+    public NGramIndex(String field, Function<T, String> keyExtractor, int gramSize) {
+        super(field, keyExtractor);
+        this.gramSize = gramSize;
+    }
+
+    @Override
+    public Set<Integer> candidates(IndexedPredicate<T> pred) {
+        if ((pred.getOp() != IndexedPredicate.Op.CONTAINS && pred.getOp() != IndexedPredicate.Op.EQUALS)
+                || !(pred.getValue() instanceof String query)
+                || query.length() < gramSize) {
+            return null;
+        }
+
+        List<Set<Integer>> sets = new ArrayList<>();
+        for (String gram : gramsOf(query)) {
+            Set<Integer> ids = grams.get(gram);
+            if (ids == null) {
+                return Set.of();
+            }
+            sets.add(ids);
+        }
+        sets.sort(Comparator.comparingInt(Set::size));
+
+        Set<Integer> result = new TreeSet<>(sets.get(0));
+        for (int i = 1; i < sets.size() && !result.isEmpty(); i++) {
+            result.retainAll(sets.get(i));
+        }
+        return result;
+    }
+
+    @Override
+    protected void addKey(int id, String key) {
+        for (String gram : gramsOf(key)) {
+            addToBucket(grams, gram, id);
+        }
+    }
+
+    @Override
+    protected void removeKey(int id, String key) {
+        for (String gram : gramsOf(key)) {
+            removeFromBucket(grams, gram, id);
+        }
+    }
+
+    @Override
+    protected void clearKeys() {
+        grams.clear();
+    }
+
+    private Set<String> gramsOf(String value) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + gramSize <= value.length(); i++) {
+            result.add(value.substring(i, i + gramSize));
+        }
+        return result;
+    }
+}
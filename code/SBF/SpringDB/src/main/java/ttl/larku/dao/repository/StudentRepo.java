@@ -1,8 +1,16 @@
 package ttl.larku.dao.repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
@@ -35,9 +43,49 @@ public interface StudentRepo extends JpaRepository<Student, Integer>,
 ////   @Query("select distinct s from Student s left join fetch s.classes sc left join fetch sc.course")
 //   public List<Student> findAll();
 
+   //Paging a query with a join fetch makes Hibernate load every row
+   //and do the paging in memory (HHH90003004).  So we page in two steps.
+   //First the database pages through just the ids, then one query
+   //fetches those students with their classes and courses.
    @Override
-   @Query("select distinct s from Student s left join fetch s.classes sc left join fetch sc.course")
-   public Page findAll(Pageable pagable);
+   public default Page<Student> findAll(Pageable pageable) {
+      if (pageable.isUnpaged()) {
+         return new PageImpl<>(findAll());
+      }
+      Pageable byId = pageable.getSort().isSorted() ? pageable
+            : PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by("id"));
+      Page<Integer> ids = findStudentIds(byId);
+      return new PageImpl<>(findWithClassesInOrder(ids.getContent()), byId, ids.getTotalElements());
+   }
+
+   //Keyset version.  Up to pageSize students with ids greater than afterId,
+   //in id order.  For the next page, pass in the last id from this one.
+   public default List<Student> findPageAfter(int afterId, int pageSize) {
+      return findWithClassesInOrder(findStudentIdsAfter(afterId, PageRequest.ofSize(pageSize)));
+   }
+
+   @Query(value = "select s.id from Student s", countQuery = "select count(s) from Student s")
+   public Page<Integer> findStudentIds(Pageable pageable);
+
+   @Query("select s.id from Student s where s.id > :afterId order by s.id")
+   public List<Integer> findStudentIdsAfter(@Param("afterId") int afterId, Pageable pageable);
+
+   @Query("select distinct s from Student s left join fetch s.classes sc left join fetch sc.course where s.id in :ids")
+   public List<Student> findWithClassesByIds(@Param("ids") Collection<Integer> ids);
+
+   //The IN query comes back in whatever order, so put the
+   //students back in the order of the ids.
+   private List<Student> findWithClassesInOrder(List<Integer> ids) {
+      if (ids.isEmpty()) {
+         return List.of();
+      }
+      Map<Integer, Student> students = findWithClassesByIds(ids).stream()
+            .collect(Collectors.toMap(Student::getId, Function.identity()));
+      return ids.stream()
+            .map(students::get)
+            .filter(Objects::nonNull)
+            .toList();
+   }
 
    //Comes from @NamedQuery in Student
    public Student bigSelectOne(@Param("id") int id);
@@ -0,0 +1,134 @@
+package ttl.larku.rating;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces single key loads into bulk loads, in the style of a
+ * DataLoader.  The first load starts a batch and a timer.  Every
+ * load that arrives before the timer goes off, or before the batch
+ * is full, rides along in the same bulk call.  Loads for a key that
+ * is already in the batch share its future.
+ * <p>
+ * So if 50 requests each want one rating at about the same time,
+ * the rating service sees one call for 50 ids instead of 50 calls.
+ * The price is that a lone load waits for the window, so keep the
+ * window small.  A window of zero turns batching off: every load
+ * goes straight to the bulk loader on the caller's thread.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class BatchLoader<K, V> implements AutoCloseable {
+
+   private static final Logger logger = LoggerFactory.getLogger(BatchLoader.class);
+
+   private final Function<Collection<K>, Map<K, V>> bulkLoader;
+   private final Duration window;
+   private final int maxBatchSize;
+   private final ScheduledExecutorService scheduler;
+
+   //Guarded by this
+   private Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>();
+   private ScheduledFuture<?> flushTask;
+
+   /**
+    * @param bulkLoader   Called with each batch.  Keys missing from the
+    *                     answer are completed with null.
+    * @param window       How long the first load in a batch waits for others.
+    * @param maxBatchSize A full batch goes right away, without waiting.
+    * @param dispatchers  How many bulk loads can be in flight at once.
+    */
+   public BatchLoader(Function<Collection<K>, Map<K, V>> bulkLoader, Duration window,
+                      int maxBatchSize, int dispatchers) {
+      if (maxBatchSize < 1) {
+         throw new IllegalArgumentException("maxBatchSize has to be at least 1: " + maxBatchSize);
+      }
+      this.bulkLoader = bulkLoader;
+      this.window = window;
+      this.maxBatchSize = maxBatchSize;
+      this.scheduler = window.isZero() ? null : Executors.newScheduledThreadPool(dispatchers, r -> {
+         Thread t = new Thread(r, "batch-loader");
+         t.setDaemon(true);
+         return t;
+      });
+   }
+
+   public CompletableFuture<V> load(K key) {
+      if (scheduler == null) {
+         Map<K, CompletableFuture<V>> batch = new LinkedHashMap<>();
+         var future = new CompletableFuture<V>();
+         batch.put(key, future);
+         dispatch(batch);
+         return future;
+      }
+
+      CompletableFuture<V> future;
+      Map<K, CompletableFuture<V>> full = null;
+      synchronized (this) {
+         future = pending.computeIfAbsent(key, k -> new CompletableFuture<>());
+         if (pending.size() >= maxBatchSize) {
+            full = takePending();
+         } else if (flushTask == null) {
+            flushTask = scheduler.schedule(this::flush, window.toNanos(), TimeUnit.NANOSECONDS);
+         }
+      }
+      if (full != null) {
+         Map<K, CompletableFuture<V>> batch = full;
+         scheduler.execute(() -> dispatch(batch));
+      }
+      return future;
+   }
+
+   private void flush() {
+      Map<K, CompletableFuture<V>> batch;
+      synchronized (this) {
+         batch = takePending();
+      }
+      if (!batch.isEmpty()) {
+         dispatch(batch);
+      }
+   }
+
+   //Call with the lock held
+   private Map<K, CompletableFuture<V>> takePending() {
+      if (flushTask != null) {
+         flushTask.cancel(false);
+         flushTask = null;
+      }
+      var batch = pending;
+      pending = new LinkedHashMap<>();
+      return batch;
+   }
+
+   private void dispatch(Map<K, CompletableFuture<V>> batch) {
+      try {
+         Map<K, V> results = bulkLoader.apply(batch.keySet());
+         batch.forEach((key, future) -> future.complete(results.get(key)));
+      } catch (RuntimeException e) {
+         logger.warn("Bulk load of {} keys failed: {}", batch.size(), e.toString());
+         batch.values().forEach(future -> future.completeExceptionally(e));
+      }
+   }
+
+   /**
+    * Anything still waiting is sent off before we go.
+    */
+   @Override
+   public void close() {
+      if (scheduler != null) {
+         flush();
+         scheduler.shutdown();
+      }
+   }
+}
@@ -0,0 +1,314 @@
+package ttl.larku.rating;
+
+import jakarta.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ratings don't change much, so there is no need to go to the
+ * rating service every time somebody looks at a course.  This one
+ * sits in front of whichever RatingProvider the other profiles give
+ * us, e.g.
+ * <pre>
+ *    spring.profiles.active=postgres, networkrating, cachedrating
+ * </pre>
+ * It is @Primary, so it is the one that CourseServiceWithRating gets.
+ * The provider it wraps comes in through the constructor.  Spring
+ * leaves a bean out of its own candidates, so that is never us.
+ * <ul>
+ *    <li>At most rating.cache.max-size entries, least recently
+ *    used go first.</li>
+ *    <li>An entry is good for rating.cache.ttl.  After that a
+ *    lookup waits for a fresh one.</li>
+ *    <li>A hit on an entry older than rating.cache.refresh-after
+ *    still gets the cached rating, and starts a reload in the
+ *    background.  So busy entries get refreshed before they expire,
+ *    and nobody waits for them.</li>
+ *    <li>Loads are single flight.  If 100 requests miss on the same
+ *    course at once, the rating service sees one call, and the
+ *    other 99 wait for its answer.  That goes for getRatings too: ids
+ *    that somebody is already loading are waited for, not asked for
+ *    again.</li>
+ *    <li>A null rating isn't cached.  It may just mean the delegate
+ *    fell back because the rating service is down, and caching it
+ *    would hide the real rating for a whole ttl.</li>
+ * </ul>
+ * The counts are in ttl.larku.actuator.RatingCacheMetrics.
+ */
+@Component
+@Primary
+@Profile("cachedrating")
+public class CachingRatingProvider implements RatingProvider {
+
+   private static final Logger logger = LoggerFactory.getLogger(CachingRatingProvider.class);
+
+   private record Entry(BigDecimal rating, long loadedAt) {
+   }
+
+   private final RatingProvider delegate;
+   private final long ttlNanos;
+   private final long refreshAfterNanos;
+   private final LongSupplier ticker;
+   private final Executor refresher;
+
+   //Guarded by itself
+   private final Map<Integer, Entry> entries;
+   private final Map<Integer, CompletableFuture<BigDecimal>> inFlight = new ConcurrentHashMap<>();
+
+   private final LongAdder hits = new LongAdder();
+   private final LongAdder misses = new LongAdder();
+   private final LongAdder loadSuccesses = new LongAdder();
+   private final LongAdder loadFailures = new LongAdder();
+   private final LongAdder loadNanos = new LongAdder();
+   private final LongAdder refreshes = new LongAdder();
+
+   @Autowired
+   public CachingRatingProvider(RatingProvider delegate,
+                                @Value("${rating.cache.max-size:10000}") int maxSize,
+                                @Value("${rating.cache.ttl:PT5M}") Duration ttl,
+                                @Value("${rating.cache.refresh-after:PT4M}") Duration refreshAfter) {
+      this(delegate, maxSize, ttl, refreshAfter, System::nanoTime, Executors.newVirtualThreadPerTaskExecutor());
+   }
+
+   CachingRatingProvider(RatingProvider delegate, int maxSize, Duration ttl, Duration refreshAfter,
+                         LongSupplier ticker, Executor refresher) {
+      if (refreshAfter.compareTo(ttl) > 0) {
+         throw new IllegalArgumentException("refresh-after " + refreshAfter + " is longer than the ttl " + ttl);
+      }
+      this.delegate = delegate;
+      this.ttlNanos = ttl.toNanos();
+      this.refreshAfterNanos = refreshAfter.toNanos();
+      this.ticker = ticker;
+      this.refresher = refresher;
+      //access order, so the eldest entry is the least recently used
+      this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+            return size() > maxSize;
+         }
+      };
+   }
+
+   @PreDestroy
+   public void close() {
+      if (refresher instanceof ExecutorService es) {
+         es.shutdownNow();
+      }
+   }
+
+   @Override
+   public BigDecimal getRating(int id) {
+      Entry entry = getFresh(id);
+      if (entry != null) {
+         hits.increment();
+         return entry.rating();
+      }
+      misses.increment();
+      return join(load(id, null));
+   }
+
+   /**
+    * The ones we have go straight back.  The ones we don't are got in
+    * one call to the delegate, apart from any that somebody else is
+    * already loading, whose answers we wait for instead.
+    */
+   @Override
+   public Map<Integer, BigDecimal> getRatings(Collection<Integer> ids) {
+      Map<Integer, BigDecimal> ratings = new HashMap<>();
+      Map<Integer, CompletableFuture<BigDecimal>> mine = new LinkedHashMap<>();
+      Map<Integer, CompletableFuture<BigDecimal>> theirs = new HashMap<>();
+      for (Integer id : new LinkedHashSet<>(ids)) {
+         Entry entry = getFresh(id);
+         if (entry != null) {
+            hits.increment();
+            ratings.put(id, entry.rating());
+            continue;
+         }
+         misses.increment();
+         var future = new CompletableFuture<BigDecimal>();
+         var running = inFlight.putIfAbsent(id, future);
+         if (running != null) {
+            theirs.put(id, running);
+         } else {
+            mine.put(id, future);
+         }
+      }
+
+      if (!mine.isEmpty()) {
+         loadAll(mine);
+      }
+      mine.forEach((id, future) -> ratings.put(id, future.join()));
+      theirs.forEach((id, future) -> ratings.put(id, join(future)));
+      return ratings;
+   }
+
+   /**
+    * Not cached.  The rating might depend on who is asking.
+    */
+   @Override
+   public BigDecimal getRating(int id, String user, String pw) {
+      return delegate.getRating(id, user, pw);
+   }
+
+   /**
+    * @return the entry if it hasn't expired, else null.  Starts a
+    * refresh if it is getting old.
+    */
+   private Entry getFresh(int id) {
+      Entry entry;
+      synchronized (entries) {
+         entry = entries.get(id);
+      }
+      if (entry == null) {
+         return null;
+      }
+      long age = ticker.getAsLong() - entry.loadedAt();
+      if (age >= ttlNanos) {
+         return null;
+      }
+      if (age >= refreshAfterNanos && !inFlight.containsKey(id)) {
+         refreshes.increment();
+         load(id, refresher).exceptionally(e -> {
+            //Keep the one we have, it's still good until the ttl
+            logger.debug("Refresh of rating {} failed: {}", id, e.toString());
+            return null;
+         });
+      }
+      return entry;
+   }
+
+   /**
+    * Load the rating for id, unless somebody already is, in which case
+    * we share their future.
+    *
+    * @param executor where to run the load, null for the caller's thread.
+    */
+   private CompletableFuture<BigDecimal> load(int id, Executor executor) {
+      var mine = new CompletableFuture<BigDecimal>();
+      var running = inFlight.putIfAbsent(id, mine);
+      if (running != null) {
+         return running;
+      }
+
+      Runnable task = () -> {
+         long start = ticker.getAsLong();
+         try {
+            BigDecimal rating = delegate.getRating(id);
+            loadNanos.add(ticker.getAsLong() - start);
+            loadSuccesses.increment();
+            //Into the cache before we leave inFlight, so nobody misses in between
+            synchronized (entries) {
+               cache(id, rating, ticker.getAsLong());
+            }
+            mine.complete(rating);
+         } catch (RuntimeException e) {
+            loadNanos.add(ticker.getAsLong() - start);
+            loadFailures.increment();
+            mine.completeExceptionally(e);
+         } finally {
+            inFlight.remove(id, mine);
+         }
+      };
+      if (executor == null) {
+         task.run();
+      } else {
+         executor.execute(task);
+      }
+      return mine;
+   }
+
+   /**
+    * One call to the delegate for all the ids in mine, which we have
+    * put in inFlight, and complete their futures with the answers.
+    */
+   private void loadAll(Map<Integer, CompletableFuture<BigDecimal>> mine) {
+      long start = ticker.getAsLong();
+      try {
+         Map<Integer, BigDecimal> loaded = delegate.getRatings(List.copyOf(mine.keySet()));
+         loadNanos.add(ticker.getAsLong() - start);
+         loadSuccesses.increment();
+         long now = ticker.getAsLong();
+         synchronized (entries) {
+            mine.keySet().forEach(id -> cache(id, loaded.get(id), now));
+         }
+         mine.forEach((id, future) -> future.complete(loaded.get(id)));
+      } catch (RuntimeException e) {
+         loadNanos.add(ticker.getAsLong() - start);
+         loadFailures.increment();
+         mine.values().forEach(future -> future.completeExceptionally(e));
+         throw e;
+      } finally {
+         mine.forEach(inFlight::remove);
+      }
+   }
+
+   //Call with entries locked
+   private void cache(int id, BigDecimal rating, long now) {
+      if (rating != null) {
+         entries.put(id, new Entry(rating, now));
+      }
+   }
+
+   private static BigDecimal join(CompletableFuture<BigDecimal> future) {
+      try {
+         return future.join();
+      } catch (CompletionException e) {
+         //Give the caller what the delegate threw
+         if (e.getCause() instanceof RuntimeException re) {
+            throw re;
+         }
+         throw e;
+      }
+   }
+
+   public int size() {
+      synchronized (entries) {
+         return entries.size();
+      }
+   }
+
+   public long getHitCount() {
+      return hits.sum();
+   }
+
+   public long getMissCount() {
+      return misses.sum();
+   }
+
+   public long getLoadSuccessCount() {
+      return loadSuccesses.sum();
+   }
+
+   public long getLoadFailureCount() {
+      return loadFailures.sum();
+   }
+
+   public long getTotalLoadTimeNanos() {
+      return loadNanos.sum();
+   }
+
+   public long getRefreshCount() {
+      return refreshes.sum();
+   }
+}
@@ -1,6 +1,9 @@
 package ttl.larku.rating;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 public interface RatingProvider {
    default BigDecimal getRating(int id) {
@@ -10,4 +13,15 @@ public interface RatingProvider {
    default BigDecimal getRating(int id, String user, String pw) {
       throw new UnsupportedOperationException("Needs Implementing");
    }
+
+   /**
+    * Ratings for a batch of ids, keyed by id.  Providers that can get
+    * them all in one go should override this.  The default asks for
+    * them one at a time.
+    */
+   default Map<Integer, BigDecimal> getRatings(Collection<Integer> ids) {
+      Map<Integer, BigDecimal> ratings = new HashMap<>();
+      ids.forEach(id -> ratings.put(id, getRating(id)));
+      return ratings;
+   }
 }
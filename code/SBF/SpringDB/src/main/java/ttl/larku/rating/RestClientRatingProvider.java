@@ -1,17 +1,19 @@
 package ttl.larku.rating;
 
-import java.io.IOException;
+import jakarta.annotation.PreDestroy;
 import java.math.BigDecimal;
-import java.security.KeyManagementException;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
-import java.security.UnrecoverableKeyException;
-import java.security.cert.CertificateException;
+import java.time.Duration;
 import java.util.Base64;
-import org.springframework.beans.factory.annotation.Autowired;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClient;
@@ -28,12 +30,33 @@ import ttl.larku.jconfig.client.RestClientFactory;
  * _Note that this test will fail if the certificate has not been added into the cacerts
  * file, since here we are working with just a RestClient that has no special ssl config
  * applied to it.
+ * <p>
+ * getRatings goes to the bulk endpoint of the rating service, one
+ * call for the lot.  Single getRating(id) calls that come in at
+ * about the same time, say from concurrent requests, are coalesced
+ * into bulk calls by a BatchLoader.  rating.provider.batch-window
+ * (default 5ms) is how long the first one waits for company, and
+ * rating.provider.max-batch-size caps the ids in one call.  A window
+ * of 0 sends every getRating(id) on its own, as before.
+ * <p>
+ * All the calls to the rating service go through a CallGuard, so when
+ * the service is slow or down we answer quickly with the last rating
+ * we got for a course, or null if we never got one.  The
+ * rating.provider.guard properties set it up, see CallGuard.
+ * <p>
+ * Only ratings fetched with our own credentials are remembered and
+ * served as the fallback.  getRating(id, user, pw) is made on behalf
+ * of a particular user, so it neither feeds the fallback nor falls back
+ * to it; when the service can't answer, that caller gets null.
  */
 @Component
 @Profile("networkrating")
 public class RestClientRatingProvider implements RatingProvider{
 
 
+   //Same as the limit in the rating service
+   public static final int MAX_BULK_IDS = 1000;
+
    private String password;
 
    private RestClient restClient;
@@ -42,36 +65,76 @@ public class RestClientRatingProvider implements RatingProvider{
    //String rootUrl = baseUrl + "/adminrest/student";
 //   String rootUrl;
 
-   @Autowired
-   private RestClientFactory factory;
+   private final BatchLoader<Integer, BigDecimal> batchLoader;
+
+   private final CallGuard callGuard;
+
+   //What we fall back to.  One per course, so it doesn't need a bound.
+   private final Map<Integer, BigDecimal> lastKnownRatings = new ConcurrentHashMap<>();
+
+   private static final ParameterizedTypeReference<Map<Integer, BigDecimal>> RATINGS_TYPE =
+         new ParameterizedTypeReference<>() {
+         };
 
    public RestClientRatingProvider(@Value("${rating.provider.url}")
                        String baseUrl,
                                    @Value("${CLIENT_PASSWORD}")
-                       String password) throws UnrecoverableKeyException, CertificateException, IOException, KeyStoreException, NoSuchAlgorithmException, KeyManagementException {
+                       String password,
+                                   @Value("${rating.provider.batch-window:PT0.005S}")
+                       Duration batchWindow,
+                                   @Value("${rating.provider.max-batch-size:200}")
+                       int maxBatchSize,
+                                   @Value("${rating.provider.guard.failure-threshold:5}")
+                       int failureThreshold,
+                                   @Value("${rating.provider.guard.open-for:PT10S}")
+                       Duration openFor,
+                                   @Value("${rating.provider.guard.max-concurrent:20}")
+                       int maxConcurrent,
+                                   @Value("${rating.provider.guard.hedge-after:PT0.2S}")
+                       Duration hedgeAfter,
+                                   @Value("${rating.provider.guard.timeout:PT1S}")
+                       Duration timeout,
+                                   RestClientFactory factory) {
 
       this.password = password;
-      String basicAuthHeader = "basic " + Base64.getEncoder().encodeToString(("bobby" + ":" + password).getBytes());
 
-//
-      this.restClient = RestClient.builder()
-            .baseUrl(baseUrl)
-            .defaultHeader("Accept", "application/json")
-            .defaultHeader("Authorization", basicAuthHeader)
-            .build();
+      //The factory's clients share one pool of kept alive connections,
+      //so we don't pay for a TLS handshake on every call.
+      this.restClient = factory.basicAuth(baseUrl, "bobby", password);
+
+      this.callGuard = new CallGuard("rating-service", failureThreshold, openFor, maxConcurrent, hedgeAfter, timeout);
+      this.batchLoader = new BatchLoader<>(this::getRatingsFromService, batchWindow, maxBatchSize, 4);
+   }
 
+   @PreDestroy
+   public void close() {
+      batchLoader.close();
+      callGuard.close();
    }
 
    @Override
    public BigDecimal getRating(int id) {
-      return getRatingFromService(id, null);
+      try {
+         return batchLoader.load(id).join();
+      } catch (CompletionException e) {
+         //Give the caller the RestClientException, as if they had made the call.
+         if (e.getCause() instanceof RuntimeException re) {
+            throw re;
+         }
+         throw e;
+      }
+   }
+
+   @Override
+   public Map<Integer, BigDecimal> getRatings(Collection<Integer> ids) {
+      return getRatingsFromService(ids);
    }
 
    @Override
    public BigDecimal getRating(int id, String user, String pw) {
       var encoded = Base64.getEncoder().encodeToString((user + ":" + pw).getBytes());
       String basicAuthHeader = "Basic " + encoded;
-      var result = getRatingFromService(id, basicAuthHeader);
+      var result = callGuard.call(() -> getRatingFromService(id, basicAuthHeader), true, () -> null);
       return result;
    }
 
@@ -91,6 +154,48 @@ public class RestClientRatingProvider implements RatingProvider{
       return null;
    }
 
+   private Map<Integer, BigDecimal> getRatingsFromService(Collection<Integer> ids) {
+      return callGuard.call(() -> {
+         var ratings = fetchRatings(ids);
+         ratings.forEach(this::remember);
+         return ratings;
+      }, true, () -> {
+         Map<Integer, BigDecimal> known = new HashMap<>();
+         ids.forEach(id -> known.put(id, lastKnownRatings.get(id)));
+         return known;
+      });
+   }
+
+   private BigDecimal remember(int id, BigDecimal rating) {
+      if (rating != null) {
+         lastKnownRatings.put(id, rating);
+      }
+      return rating;
+   }
+
+   /**
+    * One POST to /bulk with the ids, in chunks of at most
+    * MAX_BULK_IDS, which is what the rating service will take.
+    */
+   private Map<Integer, BigDecimal> fetchRatings(Collection<Integer> ids) {
+      Map<Integer, BigDecimal> ratings = new HashMap<>();
+      var idList = ids.stream().distinct().toList();
+      for (int from = 0; from < idList.size(); from += MAX_BULK_IDS) {
+         var chunk = idList.subList(from, Math.min(from + MAX_BULK_IDS, idList.size()));
+         var response = restClient.post()
+               .uri("/bulk")
+               .contentType(MediaType.APPLICATION_JSON)
+               .body(chunk)
+               .retrieve()
+               .toEntity(RATINGS_TYPE);
+
+         if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
+            ratings.putAll(response.getBody());
+         }
+      }
+      return ratings;
+   }
+
    public BigDecimal testGetCourseRating() {
       ResponseEntity<BigDecimal> response = restClient.get()
             //.uri("https://localhost:10043/rating/{id}", 2)
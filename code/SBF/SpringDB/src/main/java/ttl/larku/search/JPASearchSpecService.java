@@ -4,9 +4,14 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
@@ -19,6 +24,8 @@ import ttl.larku.domain.Student;
 public class JPASearchSpecService<E_T, ID_T,
       RepoType extends JpaRepository<E_T, ID_T> & JpaSpecificationExecutor<E_T>> {
 
+   private SearchPlanCache<E_T> planCache = new SearchPlanCache<>(256);
+
 
    public RestResultWrapper<List<E_T>> doSearch(@RequestParam Map<String, Object> queryStrings,
                                         RepoType targetRepository) {
@@ -44,6 +51,16 @@ public class JPASearchSpecService<E_T, ID_T,
 
       result = getTracksByRequestParams(queryStrings, targetRepository);
 
+      if (isKeysetRequest(queryStrings)) {
+         var wrapper = RestResultWrapper.ofValue(result)
+               .addProp("pageSize", pageSize)
+               .addProp("nextToken", queryStrings.get("nextToken"));
+         if (queryStrings.containsKey("totalElements")) {
+            wrapper.addProp("totalElements", queryStrings.get("totalElements"));
+         }
+         return wrapper;
+      }
+
       tmp = queryStrings.get("page");
       int page = tmp != null ? Integer.parseInt(tmp.toString()) : 0;
 
@@ -75,6 +92,11 @@ public class JPASearchSpecService<E_T, ID_T,
     */
    public List<E_T> getTracksByRequestParams(Map<String, Object> searchContext,
                                              RepoType repository) {
+      //Keyset paging doesn't need a page number
+      if (isKeysetRequest(searchContext)) {
+         return getByKeyset(searchContext, repository);
+      }
+
       //look for page property
       Pageable pageable = null;
       if (searchContext.containsKey("page")) {
@@ -89,15 +111,11 @@ public class JPASearchSpecService<E_T, ID_T,
       }
 
 
-      var haveSearchParams = searchContext.entrySet().stream()
-            .filter(entry -> entry.getKey().matches(".\\..*"))
-            .findFirst();
-
 //      Map<String, Object> searchParams = partition.get(true)
 //            .stream().collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
 
       List<E_T> result = null;
-      if (haveSearchParams.isPresent()) {
+      if (hasSearchParams(searchContext)) {
          if (repository instanceof RepoType specExecutor) {
             result = getTracksBySearchSpec(searchContext, pageable, specExecutor);
          }
@@ -115,6 +133,11 @@ public class JPASearchSpecService<E_T, ID_T,
       return result;
    }
 
+   private boolean hasSearchParams(Map<String, Object> searchContext) {
+      return searchContext.keySet().stream()
+            .anyMatch(k -> SearchPlan.isSearchKey(k) || k.equals("where"));
+   }
+
    /**
     * Handle JpaSearchSpec parameters.  Look at JpaTrackSearchSpec.  For usage,
     * look at the test in the 'dao' package.
@@ -130,39 +153,64 @@ public class JPASearchSpecService<E_T, ID_T,
    public List<E_T> getTracksBySearchSpec(Map<String, Object> searchContext,
                                           Pageable pageAble,
                                           RepoType specExecutor) {
-      Map<String, Object> queryStrings = convertToMapOfCorrectTypes(searchContext);
-
-      List<Specification<E_T>> searchSpecs = new ArrayList<>();
-      queryStrings.forEach((k, value) -> {
-         //Pattern we are looking for is op.property
-         //op is first character
-         if (k.matches(".\\..*")) {
-            var opSymbol = k.substring(0, 1);
-            var searchType = JpaSearchSpecSupport.SearchType.getBySymbol(opSymbol);
-            //Property name to filter by starts at position 2
-            var propName = k.substring(2);
-
-            var ss = new JpaTrackSearchSpec(searchType,
-                  propName, value);
-            searchSpecs.add((Specification<E_T>) ss);
-         }
-      });
+      Specification<E_T> specification = makeSearchSpecification(searchContext);
+      if (specification == null) return List.of();
 
-      List<E_T> result = getTracksBySearchSpec(searchContext, searchSpecs, pageAble, specExecutor);
+      List<E_T> result = findBySpecification(searchContext, specification, pageAble, specExecutor);
       return result;
    }
 
+   /**
+    * Turn the op.property entries in the searchContext into one
+    * Specification.  They are joined by the "where" expression if
+    * there is one (see SearchExpr), otherwise by "combine", which
+    * is "or" unless it says "and".  The parsing is done once per
+    * shape of query and cached, see SearchPlan.
+    *
+    * @return null if there is nothing to search by.
+    */
+   public Specification<E_T> makeSearchSpecification(Map<String, Object> searchContext) {
+      SearchPlan<E_T> plan = getPlan(searchContext);
+      return plan != null ? plan.bind(searchContext) : null;
+   }
+
+   /**
+    * The op.property entries in the searchContext as separate
+    * Specifications, for callers who want to put them together
+    * themselves.
+    */
+   public List<Specification<E_T>> makeSearchSpecs(Map<String, Object> searchContext) {
+      SearchPlan<E_T> plan = getPlan(searchContext);
+      return plan != null ? plan.bindTerms(searchContext) : new ArrayList<>();
+   }
+
+   private SearchPlan<E_T> getPlan(Map<String, Object> searchContext) {
+      SearchPlan.Shape shape = SearchPlan.shapeOf(searchContext);
+      if (shape.isEmpty()) {
+         return null;
+      }
+      return planCache.get(shape, s -> SearchPlan.compile(s, this::converterFor, this::isIndexed));
+   }
+
+   public void setPlanCacheSize(int planCacheSize) {
+      planCache = new SearchPlanCache<>(planCacheSize);
+   }
+
    public List<E_T> getTracksBySearchSpec(Map<String, Object> searchContext,
                                           List<? extends Specification<E_T>> searchSpecs,
                                           Pageable pageAble,
                                           RepoType specExecutor) {
       if (searchSpecs.isEmpty()) return List.of();
 
-      Specification<E_T> specification = searchSpecs.get(0);
-      for (int i = 1; i < searchSpecs.size(); i++) {
-         specification = specification.or(searchSpecs.get(i));
-      }
+      Specification<E_T> specification = combine(searchSpecs, SearchPlan.shapeOf(searchContext).combine());
+
+      return findBySpecification(searchContext, specification, pageAble, specExecutor);
+   }
 
+   private List<E_T> findBySpecification(Map<String, Object> searchContext,
+                                         Specification<E_T> specification,
+                                         Pageable pageAble,
+                                         RepoType specExecutor) {
       List<E_T> result = null;
       if (pageAble != null) {
          var page = specExecutor.findAll(specification, pageAble);
@@ -176,22 +224,103 @@ public class JPASearchSpecService<E_T, ID_T,
       return result;
    }
 
-   //Hard coded for now
-   public Map<String, Object> convertToMapOfCorrectTypes(Map<String, Object> searchContext) {
-//      Map<String, Object> result = new HashMap<>();
-      searchContext.forEach((k, v) -> {
-         switch (k) {
-            case String s when
-                  s.contains("dob") || s.contains("endDate")
-                        || s.contains("startDate") -> searchContext.put(k, LocalDate.parse(v.toString()));
-            case String s when
-                  s.contains("status") -> searchContext.put(k, Student.Status.valueOf(v.toString().toUpperCase()));
-
-            default -> {
+   private Specification<E_T> combine(List<? extends Specification<E_T>> searchSpecs,
+                                      JpaSearchSpecSupport.Operation operation) {
+      Specification<E_T> specification = searchSpecs.get(0);
+      for (int i = 1; i < searchSpecs.size(); i++) {
+         specification = operation == JpaSearchSpecSupport.Operation.And ?
+               specification.and(searchSpecs.get(i)) : specification.or(searchSpecs.get(i));
+      }
+      return specification;
+   }
+
+   /**
+    * Keyset paging is asked for with "paging=keyset", or by sending
+    * back the "after" token from a previous page.
+    */
+   public boolean isKeysetRequest(Map<String, Object> searchContext) {
+      return "keyset".equals(searchContext.get("paging")) || searchContext.containsKey("after");
+   }
+
+   /**
+    * Keyset, or "seek", paging.  Instead of an OFFSET, which makes the
+    * database walk past all the earlier rows, each page asks for the
+    * rows after the sort key of the last row we sent.  That uses the
+    * index, so page 1000 costs the same as page 1.
+    * <p>
+    * Reads from the searchContext:
+    * pageSize, "sort" (e.g. "name,-dob"), any search specs and "where", "after"
+    * (the token from the last page, absent or empty for the first
+    * page), and "count".  There is no count query unless count=true.
+    * <p>
+    * Puts into the searchContext:
+    * "nextToken", null on the last page, and "totalElements" if
+    * count=true.
+    * <p>
+    * As with offset paging, no search params at all means every row,
+    * but search params that come to nothing mean no rows.
+    */
+   public List<E_T> getByKeyset(Map<String, Object> searchContext, RepoType specExecutor) {
+      int pageSize = searchContext.containsKey("pageSize") ?
+            Integer.parseInt(searchContext.get("pageSize").toString()) : 10;
+
+      Object after = searchContext.get("after");
+      KeysetToken token = after != null && !after.toString().isBlank() ?
+            KeysetToken.decode(after.toString()) : null;
+      //The sort has to stay the same from page to page, so it rides along in the token.
+      Sort sort = token != null ? token.sort() : KeysetToken.parseSort((String) searchContext.get("sort"));
+      KeysetScrollPosition position = token != null ? token.position() : ScrollPosition.keyset();
+
+      Specification<E_T> specification = makeSearchSpecification(searchContext);
+      if (specification == null) {
+         if (hasSearchParams(searchContext)) {
+            searchContext.put("nextToken", null);
+            if ("true".equals(String.valueOf(searchContext.get("count")))) {
+               searchContext.put("totalElements", 0L);
             }
+            return List.of();
          }
-      });
+         specification = Specification.where(null);
+      }
+
+      Window<E_T> window = specExecutor.findBy(specification,
+            q -> q.sortBy(sort).limit(pageSize).scroll(position));
+
+      String nextToken = null;
+      if (window.hasNext() && !window.isEmpty()) {
+         var last = (KeysetScrollPosition) window.positionAt(window.size() - 1);
+         nextToken = KeysetToken.of(sort, last).encode();
+      }
+      searchContext.put("nextToken", nextToken);
+
+      if ("true".equals(String.valueOf(searchContext.get("count")))) {
+         searchContext.put("totalElements", specExecutor.count(specification));
+      }
+
+      return window.getContent();
+   }
+
+   //Hard coded for now.  The primary keys, which are always indexed.
+   //Used to put the most selective search terms first.
+   public boolean isIndexed(String propName) {
+      return propName.equals("id") || propName.endsWith(".id");
+   }
 
+   //Hard coded for now
+   public Function<Object, Object> converterFor(String key) {
+      return switch (key) {
+         case String s when
+               s.contains("dob") || s.contains("endDate")
+                     || s.contains("startDate") -> v -> LocalDate.parse(v.toString());
+         case String s when
+               s.contains("status") -> v -> Student.Status.valueOf(v.toString().toUpperCase());
+
+         default -> Function.identity();
+      };
+   }
+
+   public Map<String, Object> convertToMapOfCorrectTypes(Map<String, Object> searchContext) {
+      searchContext.replaceAll((k, v) -> converterFor(k).apply(v));
       return searchContext;
    }
 
@@ -1,10 +1,15 @@
 package ttl.larku.service;
 
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClient;
 import ttl.larku.dao.BaseDAO;
+import ttl.larku.dao.IndexedPredicate;
 import ttl.larku.domain.Course;
 import ttl.larku.rating.RatingProvider;
 
@@ -13,6 +18,8 @@ import ttl.larku.rating.RatingProvider;
 @Primary
 public class CourseServiceWithRating implements CourseService {
 
+    private Logger logger = LoggerFactory.getLogger(this.getClass());
+
     private BaseDAO<Course> courseDAO;
     private final RatingProvider ratingProvider;
 
@@ -63,7 +70,7 @@ public class CourseServiceWithRating implements CourseService {
 
     @Override
     public Course findByCode(String code) {
-        List<Course> courses = courseDAO.findBy(c -> c.getCode().contains(code));
+        List<Course> courses = courseDAO.findBy(IndexedPredicate.contains("code", Course::getCode, code));
         if(!courses.isEmpty()) { //take the first one
             var course = courses.get(0);
             course.setRating(ratingProvider.getRating(course.getId()));
@@ -83,11 +90,23 @@ public class CourseServiceWithRating implements CourseService {
 
     public List<Course> getAllCourses() {
         var courses = courseDAO.findAll();
-        courses.forEach(c -> c.setRating(ratingProvider.getRating(c.getId())));
+        //One call for all the ratings, instead of a round trip per course
+        var ratings = getRatings(courses);
+        courses.forEach(c -> c.setRating(ratings.get(c.getId())));
 
         return courses;
     }
 
+    private Map<Integer, BigDecimal> getRatings(List<Course> courses) {
+        try {
+            return ratingProvider.getRatings(courses.stream().map(Course::getId).toList());
+        } catch (RuntimeException e) {
+            //Better the courses without ratings than no courses at all
+            logger.warn("Could not get ratings for {} courses: {}", courses.size(), e.toString());
+            return Map.of();
+        }
+    }
+
     public BaseDAO<Course> getCourseDAO() {
         return courseDAO;
     }
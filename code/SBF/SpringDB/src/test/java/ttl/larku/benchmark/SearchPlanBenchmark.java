@@ -0,0 +1,75 @@
+package ttl.larku.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.jpa.domain.Specification;
+import ttl.larku.dao.repository.StudentRepo;
+import ttl.larku.domain.Student;
+import ttl.larku.search.JPASearchSpecService;
+
+/**
+ * Turning a query string into a Specification, with the plan cache
+ * off (planCacheSize 0, every request is parsed from scratch) and
+ * on.  This is only the work done before the query goes to the
+ * database, which is the part the plan cache is for.
+ * <p>
+ * Run main from the IDE, or after a test-compile with:
+ * mvn exec:java -Dexec.classpathScope=test -Dexec.mainClass=ttl.larku.benchmark.SearchPlanBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class SearchPlanBenchmark {
+
+   @Param({"0", "256"})
+   public int planCacheSize;
+
+   private JPASearchSpecService<Student, Integer, StudentRepo> searchService;
+   private Map<String, Object> queryStrings;
+
+   @Setup
+   public void setup() {
+      searchService = new JPASearchSpecService<>();
+      searchService.setPlanCacheSize(planCacheSize);
+
+      queryStrings = new HashMap<>();
+      queryStrings.put("C.name", "man");
+      queryStrings.put("G.dob", "1990-01-01");
+      queryStrings.put("e.status", "full_time");
+      queryStrings.put("l.classes.startDate", "2023-08-10");
+      queryStrings.put("where", "C.name and (G.dob or e.status) and l.classes.startDate");
+      queryStrings.put("page", "1");
+      queryStrings.put("pageSize", "10");
+   }
+
+   @Benchmark
+   public Specification<Student> makeSearchSpecification() {
+      return searchService.makeSearchSpecification(queryStrings);
+   }
+
+   public static void main(String[] args) throws RunnerException {
+      new Runner(new OptionsBuilder()
+            .include(SearchPlanBenchmark.class.getSimpleName())
+            .build()).run();
+   }
+}
@@ -1,5 +1,9 @@
 package ttl.larku.dao;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
@@ -16,6 +20,9 @@ import ttl.larku.domain.Student;
 import ttl.larku.domain.StudentCourseCodeSummary;
 import ttl.larku.sql.SqlScriptBase;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 
 //@DataJpaTest
 @SpringBootTest
@@ -76,6 +83,43 @@ public class StudentRepoPagingTest extends SqlScriptBase {
 //      assertEquals(2, page.getNumber());
    }
 
+   /**
+    * findAll(Pageable) pages over the ids first, and then fetches the
+    * students with their classes.  The pages should come back in the
+    * requested order, with the classes loaded.
+    */
+   @Test
+   public void testTwoPhasePagingKeepsOrder() {
+      for (int i = 0; i < 50; i++) {
+         studentRepo.save(new Student("Fake #" + i));
+      }
+
+      Page<Student> page = studentRepo.findAll(PageRequest.of(1, 10, Sort.by("id").descending()));
+
+      assertEquals(10, page.getNumberOfElements());
+      assertEquals(studentRepo.count(), page.getTotalElements());
+      List<Integer> ids = page.map(Student::getId).getContent();
+      assertEquals(ids.stream().sorted(Comparator.reverseOrder()).toList(), ids);
+      page.forEach(s -> assertTrue(Hibernate.isInitialized(s.getClasses())));
+   }
+
+   @Test
+   public void testKeysetPagingVisitsEveryStudentOnce() {
+      for (int i = 0; i < 50; i++) {
+         studentRepo.save(new Student("Fake #" + i));
+      }
+
+      List<Integer> ids = new ArrayList<>();
+      List<Student> page = studentRepo.findPageAfter(0, 20);
+      while (!page.isEmpty()) {
+         page.forEach(s -> ids.add(s.getId()));
+         page = studentRepo.findPageAfter(page.get(page.size() - 1).getId(), 20);
+      }
+
+      assertEquals(studentRepo.count(), ids.size());
+      assertEquals(ids.stream().sorted().toList(), ids);
+   }
+
    /**
     * An example of using a Pageable with a Projection
     */
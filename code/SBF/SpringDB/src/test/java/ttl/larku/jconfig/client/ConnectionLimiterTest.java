@@ -0,0 +1,83 @@
+package ttl.larku.jconfig.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Tag("unit")
+public class ConnectionLimiterTest {
+
+   private final ClientHttpRequestExecution ok =
+         (request, body) -> new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+
+   private final byte[] noBody = new byte[0];
+
+   private MockClientHttpRequest get(String uri) {
+      return new MockClientHttpRequest(HttpMethod.GET, URI.create(uri));
+   }
+
+   @Test
+   public void testPermitsHeldUntilResponseIsClosed() throws IOException {
+      var limiter = new ConnectionLimiter(10, 2, Duration.ofMillis(50));
+
+      ClientHttpResponse first = limiter.intercept(get("https://localhost:10043/rating/1"), noBody, ok);
+      ClientHttpResponse second = limiter.intercept(get("https://localhost:10043/rating/2"), noBody, ok);
+      assertEquals(2, limiter.getInUse());
+
+      //Route is full
+      assertThrows(IOException.class,
+            () -> limiter.intercept(get("https://localhost:10043/rating/3"), noBody, ok));
+      assertEquals(1, limiter.getRejectionCount());
+
+      //Some other route is fine
+      limiter.intercept(get("http://localhost:10001/price/3"), noBody, ok).close();
+
+      first.close();
+      first.close();
+      assertEquals(1, limiter.getInUse());
+      limiter.intercept(get("https://localhost:10043/rating/3"), noBody, ok).close();
+      second.close();
+      assertEquals(0, limiter.getInUse());
+   }
+
+   @Test
+   public void testTotalLimit() throws IOException {
+      var limiter = new ConnectionLimiter(1, 5, Duration.ofMillis(50));
+
+      var response = limiter.intercept(get("http://one:8080/a"), noBody, ok);
+      assertThrows(IOException.class, () -> limiter.intercept(get("http://two:8080/b"), noBody, ok));
+      response.close();
+
+      limiter.intercept(get("http://two:8080/b"), noBody, ok).close();
+      assertEquals(0, limiter.getInUse());
+      assertEquals(1, limiter.getWaitCount());
+   }
+
+   @Test
+   public void testPermitsReleasedWhenCallFails() {
+      var limiter = new ConnectionLimiter(1, 1, Duration.ofMillis(50));
+      ClientHttpRequestExecution failing = (request, body) -> {
+         throw new IOException("Connection refused");
+      };
+
+      assertThrows(IOException.class, () -> limiter.intercept(get("http://localhost:10001/x"), noBody, failing));
+      assertEquals(0, limiter.getInUse());
+   }
+
+   @Test
+   public void testRouteOf() {
+      assertEquals("https://localhost:443", ConnectionLimiter.routeOf(URI.create("https://localhost/rating")));
+      assertEquals("http://localhost:10001", ConnectionLimiter.routeOf(URI.create("HTTP://localhost:10001/price")));
+   }
+}
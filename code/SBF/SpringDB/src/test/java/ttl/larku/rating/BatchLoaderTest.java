@@ -0,0 +1,88 @@
+package ttl.larku.rating;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+public class BatchLoaderTest {
+
+   private final List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+
+   private Map<Integer, String> bulkLoad(Collection<Integer> ids) {
+      batches.add(List.copyOf(ids));
+      Map<Integer, String> result = new HashMap<>();
+      ids.stream().filter(id -> id > 0).forEach(id -> result.put(id, "rating-" + id));
+      return result;
+   }
+
+   @Test
+   public void testLoadsInTheWindowShareOneBulkCall() {
+      try (var loader = new BatchLoader<Integer, String>(this::bulkLoad, Duration.ofMillis(200), 100, 2)) {
+         List<CompletableFuture<String>> futures = new ArrayList<>();
+         for (int id = 1; id <= 10; id++) {
+            futures.add(loader.load(id));
+         }
+         //Same key again shares the future
+         futures.add(loader.load(3));
+
+         for (int i = 0; i < 10; i++) {
+            assertEquals("rating-" + (i + 1), futures.get(i).join());
+         }
+         assertEquals("rating-3", futures.get(10).join());
+         assertEquals(1, batches.size());
+         assertEquals(10, batches.get(0).size());
+      }
+   }
+
+   @Test
+   public void testFullBatchGoesWithoutWaiting() {
+      try (var loader = new BatchLoader<Integer, String>(this::bulkLoad, Duration.ofMinutes(1), 5, 2)) {
+         List<CompletableFuture<String>> futures = new ArrayList<>();
+         for (int id = 1; id <= 5; id++) {
+            futures.add(loader.load(id));
+         }
+         futures.forEach(CompletableFuture::join);
+         assertEquals(List.of(List.of(1, 2, 3, 4, 5)), batches);
+      }
+   }
+
+   @Test
+   public void testMissingKeyIsNullAndFailureReachesEveryCaller() {
+      try (var loader = new BatchLoader<Integer, String>(this::bulkLoad, Duration.ZERO, 100, 1)) {
+         assertNull(loader.load(-1).join());
+      }
+
+      try (var loader = new BatchLoader<Integer, String>(ids -> {
+         throw new IllegalStateException("Rating service is down");
+      }, Duration.ofMillis(50), 100, 1)) {
+         var f1 = loader.load(1);
+         var f2 = loader.load(2);
+         var e = assertThrows(CompletionException.class, f1::join);
+         assertTrue(e.getCause() instanceof IllegalStateException);
+         assertThrows(CompletionException.class, f2::join);
+      }
+   }
+
+   @Test
+   public void testZeroWindowLoadsRightAway() {
+      try (var loader = new BatchLoader<Integer, String>(this::bulkLoad, Duration.ZERO, 100, 1)) {
+         assertEquals("rating-1", loader.load(1).join());
+         assertEquals("rating-2", loader.load(2).join());
+         assertEquals(List.of(List.of(1), List.of(2)), batches);
+      }
+   }
+}
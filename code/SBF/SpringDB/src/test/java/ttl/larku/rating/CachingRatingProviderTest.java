@@ -0,0 +1,227 @@
+package ttl.larku.rating;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Tag("unit")
+public class CachingRatingProviderTest {
+
+   private final AtomicLong now = new AtomicLong();
+   private final AtomicInteger calls = new AtomicInteger();
+   private final List<List<Integer>> bulkCalls = new ArrayList<>();
+
+   //Each load gives a new rating, so we can tell a reload from a hit
+   private final RatingProvider delegate = new RatingProvider() {
+      @Override
+      public BigDecimal getRating(int id) {
+         return BigDecimal.valueOf(id * 100 + calls.incrementAndGet());
+      }
+
+      @Override
+      public Map<Integer, BigDecimal> getRatings(Collection<Integer> ids) {
+         bulkCalls.add(List.copyOf(ids));
+         Map<Integer, BigDecimal> result = new HashMap<>();
+         ids.forEach(id -> result.put(id, BigDecimal.valueOf(id)));
+         return result;
+      }
+   };
+
+   private CachingRatingProvider cache(RatingProvider delegate, int maxSize) {
+      //Refreshes run on the calling thread, so the tests don't have to wait for them
+      return new CachingRatingProvider(delegate, maxSize, Duration.ofMinutes(5), Duration.ofMinutes(4),
+            now::get, Runnable::run);
+   }
+
+   @Test
+   public void testHitUntilTtl() {
+      var cache = cache(delegate, 100);
+
+      var first = cache.getRating(1);
+      now.addAndGet(Duration.ofMinutes(3).toNanos());
+      assertEquals(first, cache.getRating(1));
+      assertEquals(1, calls.get());
+
+      now.addAndGet(Duration.ofMinutes(3).toNanos());
+      var second = cache.getRating(1);
+      assertEquals(2, calls.get());
+      assertEquals(BigDecimal.valueOf(102), second);
+
+      assertEquals(1, cache.getHitCount());
+      assertEquals(2, cache.getMissCount());
+      assertEquals(2, cache.getLoadSuccessCount());
+   }
+
+   @Test
+   public void testRefreshAheadGivesOldValueAndReloads() {
+      var cache = cache(delegate, 100);
+
+      var first = cache.getRating(1);
+      now.addAndGet(Duration.ofMinutes(4).plusSeconds(30).toNanos());
+
+      //Still the old one, but a reload has been done
+      assertEquals(first, cache.getRating(1));
+      assertEquals(2, calls.get());
+      assertEquals(1, cache.getRefreshCount());
+
+      //A minute later the old one would have expired, but we have the new one
+      now.addAndGet(Duration.ofMinutes(1).toNanos());
+      assertEquals(BigDecimal.valueOf(102), cache.getRating(1));
+      assertEquals(2, calls.get());
+   }
+
+   @Test
+   public void testLeastRecentlyUsedIsEvicted() {
+      var cache = cache(delegate, 2);
+
+      cache.getRating(1);
+      cache.getRating(2);
+      cache.getRating(1);
+      cache.getRating(3);
+      assertEquals(2, cache.size());
+      assertEquals(3, calls.get());
+
+      cache.getRating(1);
+      assertEquals(3, calls.get());
+      cache.getRating(2);
+      assertEquals(4, calls.get());
+   }
+
+   @Test
+   public void testConcurrentMissesMakeOneCall() throws Exception {
+      var gate = new CountDownLatch(1);
+      RatingProvider slow = new RatingProvider() {
+         @Override
+         public BigDecimal getRating(int id) {
+            calls.incrementAndGet();
+            try {
+               gate.await();
+            } catch (InterruptedException e) {
+               throw new RuntimeException(e);
+            }
+            return BigDecimal.TEN;
+         }
+      };
+      var cache = cache(slow, 100);
+
+      try (var executor = Executors.newFixedThreadPool(8)) {
+         List<Future<BigDecimal>> futures = new ArrayList<>();
+         for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> cache.getRating(7)));
+         }
+         Thread.sleep(200);
+         gate.countDown();
+         for (var future : futures) {
+            assertEquals(BigDecimal.TEN, future.get());
+         }
+      }
+      assertEquals(1, calls.get());
+   }
+
+   @Test
+   public void testBulkOnlyAsksForMissing() {
+      var cache = cache(delegate, 100);
+
+      cache.getRatings(List.of(1, 2));
+      var ratings = cache.getRatings(List.of(1, 2, 3, 4, 3));
+
+      assertEquals(List.of(List.of(1, 2), List.of(3, 4)), bulkCalls);
+      assertEquals(4, ratings.size());
+      assertEquals(BigDecimal.valueOf(3), ratings.get(3));
+      assertEquals(2, cache.getHitCount());
+   }
+
+   @Test
+   public void testFailedLoadIsNotCached() {
+      var fail = new AtomicInteger(1);
+      RatingProvider flaky = new RatingProvider() {
+         @Override
+         public BigDecimal getRating(int id) {
+            if (fail.getAndDecrement() > 0) {
+               throw new IllegalStateException("Rating service down");
+            }
+            return BigDecimal.ONE;
+         }
+      };
+      var cache = cache(flaky, 100);
+
+      assertThrows(IllegalStateException.class, () -> cache.getRating(1));
+      assertEquals(BigDecimal.ONE, cache.getRating(1));
+      assertEquals(1, cache.getLoadFailureCount());
+   }
+
+   @Test
+   public void testNullIsNotCached() {
+      //As when the delegate falls back because the service is down
+      var down = new AtomicInteger(2);
+      RatingProvider fallingBack = new RatingProvider() {
+         @Override
+         public BigDecimal getRating(int id) {
+            return down.getAndDecrement() > 0 ? null : BigDecimal.ONE;
+         }
+      };
+      var cache = cache(fallingBack, 100);
+
+      assertNull(cache.getRating(1));
+      assertNull(cache.getRatings(List.of(1)).get(1));
+      assertEquals(0, cache.size());
+
+      assertEquals(BigDecimal.ONE, cache.getRatings(List.of(1)).get(1));
+      assertEquals(BigDecimal.ONE, cache.getRating(1));
+      assertEquals(1, cache.size());
+   }
+
+   @Test
+   public void testBulkWaitsForLoadsInFlight() throws Exception {
+      var gate = new CountDownLatch(1);
+      var started = new CountDownLatch(1);
+      RatingProvider slow = new RatingProvider() {
+         @Override
+         public BigDecimal getRating(int id) {
+            calls.incrementAndGet();
+            started.countDown();
+            try {
+               gate.await();
+            } catch (InterruptedException e) {
+               throw new RuntimeException(e);
+            }
+            return BigDecimal.TEN;
+         }
+
+         @Override
+         public Map<Integer, BigDecimal> getRatings(Collection<Integer> ids) {
+            return delegate.getRatings(ids);
+         }
+      };
+      var cache = cache(slow, 100);
+
+      var single = CompletableFuture.supplyAsync(() -> cache.getRating(7));
+      started.await();
+      var bulk = CompletableFuture.supplyAsync(() -> cache.getRatings(List.of(6, 7, 8)));
+      Thread.sleep(200);
+      gate.countDown();
+
+      assertEquals(BigDecimal.TEN, single.get());
+      var ratings = bulk.get();
+      //7 came from the single load, not from another call
+      assertEquals(BigDecimal.TEN, ratings.get(7));
+      assertEquals(List.of(List.of(6, 8)), bulkCalls);
+      assertEquals(1, calls.get());
+   }
+}
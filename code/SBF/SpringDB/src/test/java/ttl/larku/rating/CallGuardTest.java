@@ -0,0 +1,132 @@
+package ttl.larku.rating;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+public class CallGuardTest {
+
+   private final AtomicInteger calls = new AtomicInteger();
+
+   private String fail() {
+      calls.incrementAndGet();
+      throw new IllegalStateException("Service down");
+   }
+
+   private static void sleep(long millis) {
+      try {
+         Thread.sleep(millis);
+      } catch (InterruptedException e) {
+         throw new RuntimeException(e);
+      }
+   }
+
+   @Test
+   public void testCircuitOpensThenProbeClosesIt() {
+      try (var guard = new CallGuard("test", 3, Duration.ofMillis(200), 10, Duration.ZERO, Duration.ofSeconds(1))) {
+         for (int i = 0; i < 3; i++) {
+            assertEquals("fallback", guard.call(this::fail, true, () -> "fallback"));
+         }
+         assertEquals(CallGuard.State.OPEN, guard.getState());
+
+         //Open, so the service isn't called at all
+         assertEquals("fallback", guard.call(this::fail, true, () -> "fallback"));
+         assertEquals(3, calls.get());
+
+         sleep(250);
+         assertEquals("ok", guard.call(() -> "ok", true, () -> "fallback"));
+         assertEquals(CallGuard.State.CLOSED, guard.getState());
+      }
+   }
+
+   @Test
+   public void testFailedProbeOpensAgain() {
+      try (var guard = new CallGuard("test", 1, Duration.ofMillis(100), 10, Duration.ZERO, Duration.ofSeconds(1))) {
+         guard.call(this::fail, true, () -> "fallback");
+         assertEquals(CallGuard.State.OPEN, guard.getState());
+
+         sleep(150);
+         guard.call(this::fail, true, () -> "fallback");
+         assertEquals(CallGuard.State.OPEN, guard.getState());
+         assertEquals(2, calls.get());
+      }
+   }
+
+   @Test
+   public void testSlowCallTimesOutToFallback() {
+      try (var guard = new CallGuard("test", 5, Duration.ofSeconds(10), 10, Duration.ZERO, Duration.ofMillis(100))) {
+         long start = System.nanoTime();
+         var result = guard.call(() -> {
+            sleep(2000);
+            return "late";
+         }, true, () -> "fallback");
+         long millis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+         assertEquals("fallback", result);
+         assertTrue(millis < 1000, "took " + millis + "ms");
+      }
+   }
+
+   @Test
+   public void testHedgeBeatsSlowCall() {
+      try (var guard = new CallGuard("test", 5, Duration.ofSeconds(10), 10, Duration.ofMillis(50), Duration.ofSeconds(1))) {
+         var result = guard.call(() -> {
+            //The first one is stuck, the hedge is quick
+            if (calls.incrementAndGet() == 1) {
+               sleep(2000);
+               return "slow";
+            }
+            return "hedged";
+         }, true, () -> "fallback");
+
+         assertEquals("hedged", result);
+         assertEquals(1, guard.getHedgeCount());
+      }
+   }
+
+   @Test
+   public void testNoHedgeForNonIdempotentCall() {
+      try (var guard = new CallGuard("test", 5, Duration.ofSeconds(10), 10, Duration.ofMillis(20), Duration.ofMillis(300))) {
+         var result = guard.call(() -> {
+            calls.incrementAndGet();
+            sleep(100);
+            return "ok";
+         }, false, () -> "fallback");
+
+         assertEquals("ok", result);
+         assertEquals(1, calls.get());
+      }
+   }
+
+   @Test
+   public void testBulkheadFullFallsBack() throws Exception {
+      var release = new CountDownLatch(1);
+      var started = new CountDownLatch(2);
+      try (var guard = new CallGuard("test", 5, Duration.ofSeconds(10), 2, Duration.ZERO, Duration.ofSeconds(5));
+           var callers = Executors.newFixedThreadPool(2)) {
+         for (int i = 0; i < 2; i++) {
+            callers.submit(() -> guard.call(() -> {
+               started.countDown();
+               try {
+                  release.await();
+               } catch (InterruptedException e) {
+                  throw new RuntimeException(e);
+               }
+               return "ok";
+            }, true, () -> "fallback"));
+         }
+         started.await();
+         assertEquals(2, guard.getInFlight());
+
+         assertEquals("fallback", guard.call(() -> "ok", true, () -> "fallback"));
+         release.countDown();
+      }
+   }
+}
@@ -0,0 +1,141 @@
+package ttl.larku.search;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.domain.Specification;
+import ttl.larku.dao.repository.StudentRepo;
+import ttl.larku.domain.Student;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Tag("unit")
+public class SearchPlanTest {
+
+   private final JPASearchSpecService<Student, Integer, StudentRepo> searchService = new JPASearchSpecService<>();
+
+   @Test
+   public void testPlanBindsConvertedValues() {
+      Map<String, Object> context = new LinkedHashMap<>();
+      context.put("C.name", "man");
+      context.put("G.classes.startDate", "2023-08-10");
+      context.put("e.status", "full_time");
+      context.put("pageSize", "10");
+
+      List<Specification<Student>> specs = searchService.makeSearchSpecs(context);
+      assertEquals(3, specs.size());
+
+      var startDate = (JpaTrackSearchSpec) specs.get(1);
+      assertEquals(JpaSearchSpecSupport.SearchType.GreaterEqual, startDate.searchType);
+      assertEquals("classes.startDate", startDate.propName);
+      assertEquals(LocalDate.of(2023, 8, 10), startDate.value);
+      assertEquals(Student.Status.FULL_TIME, ((JpaTrackSearchSpec) specs.get(2)).value);
+   }
+
+   @Test
+   public void testSameShapeReusesPlan() {
+      SearchPlanCache<Student> cache = new SearchPlanCache<>(2);
+      Function<SearchPlan.Shape, SearchPlan<Student>> compiler =
+            shape -> SearchPlan.compile(shape, k -> Function.identity(), k -> false);
+
+      SearchPlan<Student> first = cache.get(shape("e.name"), compiler);
+      assertSame(first, cache.get(shape("e.name"), compiler));
+
+      //Least recently used goes first
+      cache.get(shape("c.name"), compiler);
+      cache.get(shape("e.name"), compiler);
+      cache.get(shape("C.name"), compiler);
+      assertEquals(2, cache.size());
+      assertSame(first, cache.get(shape("e.name"), compiler));
+   }
+
+   @Test
+   public void testZeroSizeCacheAlwaysCompiles() {
+      SearchPlanCache<Student> cache = new SearchPlanCache<>(0);
+      Function<SearchPlan.Shape, SearchPlan<Student>> compiler =
+            shape -> SearchPlan.compile(shape, k -> Function.identity(), k -> false);
+
+      assertNotSame(cache.get(shape("e.name"), compiler), cache.get(shape("e.name"), compiler));
+      assertEquals(0, cache.size());
+   }
+
+   @Test
+   public void testSplitPath() {
+      assertArrayEquals(new String[]{"classes", "course", "code"},
+            JpaSearchSpecSupport.SearchType.splitPath("classes.course.code"));
+   }
+
+   @Test
+   public void testUnknownOperator() {
+      assertThrows(IllegalArgumentException.class,
+            () -> searchService.makeSearchSpecs(new LinkedHashMap<>(Map.of("q.name", "x"))));
+   }
+
+   @Test
+   public void testParseExpression() {
+      SearchExpr expr = SearchExpr.parse("C.name AND (G.dob or not e.status) and (e.id)");
+      assertEquals(new SearchExpr.And(List.of(
+            new SearchExpr.Term("C.name"),
+            new SearchExpr.Or(List.of(new SearchExpr.Term("G.dob"), new SearchExpr.Not(new SearchExpr.Term("e.status")))),
+            new SearchExpr.Term("e.id"))), expr);
+
+      //and binds tighter than or
+      assertEquals(new SearchExpr.Or(List.of(
+            new SearchExpr.Term("e.name"),
+            new SearchExpr.And(List.of(new SearchExpr.Term("e.id"), new SearchExpr.Term("!.status"))))),
+            SearchExpr.parse("e.name or e.id and !.status"));
+
+      assertThrows(IllegalArgumentException.class, () -> SearchExpr.parse("(e.name or e.id"));
+      assertThrows(IllegalArgumentException.class, () -> SearchExpr.parse("e.name or"));
+      assertThrows(IllegalArgumentException.class, () -> SearchExpr.parse("e.name e.id"));
+      assertThrows(IllegalArgumentException.class, () -> SearchExpr.parse("e.name or status"));
+   }
+
+   @Test
+   public void testAndIsOrderedBySelectivity() {
+      Map<String, Object> context = new LinkedHashMap<>();
+      context.put("C.name", "man");
+      context.put("G.dob", "1990-01-01");
+      context.put("e.status", "full_time");
+      context.put("e.id", "3");
+      context.put("combine", "and");
+
+      SearchPlan<Student> plan = SearchPlan.compile(SearchPlan.shapeOf(context),
+            searchService::converterFor, searchService::isIndexed);
+      assertEquals(new SearchExpr.And(List.of(
+            new SearchExpr.Term("e.id"),
+            new SearchExpr.Term("e.status"),
+            new SearchExpr.Term("G.dob"),
+            new SearchExpr.Term("C.name"))), plan.getExpr());
+
+      context.remove("combine");
+      context.put("where", "C.name and (G.dob or e.status) and not e.id");
+      plan = SearchPlan.compile(SearchPlan.shapeOf(context), searchService::converterFor, searchService::isIndexed);
+      assertEquals(new SearchExpr.And(List.of(
+            new SearchExpr.Or(List.of(new SearchExpr.Term("G.dob"), new SearchExpr.Term("e.status"))),
+            new SearchExpr.Not(new SearchExpr.Term("e.id")),
+            new SearchExpr.Term("C.name"))), plan.getExpr());
+   }
+
+   @Test
+   public void testExpressionMustMatchQuery() {
+      Map<String, Object> context = new LinkedHashMap<>(Map.of("e.name", "Joe", "where", "e.name or e.id"));
+      assertThrows(IllegalArgumentException.class, () -> searchService.makeSearchSpecification(context));
+
+      context.put("e.id", "2");
+      context.put("C.name", "o");
+      assertThrows(IllegalArgumentException.class, () -> searchService.makeSearchSpecification(context));
+   }
+
+   private SearchPlan.Shape shape(String... keys) {
+      return new SearchPlan.Shape(List.of(keys), null, JpaSearchSpecSupport.Operation.Or);
+   }
+}
@@ -4,7 +4,10 @@ import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.criteria.Path;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -14,6 +17,7 @@ import ttl.larku.sql.SqlScriptBase;
 
 import static java.lang.System.out;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 public class TestStudentRepoSearchByJpaSpecification extends SqlScriptBase {
@@ -24,6 +28,51 @@ public class TestStudentRepoSearchByJpaSpecification extends SqlScriptBase {
    @Autowired
    private StudentRepo studentRepo;
 
+   @Autowired
+   private JPASearchSpecService<Student, Integer, StudentRepo> searchService;
+
+   @Test
+   public void testKeysetPagingVisitsEveryStudentOnce() {
+      List<Integer> ids = new ArrayList<>();
+      String nextToken = "";
+      int pages = 0;
+      do {
+         Map<String, Object> context = new HashMap<>(Map.of("pageSize", "2", "sort", "name",
+               "after", nextToken, "count", "true"));
+         List<Student> page = searchService.getTracksByRequestParams(context, studentRepo);
+         page.forEach(s -> ids.add(s.getId()));
+         assertEquals(studentRepo.count(), context.get("totalElements"));
+         nextToken = (String) context.get("nextToken");
+         pages++;
+      } while (nextToken != null);
+
+      out.println("pages: " + pages + ", ids: " + ids);
+      assertEquals(studentRepo.count(), ids.size());
+      assertEquals(ids.size(), ids.stream().distinct().count());
+   }
+
+   @Test
+   public void testNoSpecsIsNothingInBothModes() {
+      Map<String, Object> offset = new HashMap<>(Map.of("where", " ", "page", "1"));
+      Map<String, Object> keyset = new HashMap<>(Map.of("where", " ", "paging", "keyset"));
+
+      assertTrue(searchService.getTracksByRequestParams(offset, studentRepo).isEmpty());
+      assertTrue(searchService.getTracksByRequestParams(keyset, studentRepo).isEmpty());
+      assertTrue(keyset.containsKey("nextToken"));
+   }
+
+   @Test
+   public void testKeysetTokenRoundTrip() {
+      var sort = KeysetToken.parseSort("name,-dob");
+      var token = new KeysetToken(sort, Map.of("name", "Manoj", "dob", LocalDate.of(2000, 1, 1),
+            "status", Student.Status.PART_TIME, "id", 42));
+
+      var decoded = KeysetToken.decode(token.encode());
+
+      assertEquals(token, decoded);
+      assertEquals("name,-dob", KeysetToken.formatSort(decoded.sort()));
+   }
+
    @Test
    public void testSearchWithSearchSpecification() {
       JpaTrackSearchSpec spec = new JpaTrackSearchSpec(JpaSearchSpecSupport.SearchType.ContainsString,
@@ -26,7 +26,6 @@ public interface BaseDAO<T> {
     public void createStore();
 
     default public List<T> findBy(Predicate<T> pred) {
-        List<T> x = getAll();
         List<T> result = getAll().stream()
                 .filter(pred)
                 .collect(toList());
@@ -0,0 +1,44 @@
+package ttl.larku.dao.inmemory;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import ttl.larku.dao.IndexedPredicate;
+
+/**
+ * Exact match index.  Answers EQUALS predicates with one hash lookup.
+ */
+public class HashIndex<T, K> extends SecondaryIndex<T, K> {
+
+    private final Map<K, Set<Integer>> buckets = new ConcurrentHashMap<>();
+
+    public HashIndex(String field, Function<T, K> keyExtractor) {
+        super(field, keyExtractor);
+    }
+
+    @Override
+    public Set<Integer> candidates(IndexedPredicate<T> pred) {
+        if (pred.getOp() != IndexedPredicate.Op.EQUALS || pred.getValue() == null) {
+            return null;
+        }
+        Set<Integer> ids = buckets.get(pred.getValue());
+        return ids != null ? new TreeSet<>(ids) : Set.of();
+    }
+
+    @Override
+    protected void addKey(int id, K key) {
+        addToBucket(buckets, key, id);
+    }
+
+    @Override
+    protected void removeKey(int id, K key) {
+        removeFromBucket(buckets, key, id);
+    }
+
+    @Override
+    protected void clearKeys() {
+        buckets.clear();
+    }
+}
@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import ttl.larku.dao.BaseDAO;
 import ttl.larku.domain.Course;
 
@@ -12,15 +13,28 @@ public class InMemoryCourseDAO implements BaseDAO<Course> {
 
     private Map<Integer, Course> courses = new ConcurrentHashMap<Integer, Course>();
     private AtomicInteger nextId = new AtomicInteger(1);
+    private final IndexSet<Course> indexes = new IndexSet<Course>()
+            .add(new HashIndex<>("code", Course::getCode))
+            .add(new NGramIndex<>("code", Course::getCode));
 
     @Override
     public boolean update(Course updateObject) {
-        return courses.computeIfPresent(updateObject.getId(), (key, oldValue) -> updateObject) != null;
+        //Indexed in the compute, so the index changes along with the store
+        return courses.computeIfPresent(updateObject.getId(), (key, oldValue) -> {
+            indexes.index(key, updateObject);
+            return updateObject;
+        }) != null;
     }
 
     @Override
     public boolean delete(Course course) {
-        return courses.remove(course.getId()) != null;
+        boolean[] deleted = new boolean[1];
+        courses.computeIfPresent(course.getId(), (key, oldValue) -> {
+            indexes.unindex(key);
+            deleted[0] = true;
+            return null;
+        });
+        return deleted[0];
     }
 
     @Override
@@ -28,7 +42,10 @@ public class InMemoryCourseDAO implements BaseDAO<Course> {
         //Create a new Id
         int newId = nextId.getAndIncrement();
         newObject.setId(newId);
-        courses.put(newId, newObject);
+        courses.compute(newId, (key, oldValue) -> {
+            indexes.index(key, newObject);
+            return newObject;
+        });
 
         return newObject;
     }
@@ -43,15 +60,27 @@ public class InMemoryCourseDAO implements BaseDAO<Course> {
         return new ArrayList<Course>(courses.values());
     }
 
+    /**
+     * IndexedPredicates on an indexed field are answered from the
+     * index.  Anything else is a scan, as before.
+     */
+    @Override
+    public List<Course> findBy(Predicate<Course> pred) {
+        List<Course> result = indexes.query(pred, courses);
+        return result != null ? result : BaseDAO.super.findBy(pred);
+    }
+
     @Override
     public void deleteStore() {
         courses = null;
+        indexes.clear();
     }
 
     @Override
     public void createStore() {
         courses = new ConcurrentHashMap<>();
         nextId = new AtomicInteger(1);
+        indexes.clear();
     }
 
     public Map<Integer, Course> getCourses() {
@@ -60,5 +89,6 @@ public class InMemoryCourseDAO implements BaseDAO<Course> {
 
     public void setCourses(Map<Integer, Course> courses) {
         this.courses = courses;
+        indexes.rebuild(courses);
     }
 }
@@ -1,6 +1,7 @@
 package ttl.larku.dao.inmemory;
 
 import ttl.larku.dao.BaseDAO;
+import ttl.larku.dao.IndexedPredicate;
 import ttl.larku.domain.Student;
 
 import java.util.ArrayList;
@@ -8,11 +9,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 public class InMemoryStudentDAO implements BaseDAO<Student> {
 
     private Map<Integer, Student> students = new ConcurrentHashMap<>();
     private AtomicInteger nextId = new AtomicInteger(1);
+    private final IndexSet<Student> indexes = new IndexSet<Student>()
+            .add(new NGramIndex<>("name", Student::getName))
+            .add(new RangeIndex<>("dob", Student::getDob));
     private String from;
 
     public InMemoryStudentDAO(String from) {
@@ -26,12 +31,22 @@ public class InMemoryStudentDAO implements BaseDAO<Student> {
 
     @Override
     public boolean update(Student updateObject) {
-        return students.computeIfPresent(updateObject.getId(), (key, oldValue) -> updateObject) != null;
+        //Indexed in the compute, so the index changes along with the store
+        return students.computeIfPresent(updateObject.getId(), (key, oldValue) -> {
+            indexes.index(key, updateObject);
+            return updateObject;
+        }) != null;
     }
 
     @Override
     public boolean delete(Student student) {
-        return students.remove(student.getId()) != null;
+        boolean[] deleted = new boolean[1];
+        students.computeIfPresent(student.getId(), (key, oldValue) -> {
+            indexes.unindex(key);
+            deleted[0] = true;
+            return null;
+        });
+        return deleted[0];
     }
 
     @Override
@@ -39,9 +54,11 @@ public class InMemoryStudentDAO implements BaseDAO<Student> {
         //Create a new Id
         int newId = nextId.getAndIncrement();
         newObject.setId(newId);
-        students.put(newId, newObject);
-
         newObject.setName(from + newObject.getName());
+        students.compute(newId, (key, oldValue) -> {
+            indexes.index(key, newObject);
+            return newObject;
+        });
         return newObject;
     }
 
@@ -55,13 +72,24 @@ public class InMemoryStudentDAO implements BaseDAO<Student> {
         return new ArrayList<Student>(students.values());
     }
 
+    /**
+     * IndexedPredicates on an indexed field are answered from the
+     * index.  Anything else is a scan, as before.
+     */
+    @Override
+    public List<Student> findBy(Predicate<Student> pred) {
+        List<Student> result = indexes.query(pred, students);
+        return result != null ? result : BaseDAO.super.findBy(pred);
+    }
+
     public List<Student> getByName(String name) {
-        return findBy(s -> s.getName().contains(name));
+        return findBy(IndexedPredicate.contains("name", Student::getName, name));
     }
 
     @Override
     public void deleteStore() {
         students = null;
+        indexes.clear();
     }
 
 
@@ -69,6 +97,7 @@ public class InMemoryStudentDAO implements BaseDAO<Student> {
     public void createStore() {
         students = new ConcurrentHashMap<>();
         nextId = new AtomicInteger(1);
+        indexes.clear();
     }
 
     public Map<Integer, Student> getStudents() {
@@ -77,5 +106,6 @@ public class InMemoryStudentDAO implements BaseDAO<Student> {
 
     public void setStudents(Map<Integer, Student> students) {
         this.students = students;
+        indexes.rebuild(students);
     }
 }
@@ -0,0 +1,97 @@
+package ttl.larku.dao.inmemory;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+import ttl.larku.dao.IndexedPredicate;
+
+/**
+ * Base class for the secondary indexes kept by the InMemory DAOs.
+ * <p>
+ * We remember the key we indexed each id under, so that we can
+ * unindex correctly even if the object has been changed in place
+ * before update() is called on the DAO.
+ * <p>
+ * Lookups reflect only the values as of the last insert or update.
+ * Candidates are re-checked against the real predicate, so an object
+ * changed in place since then won't be returned for its old value,
+ * but it won't be found by its new one either until it is updated.
+ * <p>
+ * Buckets, and the candidates, are in id order, so that the order of
+ * the results, e.g. which match is first, doesn't depend on hashing.
+ *
+ * @param <T> the type being indexed
+ * @param <K> the type of the key extracted from T
+ */
+public abstract class SecondaryIndex<T, K> {
+
+    private final String field;
+    private final Function<T, K> keyExtractor;
+    private final Map<Integer, K> indexedKeys = new ConcurrentHashMap<>();
+
+    protected SecondaryIndex(String field, Function<T, K> keyExtractor) {
+        this.field = field;
+        this.keyExtractor = keyExtractor;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public synchronized void add(int id, T obj) {
+        remove(id);
+        K key = keyExtractor.apply(obj);
+        if (key != null) {
+            indexedKeys.put(id, key);
+            addKey(id, key);
+        }
+    }
+
+    public synchronized void remove(int id) {
+        K oldKey = indexedKeys.remove(id);
+        if (oldKey != null) {
+            removeKey(id, oldKey);
+        }
+    }
+
+    public synchronized void clear() {
+        indexedKeys.clear();
+        clearKeys();
+    }
+
+    /**
+     * @return the ids that may match the predicate, or null
+     * if this index can't help with this kind of predicate.
+     */
+    public abstract Set<Integer> candidates(IndexedPredicate<T> pred);
+
+    protected abstract void addKey(int id, K key);
+
+    protected abstract void removeKey(int id, K key);
+
+    protected abstract void clearKeys();
+
+    /**
+     * Add/remove an id to/from the bucket for a key, dropping the
+     * bucket when it becomes empty.  Done in a compute so that it is
+     * atomic per key.
+     */
+    protected static <B> void addToBucket(Map<B, Set<Integer>> buckets, B key, int id) {
+        buckets.compute(key, (k, ids) -> {
+            if (ids == null) {
+                ids = new ConcurrentSkipListSet<>();
+            }
+            ids.add(id);
+            return ids;
+        });
+    }
+
+    protected static <B> void removeFromBucket(Map<B, Set<Integer>> buckets, B key, int id) {
+        buckets.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+}
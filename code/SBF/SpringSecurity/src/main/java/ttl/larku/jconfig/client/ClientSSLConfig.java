@@ -49,6 +49,10 @@ import org.springframework.web.client.RestTemplate;
  * the hostname, e.g. localhost.
  * keytool -genkeypair -alias larkuspring
  * -keyalg RSA -keysize 2048 -storetype PKCS12 -keystore larkUKeyfile.p12
+ * -ext SAN=dns:localhost,ip:127.0.0.1
+ * The SAN is what the JDK HttpClient, which PooledRestClientFactory uses,
+ * checks the host name against.  Without one it falls back to the CN.
+ * The Apache clients below skip that check (NoopHostnameVerifier).
  * <p>
  * 2) Make sure you point to this file with the appropriate properties in
  * application.[properties|yml]
@@ -151,14 +155,12 @@ public class ClientSSLConfig {
    }
 
    /**
-    * A RestClient.Builder that allows us to access servers that uses self-signed certificates.
-    *
-    * We are returning a RestClient.Builder here rather than a RestClient because we want
-    * to allow the user of this bean to be able to further configure the client.  e.g. look
-    * in RestClientFactory.
+    * The SSLContext that trusts the rating service's self-signed certificate.  It is a
+    * bean so that all the clients share one, and with it one TLS session cache.
+    * PooledRestClientFactory picks it up when it is here.
     */
    @Bean
-   public RestClient.Builder sslRestClientBuilder(@Value("${CLIENT_PASSWORD}") String password) throws IOException, KeyStoreException, CertificateException, NoSuchAlgorithmException, UnrecoverableKeyException, KeyManagementException {
+   public SSLContext clientSslContext(@Value("${CLIENT_PASSWORD}") String password) throws IOException, KeyStoreException, CertificateException, NoSuchAlgorithmException, UnrecoverableKeyException, KeyManagementException {
       KeyStore clientStore = KeyStore.getInstance("PKCS12");
       //We point it at the same keystore as the server
       //clientStore.load(getClass().getResourceAsStream("larkUKeyfile.p12"), password.toCharArray());
@@ -172,6 +174,18 @@ public class ClientSSLConfig {
             .loadTrustMaterial(ResourceUtils.getFile("classpath:courseRatingTrustStore.p12"), password.toCharArray())
             .build();
 
+      return sslContext;
+   }
+
+   /**
+    * A RestClient.Builder that allows us to access servers that uses self-signed certificates.
+    *
+    * We are returning a RestClient.Builder here rather than a RestClient because we want
+    * to allow the user of this bean to be able to further configure the client.  e.g. look
+    * in RestClientFactory.
+    */
+   @Bean
+   public RestClient.Builder sslRestClientBuilder(SSLContext sslContext) {
       SSLConnectionSocketFactory sslSocketFactory = SSLConnectionSocketFactoryBuilder.create()
             .setSslContext(sslContext)
             .setHostnameVerifier(NoopHostnameVerifier.INSTANCE)
@@ -1,12 +1,6 @@
 package ttl.larku.rating;
 
-import java.io.IOException;
 import java.math.BigDecimal;
-import java.security.KeyManagementException;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
-import java.security.UnrecoverableKeyException;
-import java.security.cert.CertificateException;
 import java.util.Base64;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
@@ -14,19 +8,21 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClient;
-import ttl.larku.jconfig.client.ClientSSLConfig;
+import ttl.larku.jconfig.client.RestClientFactory;
 
 /**
- * One way to make RestClient calls succeed is to make it depend on a RestTemplate that
- * has SSL configured, like we do in .../security/clientClientSSLConfig.
+ * One way to make RestClient calls succeed is to make it depend on an SSLContext that
+ * trusts our certificate, like the clientSslContext in .../jconfig/client/ClientSSLConfig.
+ * With the ssl profile that is the one our RestClientFactory, a PooledRestClientFactory,
+ * uses for all its clients.
  * <p>
  * The other way is to add the public key of our self-signed certificate (larkUKeyfile.p12)
  * to our jdks trusted certificate list (jdk_path/lib/security/cacerts).  Instructions on
  * how to do that are in the README.SSL file.
  * <p>
- * _Note that this test will fail if the certificate has not been added into the cacerts
- * file, since here we are working with just a RestClient that has no special ssl config
- * applied to it.
+ * _Note that without the ssl profile there is no clientSslContext, so an https
+ * rating.provider.url will fail if the certificate has not been added into the
+ * cacerts file.
  */
 @Component
 @Profile("networkrating")
@@ -41,27 +37,17 @@ public class RestClientRatingProvider implements RatingProvider{
    //String rootUrl = baseUrl + "/adminrest/student";
 //   String rootUrl;
 
-   ClientSSLConfig clientSSLConfig = new ClientSSLConfig();
-
    public RestClientRatingProvider(@Value("${rating.provider.url}")
                        String baseUrl,
                                    @Value("${CLIENT_PASSWORD}")
-                       String password) throws UnrecoverableKeyException, CertificateException, IOException, KeyStoreException, NoSuchAlgorithmException, KeyManagementException {
+                       String password,
+                                   RestClientFactory factory) {
 
       this.password = password;
-      String basicAuthHeader = "basic " + Base64.getEncoder().encodeToString(("bobby" + ":" + password).getBytes());
-
-      var builder = clientSSLConfig.sslRestClientBuilder(password);
-//
-//      this.restClient = RestClient.builder()
-      this.restClient = builder
-            //.baseUrl("https://localhost:10043/rating")
-            .baseUrl(baseUrl)
-            .defaultHeader("Accept", "application/json")
-            .defaultHeader("Content-Type", "application/json")
-            .defaultHeader("Authorization", basicAuthHeader)
-            .build();
 
+      //The factory's clients share one pool of kept alive connections,
+      //so we don't pay for a TLS handshake on every call.
+      this.restClient = factory.basicAuth(baseUrl, "bobby", password);
    }
 
    @Override
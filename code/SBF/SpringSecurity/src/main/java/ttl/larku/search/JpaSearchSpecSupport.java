@@ -5,6 +5,8 @@ import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * @author whynot
@@ -37,24 +39,24 @@ public class JpaSearchSpecSupport<T> {
     public enum SearchType {
         Equal(false, "e") {
             @Override
-            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String propName, Object value) {
-                var path = makePropertyPath(root, propName, Object.class);
+            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String[] propPath, Object value) {
+                var path = makePropertyPath(root, propPath, Object.class);
                 //return cb.equal(root.get(propName), value);
                 return cb.equal(path, value);
             }
         },
         NotEqual(false, "!") {
             @Override
-            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String propName, Object value) {
-                var path = makePropertyPath(root, propName, Object.class);
+            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String[] propPath, Object value) {
+                var path = makePropertyPath(root, propPath, Object.class);
                 return cb.notEqual(path, value);
 //                return cb.notEqual(root.get(propName), value);
             }
         },
         Greater(true, "g") {
             @SuppressWarnings({"unchecked", "rawtypes"})
-            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String propName, Object value) {
-                var path = makePropertyPath(root, propName, Comparable.class);
+            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String[] propPath, Object value) {
+                var path = makePropertyPath(root, propPath, Comparable.class);
                 return cb.greaterThan(path, (Comparable) value);
 //                return cb.greaterThan(root.get(propName), (Comparable) value);
             }
@@ -62,8 +64,8 @@ public class JpaSearchSpecSupport<T> {
         GreaterEqual(true, "G") {
             @Override
             @SuppressWarnings({"unchecked", "rawtypes"})
-            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String propName, Object value) {
-                var path = makePropertyPath(root, propName, Comparable.class);
+            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String[] propPath, Object value) {
+                var path = makePropertyPath(root, propPath, Comparable.class);
                 return cb.greaterThanOrEqualTo(path, (Comparable) value);
 //                return cb.greaterThanOrEqualTo(root.get(propName), (Comparable) value);
             }
@@ -71,8 +73,8 @@ public class JpaSearchSpecSupport<T> {
         Less(true, "l"){
             @Override
             @SuppressWarnings({"unchecked", "rawtypes"})
-            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String propName, Object value) {
-                var path = makePropertyPath(root, propName, Comparable.class);
+            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String[] propPath, Object value) {
+                var path = makePropertyPath(root, propPath, Comparable.class);
                 return cb.lessThan(path, (Comparable) value);
 //                return cb.lessThan(root.get(propName), (Comparable) value);
             }
@@ -80,53 +82,53 @@ public class JpaSearchSpecSupport<T> {
         LessEqual(true, "L"){
             @Override
             @SuppressWarnings({"unchecked", "rawtypes"})
-            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String propName, Object value) {
-                var path = makePropertyPath(root, propName, Comparable.class);
+            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String[] propPath, Object value) {
+                var path = makePropertyPath(root, propPath, Comparable.class);
                 return cb.lessThanOrEqualTo(path, (Comparable) value);
 //                return cb.lessThanOrEqualTo(root.get(propName), (Comparable) value);
             }
         },
         ContainsString(false, "c") {
             @Override
-            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String propName, Object value) {
-                var path = makePropertyPath(root, propName, String.class);
+            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String[] propPath, Object value) {
+                var path = makePropertyPath(root, propPath, String.class);
                 return cb.like(path, "%" + value.toString() + "%");
 //                return cb.like(root.get(propName), "%" + value.toString() + "%");
             }
         },
         ContainsStringIC(false, "C") {
             @Override
-            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String propName, Object value) {
-                var path = makePropertyPath(root, propName, String.class);
+            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String[] propPath, Object value) {
+                var path = makePropertyPath(root, propPath, String.class);
                 return cb.like(cb.lower(path), "%" + value.toString().toLowerCase() + "%");
 //                return cb.like(cb.lower(root.get(propName)), "%" + value.toString().toLowerCase() + "%");
             }
         },
         Size(false, "s") {  //size equals
             @Override
-            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String propName, Object value) {
-                var path = makePropertyPath(root, propName, Collection.class);
+            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String[] propPath, Object value) {
+                var path = makePropertyPath(root, propPath, Collection.class);
                 return cb.equal(cb.size(path), Integer.parseInt(value.toString()));
             }
         },
         Null(false, "n") {  //Null
             @Override
-            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String propName, Object value) {
-                var path = makePropertyPath(root, propName, Object.class);
+            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String[] propPath, Object value) {
+                var path = makePropertyPath(root, propPath, Object.class);
                 return cb.isNull(path);
             }
         },
         NotNull(false, "N") {  //Not Null
             @Override
-            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String propName, Object value) {
-                var path = makePropertyPath(root, propName, Object.class);
+            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String[] propPath, Object value) {
+                var path = makePropertyPath(root, propPath, Object.class);
                 return cb.isNotNull(path);
             }
         },
         All(false, "") {
             @Override
-            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String propName, Object value) {
-//                var path = makePropertyPath(root, propName, String.class);
+            public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String[] propPath, Object value) {
+//                var path = makePropertyPath(root, propPath, String.class);
                 return cb.conjunction();
             }
         },
@@ -134,7 +136,15 @@ public class JpaSearchSpecSupport<T> {
 
 
         public <T, X> Path<X> makePropertyPath(Root<T> root, String propName, Class<X> clazz) {
-            var propParts = propName.split("\\.");
+            return makePropertyPath(root, splitPath(propName), clazz);
+        }
+
+        /**
+         * Same as above, with the property name already split on the dots.
+         * A compiled SearchPlan splits each name once, instead of once
+         * per request.
+         */
+        public <T, X> Path<X> makePropertyPath(Root<T> root, String[] propParts, Class<X> clazz) {
             Path<X> path = root.get(propParts[0]);
             for (int i = 1; i < propParts.length; i++) {
                 path = path.get(propParts[i]);
@@ -143,6 +153,10 @@ public class JpaSearchSpecSupport<T> {
             return path;
         }
 
+        public static String[] splitPath(String propName) {
+            return propName.split("\\.");
+        }
+
         public final String symbol;
         public final boolean needsComparable;
         SearchType(boolean needsComparable, String symbol) {
@@ -150,16 +164,22 @@ public class JpaSearchSpecSupport<T> {
             this.symbol = symbol;
         }
 
-        public static SearchType getBySymbol(String symbol) {
+        private static final Map<String, SearchType> bySymbol = new HashMap<>();
+        static {
             for(SearchType st : SearchType.values()) {
-                if(st.symbol.equals(symbol)) {
-                    return st;
-                }
+                bySymbol.put(st.symbol, st);
             }
-            return null;
+        }
+
+        public static SearchType getBySymbol(String symbol) {
+            return bySymbol.get(symbol);
         }
 
         public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String propName, Object value) {
+            return makeIt(cb, root, splitPath(propName), value);
+        }
+
+        public <T> Predicate makeIt(CriteriaBuilder cb, Root<T> root, String[] propPath, Object value) {
             return cb.or();   //always false
         }
     }
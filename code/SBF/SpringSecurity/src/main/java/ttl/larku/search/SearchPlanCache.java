@@ -0,0 +1,36 @@
+package ttl.larku.search;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A small LRU cache of SearchPlans, keyed by the Shape of the
+ * request.  It is bounded because the keys come from the query
+ * string, and so from anybody.  A maxSize of 0 turns caching off.
+ *
+ * @param <E_T>
+ */
+public class SearchPlanCache<E_T> {
+
+   private final Map<SearchPlan.Shape, SearchPlan<E_T>> plans;
+
+   public SearchPlanCache(int maxSize) {
+      //access order, so the eldest entry is the least recently used
+      this.plans = new LinkedHashMap<>(16, 0.75f, true) {
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<SearchPlan.Shape, SearchPlan<E_T>> eldest) {
+            return size() > maxSize;
+         }
+      };
+   }
+
+   public synchronized SearchPlan<E_T> get(SearchPlan.Shape shape,
+                                           Function<SearchPlan.Shape, SearchPlan<E_T>> compiler) {
+      return plans.computeIfAbsent(shape, compiler);
+   }
+
+   public synchronized int size() {
+      return plans.size();
+   }
+}
@@ -6,6 +6,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
 import ttl.larku.dao.BaseDAO;
+import ttl.larku.dao.IndexedPredicate;
 import ttl.larku.domain.Course;
 import ttl.larku.rating.RatingProvider;
 
@@ -70,7 +71,7 @@ public class CourseServiceWithRating implements CourseService {
 
     @Override
     public Course findByCode(String code) {
-        List<Course> courses = courseDAO.findBy(c -> c.getCode().contains(code));
+        List<Course> courses = courseDAO.findBy(IndexedPredicate.contains("code", Course::getCode, code));
         if(!courses.isEmpty()) { //take the first one
             var course = courses.get(0);
             course.setRating(getRatingFromService(course));
@@ -54,7 +54,7 @@ public class RestClientNoSpringSslTest {
    public void beforeAll() throws UnrecoverableKeyException, CertificateException, IOException, KeyStoreException, NoSuchAlgorithmException, KeyManagementException {
       String basicAuthHeader = "basic " + Base64.getEncoder().encodeToString(("bobby" + ":" + password).getBytes());
 
-      var builder = clientSSLConfig.sslRestClientBuilder(password);
+      var builder = clientSSLConfig.sslRestClientBuilder(clientSSLConfig.clientSslContext(password));
 //
 //      this.restClient = RestClient.builder()
       this.restClient = builder